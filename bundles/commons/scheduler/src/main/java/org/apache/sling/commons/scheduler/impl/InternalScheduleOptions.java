@@ -17,6 +17,7 @@
 package org.apache.sling.commons.scheduler.impl;
 
 import java.io.Serializable;
+import java.util.Date;
 import java.util.Map;
 
 import org.apache.sling.commons.scheduler.ScheduleOptions;
@@ -42,14 +43,44 @@ public class InternalScheduleOptions implements ScheduleOptions {
 
     public String[] runOn;
 
+    /** The start time for simple schedules, {@code null} for cron expressions. */
+    public final Date startAt;
+
+    /** The period in ms for simple schedules, 0 for one time jobs. */
+    public final long period;
+
+    /** How often the job is run for simple schedules, -1 means forever. */
+    public final int times;
+
     public InternalScheduleOptions(final TriggerBuilder<? extends Trigger> trigger) {
+        this(trigger, null, 0, 1);
+    }
+
+    public InternalScheduleOptions(final TriggerBuilder<? extends Trigger> trigger,
+            final Date startAt,
+            final long period,
+            final int times) {
         this.trigger = trigger;
         this.argumentException = null;
+        this.startAt = startAt;
+        this.period = period;
+        this.times = times;
     }
 
     public InternalScheduleOptions(final IllegalArgumentException iae) {
         this.trigger = null;
         this.argumentException = iae;
+        this.startAt = null;
+        this.period = 0;
+        this.times = 0;
+    }
+
+    /**
+     * Is this a simple schedule (a start time and an optional period)
+     * in contrast to a cron expression?
+     */
+    public boolean isSimple() {
+        return this.startAt != null;
     }
 
     /**
@@ -53,28 +53,57 @@ public class QuartzJobExecutor implements Job {
         final JobDataMap data = context.getJobDetail().getJobDataMap();
         final Object job = data.get(QuartzScheduler.DATA_MAP_OBJECT);
         final Logger logger = (Logger)data.get(QuartzScheduler.DATA_MAP_LOGGER);
+        final String name = (String) data.get(QuartzScheduler.DATA_MAP_NAME);
+
+        final SchedulingStatistics statistics = (SchedulingStatistics)data.get(QuartzScheduler.DATA_MAP_STATISTICS);
+        if ( statistics != null && context.getScheduledFireTime() != null ) {
+            statistics.record(context.getScheduledFireTime().getTime(), System.currentTimeMillis());
+        }
 
         // check run on information
         final String[] runOn = (String[])data.get(QuartzScheduler.DATA_MAP_RUN_ON);
+        if ( !shouldExecute(job, name, runOn, logger) ) {
+            return;
+        }
+
+        try {
+            @SuppressWarnings("unchecked")
+            final Map<String, Serializable> configuration = (Map<String, Serializable>) data.get(QuartzScheduler.DATA_MAP_CONFIGURATION);
+            executeJob(job, name, configuration, logger);
+        } catch (final Throwable t) {
+            // if this is a quartz exception, rethrow it
+            if (t instanceof JobExecutionException) {
+                throw (JobExecutionException) t;
+            }
+            // there is nothing we can do here, so we just log
+            logger.error("Exception during job execution of " + job + " : " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Check the run on information of a job
+     * @return {@code true} if the job should be executed on this instance.
+     */
+    static boolean shouldExecute(final Object job, final String name, final String[] runOn, final Logger logger) {
         if ( runOn != null ) {
             if ( runOn.length == 1 && Scheduler.VALUE_RUN_ON_LEADER.equals(runOn[0])
                  || runOn.length == 1 && Scheduler.VALUE_RUN_ON_SINGLE.equals(runOn[0]) ) {
                 if ( DISCOVERY_INFO_AVAILABLE.get() ) {
                     if ( !IS_LEADER.get() ) {
                         logger.debug("Excluding job {} with name {} and config {}.",
-                                new Object[] {job, data.get(QuartzScheduler.DATA_MAP_NAME), runOn[0]});
-                        return;
+                                new Object[] {job, name, runOn[0]});
+                        return false;
                     }
                 } else {
                     logger.warn("No discovery info available. Executing job {} with name {} and config {} anyway.",
-                            new Object[] {job, data.get(QuartzScheduler.DATA_MAP_NAME), runOn[0]});
+                            new Object[] {job, name, runOn[0]});
                 }
             } else { // sling IDs
                 final String myId = SLING_ID;
                 boolean schedule = false;
                 if ( myId == null ) {
                     logger.warn("No Sling ID available. Executing job {} with name {} and config {} anyway.",
-                            new Object[] {job, data.get(QuartzScheduler.DATA_MAP_NAME), Arrays.toString(runOn)});
+                            new Object[] {job, name, Arrays.toString(runOn)});
                     schedule = true;
                 } else {
                     for(final String id : runOn ) {
@@ -86,33 +115,29 @@ public class QuartzJobExecutor implements Job {
                 }
                 if ( !schedule ) {
                     logger.debug("Excluding job {} with name {} and config {}.",
-                            new Object[] {job, data.get(QuartzScheduler.DATA_MAP_NAME), Arrays.toString(runOn)});
-                    return;
+                            new Object[] {job, name, Arrays.toString(runOn)});
+                    return false;
                 }
             }
         }
+        return true;
+    }
 
-        try {
-            logger.debug("Executing job {} with name {}", job, data.get(QuartzScheduler.DATA_MAP_NAME));
-            if (job instanceof org.apache.sling.commons.scheduler.Job) {
-                @SuppressWarnings("unchecked")
-                final Map<String, Serializable> configuration = (Map<String, Serializable>) data.get(QuartzScheduler.DATA_MAP_CONFIGURATION);
-                final String name = (String) data.get(QuartzScheduler.DATA_MAP_NAME);
-
-                final JobContext jobCtx = new JobContextImpl(name, configuration);
-                ((org.apache.sling.commons.scheduler.Job) job).execute(jobCtx);
-            } else if (job instanceof Runnable) {
-                ((Runnable) job).run();
-            } else {
-                logger.error("Scheduled job {} is neither a job nor a runnable.", job);
-            }
-        } catch (final Throwable t) {
-            // if this is a quartz exception, rethrow it
-            if (t instanceof JobExecutionException) {
-                throw (JobExecutionException) t;
-            }
-            // there is nothing we can do here, so we just log
-            logger.error("Exception during job execution of " + job + " : " + t.getMessage(), t);
+    /**
+     * Execute the job object which is either a job or a runnable.
+     */
+    static void executeJob(final Object job,
+            final String name,
+            final Map<String, Serializable> configuration,
+            final Logger logger) {
+        logger.debug("Executing job {} with name {}", job, name);
+        if (job instanceof org.apache.sling.commons.scheduler.Job) {
+            final JobContext jobCtx = new JobContextImpl(name, configuration);
+            ((org.apache.sling.commons.scheduler.Job) job).execute(jobCtx);
+        } else if (job instanceof Runnable) {
+            ((Runnable) job).run();
+        } else {
+            logger.error("Scheduled job {} is neither a job nor a runnable.", job);
         }
     }
 
@@ -90,6 +90,9 @@ public class QuartzScheduler implements BundleListener {
     /** Map key for the bundle information (Long). */
     static final String DATA_MAP_BUNDLE_ID = "QuartzJobScheduler.bundleId";
 
+    /** Map key for the scheduling statistics. */
+    static final String DATA_MAP_STATISTICS = "QuartzJobScheduler.statistics";
+
     /** The quartz scheduler. */
     private volatile org.quartz.Scheduler scheduler;
 
@@ -103,6 +106,28 @@ public class QuartzScheduler implements BundleListener {
                           "the default pool is used.")
     private static final String PROPERTY_POOL_NAME = "poolName";
 
+    private static final boolean DEFAULT_TIMER_WHEEL = false;
+
+    @Property(boolValue=DEFAULT_TIMER_WHEEL,
+              label="Timer Wheel",
+              description="If enabled, jobs running at a specific time or periodically are " +
+                          "scheduled with a hashed timer wheel instead of Quartz. Jobs with " +
+                          "a cron expression are always scheduled with Quartz.")
+    private static final String PROPERTY_TIMER_WHEEL = "timerWheel";
+
+    private static final long DEFAULT_TIMER_WHEEL_TICK = 10;
+
+    @Property(longValue=DEFAULT_TIMER_WHEEL_TICK,
+              label="Timer Wheel Tick",
+              description="The tick duration of the timer wheel in milliseconds.")
+    private static final String PROPERTY_TIMER_WHEEL_TICK = "timerWheelTick";
+
+    /** The timer wheel scheduler for simple schedules - null if disabled. */
+    private volatile TimerWheelScheduler timerWheelScheduler;
+
+    /** The latency statistics for jobs scheduled with quartz. */
+    private final SchedulingStatistics statistics = new SchedulingStatistics();
+
     /**
      * Activate this component.
      * Start the scheduler.
@@ -122,6 +147,24 @@ public class QuartzScheduler implements BundleListener {
 
         // start scheduler
         this.scheduler = this.init(poolName);
+
+        final Object timerWheelObj = props.get(PROPERTY_TIMER_WHEEL);
+        final boolean useTimerWheel = (timerWheelObj != null ? Boolean.valueOf(timerWheelObj.toString()) : DEFAULT_TIMER_WHEEL);
+        if ( useTimerWheel ) {
+            final Object tickObj = props.get(PROPERTY_TIMER_WHEEL_TICK);
+            long tick = DEFAULT_TIMER_WHEEL_TICK;
+            if ( tickObj != null ) {
+                try {
+                    tick = Long.parseLong(tickObj.toString());
+                } catch (final NumberFormatException nfe) {
+                    this.logger.warn("Invalid timer wheel tick {}, using default {}", tickObj, DEFAULT_TIMER_WHEEL_TICK);
+                }
+            }
+            if ( tick < 1 ) {
+                tick = DEFAULT_TIMER_WHEEL_TICK;
+            }
+            this.timerWheelScheduler = new TimerWheelScheduler(this.threadPool, tick);
+        }
     }
 
     /**
@@ -132,6 +175,12 @@ public class QuartzScheduler implements BundleListener {
     protected void deactivate(final BundleContext ctx) {
         ctx.removeBundleListener(this);
 
+        final TimerWheelScheduler tws = this.timerWheelScheduler;
+        this.timerWheelScheduler = null;
+        if ( tws != null ) {
+            tws.dispose();
+        }
+
         final org.quartz.Scheduler s = this.scheduler;
         this.scheduler = null;
         this.dispose(s);
@@ -144,6 +193,11 @@ public class QuartzScheduler implements BundleListener {
         if ( event.getType() == BundleEvent.STOPPED ) {
             final Long bundleId = event.getBundle().getBundleId();
 
+            final TimerWheelScheduler tws = this.timerWheelScheduler;
+            if ( tws != null ) {
+                tws.unscheduleBundle(bundleId);
+            }
+
             final org.quartz.Scheduler s = this.scheduler;
             if ( s != null ) {
                 synchronized ( this ) {
@@ -269,6 +323,7 @@ public class QuartzScheduler implements BundleListener {
         if ( options.runOn != null) {
             jobDataMap.put(DATA_MAP_RUN_ON, options.runOn);
         }
+        jobDataMap.put(DATA_MAP_STATISTICS, this.statistics);
 
         return jobDataMap;
     }
@@ -351,9 +406,10 @@ public class QuartzScheduler implements BundleListener {
                 .startAt(new Date(System.currentTimeMillis() + ms))
                 .withSchedule(SimpleScheduleBuilder.simpleSchedule().repeatForever().withIntervalInMilliseconds(ms));
         if ( startImmediate ) {
-            return new InternalScheduleOptions( builder.startNow());
+            return new InternalScheduleOptions( builder.startNow(), new Date(), ms, -1);
         } else {
-            return new InternalScheduleOptions( builder.startAt(new Date(System.currentTimeMillis() + ms)) );
+            final Date startAt = new Date(System.currentTimeMillis() + ms);
+            return new InternalScheduleOptions( builder.startAt(startAt), startAt, ms, -1 );
         }
     }
 
@@ -405,6 +461,10 @@ public class QuartzScheduler implements BundleListener {
      * @see org.apache.sling.commons.scheduler.Scheduler#removeJob(java.lang.String)
      */
     public void removeJob(final Long bundleId, final String name) throws NoSuchElementException {
+        final TimerWheelScheduler tws = this.timerWheelScheduler;
+        if ( tws != null && tws.unschedule(bundleId, name) ) {
+            return;
+        }
         // as this method might be called from unbind and during
         // unbind a deactivate could happen, we check the scheduler first
         final org.quartz.Scheduler s = this.scheduler;
@@ -425,6 +485,16 @@ public class QuartzScheduler implements BundleListener {
         return this.scheduler;
     }
 
+    /** Used by the web console plugin. */
+    TimerWheelScheduler getTimerWheelScheduler() {
+        return this.timerWheelScheduler;
+    }
+
+    /** Used by the web console plugin. */
+    SchedulingStatistics getStatistics() {
+        return this.statistics;
+    }
+
     public static final class QuartzThreadPool implements org.quartz.spi.ThreadPool {
 
         /** Our executor thread pool */
@@ -496,7 +566,7 @@ public class QuartzScheduler implements BundleListener {
      */
     public ScheduleOptions NOW() {
         return new InternalScheduleOptions( TriggerBuilder.newTrigger()
-                .startNow());
+                .startNow(), new Date(), 0, 1);
     }
 
     /**
@@ -517,7 +587,7 @@ public class QuartzScheduler implements BundleListener {
         }
         return new InternalScheduleOptions( TriggerBuilder.newTrigger()
             .startNow()
-            .withSchedule(sb.withIntervalInMilliseconds(period * 1000)));
+            .withSchedule(sb.withIntervalInMilliseconds(period * 1000)), new Date(), period * 1000, times);
     }
 
     /**
@@ -528,7 +598,7 @@ public class QuartzScheduler implements BundleListener {
             return new InternalScheduleOptions(new IllegalArgumentException("Date can't be null"));
         }
         return new InternalScheduleOptions( TriggerBuilder.newTrigger()
-            .startAt(date));
+            .startAt(date), date, 0, 1);
     }
 
     /**
@@ -553,7 +623,7 @@ public class QuartzScheduler implements BundleListener {
         }
         return new InternalScheduleOptions( TriggerBuilder.newTrigger()
             .startAt(date)
-            .withSchedule(sb.withIntervalInMilliseconds(period * 1000)));
+            .withSchedule(sb.withIntervalInMilliseconds(period * 1000)), date, period * 1000, times);
     }
 
     /**
@@ -590,6 +660,10 @@ public class QuartzScheduler implements BundleListener {
      * @see org.apache.sling.commons.scheduler.Scheduler#unschedule(java.lang.String)
      */
     public boolean unschedule(final Long bundleId, final String jobName) {
+        final TimerWheelScheduler tws = this.timerWheelScheduler;
+        if ( jobName != null && tws != null && tws.unschedule(bundleId, jobName) ) {
+            return true;
+        }
         final org.quartz.Scheduler s = this.scheduler;
         if ( jobName != null && s != null ) {
             synchronized ( this ) {
@@ -653,6 +727,17 @@ public class QuartzScheduler implements BundleListener {
                 name = job.getClass().getName() + ':' + UUID.randomUUID();
             }
 
+            final TimerWheelScheduler tws = this.timerWheelScheduler;
+            if ( tws != null ) {
+                if ( opts.name != null ) {
+                    tws.unschedule(null, name);
+                }
+                if ( opts.isSimple() ) {
+                    tws.schedule(bundleId, name, job, opts);
+                    return;
+                }
+            }
+
             final Trigger trigger = opts.trigger.withIdentity(name).build();
 
             // create the data map
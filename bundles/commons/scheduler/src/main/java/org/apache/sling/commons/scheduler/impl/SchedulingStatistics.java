@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduling latency statistics. The latency is the time between
+ * the time a job should have been started and the time the job
+ * actually started.
+ */
+public class SchedulingStatistics {
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalLatency = new AtomicLong();
+
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Record the start of a job.
+     * @param scheduledTime The time the job was scheduled for.
+     * @param startTime The time the job actually started.
+     */
+    public void record(final long scheduledTime, final long startTime) {
+        final long latency = Math.max(0, startTime - scheduledTime);
+        this.count.incrementAndGet();
+        this.totalLatency.addAndGet(latency);
+        long current = this.maxLatency.get();
+        while ( latency > current && !this.maxLatency.compareAndSet(current, latency) ) {
+            current = this.maxLatency.get();
+        }
+    }
+
+    /**
+     * Number of started jobs.
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Average latency in ms.
+     */
+    public long getAverageLatency() {
+        final long c = this.count.get();
+        if ( c == 0 ) {
+            return 0;
+        }
+        return this.totalLatency.get() / c;
+    }
+
+    /**
+     * Maximum latency in ms.
+     */
+    public long getMaxLatency() {
+        return this.maxLatency.get();
+    }
+}
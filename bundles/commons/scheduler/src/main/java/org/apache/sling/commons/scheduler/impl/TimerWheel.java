@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hierarchical hashed timer wheel.
+ *
+ * The wheel consists of several levels, each level has {@link #WHEEL_SIZE}
+ * slots. A slot on level 0 covers a single tick, a slot on level n covers
+ * WHEEL_SIZE^n ticks. Tasks are put into the slot of the lowest level which
+ * can hold their deadline and are moved down a level (cascaded) once the
+ * wheel reaches their slot. Adding and expiring a task is therefore a
+ * constant time operation regardless of the number of scheduled tasks.
+ *
+ * The wheel is only modified by the timer thread. Other threads hand
+ * over new tasks through a lock free queue, cancelled tasks are simply
+ * flagged and dropped once their slot is reached.
+ *
+ * Ticks are based on {@link System#nanoTime()}, changes of the wall
+ * clock therefore do not affect tasks which are already scheduled.
+ */
+public class TimerWheel implements Runnable {
+
+    /** Number of bits for the slot index of a level. */
+    private static final int WHEEL_BITS = 8;
+
+    /** Number of slots per level. */
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /** Number of levels: with a tick of 10ms this covers more than a year. */
+    private static final int LEVELS = 4;
+
+    /** Maximum number of ticks a task can be scheduled ahead. */
+    private static final long MAX_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+    /** Default logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The tick duration in ms. */
+    private final long tickMs;
+
+    /** The tick duration in ns. */
+    private final long tickNanos;
+
+    /** The name of the timer thread. */
+    private final String name;
+
+    /** The start time of the wheel in ns. */
+    private final long startNanos;
+
+    /** The slots, only accessed by the timer thread. */
+    private final List<List<Task>> slots;
+
+    /** Tasks added but not yet put into a slot. */
+    private final Queue<Task> pending = new ConcurrentLinkedQueue<Task>();
+
+    /** The current tick, only accessed by the timer thread. */
+    private long currentTick;
+
+    private volatile Thread thread;
+
+    /**
+     * Create a new timer wheel
+     * @param name The name of the timer thread
+     * @param tickMs The tick duration in milliseconds.
+     */
+    public TimerWheel(final String name, final long tickMs) {
+        if ( tickMs < 1 ) {
+            throw new IllegalArgumentException("Tick duration must be higher than 0");
+        }
+        this.name = name;
+        this.tickMs = tickMs;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.startNanos = System.nanoTime();
+        this.slots = new ArrayList<List<Task>>(LEVELS * WHEEL_SIZE);
+        for(int i=0; i < LEVELS * WHEEL_SIZE; i++) {
+            this.slots.add(null);
+        }
+    }
+
+    /**
+     * Start the timer thread.
+     */
+    public synchronized void start() {
+        if ( this.thread == null ) {
+            final Thread t = new Thread(this, this.name);
+            t.setDaemon(true);
+            this.thread = t;
+            t.start();
+        }
+    }
+
+    /**
+     * Stop the timer thread. Scheduled tasks are discarded.
+     */
+    public synchronized void stop() {
+        final Thread t = this.thread;
+        this.thread = null;
+        if ( t != null ) {
+            t.interrupt();
+            try {
+                t.join(this.tickMs * 10);
+            } catch (final InterruptedException ignore) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.pending.clear();
+    }
+
+    /**
+     * Return the tick duration in milliseconds
+     */
+    public long getTickMs() {
+        return this.tickMs;
+    }
+
+    /**
+     * Schedule a task. The task expires in the first tick
+     * at or after its deadline.
+     * @param task The task
+     * @param deadline The deadline in milliseconds
+     */
+    public void schedule(final Task task, final long deadline) {
+        final long delay = deadline - System.currentTimeMillis();
+        this.schedule(task, deadline, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay));
+    }
+
+    /**
+     * Schedule a task again, the deadline is the previous deadline plus the period.
+     * If that deadline has already passed, the task expires in the next tick.
+     * @param task The task
+     * @param period The period in milliseconds
+     */
+    public void reschedule(final Task task, final long period) {
+        final long now = System.nanoTime();
+        long deadlineNanos = task.deadlineNanos + TimeUnit.MILLISECONDS.toNanos(period);
+        if ( deadlineNanos - now < 0 ) {
+            // we're behind, don't try to catch up
+            deadlineNanos = now;
+        }
+        final long deadline = System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(deadlineNanos - now);
+        this.schedule(task, deadline, deadlineNanos);
+    }
+
+    private void schedule(final Task task, final long deadline, final long deadlineNanos) {
+        task.deadline = deadline;
+        task.deadlineNanos = deadlineNanos;
+        task.deadlineTick = (deadlineNanos - this.startNanos + this.tickNanos - 1) / this.tickNanos;
+        this.pending.add(task);
+    }
+
+    /**
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+        final Thread self = Thread.currentThread();
+        while ( this.thread == self ) {
+            final long targetTick = (System.nanoTime() - this.startNanos) / this.tickNanos;
+            while ( this.currentTick < targetTick ) {
+                this.currentTick++;
+                this.cascade();
+                this.expire();
+            }
+            Task task;
+            while ( (task = this.pending.poll()) != null ) {
+                this.add(task);
+            }
+            final long sleep = this.tickNanos - ((System.nanoTime() - this.startNanos) % this.tickNanos);
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            } catch (final InterruptedException ie) {
+                // stop has been called
+            }
+        }
+    }
+
+    /**
+     * Put the task in the slot matching its deadline.
+     */
+    private void add(final Task task) {
+        if ( task.cancelled ) {
+            return;
+        }
+        final long delta = task.deadlineTick - this.currentTick;
+        if ( delta <= 0 ) {
+            this.fire(task);
+            return;
+        }
+        // tasks too far in the future are put into the last slot
+        // and re-added once that slot is reached
+        final long tick = (delta < MAX_TICKS ? task.deadlineTick : this.currentTick + MAX_TICKS - 1);
+        int level = 0;
+        while ( level < LEVELS - 1 && (tick - this.currentTick) >= (1L << (WHEEL_BITS * (level + 1))) ) {
+            level++;
+        }
+        final int index = level * WHEEL_SIZE + (int)((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        List<Task> slot = this.slots.get(index);
+        if ( slot == null ) {
+            slot = new ArrayList<Task>();
+            this.slots.set(index, slot);
+        }
+        slot.add(task);
+    }
+
+    /**
+     * Move the tasks of higher level slots reached at the current tick one level down.
+     */
+    private void cascade() {
+        for(int level = LEVELS - 1; level > 0; level--) {
+            final long levelTicks = 1L << (WHEEL_BITS * level);
+            if ( (this.currentTick & (levelTicks - 1)) == 0 ) {
+                final int index = level * WHEEL_SIZE + (int)((this.currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+                final List<Task> slot = this.slots.get(index);
+                if ( slot != null ) {
+                    this.slots.set(index, null);
+                    for(final Task task : slot) {
+                        this.add(task);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Expire all tasks of the current level 0 slot.
+     */
+    private void expire() {
+        final int index = (int)(this.currentTick & WHEEL_MASK);
+        final List<Task> slot = this.slots.get(index);
+        if ( slot != null ) {
+            this.slots.set(index, null);
+            for(final Task task : slot) {
+                // add fires the task if the deadline is reached
+                this.add(task);
+            }
+        }
+    }
+
+    private void fire(final Task task) {
+        try {
+            task.expired();
+        } catch (final Throwable t) {
+            logger.error("Exception during expiration of timer task " + task, t);
+        }
+    }
+
+    /**
+     * A task scheduled in the timer wheel.
+     */
+    public static abstract class Task {
+
+        private volatile boolean cancelled;
+
+        /** The deadline in milliseconds. */
+        private volatile long deadline;
+
+        /** The deadline based on {@link System#nanoTime()}. */
+        private volatile long deadlineNanos;
+
+        private long deadlineTick;
+
+        /**
+         * Return the deadline in milliseconds (wall clock time)
+         */
+        public long getDeadline() {
+            return this.deadline;
+        }
+
+        /**
+         * Cancel the task.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        /**
+         * Is this task cancelled?
+         */
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        /**
+         * Called by the timer thread once the deadline is reached.
+         * Implementations must not block.
+         */
+        protected abstract void expired();
+    }
+}
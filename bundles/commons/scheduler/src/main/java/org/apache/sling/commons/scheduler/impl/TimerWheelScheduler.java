@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.sling.commons.threads.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler engine for jobs with a simple schedule (run at a specific time
+ * and optionally periodically) based on a {@link TimerWheel}.
+ * Jobs are executed in the thread pool of the scheduler.
+ *
+ * The timer thread only hands over expired jobs to a dispatcher thread
+ * which passes them on to the thread pool, a saturated thread pool
+ * therefore does not delay the timer.
+ *
+ * Jobs which can't run concurrently are delayed if the previous execution
+ * is still running and are executed once it has finished. Like with Quartz,
+ * several delayed executions are combined into a single one.
+ */
+public class TimerWheelScheduler {
+
+    /** Default logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The timer wheel. */
+    private final TimerWheel wheel;
+
+    /** The thread pool executing the jobs. */
+    private final ThreadPool threadPool;
+
+    /** All scheduled jobs by name. */
+    private final ConcurrentMap<String, ScheduledJob> jobs = new ConcurrentHashMap<String, ScheduledJob>();
+
+    /** The latency statistics. */
+    private final SchedulingStatistics statistics = new SchedulingStatistics();
+
+    /** Hands over expired jobs to the thread pool. */
+    private final ExecutorService dispatcher;
+
+    public TimerWheelScheduler(final ThreadPool threadPool, final long tickMs) {
+        this.threadPool = threadPool;
+        this.dispatcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "Apache Sling Scheduler Dispatcher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.wheel = new TimerWheel("Apache Sling Scheduler Timer", tickMs);
+        this.wheel.start();
+    }
+
+    /**
+     * Stop the timer, all scheduled jobs are dropped.
+     */
+    public void dispose() {
+        this.wheel.stop();
+        this.dispatcher.shutdownNow();
+        for(final ScheduledJob job : this.jobs.values()) {
+            job.cancel();
+        }
+        this.jobs.clear();
+    }
+
+    /**
+     * Schedule a job. If there is already a job with the same name,
+     * it has to be unscheduled by the caller before.
+     */
+    public void schedule(final Long bundleId,
+            final String name,
+            final Object job,
+            final InternalScheduleOptions options) {
+        final ScheduledJob scheduledJob = new ScheduledJob(bundleId, name, job, options);
+        final ScheduledJob oldJob = this.jobs.put(name, scheduledJob);
+        if ( oldJob != null ) {
+            oldJob.cancel();
+        }
+        this.logger.debug("Scheduling job {} with name {} at {}", new Object[] {job, name, options.startAt});
+        this.wheel.schedule(scheduledJob, options.startAt.getTime());
+    }
+
+    /**
+     * Unschedule a job
+     * @param bundleId The id of the bundle unscheduling the job. If not
+     *                 {@code null}, only a job scheduled by the same bundle
+     *                 is unscheduled.
+     * @param name The name of the job
+     * @return {@code true} if a job with that name was unscheduled.
+     */
+    public boolean unschedule(final Long bundleId, final String name) {
+        final ScheduledJob job = this.jobs.get(name);
+        if ( job != null
+             && (bundleId == null || bundleId.equals(job.bundleId))
+             && this.jobs.remove(name, job) ) {
+            job.cancel();
+            this.logger.debug("Unscheduling job with name {}", name);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unschedule all jobs of a bundle.
+     */
+    public void unscheduleBundle(final Long bundleId) {
+        for(final ScheduledJob job : this.jobs.values()) {
+            if ( bundleId.equals(job.bundleId) ) {
+                this.unschedule(bundleId, job.name);
+            }
+        }
+    }
+
+    /**
+     * Return all scheduled jobs. Used by the web console plugin.
+     */
+    Collection<ScheduledJob> getJobs() {
+        return new ArrayList<ScheduledJob>(this.jobs.values());
+    }
+
+    /**
+     * Return the latency statistics. Used by the web console plugin.
+     */
+    SchedulingStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Return the tick duration. Used by the web console plugin.
+     */
+    long getTickMs() {
+        return this.wheel.getTickMs();
+    }
+
+    /**
+     * A job in the timer wheel.
+     */
+    final class ScheduledJob extends TimerWheel.Task {
+
+        final Long bundleId;
+
+        final String name;
+
+        final Object job;
+
+        final Map<String, Serializable> configuration;
+
+        final String[] runOn;
+
+        final boolean canRunConcurrently;
+
+        final long period;
+
+        /** Remaining executions, negative for periodic jobs running forever. */
+        private int remaining;
+
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        /** Set if an execution of a non concurrent job has been delayed. */
+        private final AtomicBoolean delayed = new AtomicBoolean();
+
+        /** The scheduled time of the delayed execution. */
+        private volatile long delayedTime;
+
+        ScheduledJob(final Long bundleId, final String name, final Object job, final InternalScheduleOptions options) {
+            this.bundleId = bundleId;
+            this.name = name;
+            this.job = job;
+            this.configuration = options.configuration;
+            this.runOn = options.runOn;
+            this.canRunConcurrently = options.canRunConcurrently;
+            this.period = options.period;
+            this.remaining = options.times;
+        }
+
+        /**
+         * Called by the timer thread, schedules the next execution and
+         * hands over the job to the dispatcher.
+         * @see org.apache.sling.commons.scheduler.impl.TimerWheel.Task#expired()
+         */
+        @Override
+        protected void expired() {
+            if ( this.isCancelled() ) {
+                return;
+            }
+            final long scheduledTime = this.getDeadline();
+
+            // schedule next execution first, this is independent of the job execution
+            if ( this.remaining > 0 ) {
+                this.remaining--;
+            }
+            if ( this.remaining != 0 && this.period > 0 ) {
+                wheel.reschedule(this, this.period);
+            } else {
+                jobs.remove(this.name, this);
+            }
+
+            try {
+                dispatcher.execute(new Runnable() {
+
+                    public void run() {
+                        trigger(scheduledTime);
+                    }
+                });
+            } catch (final RejectedExecutionException ree) {
+                // the scheduler is disposed
+                logger.debug("Dropping execution of job {} with name {}", this.job, this.name);
+            }
+        }
+
+        /**
+         * Execute the job or delay the execution if the job can't run
+         * concurrently and the previous execution is still running.
+         */
+        private void trigger(final long scheduledTime) {
+            if ( this.canRunConcurrently ) {
+                this.dispatch(scheduledTime, false);
+                return;
+            }
+            this.delayedTime = scheduledTime;
+            this.delayed.set(true);
+            if ( this.running.get() ) {
+                logger.debug("Delaying execution of job {} with name {} as it is still running.", this.job, this.name);
+            }
+            this.runDelayed();
+        }
+
+        /**
+         * Execute a delayed execution if the job is not running.
+         * This is called whenever an execution is requested and
+         * whenever an execution has finished.
+         */
+        private void runDelayed() {
+            while ( this.delayed.get() && !this.isCancelled() && this.running.compareAndSet(false, true) ) {
+                if ( this.delayed.getAndSet(false) ) {
+                    this.dispatch(this.delayedTime, true);
+                    return;
+                }
+                this.running.set(false);
+            }
+        }
+
+        private void dispatch(final long scheduledTime, final boolean exclusive) {
+            final Runnable execution = new Runnable() {
+
+                public void run() {
+                    statistics.record(scheduledTime, System.currentTimeMillis());
+                    try {
+                        if ( QuartzJobExecutor.shouldExecute(job, name, runOn, logger) ) {
+                            QuartzJobExecutor.executeJob(job, name, configuration, logger);
+                        }
+                    } catch (final Throwable t) {
+                        // there is nothing we can do here, so we just log
+                        logger.error("Exception during job execution of " + job + " : " + t.getMessage(), t);
+                    } finally {
+                        if ( exclusive ) {
+                            running.set(false);
+                            runDelayed();
+                        }
+                    }
+                }
+
+                @Override
+                public String toString() {
+                    return name;
+                }
+            };
+            try {
+                threadPool.execute(execution);
+            } catch (final RuntimeException re) {
+                if ( exclusive ) {
+                    this.running.set(false);
+                }
+                logger.warn("Unable to execute job " + this.job + " with name " + this.name, re);
+            }
+        }
+
+        /**
+         * Return a description of the schedule.
+         */
+        String getScheduleDescription() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("next: ");
+            sb.append(new Date(this.getDeadline()));
+            if ( this.period > 0 ) {
+                sb.append(", period: ");
+                sb.append(this.period);
+                sb.append("ms");
+                if ( this.remaining > 0 ) {
+                    sb.append(", remaining: ");
+                    sb.append(this.remaining);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -116,8 +116,52 @@ public class WebConsolePrinter {
                 pw.print  ("Unable to print complete configuration: ");
                 pw.println(se.getMessage());
             }
+            printStatistics(pw, "Quartz", this.scheduler.getStatistics());
+            final TimerWheelScheduler tws = this.scheduler.getTimerWheelScheduler();
+            if ( tws != null ) {
+                pw.println();
+                pw.print  ("Timer Wheel : active, tick ");
+                pw.print(tws.getTickMs());
+                pw.println("ms");
+                pw.println();
+                for(final TimerWheelScheduler.ScheduledJob job : tws.getJobs()) {
+                    pw.print("Job : ");
+                    pw.print(job.name);
+                    pw.print(", class: ");
+                    pw.print(job.job.getClass().getName());
+                    pw.print(", concurrent: ");
+                    pw.print(job.canRunConcurrently);
+                    if ( job.runOn != null ) {
+                        pw.print(", runOn: ");
+                        pw.print(Arrays.toString(job.runOn));
+                    }
+                    if ( job.bundleId != null ) {
+                        pw.print(", bundleId: ");
+                        pw.print(String.valueOf(job.bundleId));
+                    }
+                    pw.println();
+                    pw.print("Trigger : ");
+                    pw.print(job.getScheduleDescription());
+                    pw.println();
+                    pw.println();
+                }
+                printStatistics(pw, "Timer Wheel", tws.getStatistics());
+            } else {
+                pw.println("Timer Wheel : not active");
+            }
         } else {
             pw.println("Status : not active");
         }
     }
+
+    private void printStatistics(final PrintWriter pw, final String engine, final SchedulingStatistics stats) {
+        pw.print(engine);
+        pw.print(" scheduling latency : executions ");
+        pw.print(stats.getCount());
+        pw.print(", average ");
+        pw.print(stats.getAverageLatency());
+        pw.print("ms, max ");
+        pw.print(stats.getMaxLatency());
+        pw.println("ms");
+    }
 }
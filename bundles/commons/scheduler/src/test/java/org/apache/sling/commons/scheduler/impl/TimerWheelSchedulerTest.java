@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.commons.threads.ThreadPool;
+import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerWheelSchedulerTest {
+
+    private ExecutorService executor;
+
+    private TimerWheelScheduler scheduler;
+
+    @Before
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        final ThreadPool pool = new ThreadPool() {
+
+            public void execute(final Runnable runnable) {
+                executor.execute(runnable);
+            }
+
+            public <T> Future<T> submit(final Callable<T> callable) {
+                return executor.submit(callable);
+            }
+
+            public Future<?> submit(final Runnable runnable) {
+                return executor.submit(runnable);
+            }
+
+            public String getName() {
+                return "test";
+            }
+
+            public ThreadPoolConfig getConfiguration() {
+                return null;
+            }
+        };
+        scheduler = new TimerWheelScheduler(pool, 1);
+    }
+
+    @After
+    public void shutdown() {
+        scheduler.dispose();
+        executor.shutdownNow();
+    }
+
+    private InternalScheduleOptions options(final long delay, final long period, final int times) {
+        return new InternalScheduleOptions(null, new Date(System.currentTimeMillis() + delay), period, times);
+    }
+
+    @Test
+    public void testFireOnce() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        scheduler.schedule(1L, "once", new Runnable() {
+
+            public void run() {
+                latch.countDown();
+            }
+        }, options(20, 0, 1));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // a job running once is removed after it fired
+        Thread.sleep(20);
+        assertTrue(scheduler.getJobs().isEmpty());
+    }
+
+    @Test
+    public void testFirePeriodic() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        scheduler.schedule(1L, "periodic", new Runnable() {
+
+            public void run() {
+                latch.countDown();
+            }
+        }, options(0, 10, -1));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, scheduler.getJobs().size());
+    }
+
+    @Test
+    public void testUnschedule() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        scheduler.schedule(1L, "job", new Runnable() {
+
+            public void run() {
+                latch.countDown();
+            }
+        }, options(100, 0, 1));
+        assertTrue(scheduler.unschedule(1L, "job"));
+        assertFalse(scheduler.unschedule(1L, "job"));
+        assertFalse(latch.await(250, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testUnscheduleChecksBundle() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        scheduler.schedule(1L, "job", new Runnable() {
+
+            public void run() {
+                latch.countDown();
+            }
+        }, options(50, 0, 1));
+        assertFalse(scheduler.unschedule(2L, "job"));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUnscheduleBundle() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final Runnable job = new Runnable() {
+
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+        scheduler.schedule(1L, "a", job, options(100, 0, 1));
+        scheduler.schedule(2L, "b", job, options(100, 0, 1));
+        scheduler.unscheduleBundle(1L);
+        assertEquals(1, scheduler.getJobs().size());
+        Thread.sleep(250);
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testNonConcurrentJobIsDelayed() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch secondRun = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final Runnable job = new Runnable() {
+
+            public void run() {
+                final int c = concurrent.incrementAndGet();
+                maxConcurrent.set(Math.max(maxConcurrent.get(), c));
+                try {
+                    if ( runs.incrementAndGet() == 1 ) {
+                        release.await(5, TimeUnit.SECONDS);
+                    } else {
+                        secondRun.countDown();
+                    }
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    concurrent.decrementAndGet();
+                }
+            }
+        };
+        // fires at 0, 10 and 20ms while the first run is blocked
+        scheduler.schedule(1L, "nonconcurrent", job, options(0, 10, 3));
+        Thread.sleep(100);
+        assertEquals(1, runs.get());
+
+        // the delayed executions are combined into a single run
+        release.countDown();
+        assertTrue(secondRun.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(2, runs.get());
+        assertEquals(1, maxConcurrent.get());
+    }
+
+    @Test
+    public void testConcurrentJob() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(2);
+        final Runnable job = new Runnable() {
+
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        final InternalScheduleOptions opts = options(0, 10, 2);
+        opts.canRunConcurrently(true);
+        scheduler.schedule(1L, "concurrent", job, opts);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+}
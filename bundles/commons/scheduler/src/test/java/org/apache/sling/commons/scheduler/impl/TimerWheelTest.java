@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    private TimerWheel wheel;
+
+    private final List<String> fired = new CopyOnWriteArrayList<String>();
+
+    @Before
+    public void setup() {
+        wheel = new TimerWheel("test timer", 1);
+        wheel.start();
+    }
+
+    @After
+    public void shutdown() {
+        wheel.stop();
+    }
+
+    private final class RecordingTask extends TimerWheel.Task {
+
+        private final String name;
+
+        private final CountDownLatch latch;
+
+        private volatile long firedAt;
+
+        RecordingTask(final String name, final CountDownLatch latch) {
+            this.name = name;
+            this.latch = latch;
+        }
+
+        @Override
+        protected void expired() {
+            firedAt = System.currentTimeMillis();
+            fired.add(name);
+            latch.countDown();
+        }
+    }
+
+    @Test
+    public void testFireInOrder() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final long now = System.currentTimeMillis();
+        wheel.schedule(new RecordingTask("c", latch), now + 150);
+        wheel.schedule(new RecordingTask("a", latch), now + 20);
+        wheel.schedule(new RecordingTask("b", latch), now + 80);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("a", fired.get(0));
+        assertEquals("b", fired.get(1));
+        assertEquals("c", fired.get(2));
+    }
+
+    @Test
+    public void testNotFiredBeforeDeadline() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long deadline = System.currentTimeMillis() + 100;
+        final RecordingTask task = new RecordingTask("a", latch);
+        wheel.schedule(task, deadline);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // allow for the different granularity of the wall clock
+        assertTrue(task.firedAt >= deadline - 5);
+    }
+
+    @Test
+    public void testCascade() throws Exception {
+        // more than 256 ticks ahead, so the task starts on level 1
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long deadline = System.currentTimeMillis() + 400;
+        final RecordingTask task = new RecordingTask("a", latch);
+        wheel.schedule(task, deadline);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(task.firedAt >= deadline - 5);
+    }
+
+    @Test
+    public void testPastDeadlineFiresImmediately() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(new RecordingTask("a", latch), System.currentTimeMillis() - 1000);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final CountDownLatch cancelledLatch = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long now = System.currentTimeMillis();
+        final RecordingTask cancelled = new RecordingTask("cancelled", cancelledLatch);
+        wheel.schedule(cancelled, now + 30);
+        wheel.schedule(new RecordingTask("a", latch), now + 100);
+        cancelled.cancel();
+        assertTrue(cancelled.isCancelled());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse(cancelledLatch.await(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void testReschedule() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final TimerWheel.Task task = new TimerWheel.Task() {
+
+            @Override
+            protected void expired() {
+                latch.countDown();
+                if ( latch.getCount() > 0 ) {
+                    wheel.reschedule(this, 20);
+                }
+            }
+        };
+        final long start = System.currentTimeMillis();
+        wheel.schedule(task, start + 20);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start >= 55);
+    }
+
+    @Test
+    public void testStopDiscardsTasks() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(new RecordingTask("a", latch), System.currentTimeMillis() + 50);
+        wheel.stop();
+        assertFalse(latch.await(150, TimeUnit.MILLISECONDS));
+    }
+}
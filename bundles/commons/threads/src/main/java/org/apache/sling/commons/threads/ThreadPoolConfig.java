@@ -37,6 +37,24 @@ public interface ThreadPoolConfig {
         MAX
     };
 
+    /**
+     * The thread pool types.
+     * <ul>
+     *   <li>DEFAULT : a pool with a fixed set of threads and a FIFO queue.</li>
+     *   <li>WORK_STEALING : a fork join pool where each thread has its own
+     *       task queue and idle threads steal work from busy ones.</li>
+     *   <li>VIRTUAL : a new virtual thread per task. If the JVM does not
+     *       support virtual threads, DEFAULT is used instead.</li>
+     * </ul>
+     * The type is configured through {@link ModifiableThreadPoolConfig#setType(ThreadPoolType)}.
+     * @since 3.3
+     */
+    public enum ThreadPoolType {
+        DEFAULT,
+        WORK_STEALING,
+        VIRTUAL
+    };
+
     /**
      * Return the minimum pool size.
      * @return The minimum pool size.
@@ -16,12 +16,18 @@
  */
 package org.apache.sling.commons.threads.impl;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -30,6 +36,8 @@ import java.util.concurrent.TimeUnit;
 import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolType;
 import org.apache.sling.commons.threads.ThreadPoolManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,11 +56,26 @@ public class DefaultThreadPool
     /** The name of this thread pool */
     protected final String name;
 
+    /** Maximum parallelism supported by a fork join pool. */
+    private static final int MAX_FORK_JOIN_PARALLELISM = 0x7fff;
+
     /** The executor. */
-    protected ThreadPoolExecutor executor;
+    protected ExecutorService executor;
+
+    /** The statistics. */
+    protected final ThreadPoolStatistics statistics = new ThreadPoolStatistics();
 
     protected final ModifiableThreadPoolConfig configuration;
 
+    /** The type actually used, this might differ from the configured type. */
+    private final ThreadPoolType type;
+
+    /**
+     * Limits the number of tasks queued or executing for a pool which
+     * is not a {@link ThreadPoolExecutor}, {@code null} if unbounded.
+     */
+    private final Semaphore permits;
+
     /**
      * Create a new thread pool.
      * @param name - The name of the thread pool. If null {@link DefaultThreadPoolManager#DEFAULT_THREADPOOL_NAME}
@@ -99,6 +122,38 @@ public class DefaultThreadPool
             this.logger.warn("keep-alive-time-ms < 0 for pool \"" + this.name + "\". Set to 1000");
         }
 
+        ExecutorService es = null;
+        ThreadPoolType usedType = this.configuration.getType();
+        switch (usedType) {
+            case WORK_STEALING :
+                es = this.createWorkStealingPool();
+                break;
+            case VIRTUAL :
+                es = this.createVirtualThreadExecutor();
+                if ( es != null ) {
+                    break;
+                }
+                this.logger.warn("Virtual threads are not supported by this JVM. Using default thread pool for \"" + this.name + "\"");
+                usedType = ThreadPoolType.DEFAULT;
+                // fall through
+            default :
+                es = this.createThreadPoolExecutor(threadFactory);
+        }
+        this.executor = es;
+        this.type = usedType;
+        if ( usedType == ThreadPoolType.WORK_STEALING && this.configuration.getQueueSize() >= 0 ) {
+            final long bound = (long)((ForkJoinPool)es).getParallelism() + this.configuration.getQueueSize();
+            this.permits = new Semaphore((int)Math.min(Integer.MAX_VALUE, bound));
+        } else {
+            this.permits = null;
+        }
+        this.logger.info("Thread pool [{}] initialized.", name);
+    }
+
+    /**
+     * Create the default thread pool executor using a FIFO queue.
+     */
+    private ThreadPoolExecutor createThreadPoolExecutor(final ThreadFactory threadFactory) {
         // Queue
         final BlockingQueue<Runnable> queue;
         if (this.configuration.getQueueSize() != 0) {
@@ -111,29 +166,51 @@ public class DefaultThreadPool
             queue = new SynchronousQueue<Runnable>();
         }
 
-        RejectedExecutionHandler handler = null;
-        switch (this.configuration.getBlockPolicy()) {
-            case ABORT :
-                handler = new ThreadPoolExecutor.AbortPolicy();
-                break;
-            case DISCARD :
-                handler = new ThreadPoolExecutor.DiscardPolicy();
-                break;
-            case DISCARDOLDEST :
-                handler = new ThreadPoolExecutor.DiscardOldestPolicy();
-                break;
-            case RUN :
-                handler = new ThreadPoolExecutor.CallerRunsPolicy();
-                break;
-        }
-        this.executor = new ThreadPoolExecutor(this.configuration.getMinPoolSize(),
+        final RejectedExecutionHandler handler = new StatisticsRejectedExecutionHandler(this.configuration.getBlockPolicy());
+        return new ThreadPoolExecutor(this.configuration.getMinPoolSize(),
                 this.configuration.getMaxPoolSize(),
                 this.configuration.getKeepAliveTime(),
                 TimeUnit.MILLISECONDS,
                 queue,
                 threadFactory,
                 handler);
-        this.logger.info("Thread pool [{}] initialized.", name);
+    }
+
+    /**
+     * Create a work stealing fork join pool. The parallelism is the
+     * max pool size. As the task queues of a fork join pool are unbounded,
+     * the queue size is enforced when a task is handed over to the pool,
+     * see {@link #execute(Runnable, Object)}.
+     */
+    private ForkJoinPool createWorkStealingPool() {
+        int parallelism = this.configuration.getMaxPoolSize();
+        if ( parallelism > MAX_FORK_JOIN_PARALLELISM ) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+            this.logger.info("Using parallelism of {} for work stealing pool [{}]", parallelism, this.name);
+        }
+        // async mode uses FIFO scheduling for tasks which are never joined
+        return new ForkJoinPool(parallelism,
+                new ExtendedForkJoinWorkerThreadFactory(this.name, this.configuration.getPriority(), this.configuration.isDaemon()),
+                null,
+                true);
+    }
+
+    /**
+     * Create an executor starting a new virtual thread per task.
+     * Virtual threads are only available with Java 21 or higher,
+     * therefore reflection is used.
+     * @return The executor or {@code null} if the JVM does not support virtual threads.
+     */
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            final Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (final NoSuchMethodException nsme) {
+            return null;
+        } catch (final Exception e) {
+            this.logger.warn("Unable to create virtual thread executor for pool \"" + this.name + "\"", e);
+            return null;
+        }
     }
 
     /**
@@ -151,6 +228,14 @@ public class DefaultThreadPool
         return this.configuration;
     }
 
+    /**
+     * Return the type of this pool. This is the configured type unless
+     * it is not supported by the JVM.
+     */
+    public ThreadPoolType getType() {
+        return this.type;
+    }
+
     /**
      * @see org.apache.sling.commons.threads.ThreadPool#execute(java.lang.Runnable)
      */
@@ -160,7 +245,7 @@ public class DefaultThreadPool
             if ( logger.isDebugEnabled() ) {
                 logOperation("Executing runnable: ", runnable);
             }
-            executor.execute(runnable);
+            this.execute(runnable, runnable);
         }
     }
 
@@ -172,7 +257,9 @@ public class DefaultThreadPool
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting callable: ", callable);
         }
-        return executor.submit(callable);
+        final FutureTask<T> future = new FutureTask<T>(callable);
+        this.execute(future, callable);
+        return future;
     }
 
     /**
@@ -183,7 +270,65 @@ public class DefaultThreadPool
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting runnable: ", runnable);
         }
-        return executor.submit(runnable);
+        final FutureTask<Object> future = new FutureTask<Object>(runnable, null);
+        this.execute(future, runnable);
+        return future;
+    }
+
+    /**
+     * Hand over the task to the executor.
+     * The future is created here and not by the executor, therefore the
+     * rejected execution handler sees the wrapped task and the statistics
+     * only count tasks which are accepted by the executor.
+     * If the pool is bounded by {@link #permits}, the block policy is
+     * applied once all permits are taken. {@code DISCARDOLDEST} behaves
+     * like {@code DISCARD} in this case as a fork join pool does not allow
+     * to remove the oldest queued task.
+     * @param task The task to execute
+     * @param submitter The task as passed in by the client
+     */
+    private void execute(final Runnable task, final Object submitter) {
+        final Runnable wrapped = this.statistics.wrap(task, submitter);
+        final Runnable command;
+        if ( this.permits != null ) {
+            if ( !this.permits.tryAcquire() ) {
+                if ( this.configuration.getBlockPolicy() == ThreadPoolPolicy.RUN ) {
+                    wrapped.run();
+                    return;
+                }
+                this.statistics.rejected(wrapped);
+                if ( this.configuration.getBlockPolicy() == ThreadPoolPolicy.ABORT ) {
+                    throw new RejectedExecutionException("Thread pool " + this.name + " is saturated.");
+                }
+                return;
+            }
+            command = new Runnable() {
+
+                public void run() {
+                    try {
+                        wrapped.run();
+                    } finally {
+                        permits.release();
+                    }
+                }
+
+                @Override
+                public String toString() {
+                    return wrapped.toString();
+                }
+            };
+        } else {
+            command = wrapped;
+        }
+        try {
+            this.executor.execute(command);
+        } catch (final RejectedExecutionException ree) {
+            if ( this.permits != null ) {
+                this.permits.release();
+            }
+            this.statistics.rejected(wrapped);
+            throw ree;
+        }
     }
 
     /**
@@ -215,10 +360,37 @@ public class DefaultThreadPool
         this.logger.info("Thread pool [{}] is shut down.", this.name);
     }
 
+    /**
+     * Return the thread pool executor.
+     * Pools of type {@code WORK_STEALING} or {@code VIRTUAL} are not
+     * backed by a {@link ThreadPoolExecutor}, use {@link #getExecutorService()}
+     * and {@link #getStatistics()} for those.
+     * @return The executor or {@code null} if the pool is shutdown or
+     *         is not using a {@link ThreadPoolExecutor}.
+     */
     public ThreadPoolExecutor getExecutor() {
+        final ExecutorService es = this.executor;
+        if ( es instanceof ThreadPoolExecutor ) {
+            return (ThreadPoolExecutor)es;
+        }
+        return null;
+    }
+
+    /**
+     * Return the executor service.
+     * @return The executor or {@code null} if the pool is shutdown.
+     */
+    public ExecutorService getExecutorService() {
         return this.executor;
     }
 
+    /**
+     * Return the statistics of this pool.
+     */
+    public ThreadPoolStatistics getStatistics() {
+        return this.statistics;
+    }
+
     private void checkExecutor() {
         if ( this.executor == null ) {
             throw new IllegalStateException("Thread pool " + this.name + " is already shutdown.");
@@ -226,11 +398,60 @@ public class DefaultThreadPool
     }
 
     private void logOperation(final String msg, final Object obj) {
-        logger.debug("{} {}, pool={}, active={}, corePoolSize={}, maxPoolSize={}, queueSize={}",
-                new Object[] {msg, obj, name,
-                        executor.getActiveCount(),
-                        executor.getCorePoolSize(),
-                        executor.getMaximumPoolSize(),
-                        executor.getQueue().size()});
+        final ThreadPoolExecutor tpe = this.getExecutor();
+        if ( tpe != null ) {
+            logger.debug("{} {}, pool={}, active={}, corePoolSize={}, maxPoolSize={}, queueSize={}",
+                    new Object[] {msg, obj, name,
+                            tpe.getActiveCount(),
+                            tpe.getCorePoolSize(),
+                            tpe.getMaximumPoolSize(),
+                            tpe.getQueue().size()});
+        } else {
+            logger.debug("{} {}, pool={}, type={}, active={}",
+                    new Object[] {msg, obj, name,
+                            this.type,
+                            this.statistics.getActiveCount()});
+        }
+    }
+
+    /**
+     * Implements the block policies for a {@link ThreadPoolExecutor} and
+     * updates the statistics for each task which is not executed.
+     */
+    private final class StatisticsRejectedExecutionHandler implements RejectedExecutionHandler {
+
+        private final ThreadPoolPolicy policy;
+
+        public StatisticsRejectedExecutionHandler(final ThreadPoolPolicy policy) {
+            this.policy = policy;
+        }
+
+        public void rejectedExecution(final Runnable r, final ThreadPoolExecutor tpe) {
+            if ( tpe.isShutdown() ) {
+                statistics.rejected(r);
+                if ( this.policy == ThreadPoolPolicy.ABORT ) {
+                    throw new RejectedExecutionException("Thread pool " + name + " is already shutdown.");
+                }
+                return;
+            }
+            switch ( this.policy ) {
+                case RUN :
+                    r.run();
+                    break;
+                case DISCARD :
+                    statistics.rejected(r);
+                    break;
+                case DISCARDOLDEST :
+                    final Runnable oldest = tpe.getQueue().poll();
+                    if ( oldest != null ) {
+                        statistics.rejected(oldest);
+                    }
+                    tpe.execute(r);
+                    break;
+                default :
+                    statistics.rejected(r);
+                    throw new RejectedExecutionException("Task " + r + " rejected from thread pool " + name);
+            }
+        }
     }
 }
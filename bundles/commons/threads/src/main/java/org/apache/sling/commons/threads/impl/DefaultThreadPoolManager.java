@@ -21,12 +21,14 @@ import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolType;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPriority;
 import org.apache.sling.commons.threads.ThreadPoolManager;
 import org.apache.sling.commons.threads.jmx.ThreadPoolMBean;
@@ -116,6 +118,9 @@ public class DefaultThreadPoolManager
         if ( props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON) != null ) {
             config.setDaemon((Boolean)props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON));
         }
+        if ( props.get(ModifiableThreadPoolConfig.PROPERTY_TYPE) != null ) {
+            config.setType(ThreadPoolType.valueOf(props.get(ModifiableThreadPoolConfig.PROPERTY_TYPE).toString()));
+        }
         return config;
     }
 
@@ -404,6 +409,37 @@ public class DefaultThreadPoolManager
             return null;
         }
 
+        public ExecutorService getExecutorService() {
+            final ThreadPoolFacade facade = this.pool;
+            if ( facade != null ) {
+                return facade.getExecutorService();
+            }
+            return null;
+        }
+
+        /**
+         * Return the type used by the pool. If the pool is not in use,
+         * this is the configured type.
+         */
+        public ThreadPoolType getType() {
+            final ThreadPoolFacade facade = this.pool;
+            if ( facade != null ) {
+                return facade.getType();
+            }
+            if ( this.config instanceof ModifiableThreadPoolConfig ) {
+                return ((ModifiableThreadPoolConfig)this.config).getType();
+            }
+            return ThreadPoolType.DEFAULT;
+        }
+
+        public ThreadPoolStatistics getStatistics() {
+            final ThreadPoolFacade facade = this.pool;
+            if ( facade != null ) {
+                return facade.getStatistics();
+            }
+            return null;
+        }
+
         protected void unregisterMBean() {
             if ( this.mbeanRegistration != null ) {
                 this.mbeanRegistration.unregister();
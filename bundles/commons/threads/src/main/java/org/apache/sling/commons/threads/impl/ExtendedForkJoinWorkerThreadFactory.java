@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.commons.threads.ThreadPoolConfig;
+
+
+/**
+ * This class is responsible to create new worker threads for
+ * a work stealing thread pool. It sets the name, daemon flag
+ * and priority the same way as the {@link ExtendedThreadFactory}.
+ */
+public final class ExtendedForkJoinWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+    /** The daemon mode */
+    private final boolean isDaemon;
+
+    /** The priority of newly created Threads */
+    private final int priority;
+
+    /** The prefix for the thread names. */
+    private final String namePrefix;
+
+    /** The thread counter. */
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    public ExtendedForkJoinWorkerThreadFactory(final String poolName,
+                                final ThreadPoolConfig.ThreadPriority priority,
+                                final boolean isDaemon) {
+        this.isDaemon = isDaemon;
+        if ( priority == null ) {
+            throw new IllegalStateException("Prioriy must not be null.");
+        }
+        switch ( priority ) {
+            case MIN  : this.priority = Thread.MIN_PRIORITY;
+                        break;
+            case MAX  : this.priority = Thread.MAX_PRIORITY;
+                        break;
+            default:    this.priority = Thread.NORM_PRIORITY;
+                        break;
+        }
+        this.namePrefix = poolName + "-worker-";
+    }
+
+    /**
+     * @see java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory#newThread(java.util.concurrent.ForkJoinPool)
+     */
+    public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+        final ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+            // the constructor of the super class is protected
+        };
+        thread.setName(this.namePrefix + this.threadNumber.getAndIncrement());
+        thread.setPriority( this.priority );
+        thread.setDaemon( this.isDaemon );
+
+        return thread;
+    }
+}
@@ -17,11 +17,13 @@
 package org.apache.sling.commons.threads.impl;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolType;
 
 
 /**
@@ -103,4 +105,16 @@ public final class ThreadPoolFacade implements ThreadPool {
     public ThreadPoolExecutor getExecutor() {
         return this.delegatee.getExecutor();
     }
+
+    public ExecutorService getExecutorService() {
+        return this.delegatee.getExecutorService();
+    }
+
+    public ThreadPoolType getType() {
+        return this.delegatee.getType();
+    }
+
+    public ThreadPoolStatistics getStatistics() {
+        return this.delegatee.getStatistics();
+    }
 }
@@ -16,6 +16,9 @@
  */
 package org.apache.sling.commons.threads.impl;
 
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.management.NotCompliantMBeanException;
@@ -42,7 +45,8 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
         if ( tpe != null ) {
             return tpe.getActiveCount();
         } else {
-            return -1;
+            final ThreadPoolStatistics stats = this.entry.getStatistics();
+            return stats != null ? stats.getActiveCount() : -1;
         }
     }
 
@@ -51,7 +55,8 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
         if ( tpe != null ) {
             return tpe.getCompletedTaskCount();
         } else {
-            return -1;
+            final ThreadPoolStatistics stats = this.entry.getStatistics();
+            return stats != null ? stats.getFinishedCount() : -1;
         }
     }
 
@@ -78,6 +83,10 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
         if ( tpe != null ) {
             return tpe.getMaximumPoolSize();
         } else {
+            final ExecutorService es = this.entry.getExecutorService();
+            if ( es instanceof ForkJoinPool ) {
+                return ((ForkJoinPool)es).getParallelism();
+            }
             return -1;
         }
     }
@@ -87,6 +96,10 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
         if ( tpe != null ) {
             return tpe.getPoolSize();
         } else {
+            final ExecutorService es = this.entry.getExecutorService();
+            if ( es instanceof ForkJoinPool ) {
+                return ((ForkJoinPool)es).getPoolSize();
+            }
             return -1;
         }
     }
@@ -96,7 +109,8 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
         if ( tpe != null ) {
             return tpe.getTaskCount();
         } else {
-            return -1;
+            final ThreadPoolStatistics stats = this.entry.getStatistics();
+            return stats != null ? stats.getSubmittedCount() : -1;
         }
     }
 
@@ -144,4 +158,104 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
         return this.entry.isUsed();
     }
 
+    public String getType() {
+        return this.entry.getType().name();
+    }
+
+    public long getSubmittedTaskCount() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            return stats.getSubmittedCount();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getRejectedTaskCount() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            return stats.getRejectedCount();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getFinishedTaskCount() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            return stats.getFinishedCount();
+        } else {
+            return -1;
+        }
+    }
+
+    public int getActiveTaskCount() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            return stats.getActiveCount();
+        } else {
+            return -1;
+        }
+    }
+
+    public double getAverageQueueWaitTimeMs() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            return stats.getAverageQueueWaitTimeMs();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getMaxQueueWaitTimeMs() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            return stats.getMaxQueueWaitTimeMs();
+        } else {
+            return -1;
+        }
+    }
+
+    public double getAverageActiveTimeMs() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            return stats.getAverageActiveTimeMs();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getMaxActiveTimeMs() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            return stats.getMaxActiveTimeMs();
+        } else {
+            return -1;
+        }
+    }
+
+    public int getSaturation() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            return stats.getSaturation(this.entry.getConfig().getMaxPoolSize());
+        } else {
+            return -1;
+        }
+    }
+
+    public String[] getTaskCountsPerSubmitter() {
+        final ThreadPoolStatistics stats = this.entry.getStatistics();
+        if ( stats != null ) {
+            final Map<String, Long> counts = stats.getSubmitterCounts();
+            final String[] result = new String[counts.size()];
+            int index = 0;
+            for(final Map.Entry<String, Long> e : counts.entrySet()) {
+                result[index] = e.getKey() + "=" + e.getValue();
+                index++;
+            }
+            return result;
+        } else {
+            return new String[0];
+        }
+    }
 }
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics for a thread pool which are independent of the
+ * executor implementation used by the pool.
+ *
+ * Each task is wrapped before it is handed over to the executor
+ * so the time a task waits in the queue and the time it is
+ * executing can be measured.
+ */
+public class ThreadPoolStatistics {
+
+    /** Maximum number of distinct submitters which are tracked. */
+    private static final int MAX_SUBMITTERS = 250;
+
+    /** Submitter name used once the maximum is reached. */
+    private static final String OTHER_SUBMITTERS = "<other>";
+
+    private final AtomicLong submittedCount = new AtomicLong();
+
+    private final AtomicLong finishedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    private final AtomicLong totalQueueWaitTime = new AtomicLong();
+
+    private final AtomicLong maxQueueWaitTime = new AtomicLong();
+
+    private final AtomicLong totalActiveTime = new AtomicLong();
+
+    private final AtomicLong maxActiveTime = new AtomicLong();
+
+    private final ConcurrentMap<String, AtomicLong> submitterCounts = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Wrap the runnable to collect statistics.
+     * The task is counted as submitted, if the executor does not accept
+     * the wrapped task, {@link #rejected(Runnable)} must be called.
+     */
+    public Runnable wrap(final Runnable runnable) {
+        return this.wrap(runnable, runnable);
+    }
+
+    /**
+     * Wrap the runnable to collect statistics.
+     * @param runnable The task to execute
+     * @param submitter The task used to determine the submitter,
+     *                  e.g. the callable wrapped by a future.
+     */
+    public Runnable wrap(final Runnable runnable, final Object submitter) {
+        final String name = this.submitted(submitter);
+        return new StatisticsRunnable(runnable, name);
+    }
+
+    /**
+     * Mark a task which has been wrapped by this statistics as rejected.
+     * The task is no longer counted as submitted but as rejected.
+     * Calling this method more than once for the same task or for a
+     * task not wrapped by this statistics has no effect.
+     */
+    public void rejected(final Runnable runnable) {
+        if ( runnable instanceof StatisticsRunnable ) {
+            final StatisticsRunnable task = (StatisticsRunnable)runnable;
+            if ( task.owner() == this && task.markRejected() ) {
+                this.submittedCount.decrementAndGet();
+                final AtomicLong counter = this.submitterCounts.get(task.submitter);
+                if ( counter != null ) {
+                    counter.decrementAndGet();
+                }
+                this.rejectedCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Total number of submitted tasks.
+     */
+    public long getSubmittedCount() {
+        return this.submittedCount.get();
+    }
+
+    /**
+     * Total number of tasks which were rejected or discarded by the pool.
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    /**
+     * Total number of finished tasks.
+     */
+    public long getFinishedCount() {
+        return this.finishedCount.get();
+    }
+
+    /**
+     * Number of currently executing tasks.
+     */
+    public int getActiveCount() {
+        return this.activeCount.get();
+    }
+
+    /**
+     * The average time in ms a task waited for execution.
+     */
+    public double getAverageQueueWaitTimeMs() {
+        return average(this.totalQueueWaitTime.get(), this.finishedCount.get() + this.activeCount.get());
+    }
+
+    /**
+     * The maximum time in ms a task waited for execution.
+     */
+    public long getMaxQueueWaitTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxQueueWaitTime.get());
+    }
+
+    /**
+     * The average execution time of a task in ms.
+     */
+    public double getAverageActiveTimeMs() {
+        return average(this.totalActiveTime.get(), this.finishedCount.get());
+    }
+
+    /**
+     * The maximum execution time of a task in ms.
+     */
+    public long getMaxActiveTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxActiveTime.get());
+    }
+
+    /**
+     * Return the saturation of the pool in percent.
+     * @param maxThreads The maximum number of threads of the pool.
+     */
+    public int getSaturation(final int maxThreads) {
+        if ( maxThreads < 1 || maxThreads == Integer.MAX_VALUE ) {
+            return -1;
+        }
+        return Math.min(100, (this.activeCount.get() * 100) / maxThreads);
+    }
+
+    /**
+     * Return a sorted copy of the task count per submitter.
+     */
+    public Map<String, Long> getSubmitterCounts() {
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        for(final Map.Entry<String, AtomicLong> entry : this.submitterCounts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    private static double average(final long totalNanos, final long count) {
+        if ( count <= 0 ) {
+            return 0;
+        }
+        return (double)totalNanos / count / 1000000.0;
+    }
+
+    private static void updateMax(final AtomicLong max, final long value) {
+        long current = max.get();
+        while ( value > current && !max.compareAndSet(current, value) ) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * The submitter is the class of the task, lambda and
+     * proxy suffixes are stripped to keep the number of keys low.
+     */
+    private static String getSubmitter(final Object task) {
+        final String name = task.getClass().getName();
+        final int pos = name.indexOf("$$");
+        if ( pos != -1 ) {
+            return name.substring(0, pos);
+        }
+        return name;
+    }
+
+    private String submitted(final Object task) {
+        this.submittedCount.incrementAndGet();
+        String submitter = getSubmitter(task);
+        AtomicLong counter = this.submitterCounts.get(submitter);
+        if ( counter == null ) {
+            if ( this.submitterCounts.size() >= MAX_SUBMITTERS ) {
+                submitter = OTHER_SUBMITTERS;
+            }
+            counter = new AtomicLong();
+            final AtomicLong oldCounter = this.submitterCounts.putIfAbsent(submitter, counter);
+            if ( oldCounter != null ) {
+                counter = oldCounter;
+            }
+        }
+        counter.incrementAndGet();
+        return submitter;
+    }
+
+    private long started(final long submitTime) {
+        final long start = System.nanoTime();
+        final long waitTime = start - submitTime;
+        this.totalQueueWaitTime.addAndGet(waitTime);
+        updateMax(this.maxQueueWaitTime, waitTime);
+        this.activeCount.incrementAndGet();
+        return start;
+    }
+
+    private void finished(final long startTime) {
+        final long activeTime = System.nanoTime() - startTime;
+        this.activeCount.decrementAndGet();
+        this.totalActiveTime.addAndGet(activeTime);
+        updateMax(this.maxActiveTime, activeTime);
+        this.finishedCount.incrementAndGet();
+    }
+
+    private final class StatisticsRunnable implements Runnable {
+
+        private final Runnable delegatee;
+
+        private final String submitter;
+
+        private final long submitTime = System.nanoTime();
+
+        private final AtomicBoolean rejected = new AtomicBoolean();
+
+        public StatisticsRunnable(final Runnable delegatee, final String submitter) {
+            this.delegatee = delegatee;
+            this.submitter = submitter;
+        }
+
+        public void run() {
+            final long startTime = started(this.submitTime);
+            try {
+                this.delegatee.run();
+            } finally {
+                finished(startTime);
+            }
+        }
+
+        ThreadPoolStatistics owner() {
+            return ThreadPoolStatistics.this;
+        }
+
+        boolean markRejected() {
+            return this.rejected.compareAndSet(false, true);
+        }
+
+        @Override
+        public String toString() {
+            return this.delegatee.toString();
+        }
+    }
+}
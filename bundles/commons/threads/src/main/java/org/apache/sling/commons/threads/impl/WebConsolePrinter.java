@@ -21,6 +21,7 @@ package org.apache.sling.commons.threads.impl;
 import java.io.PrintWriter;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.sling.commons.threads.ThreadPoolConfig;
@@ -104,6 +105,8 @@ public class WebConsolePrinter {
                 pw.println(config.getShutdownWaitTimeMs());
                 pw.print("- daemon : ");
                 pw.println(config.isDaemon());
+                pw.print("- type : ");
+                pw.println(entry.getType());
                 final ThreadPoolExecutor tpe = entry.getExecutor();
                 if ( tpe != null ) {
                     pw.print("- active count : ");
@@ -121,6 +124,33 @@ public class WebConsolePrinter {
                     pw.print("- task count : ");
                     pw.println(tpe.getTaskCount());
                 }
+                final ThreadPoolStatistics stats = entry.getStatistics();
+                if ( stats != null ) {
+                    pw.print("- submitted tasks : ");
+                    pw.println(stats.getSubmittedCount());
+                    pw.print("- rejected tasks : ");
+                    pw.println(stats.getRejectedCount());
+                    pw.print("- finished tasks : ");
+                    pw.println(stats.getFinishedCount());
+                    pw.print("- active tasks : ");
+                    pw.println(stats.getActiveCount());
+                    pw.print("- average queue wait time (ms) : ");
+                    pw.println(stats.getAverageQueueWaitTimeMs());
+                    pw.print("- max queue wait time (ms) : ");
+                    pw.println(stats.getMaxQueueWaitTimeMs());
+                    pw.print("- average active time (ms) : ");
+                    pw.println(stats.getAverageActiveTimeMs());
+                    pw.print("- max active time (ms) : ");
+                    pw.println(stats.getMaxActiveTimeMs());
+                    pw.print("- saturation (%) : ");
+                    pw.println(stats.getSaturation(config.getMaxPoolSize()));
+                    for(final Map.Entry<String, Long> submitter : stats.getSubmitterCounts().entrySet()) {
+                        pw.print("- tasks from ");
+                        pw.print(submitter.getKey());
+                        pw.print(" : ");
+                        pw.println(submitter.getValue());
+                    }
+                }
                 pw.println();
             }
         } else {
@@ -156,4 +156,96 @@ public interface ThreadPoolMBean {
      */
     boolean isUsed();
 
+    /**
+     * Return the type of the thread pool. For a pool in use this is the
+     * type actually used, which is DEFAULT if the configured type is not
+     * supported by the JVM.
+     *
+     * @return The type of the thread pool.
+     * @since 1.1
+     */
+    String getType();
+
+    /**
+     * Return the number of tasks submitted to the thread pool.
+     *
+     * @return The number of submitted tasks or -1 if the thread pool is not in use.
+     * @since 1.1
+     */
+    long getSubmittedTaskCount();
+
+    /**
+     * Return the number of tasks which were rejected or discarded
+     * by the thread pool according to its block policy.
+     *
+     * @return The number of rejected tasks or -1 if the thread pool is not in use.
+     * @since 1.1
+     */
+    long getRejectedTaskCount();
+
+    /**
+     * Return the number of tasks which finished execution.
+     *
+     * @return The number of finished tasks or -1 if the thread pool is not in use.
+     * @since 1.1
+     */
+    long getFinishedTaskCount();
+
+    /**
+     * Return the number of tasks which are currently executed.
+     *
+     * @return The number of active tasks or -1 if the thread pool is not in use.
+     * @since 1.1
+     */
+    int getActiveTaskCount();
+
+    /**
+     * Return the average time a task waited before execution started.
+     *
+     * @return The average queue wait time in milliseconds or -1 if the thread pool is not in use.
+     * @since 1.1
+     */
+    double getAverageQueueWaitTimeMs();
+
+    /**
+     * Return the maximum time a task waited before execution started.
+     *
+     * @return The maximum queue wait time in milliseconds or -1 if the thread pool is not in use.
+     * @since 1.1
+     */
+    long getMaxQueueWaitTimeMs();
+
+    /**
+     * Return the average execution time of a task.
+     *
+     * @return The average active time in milliseconds or -1 if the thread pool is not in use.
+     * @since 1.1
+     */
+    double getAverageActiveTimeMs();
+
+    /**
+     * Return the maximum execution time of a task.
+     *
+     * @return The maximum active time in milliseconds or -1 if the thread pool is not in use.
+     * @since 1.1
+     */
+    long getMaxActiveTimeMs();
+
+    /**
+     * Return the saturation of the thread pool, this is the percentage
+     * of active tasks compared to the maximum pool size.
+     *
+     * @return The saturation in percent or -1 if the pool is not in use or unbounded.
+     * @since 1.1
+     */
+    int getSaturation();
+
+    /**
+     * Return the number of submitted tasks per submitter. The submitter
+     * is the class of the task. Each entry has the form "submitter=count".
+     *
+     * @return The task counts per submitter.
+     * @since 1.1
+     */
+    String[] getTaskCountsPerSubmitter();
 }
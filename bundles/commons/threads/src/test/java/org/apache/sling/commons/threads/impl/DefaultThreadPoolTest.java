@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolType;
+import org.junit.After;
+import org.junit.Test;
+
+public class DefaultThreadPoolTest {
+
+    private DefaultThreadPool pool;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void shutdown() {
+        release.countDown();
+        if ( pool != null ) {
+            pool.shutdown();
+        }
+    }
+
+    private ModifiableThreadPoolConfig config(final ThreadPoolType type,
+            final int poolSize,
+            final int queueSize,
+            final ThreadPoolPolicy policy) {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setType(type);
+        config.setMinPoolSize(poolSize);
+        config.setMaxPoolSize(poolSize);
+        config.setQueueSize(queueSize);
+        config.setBlockPolicy(policy);
+        config.setShutdownGraceful(false);
+        return config;
+    }
+
+    private Runnable blockingTask(final CountDownLatch started) {
+        return new Runnable() {
+
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private void awaitFinished(final long count) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 10000;
+        while ( pool.getStatistics().getFinishedCount() < count && System.currentTimeMillis() < end ) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, pool.getStatistics().getFinishedCount());
+    }
+
+    @Test
+    public void testDefaultType() throws Exception {
+        pool = new DefaultThreadPool("test", config(ThreadPoolType.DEFAULT, 2, -1, ThreadPoolPolicy.ABORT));
+        assertEquals(ThreadPoolType.DEFAULT, pool.getType());
+        assertNotNull(pool.getExecutor());
+
+        final Future<String> future = pool.submit(new Callable<String>() {
+
+            public String call() {
+                return "done";
+            }
+        });
+        assertEquals("done", future.get(10, TimeUnit.SECONDS));
+        awaitFinished(1);
+        assertEquals(1, pool.getStatistics().getSubmittedCount());
+        assertEquals(0, pool.getStatistics().getRejectedCount());
+    }
+
+    @Test
+    public void testWorkStealingType() throws Exception {
+        pool = new DefaultThreadPool("test", config(ThreadPoolType.WORK_STEALING, 3, -1, ThreadPoolPolicy.ABORT));
+        assertEquals(ThreadPoolType.WORK_STEALING, pool.getType());
+        assertNull(pool.getExecutor());
+        assertTrue(pool.getExecutorService() instanceof ForkJoinPool);
+        assertEquals(3, ((ForkJoinPool)pool.getExecutorService()).getParallelism());
+
+        final Future<?> future = pool.submit(new Runnable() {
+
+            public void run() {
+                // nothing to do
+            }
+        });
+        assertNull(future.get(10, TimeUnit.SECONDS));
+        awaitFinished(1);
+    }
+
+    @Test
+    public void testVirtualTypeDoesNotChangeConfiguration() throws Exception {
+        final ModifiableThreadPoolConfig config = config(ThreadPoolType.VIRTUAL, 2, -1, ThreadPoolPolicy.ABORT);
+        pool = new DefaultThreadPool("test", config);
+        assertEquals(ThreadPoolType.VIRTUAL, config.getType());
+        assertEquals(ThreadPoolType.VIRTUAL, ((ModifiableThreadPoolConfig)pool.getConfiguration()).getType());
+        // either virtual threads are supported or the default pool is used
+        if ( pool.getExecutor() != null ) {
+            assertEquals(ThreadPoolType.DEFAULT, pool.getType());
+        } else {
+            assertEquals(ThreadPoolType.VIRTUAL, pool.getType());
+        }
+    }
+
+    @Test
+    public void testAbortedTasksAreNotCountedAsSubmitted() throws Exception {
+        pool = new DefaultThreadPool("test", config(ThreadPoolType.DEFAULT, 1, 1, ThreadPoolPolicy.ABORT));
+        final CountDownLatch started = new CountDownLatch(1);
+        pool.execute(blockingTask(started));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        pool.execute(blockingTask(new CountDownLatch(1)));
+        try {
+            pool.execute(blockingTask(new CountDownLatch(1)));
+            fail("Task should be rejected");
+        } catch (final RejectedExecutionException expected) {
+            // expected
+        }
+        assertEquals(2, pool.getStatistics().getSubmittedCount());
+        assertEquals(1, pool.getStatistics().getRejectedCount());
+        release.countDown();
+        awaitFinished(2);
+    }
+
+    @Test
+    public void testDiscardedTasksAreNotCountedAsSubmitted() throws Exception {
+        pool = new DefaultThreadPool("test", config(ThreadPoolType.DEFAULT, 1, 1, ThreadPoolPolicy.DISCARD));
+        final CountDownLatch started = new CountDownLatch(1);
+        pool.execute(blockingTask(started));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        pool.execute(blockingTask(new CountDownLatch(1)));
+        pool.submit(blockingTask(new CountDownLatch(1)));
+        assertEquals(2, pool.getStatistics().getSubmittedCount());
+        assertEquals(1, pool.getStatistics().getRejectedCount());
+        release.countDown();
+        awaitFinished(2);
+    }
+
+    @Test
+    public void testDiscardOldestCountsQueuedTask() throws Exception {
+        pool = new DefaultThreadPool("test", config(ThreadPoolType.DEFAULT, 1, 1, ThreadPoolPolicy.DISCARDOLDEST));
+        final CountDownLatch started = new CountDownLatch(1);
+        pool.execute(blockingTask(started));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        pool.execute(blockingTask(new CountDownLatch(1)));
+        pool.execute(blockingTask(new CountDownLatch(1)));
+        assertEquals(2, pool.getStatistics().getSubmittedCount());
+        assertEquals(1, pool.getStatistics().getRejectedCount());
+        release.countDown();
+        awaitFinished(2);
+    }
+
+    @Test
+    public void testWorkStealingQueueSizeAbort() throws Exception {
+        pool = new DefaultThreadPool("test", config(ThreadPoolType.WORK_STEALING, 1, 1, ThreadPoolPolicy.ABORT));
+        final CountDownLatch started = new CountDownLatch(1);
+        pool.execute(blockingTask(started));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        pool.execute(blockingTask(new CountDownLatch(1)));
+        try {
+            pool.execute(blockingTask(new CountDownLatch(1)));
+            fail("Task should be rejected");
+        } catch (final RejectedExecutionException expected) {
+            // expected
+        }
+        assertEquals(2, pool.getStatistics().getSubmittedCount());
+        assertEquals(1, pool.getStatistics().getRejectedCount());
+
+        // permits are released once the tasks are finished
+        release.countDown();
+        awaitFinished(2);
+        pool.execute(blockingTask(new CountDownLatch(1)));
+        awaitFinished(3);
+    }
+
+    @Test
+    public void testWorkStealingQueueSizeCallerRuns() throws Exception {
+        pool = new DefaultThreadPool("test", config(ThreadPoolType.WORK_STEALING, 1, 0, ThreadPoolPolicy.RUN));
+        final CountDownLatch started = new CountDownLatch(1);
+        pool.execute(blockingTask(started));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        final Thread caller = Thread.currentThread();
+        final Thread[] executor = new Thread[1];
+        pool.execute(new Runnable() {
+
+            public void run() {
+                executor[0] = Thread.currentThread();
+            }
+        });
+        assertTrue(executor[0] == caller);
+        assertEquals(0, pool.getStatistics().getRejectedCount());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ThreadPoolStatisticsTest {
+
+    private static final class Task implements Runnable {
+
+        public void run() {
+            // nothing to do
+        }
+    }
+
+    @Test
+    public void testRunCounts() {
+        final ThreadPoolStatistics stats = new ThreadPoolStatistics();
+        final Runnable wrapped = stats.wrap(new Task());
+        assertEquals(1, stats.getSubmittedCount());
+        assertEquals(0, stats.getFinishedCount());
+
+        wrapped.run();
+        assertEquals(1, stats.getFinishedCount());
+        assertEquals(0, stats.getActiveCount());
+        assertEquals(Long.valueOf(1), stats.getSubmitterCounts().get(Task.class.getName()));
+    }
+
+    @Test
+    public void testRejected() {
+        final ThreadPoolStatistics stats = new ThreadPoolStatistics();
+        final Runnable wrapped = stats.wrap(new Task());
+        stats.wrap(new Task());
+
+        stats.rejected(wrapped);
+        // rejecting twice has no effect
+        stats.rejected(wrapped);
+        assertEquals(1, stats.getSubmittedCount());
+        assertEquals(1, stats.getRejectedCount());
+        assertEquals(Long.valueOf(1), stats.getSubmitterCounts().get(Task.class.getName()));
+    }
+
+    @Test
+    public void testRejectedForeignTask() {
+        final ThreadPoolStatistics stats = new ThreadPoolStatistics();
+        final ThreadPoolStatistics other = new ThreadPoolStatistics();
+        stats.wrap(new Task());
+
+        stats.rejected(other.wrap(new Task()));
+        stats.rejected(new Task());
+        assertEquals(1, stats.getSubmittedCount());
+        assertEquals(0, stats.getRejectedCount());
+    }
+
+    @Test
+    public void testSubmitterOfWrappedTask() {
+        final ThreadPoolStatistics stats = new ThreadPoolStatistics();
+        stats.wrap(new Runnable() {
+
+            public void run() {
+                // nothing to do
+            }
+        }, new Task());
+        assertEquals(Long.valueOf(1), stats.getSubmitterCounts().get(Task.class.getName()));
+    }
+}
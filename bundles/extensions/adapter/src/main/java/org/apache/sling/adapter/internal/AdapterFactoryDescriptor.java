@@ -18,6 +18,8 @@
  */
 package org.apache.sling.adapter.internal;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.sling.api.adapter.AdapterFactory;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
@@ -40,6 +42,12 @@ public class AdapterFactoryDescriptor {
 
     private ServiceRegistration adaption;
 
+    /** The number of calls to the factory. */
+    private final AtomicLong calls = new AtomicLong();
+
+    /** The total time spent in the factory in nanoseconds. */
+    private final AtomicLong callTime = new AtomicLong();
+
     public AdapterFactoryDescriptor(
             final ComponentContext context,
             final ServiceReference reference,
@@ -57,6 +65,10 @@ public class AdapterFactoryDescriptor {
         return factory;
     }
 
+    public ServiceReference getReference() {
+        return reference;
+    }
+
     public String[] getAdapters() {
         return adapters;
     }
@@ -68,4 +80,21 @@ public class AdapterFactoryDescriptor {
     public void setAdaption(ServiceRegistration adaption) {
         this.adaption = adaption;
     }
+
+    /**
+     * Record a call to the factory.
+     * @param time The duration of the call in nanoseconds.
+     */
+    void addCall(final long time) {
+        this.calls.incrementAndGet();
+        this.callTime.addAndGet(time);
+    }
+
+    long getCallCount() {
+        return this.calls.get();
+    }
+
+    long getCallTime() {
+        return this.callTime.get();
+    }
 }
@@ -23,14 +23,21 @@ import static org.apache.sling.api.adapter.AdapterFactory.ADAPTER_CLASSES;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Properties;
@@ -103,11 +110,24 @@ public class AdapterManagerImpl implements AdapterManager {
      * fully qualified name of the class to adapt to (the target class).
      * <p>
      * This cache is built on demand by calling the
-     * {@link #getAdapterFactories(Class)} method. It is cleared
-     * whenever an adapter factory is registered on unregistered.
+     * {@link #getAdapterFactories(Class)} method. Whenever an adapter factory
+     * is registered or unregistered, only the entries for classes extending or
+     * implementing one of the adaptables of the factory are removed.
      */
-    private final ConcurrentMap<String, Map<String, List<AdapterFactoryDescriptor>>> factoryCache
-    = new ConcurrentHashMap<String, Map<String, List<AdapterFactoryDescriptor>>>();
+    private final ConcurrentMap<String, FactoryCacheEntry> factoryCache
+    = new ConcurrentHashMap<String, FactoryCacheEntry>();
+
+    /**
+     * Incremented on each invalidation of the {@link #factoryCache} to
+     * detect cache entries created concurrently from outdated factories.
+     */
+    private final AtomicInteger cacheGeneration = new AtomicInteger();
+
+    /** The number of {@link #getAdapter(Object, Class)} calls. */
+    private final AtomicLong adaptions = new AtomicLong();
+
+    /** The number of {@link #getAdapter(Object, Class)} calls returning <code>null</code>. */
+    private final AtomicLong misses = new AtomicLong();
 
     /**
      * The service tracker for the event admin
@@ -128,38 +148,57 @@ public class AdapterManagerImpl implements AdapterManager {
      */
     public <AdapterType> AdapterType getAdapter(final Object adaptable,
             final Class<AdapterType> type) {
+        this.adaptions.incrementAndGet();
 
         // get the adapter factories for the type of adaptable object
-        final Map<String, List<AdapterFactoryDescriptor>> factories = getAdapterFactories(adaptable.getClass());
-
-        // get the factory for the target type
-        final List<AdapterFactoryDescriptor> descList = factories.get(type.getName());
-
-        if (descList != null && descList.size() > 0) {
-            for (AdapterFactoryDescriptor desc : descList) {
-                final AdapterFactory factory = desc == null ? null : desc.getFactory();
-
-                // have the factory adapt the adaptable if the factory exists
-                if (factory != null) {
-                    log.debug("Trying adapter factory {} to map {} to {}",
-                            new Object [] { factory, adaptable, type });
-
-                    AdapterType adaptedObject = factory.getAdapter(adaptable, type);
-                    if (adaptedObject != null) {
-                        log.debug("Using adapter factory {} to map {} to {}",
-                                new Object [] { factory, adaptable, type });
-                        return adaptedObject;
-                    }
+        final Map<String, FactoryList> factories = getAdapterFactories(adaptable.getClass()).factories;
+
+        // get the factories for the target type, no entry means no factory at all
+        final FactoryList factoryList = factories.get(type.getName());
+        if (factoryList != null) {
+            // a factory might only adapt some instances of a class, so the
+            // factories are always asked in ranking order
+            for (final AdapterFactoryDescriptor desc : factoryList.descriptors) {
+                final AdapterType adaptedObject = adapt(desc, adaptable, type);
+                if (adaptedObject != null) {
+                    return adaptedObject;
                 }
             }
         }
 
         // no factory has been found, so we cannot adapt
+        this.misses.incrementAndGet();
         log.debug("No adapter factory found to map {} to {}", adaptable, type);
 
         return null;
     }
 
+    /**
+     * Have the factory of the descriptor adapt the adaptable if the factory exists.
+     */
+    private <AdapterType> AdapterType adapt(final AdapterFactoryDescriptor desc,
+            final Object adaptable,
+            final Class<AdapterType> type) {
+        final AdapterFactory factory = desc.getFactory();
+        if (factory == null) {
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Trying adapter factory {} to map {} to {}",
+                    new Object [] { factory, adaptable, type });
+        }
+
+        final long start = System.nanoTime();
+        final AdapterType adaptedObject = factory.getAdapter(adaptable, type);
+        desc.addCall(System.nanoTime() - start);
+
+        if (adaptedObject != null && log.isDebugEnabled()) {
+            log.debug("Using adapter factory {} to map {} to {}",
+                    new Object [] { factory, adaptable, type });
+        }
+        return adaptedObject;
+    }
+
     // ----------- SCR integration ---------------------------------------------
 
     /**
@@ -236,10 +275,43 @@ public class AdapterManagerImpl implements AdapterManager {
      * <strong><em>THIS METHOD IS FOR UNIT TESTING ONLY. IT MAY BE REMOVED OR
      * MODIFIED WITHOUT NOTICE.</em></strong>
      */
-    Map<String, Map<String, List<AdapterFactoryDescriptor>>> getFactoryCache() {
+    Map<String, FactoryCacheEntry> getFactoryCache() {
         return factoryCache;
     }
 
+    // ---------- statistics for the web console -------------------------------
+
+    /**
+     * Returns the number of adaptions requested from this manager.
+     */
+    long getAdaptionCount() {
+        return this.adaptions.get();
+    }
+
+    /**
+     * Returns the number of adaptions no factory has been able to handle.
+     */
+    long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the descriptors of all registered adapter factories.
+     */
+    Collection<AdapterFactoryDescriptor> getFactoryDescriptors() {
+        final Set<AdapterFactoryDescriptor> result = new LinkedHashSet<AdapterFactoryDescriptor>();
+        final List<AdapterFactoryDescriptorMap> maps;
+        synchronized ( this.descriptors ) {
+            maps = new ArrayList<AdapterFactoryDescriptorMap>(this.descriptors.values());
+        }
+        for (final AdapterFactoryDescriptorMap adfMap : maps) {
+            synchronized ( adfMap ) {
+                result.addAll(adfMap.values());
+            }
+        }
+        return result;
+    }
+
     /**
      * Unregisters the {@link AdapterFactory} referred to by the service
      * <code>reference</code> from the registry.
@@ -283,8 +355,8 @@ public class AdapterManagerImpl implements AdapterManager {
             }
         }
 
-        // clear the factory cache to force rebuild on next access
-        this.factoryCache.clear();
+        // remove the affected cache entries to force rebuild on next access
+        invalidateCache(adaptables);
 
         // register adaption
         final Dictionary<String, Object> props = new Hashtable<String, Object>();
@@ -373,7 +445,7 @@ public class AdapterManagerImpl implements AdapterManager {
         // only remove cache if some adapter factories have actually been
         // removed
         if (factoriesModified) {
-            this.factoryCache.clear();
+            invalidateCache(adaptables);
         }
 
         // unregister adaption
@@ -408,18 +480,44 @@ public class AdapterManagerImpl implements AdapterManager {
      *         empty if there is no adapter factory for the adaptable
      *         <code>clazz</code>.
      */
-    private Map<String, List<AdapterFactoryDescriptor>> getAdapterFactories(final Class<?> clazz) {
+    private FactoryCacheEntry getAdapterFactories(final Class<?> clazz) {
         final String className = clazz.getName();
-        Map<String, List<AdapterFactoryDescriptor>> entry = this.factoryCache.get(className);
+        FactoryCacheEntry entry = this.factoryCache.get(className);
         if (entry == null) {
             // create entry
+            final int generation = this.cacheGeneration.get();
             entry = createAdapterFactoryMap(clazz);
             this.factoryCache.put(className, entry);
+            // drop the entry again if factories changed in the meantime
+            if (generation != this.cacheGeneration.get()) {
+                this.factoryCache.remove(className, entry);
+            }
         }
 
         return entry;
     }
 
+    /**
+     * Removes all cache entries for classes which are or extend one of the
+     * given adaptable classes. Entries of unrelated classes are kept.
+     *
+     * @param adaptables The fully qualified adaptable class names of a
+     *            registered or unregistered factory.
+     */
+    private void invalidateCache(final String[] adaptables) {
+        this.cacheGeneration.incrementAndGet();
+        final Iterator<FactoryCacheEntry> entries = this.factoryCache.values().iterator();
+        while (entries.hasNext()) {
+            final FactoryCacheEntry entry = entries.next();
+            for (final String adaptable : adaptables) {
+                if (entry.types.contains(adaptable)) {
+                    entries.remove();
+                    break;
+                }
+            }
+        }
+    }
+
     /**
      * Creates a new target adapter factory map for the given <code>clazz</code>.
      * First all factories defined to support the adaptable class by
@@ -428,12 +526,14 @@ public class AdapterManagerImpl implements AdapterManager {
      *
      * @param clazz The adaptable <code>Class</code> for which to build the
      *            adapter factory map by target class name.
-     * @return The map of adapter factories by target class name. The map may be
-     *         empty if there is no adapter factory for the adaptable
-     *         <code>clazz</code>.
+     * @return The cache entry containing the map of adapter factories by
+     *         target class name. The map may be empty if there is no adapter
+     *         factory for the adaptable <code>clazz</code>.
      */
-    private Map<String, List<AdapterFactoryDescriptor>> createAdapterFactoryMap(final Class<?> clazz) {
+    private FactoryCacheEntry createAdapterFactoryMap(final Class<?> clazz) {
         final Map<String, List<AdapterFactoryDescriptor>> afm = new HashMap<String, List<AdapterFactoryDescriptor>>();
+        final Set<String> types = new HashSet<String>();
+        types.add(clazz.getName());
 
         // AdapterFactories for this class
         AdapterFactoryDescriptorMap afdMap = null;
@@ -462,16 +562,20 @@ public class AdapterManagerImpl implements AdapterManager {
         // AdapterFactories for the interfaces
         final Class<?>[] interfaces = clazz.getInterfaces();
         for (final Class<?> iFace : interfaces) {
-            copyAdapterFactories(afm, iFace);
+            copyAdapterFactories(afm, types, iFace);
         }
 
         // AdapterFactories for the super class
         final Class<?> superClazz = clazz.getSuperclass();
         if (superClazz != null) {
-            copyAdapterFactories(afm, superClazz);
+            copyAdapterFactories(afm, types, superClazz);
         }
 
-        return afm;
+        final Map<String, FactoryList> factories = new HashMap<String, FactoryList>();
+        for (final Map.Entry<String, List<AdapterFactoryDescriptor>> entry : afm.entrySet()) {
+            factories.put(entry.getKey(), new FactoryList(entry.getValue()));
+        }
+        return new FactoryCacheEntry(types, factories);
     }
 
     /**
@@ -483,17 +587,21 @@ public class AdapterManagerImpl implements AdapterManager {
      * @param dest The map of target class name to adapter factory into which
      *            additional factories are copied. Existing factories are not
      *            replaced.
+     * @param types The set of class names the factories are collected for,
+     *            the types of <code>clazz</code> are added.
      * @param clazz The adaptable class whose adapter factories are considered
      *            for adding into <code>dest</code>.
      */
     private void copyAdapterFactories(final Map<String, List<AdapterFactoryDescriptor>> dest,
+            final Set<String> types,
             final Class<?> clazz) {
 
         // get the adapter factories for the adaptable clazz
-        final Map<String, List<AdapterFactoryDescriptor>> scMap = getAdapterFactories(clazz);
+        final FactoryCacheEntry scEntry = getAdapterFactories(clazz);
+        types.addAll(scEntry.types);
 
         // for each target class copy the entry to dest and put it in the list or create the list
-        for (Map.Entry<String, List<AdapterFactoryDescriptor>> entry : scMap.entrySet()) {
+        for (Map.Entry<String, FactoryList> entry : scEntry.factories.entrySet()) {
 
             List<AdapterFactoryDescriptor> factoryDescriptors = dest.get(entry.getKey());
 
@@ -501,9 +609,39 @@ public class AdapterManagerImpl implements AdapterManager {
                 factoryDescriptors = new ArrayList<AdapterFactoryDescriptor>();
                 dest.put(entry.getKey(), factoryDescriptors);
             }
-            for (AdapterFactoryDescriptor descriptor : entry.getValue()) {
+            for (AdapterFactoryDescriptor descriptor : entry.getValue().descriptors) {
                 factoryDescriptors.add(descriptor);
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The cached adapter factories for an adaptable class.
+     */
+    static final class FactoryCacheEntry {
+
+        /** The names of the class and all its super classes and interfaces. */
+        final Set<String> types;
+
+        /** The factories indexed by the target class name. */
+        final Map<String, FactoryList> factories;
+
+        FactoryCacheEntry(final Set<String> types, final Map<String, FactoryList> factories) {
+            this.types = types;
+            this.factories = factories;
+        }
+    }
+
+    /**
+     * The factories for an (adaptable class, target class) combination in
+     * ranking order, kept in an array to iterate without an iterator.
+     */
+    static final class FactoryList {
+
+        final AdapterFactoryDescriptor[] descriptors;
+
+        FactoryList(final List<AdapterFactoryDescriptor> descriptors) {
+            this.descriptors = descriptors.toArray(new AdapterFactoryDescriptor[descriptors.size()]);
+        }
+    }
+}
@@ -44,8 +44,11 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.api.adapter.AdapterFactory;
+import org.apache.sling.api.adapter.AdapterManager;
 import org.apache.sling.commons.json.JSONArray;
 import org.apache.sling.commons.json.JSONException;
 import org.apache.sling.commons.json.JSONObject;
@@ -88,6 +91,9 @@ public class AdapterWebConsolePlugin extends HttpServlet implements ServiceTrack
     @Reference
     private PackageAdmin packageAdmin;
 
+    @Reference(cardinality=ReferenceCardinality.OPTIONAL_UNARY, policy=ReferencePolicy.DYNAMIC)
+    private volatile AdapterManager adapterManager;
+
     private List<AdaptableDescription> allAdaptables;
     private Map<ServiceReference, List<AdaptableDescription>> adapterServiceReferences;
     private Map<Bundle, List<AdaptableDescription>> adapterBundles;
@@ -315,6 +321,44 @@ public class AdapterWebConsolePlugin extends HttpServlet implements ServiceTrack
             }
         }
         writer.println("</table>");
+
+        final AdapterManagerImpl manager = getAdapterManagerImpl();
+        if (manager != null) {
+            writer.println("<p class=\"statline ui-state-highlight\">${Statistics}</p>");
+            writer.printf("<p>${Adaptions}: %s, ${Misses}: %s</p>%n", manager.getAdaptionCount(), manager.getMissCount());
+            writer.println("<table class=\"adapters nicetable\">");
+            writer.println("<thead><tr><th class=\"header\">${Adapter Factory}</th><th class=\"header\">${Calls}</th><th class=\"header\">${Average Time (us)}</th></tr></thead>");
+            rowClass = "odd";
+            for (final AdapterFactoryDescriptor desc : manager.getFactoryDescriptors()) {
+                writer.printf("<tr class=\"%s ui-state-default\"><td>%s</td><td>%s</td><td>%s</td></tr>%n",
+                        rowClass, getFactoryName(desc), desc.getCallCount(), getAverageTime(desc));
+                if (rowClass.equals("odd")) {
+                    rowClass = "even";
+                } else {
+                    rowClass = "odd";
+                }
+            }
+            writer.println("</table>");
+        }
+    }
+
+    private AdapterManagerImpl getAdapterManagerImpl() {
+        final AdapterManager manager = this.adapterManager;
+        if (manager instanceof AdapterManagerImpl) {
+            return (AdapterManagerImpl) manager;
+        }
+        return null;
+    }
+
+    private String getFactoryName(final AdapterFactoryDescriptor desc) {
+        final AdapterFactory factory = desc.getFactory();
+        return String.format("%s (%s)", factory == null ? "-" : factory.getClass().getName(),
+                desc.getReference().getProperty(Constants.SERVICE_ID));
+    }
+
+    private String getAverageTime(final AdapterFactoryDescriptor desc) {
+        final long calls = desc.getCallCount();
+        return calls == 0 ? "-" : String.valueOf(desc.getCallTime() / calls / 1000);
     }
 
     public void printConfiguration(final PrintWriter pw) {
@@ -332,6 +376,17 @@ public class AdapterWebConsolePlugin extends HttpServlet implements ServiceTrack
             }
             pw.println();
         }
+
+        final AdapterManagerImpl manager = getAdapterManagerImpl();
+        if (manager != null) {
+            pw.println("Adapter Statistics:");
+            pw.printf("Adaptions: %s\n", manager.getAdaptionCount());
+            pw.printf("Misses: %s\n", manager.getMissCount());
+            for (final AdapterFactoryDescriptor desc : manager.getFactoryDescriptors()) {
+                pw.printf("Factory: %s\n", getFactoryName(desc));
+                pw.printf("Calls: %s, Average Time (us): %s\n", desc.getCallCount(), getAverageTime(desc));
+            }
+        }
     }
 
     /**
@@ -35,6 +35,7 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.packageadmin.ExportedPackage;
 import org.osgi.service.packageadmin.PackageAdmin;
@@ -89,6 +90,7 @@ public class AdapterManagerTest {
         final BundleContext bundleCtx = this.context.mock(BundleContext.class);
         final Filter filter = this.context.mock(Filter.class);
         final ComponentContext ctx = this.context.mock(ComponentContext.class);
+        final ServiceRegistration adaption = this.context.mock(ServiceRegistration.class);
         this.context.checking(new Expectations() {{
             allowing(ctx).locateService(with(any(String.class)), with(any(ServiceReference.class)));
             will(returnValue(new MockAdapterFactory()));
@@ -101,7 +103,8 @@ public class AdapterManagerTest {
             will(returnValue(null));
             allowing(bundleCtx).removeServiceListener(with(any(ServiceListener.class)));
             allowing(bundleCtx).registerService(with(Adaption.class.getName()), with(AdaptionImpl.INSTANCE), with(any(Dictionary.class)));
-            will(returnValue(null));
+            will(returnValue(adaption));
+            allowing(adaption).unregister();
         }});
         return ctx;
     }
@@ -472,6 +475,76 @@ public class AdapterManagerTest {
         assertTrue("Did not get the correct adaptable back for second implementation, service ranking 2, ", adapter instanceof SecondImplementation);
     }
 
+    @org.junit.Test public void testTargetedCacheInvalidation() throws Exception {
+        am.activate(this.createComponentContext());
+
+        final ServiceReference ref = createServiceReference();
+        am.bindAdapterFactory(ref);
+
+        assertNotNull(am.getAdapter(new TestSlingAdaptable(), ITestAdapter.class));
+        assertNull(am.getAdapter(new AdapterObject(Want.INDIFFERENT), ITestAdapter.class));
+        assertTrue(am.getFactoryCache().containsKey(TestSlingAdaptable.class.getName()));
+        assertTrue(am.getFactoryCache().containsKey(AdapterObject.class.getName()));
+
+        // a factory for a sub class does not affect the cached entries
+        final ServiceReference ref2 = createServiceReference2();
+        am.bindAdapterFactory(ref2);
+        assertTrue(am.getFactoryCache().containsKey(TestSlingAdaptable.class.getName()));
+        assertTrue(am.getFactoryCache().containsKey(AdapterObject.class.getName()));
+
+        assertNotNull(am.getAdapter(new TestSlingAdaptable2(), TestAdapter.class));
+        assertTrue(am.getFactoryCache().containsKey(TestSlingAdaptable2.class.getName()));
+
+        // removing the base class factory removes the sub class entry as well
+        am.unbindAdapterFactory(ref);
+        assertNull(am.getFactoryCache().get(TestSlingAdaptable.class.getName()));
+        assertNull(am.getFactoryCache().get(TestSlingAdaptable2.class.getName()));
+        assertTrue(am.getFactoryCache().containsKey(AdapterObject.class.getName()));
+
+        assertNull(am.getAdapter(new TestSlingAdaptable2(), ITestAdapter.class));
+        assertNotNull(am.getAdapter(new TestSlingAdaptable2(), TestAdapter.class));
+    }
+
+    @org.junit.Test public void testStatistics() throws Exception {
+        final ServiceReference firstAdaptable = new ServiceReferenceImpl(1, new String[]{AdapterObject.class.getName()},  new String[]{ ParentInterface.class.getName()});
+        final ServiceReference secondAdaptable = new ServiceReferenceImpl(2, new String[]{ AdapterObject.class.getName() }, new String[]{ParentInterface.class.getName()});
+        am.activate(this.createMultipleAdaptersComponentContext(firstAdaptable, secondAdaptable));
+        am.bindAdapterFactory(firstAdaptable);
+        am.bindAdapterFactory(secondAdaptable);
+
+        assertTrue(am.getAdapter(new AdapterObject(Want.FIRST_IMPL), ParentInterface.class) instanceof FirstImplementation);
+        assertTrue(am.getAdapter(new AdapterObject(Want.SECOND_IMPL), ParentInterface.class) instanceof SecondImplementation);
+        assertNull(am.getAdapter(new AdapterObject(Want.INDIFFERENT), FirstImplementation.class));
+
+        // the higher ranked factory is asked first
+        assertTrue(am.getAdapter(new AdapterObject(Want.INDIFFERENT), ParentInterface.class) instanceof FirstImplementation);
+
+        assertEquals(4, am.getAdaptionCount());
+        assertEquals(1, am.getMissCount());
+        long calls = 0;
+        for (final AdapterFactoryDescriptor desc : am.getFactoryDescriptors()) {
+            calls += desc.getCallCount();
+        }
+        assertEquals(4, calls);
+    }
+
+    /**
+     * The higher ranked factory only adapts some instances: a lower ranked
+     * factory adapting an instance first must not take its precedence.
+     */
+    @org.junit.Test public void testInstanceDependentHigherRankedFactory() throws Exception {
+        final ServiceReference firstAdaptable = new ServiceReferenceImpl(1, new String[]{AdapterObject.class.getName()},  new String[]{ ParentInterface.class.getName()});
+        final ServiceReference secondAdaptable = new ServiceReferenceImpl(2, new String[]{ AdapterObject.class.getName() }, new String[]{ParentInterface.class.getName()});
+        am.activate(this.createMultipleAdaptersComponentContext(firstAdaptable, secondAdaptable));
+        am.bindAdapterFactory(firstAdaptable);
+        am.bindAdapterFactory(secondAdaptable);
+
+        assertTrue(am.getAdapter(new AdapterObject(Want.SECOND_IMPL), ParentInterface.class) instanceof SecondImplementation);
+        assertTrue(am.getAdapter(new AdapterObject(Want.INDIFFERENT), ParentInterface.class) instanceof FirstImplementation);
+        assertTrue(am.getAdapter(new AdapterObject(Want.FIRST_IMPL), ParentInterface.class) instanceof FirstImplementation);
+        assertTrue(am.getAdapter(new AdapterObject(Want.SECOND_IMPL), ParentInterface.class) instanceof SecondImplementation);
+    }
+
 
     //---------- Test Adaptable and Adapter Classes ---------------------------
 
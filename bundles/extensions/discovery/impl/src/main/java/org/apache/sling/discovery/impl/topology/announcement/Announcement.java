@@ -18,6 +18,9 @@
  */
 package org.apache.sling.discovery.impl.topology.announcement;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -44,6 +47,15 @@ import org.apache.sling.discovery.impl.common.DefaultInstanceDescriptionImpl;
  * and servlet see (in their part before joining the two worlds).
  * <p>
  * An announcement is exchanged in json format and carries a timeout.
+ * <p>
+ * Each announcement carries a version - a digest of its content - which
+ * is assigned by the instance creating it and kept when the announcement
+ * is passed on. Once the receiving side has acknowledged a version,
+ * subsequent announcements can be sent as a delta against it: the local
+ * cluster view is left out if unchanged, and nested announcements whose
+ * version is unchanged are only referenced by ownerId and version. The
+ * versions of the nested announcements thus form a version vector of the
+ * topology behind a connector.
  */
 public class Announcement {
 
@@ -79,6 +91,15 @@ public class Announcement {
     /** SLING-3382: the resetBackoff flag is sent from client to server and indicates that the client wants to start from (backoff) scratch **/
     private boolean resetBackoff = false;
 
+    /** the version as assigned by the creator of this announcement or as calculated from the content - null if not yet known **/
+    private String version;
+
+    /** the version of the received announcement which the servlet acknowledges in its reply **/
+    private String acknowledgedVersion;
+
+    /** the version of the last reply the client received, the servlet can send a delta against it **/
+    private String replyBaseVersion;
+
     public Announcement(final String ownerId) {
         this(ownerId, PROTOCOL_VERSION);
     }
@@ -151,6 +172,7 @@ public class Announcement {
     /** set the inherited flag - if true this means this announcement is the response of a topology connect **/
     public void setInherited(final boolean inherited) {
         this.inherited = inherited;
+        this.version = null;
     }
 
     /** Returns the inherited flag - if true this means that this announcement is the response of a topology connect **/
@@ -161,6 +183,7 @@ public class Announcement {
     /** Sets the loop falg - set true when this announcement should represent a loop detected in the topology connectors **/
     public void setLoop(final boolean loop) {
         this.loop = loop;
+        this.version = null;
     }
     
     /** Sets the backoffInterval which the connector servlets passes back to the client to use as the next heartbeatInterval **/
@@ -176,6 +199,7 @@ public class Announcement {
     /** sets the resetBackoff flag **/
     public void setResetBackoff(boolean resetBackoff) {
         this.resetBackoff = resetBackoff;
+        this.version = null;
     }
     
     /** gets the resetBackoff flag **/
@@ -183,6 +207,61 @@ public class Announcement {
         return resetBackoff;
     }
 
+    /** sets the version of the received announcement which the servlet acknowledges in its reply **/
+    public void setAcknowledgedVersion(final String acknowledgedVersion) {
+        this.acknowledgedVersion = acknowledgedVersion;
+    }
+
+    /** gets the version of the received announcement which the servlet acknowledges in its reply - null if none **/
+    public String getAcknowledgedVersion() {
+        return acknowledgedVersion;
+    }
+
+    /** sets the version of the last reply the client received **/
+    public void setReplyBaseVersion(final String replyBaseVersion) {
+        this.replyBaseVersion = replyBaseVersion;
+    }
+
+    /** gets the version of the last reply the client received - null if none **/
+    public String getReplyBaseVersion() {
+        return replyBaseVersion;
+    }
+
+    /**
+     * Returns the version of this announcement. For an announcement received
+     * from another instance this is the version assigned by its creator,
+     * otherwise it is calculated from the current content. The calculated
+     * version is kept until the content changes.
+     */
+    public String getVersion() throws JSONException {
+        if (version == null) {
+            version = calculateVersion();
+        }
+        return version;
+    }
+
+    /** calculates the version as the digest of the content, ignoring times and versions **/
+    private String calculateVersion() throws JSONException {
+        final String json = asJSONObject(true, false).toString();
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            final byte[] hash = digest.digest(json.getBytes("UTF-8"));
+            final StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (int i = 0; i < hash.length; i++) {
+                final String hex = Integer.toHexString(hash[i] & 0xff);
+                if (hex.length() == 1) {
+                    sb.append('0');
+                }
+                sb.append(hex);
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not available", e);
+        }
+    }
+
     /** Returns the loop flag - set when this announcement represents a loop detected in the topology connectors **/
     public boolean isLoop() {
         return loop;
@@ -196,6 +275,7 @@ public class Announcement {
     /** sets the information about the server where this announcement came from **/
     public void setServerInfo(final String serverInfo) {
         this.serverInfo = serverInfo;
+        this.version = null;
     }
 
     /** the information about the server where this announcement came from **/
@@ -219,6 +299,26 @@ public class Announcement {
     
     /** Convert this announcement into a json object **/
     private JSONObject asJSONObject(boolean filterTimes) throws JSONException {
+        return asJSONObject(filterTimes, true);
+    }
+
+    /** Convert this announcement into a json object **/
+    private JSONObject asJSONObject(boolean filterTimes, boolean includeVersions) throws JSONException {
+        JSONObject announcement = asJSONHeader(filterTimes, includeVersions);
+        if (localCluster!=null) {
+            announcement.put("localClusterView", asJSON(localCluster));
+        }
+        JSONArray incomingAnnouncements = new JSONArray();
+        for (Iterator<Announcement> it = incomings.iterator(); it.hasNext();) {
+            Announcement incoming = it.next();
+            incomingAnnouncements.put(incoming.asJSONObject(filterTimes, includeVersions));
+        }
+        announcement.put("topologyAnnouncements", incomingAnnouncements);
+        return announcement;
+    }
+
+    /** Convert the properties of this announcement, except the cluster view and the nested announcements, into a json object **/
+    private JSONObject asJSONHeader(boolean filterTimes, boolean includeVersions) throws JSONException {
         JSONObject announcement = new JSONObject();
         announcement.put("ownerId", ownerId);
         announcement.put("protocolVersion", protocolVersion);
@@ -227,6 +327,15 @@ public class Announcement {
         if (!filterTimes) {
             announcement.put("created", System.currentTimeMillis());
         }
+        if (includeVersions) {
+            announcement.put("version", getVersion());
+            if (acknowledgedVersion != null) {
+                announcement.put("acknowledgedVersion", acknowledgedVersion);
+            }
+            if (replyBaseVersion != null) {
+                announcement.put("replyBaseVersion", replyBaseVersion);
+            }
+        }
         announcement.put("inherited", inherited);
         if (loop) {
             announcement.put("loop", loop);
@@ -234,28 +343,94 @@ public class Announcement {
         if (serverInfo != null) {
             announcement.put("serverInfo", serverInfo);
         }
-        if (localCluster!=null) {
-            announcement.put("localClusterView", asJSON(localCluster));
-        }
         if (!filterTimes && backoffInterval>0) {
             announcement.put("backoffInterval", backoffInterval);
         }
         if (resetBackoff) {
             announcement.put("resetBackoff", resetBackoff);
         }
-        JSONArray incomingAnnouncements = new JSONArray();
+        return announcement;
+    }
+
+    /**
+     * Convert this announcement into a json delta against the given base
+     * announcement, which the receiving side must have acknowledged before.
+     * The local cluster view is only contained if it has changed, nested
+     * announcements which are also contained in the base with the same
+     * version are only referenced.
+     **/
+    public String asDeltaJSON(final Announcement base) throws JSONException {
+        final JSONObject announcement = asJSONHeader(false, true);
+        announcement.put("baseVersion", base.getVersion());
+        if (localCluster!=null) {
+            final JSONObject localClusterJSON = asJSON(localCluster);
+            if (base.localCluster==null ||
+                    !localClusterJSON.toString().equals(asJSON(base.localCluster).toString())) {
+                announcement.put("localClusterView", localClusterJSON);
+            }
+        }
+        final JSONArray incomingAnnouncements = new JSONArray();
         for (Iterator<Announcement> it = incomings.iterator(); it.hasNext();) {
-            Announcement incoming = it.next();
-            incomingAnnouncements.put(incoming.asJSONObject(filterTimes));
+            final Announcement incoming = it.next();
+            final String incomingVersion = incoming.getVersion();
+            if (base.getIncoming(incoming.getOwnerId(), incomingVersion) != null) {
+                final JSONObject reference = new JSONObject();
+                reference.put("ownerId", incoming.getOwnerId());
+                reference.put("version", incomingVersion);
+                reference.put("unchanged", true);
+                incomingAnnouncements.put(reference);
+            } else {
+                incomingAnnouncements.put(incoming.asJSONObject(false, true));
+            }
         }
         announcement.put("topologyAnnouncements", incomingAnnouncements);
-        return announcement;
+        return announcement.toString();
+    }
+
+    /** Returns the nested announcement with the given owner and version - or null if not contained **/
+    private Announcement getIncoming(final String ownerId, final String version) throws JSONException {
+        for (Iterator<Announcement> it = incomings.iterator(); it.hasNext();) {
+            final Announcement incoming = it.next();
+            if (incoming.getOwnerId().equals(ownerId) && incoming.getVersion().equals(version)) {
+                return incoming;
+            }
+        }
+        return null;
     }
 
     /** Create an announcement form json **/
     public static Announcement fromJSON(final String topologyAnnouncementJSON)
             throws JSONException {
-        JSONObject announcement = new JSONObject(topologyAnnouncementJSON);
+        final Announcement result = fromJSON(topologyAnnouncementJSON, null);
+        if (result == null) {
+            throw new JSONException("Received a delta announcement without a base announcement");
+        }
+        return result;
+    }
+
+    /**
+     * Create an announcement from json, which might be a delta against
+     * the given base announcement.
+     * @return the announcement or null if the json is a delta which can't be
+     * applied to the base announcement (or there is no base announcement)
+     */
+    public static Announcement fromJSON(final String topologyAnnouncementJSON, final Announcement base)
+            throws JSONException {
+        return fromJSONObject(new JSONObject(topologyAnnouncementJSON), base);
+    }
+
+    /** Create an announcement from json, which might be a delta against the base announcement **/
+    private static Announcement fromJSONObject(final JSONObject announcement, final Announcement base)
+            throws JSONException {
+        final Announcement deltaBase;
+        if (announcement.has("baseVersion")) {
+            if (base == null || !announcement.getString("baseVersion").equals(base.getVersion())) {
+                return null;
+            }
+            deltaBase = base;
+        } else {
+            deltaBase = null;
+        }
         final String ownerId = announcement.getString("ownerId");
         final int protocolVersion;
         if (!announcement.has("protocolVersion")) {
@@ -272,13 +447,26 @@ public class Announcement {
             boolean resetBackoff = announcement.getBoolean("resetBackoff");
             result.resetBackoff = resetBackoff;
         }
+        if (announcement.has("acknowledgedVersion")) {
+            result.acknowledgedVersion = announcement.getString("acknowledgedVersion");
+        }
+        if (announcement.has("replyBaseVersion")) {
+            result.replyBaseVersion = announcement.getString("replyBaseVersion");
+        }
         if (announcement.has("loop") && announcement.getBoolean("loop")) {
             result.setLoop(true);
+            result.version = announcement.optString("version", null);
             return result;
         }
-        final String localClusterViewJSON = announcement
-                .getString("localClusterView");
-        final ClusterView localClusterView = asClusterView(localClusterViewJSON);
+        final ClusterView localClusterView;
+        if (deltaBase != null && !announcement.has("localClusterView")) {
+            // unchanged
+            localClusterView = deltaBase.localCluster;
+        } else {
+            final String localClusterViewJSON = announcement
+                    .getString("localClusterView");
+            localClusterView = asClusterView(localClusterViewJSON);
+        }
         final JSONArray subAnnouncements = announcement
                 .getJSONArray("topologyAnnouncements");
 
@@ -292,12 +480,39 @@ public class Announcement {
         }
         result.setLocalCluster(localClusterView);
         for (int i = 0; i < subAnnouncements.length(); i++) {
-            String subAnnouncementJSON = subAnnouncements.getString(i);
-            result.addIncomingTopologyAnnouncement(fromJSON(subAnnouncementJSON));
+            final JSONObject subAnnouncement = subAnnouncements.getJSONObject(i);
+            if (deltaBase != null && subAnnouncement.optBoolean("unchanged")) {
+                final Announcement unchanged = deltaBase.getIncoming(
+                        subAnnouncement.getString("ownerId"), subAnnouncement.getString("version"));
+                if (unchanged == null) {
+                    return null;
+                }
+                result.addIncomingTopologyAnnouncement(unchanged);
+            } else {
+                result.addIncomingTopologyAnnouncement(fromJSONObject(subAnnouncement, null));
+            }
         }
+        // the version as assigned by the creator - set last as the setters reset it
+        result.version = announcement.optString("version", null);
         return result;
     }
 
+    /**
+     * Create a copy of this announcement which shares the cluster view and
+     * the nested announcements but is not affected by {@link #removeInherited(String)}
+     * or flag changes of this announcement. Used to keep the base of deltas.
+     */
+    public Announcement copy() throws JSONException {
+        final Announcement copy = new Announcement(ownerId, protocolVersion);
+        copy.localCluster = localCluster;
+        copy.incomings.addAll(incomings);
+        copy.inherited = inherited;
+        copy.serverInfo = serverInfo;
+        copy.loop = loop;
+        copy.version = getVersion();
+        return copy;
+    }
+
     /** create a clusterview from json **/
     private static ClusterView asClusterView(final String localClusterViewJSON)
             throws JSONException {
@@ -373,12 +588,14 @@ public class Announcement {
     /** sets the local clusterview **/
     public void setLocalCluster(ClusterView localCluster) {
         this.localCluster = localCluster;
+        this.version = null;
     }
 
     /** adds an incoming announcement to this announcement **/
     public void addIncomingTopologyAnnouncement(
             Announcement incomingTopologyAnnouncement) {
         incomings.add(incomingTopologyAnnouncement);
+        version = null;
     }
 
     /** Convert this announcement into json **/
@@ -439,6 +656,7 @@ public class Announcement {
                     && anIncomingAnnouncement.getOwnerId().equals(ownerId)) {
                 // then filter this
                 it.remove();
+                version = null;
             }
 
         }
@@ -451,8 +669,8 @@ public class Announcement {
      * introduced as part of SLING-3382
      */
     public boolean correspondsTo(Announcement announcement) throws JSONException {
-        final JSONObject myJson = asJSONObject(true);
-        final JSONObject otherJson = announcement.asJSONObject(true);
+        final JSONObject myJson = asJSONObject(true, false);
+        final JSONObject otherJson = announcement.asJSONObject(true, false);
         return myJson.toString().equals(otherJson.toString());
     }
 
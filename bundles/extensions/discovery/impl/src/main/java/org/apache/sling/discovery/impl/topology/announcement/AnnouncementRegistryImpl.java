@@ -276,7 +276,10 @@ public class AnnouncementRegistryImpl implements AnnouncementRegistry {
                 logger.debug("registerAnnouncement: got existing cached announcement for ownerId="+topologyAnnouncement.getOwnerId());
             }
             try{
-                if (topologyAnnouncement.correspondsTo(cachedAnnouncement.getAnnouncement())) {
+                // the versions match if the announcement was created from the same content,
+                // which avoids the json comparison for a stable connector
+                if (topologyAnnouncement.getVersion().equals(cachedAnnouncement.getAnnouncement().getVersion())
+                        || topologyAnnouncement.correspondsTo(cachedAnnouncement.getAnnouncement())) {
                     // then nothing has changed with this announcement, so just update
                     // the heartbeat and fine is.
                     // this should actually be the normal case for a stable connector
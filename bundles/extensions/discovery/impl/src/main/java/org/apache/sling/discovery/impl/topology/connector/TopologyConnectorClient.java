@@ -110,6 +110,15 @@ public class TopologyConnectorClient implements
 
     /** SLING-3382: unix-time at which point the backoff-period ends and pings can be sent again **/
     private long backoffPeriodEnd = -1;
+
+    /** the last announcement sent which the servlet acknowledged - base for sending a delta **/
+    private Announcement lastAcknowledgedAnnouncement;
+
+    /** the last reply received from the servlet - base for receiving a delta **/
+    private Announcement lastReplyAnnouncement;
+
+    /** whether the last request contained a delta announcement **/
+    private boolean lastRequestDelta;
     
     TopologyConnectorClient(final ClusterViewService clusterViewService,
             final AnnouncementRegistry announcementRegistry, final Config config,
@@ -139,17 +148,30 @@ public class TopologyConnectorClient implements
 
     /** ping the server and pass the announcements between the two **/
     void ping(final boolean force) {
+        if (!doPing(force)) {
+            // the servlet did not accept the delta announcement - send the full announcement
+            logger.debug("ping: delta announcement was rejected, sending full announcement");
+            doPing(force);
+        }
+    }
+
+    /**
+     * ping the server and pass the announcements between the two
+     * @return false if the servlet rejected the delta announcement and the ping
+     * should be repeated with the full announcement
+     **/
+    private boolean doPing(final boolean force) {
     	if (autoStopped) {
     		// then we suppress any further pings!
     		logger.debug("ping: autoStopped=true, hence suppressing any further pings.");
-    		return;
+    		return true;
     	}
     	if (force) {
     	    backoffPeriodEnd = -1;
     	} else if (backoffPeriodEnd>0) {
     	    if (System.currentTimeMillis()<backoffPeriodEnd) {
     	        logger.debug("ping: not issueing a heartbeat due to backoff instruction from peer.");
-    	        return;
+    	        return true;
     	    } else {
                 logger.debug("ping: backoff period ended, issuing another ping now.");
     	    }
@@ -169,6 +191,7 @@ public class TopologyConnectorClient implements
     			build());
 
         Announcement resultingAnnouncement = null;
+        boolean deltaRejected = false;
         try {
             String userInfo = connectorUrl.getUserInfo();
             if (userInfo != null) {
@@ -208,7 +231,19 @@ public class TopologyConnectorClient implements
                     return false;
                 }
             });
-            final String p = requestValidator.encodeMessage(topologyAnnouncement.asJSON());
+            if (lastReplyAnnouncement != null) {
+                // tell the servlet that it can send a delta against the last reply
+                topologyAnnouncement.setReplyBaseVersion(lastReplyAnnouncement.getVersion());
+            }
+            final String announcementJson;
+            if (lastAcknowledgedAnnouncement != null) {
+                announcementJson = topologyAnnouncement.asDeltaJSON(lastAcknowledgedAnnouncement);
+                lastRequestDelta = true;
+            } else {
+                announcementJson = topologyAnnouncement.asJSON();
+                lastRequestDelta = false;
+            }
+            final String p = requestValidator.encodeMessage(announcementJson);
             
             if (logger.isDebugEnabled()) {
                 logger.debug("ping: topologyAnnouncement json is: " + p);
@@ -256,7 +291,24 @@ public class TopologyConnectorClient implements
             	}
                 if (responseBody!=null && responseBody.length()>0) {
                     Announcement inheritedAnnouncement = Announcement
-                            .fromJSON(responseBody);
+                            .fromJSON(responseBody, lastReplyAnnouncement);
+                    if (inheritedAnnouncement == null) {
+                        // should not happen as the servlet only sends a delta against
+                        // the reply version we sent
+                        lastAcknowledgedAnnouncement = null;
+                        lastReplyAnnouncement = null;
+                        statusDetails = "received a delta announcement with an unknown base";
+                        return true;
+                    }
+                    // remember what the servlet has acknowledged and replied, for the next delta
+                    if (topologyAnnouncement.getVersion().equals(inheritedAnnouncement.getAcknowledgedVersion())) {
+                        lastAcknowledgedAnnouncement = topologyAnnouncement.copy();
+                    } else {
+                        lastAcknowledgedAnnouncement = null;
+                    }
+                    // only used for this ping, hence not kept in the announcement
+                    inheritedAnnouncement.setAcknowledgedVersion(null);
+                    lastReplyAnnouncement = inheritedAnnouncement.isLoop() ? null : inheritedAnnouncement.copy();
                     final long backoffInterval = inheritedAnnouncement.getBackoffInterval();
                     if (backoffInterval>0) {
                         // then reset the backoffPeriodEnd:
@@ -290,7 +342,7 @@ public class TopologyConnectorClient implements
 	                                    + inheritedAnnouncement);
                         	}
                             statusDetails = "receiving side is seeing me via another path (connector or cluster) already (loop)";
-                            return;
+                            return true;
                         }
                     }
                     resultingAnnouncement = inheritedAnnouncement;
@@ -298,7 +350,16 @@ public class TopologyConnectorClient implements
                 } else {
                     statusDetails = "no response body received";
                 }
+            } else if (lastStatusCode==HttpServletResponse.SC_CONFLICT && lastRequestDelta) {
+                // the servlet does not have the base of the delta (anymore)
+                lastAcknowledgedAnnouncement = null;
+                lastReplyAnnouncement = null;
+                deltaRejected = true;
+                resultingAnnouncement = lastInheritedAnnouncement;
+                statusDetails = "delta announcement rejected";
             } else {
+                lastAcknowledgedAnnouncement = null;
+                lastReplyAnnouncement = null;
                 statusDetails = "got HTTP Status-Code: "+lastStatusCode;
             }
         	// SLING-2882 : reset suppressPingWarnings_ flag in success case
@@ -330,6 +391,7 @@ public class TopologyConnectorClient implements
 				logger.error("disconnect: could not close httpClient: "+e, e);
 			}
         }
+        return !deltaRejected;
     }
 
 	private CloseableHttpClient createHttpClient() {
@@ -420,6 +482,11 @@ public class TopologyConnectorClient implements
     public String getLastResponseEncoding() {
         return lastResponseEncoding==null ? "" : lastResponseEncoding;
     }
+
+    /** whether the last request contained a delta announcement **/
+    boolean isLastRequestDelta() {
+        return lastRequestDelta;
+    }
     
     public String getRemoteSlingId() {
         if (lastInheritedAnnouncement == null) {
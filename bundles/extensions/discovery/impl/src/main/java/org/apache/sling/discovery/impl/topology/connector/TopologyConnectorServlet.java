@@ -24,8 +24,10 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
@@ -100,6 +102,23 @@ public class TopologyConnectorServlet extends HttpServlet {
 
     private TopologyRequestValidator requestValidator;
 
+    /** the bases for delta announcements per client **/
+    private final Map<String, DeltaBase> deltaBases = new ConcurrentHashMap<String, DeltaBase>();
+
+    /**
+     * The last announcement received from a client - as base for its delta
+     * announcements - and the last reply sent to it - as base for delta replies.
+     * It expires with the same timeout as the announcement of the client.
+     **/
+    private static final class DeltaBase {
+
+        volatile Announcement incoming;
+
+        volatile Announcement reply;
+
+        volatile long expires;
+    }
+
     @Activate
     protected void activate(final ComponentContext context) {
         whitelist.clear();
@@ -193,6 +212,7 @@ public class TopologyConnectorServlet extends HttpServlet {
         }
         final String selector = pathInfo.length==3 ? pathInfo[1] : "";
 
+        forgetDeltaBase(selector);
         announcementRegistry.unregisterAnnouncement(selector);
     }
     
@@ -221,10 +241,24 @@ public class TopologyConnectorServlet extends HttpServlet {
 	        logger.debug("doPost: incoming topology announcement is: "
 	                + topologyAnnouncementJSON);
     	}
+        removeExpiredDeltaBases();
+        final DeltaBase deltaBase = deltaBases.get(selector);
         final Announcement incomingTopologyAnnouncement;
         try {
             incomingTopologyAnnouncement = Announcement
-                    .fromJSON(topologyAnnouncementJSON);
+                    .fromJSON(topologyAnnouncementJSON, deltaBase == null ? null : deltaBase.incoming);
+            if (incomingTopologyAnnouncement == null) {
+                // a delta against an announcement which is not known (anymore),
+                // the client has to send the full announcement
+                logger.debug("doPut: received a delta announcement with an unknown base from {}", selector);
+                forgetDeltaBase(selector);
+                response.sendError(HttpServletResponse.SC_CONFLICT);
+                return;
+            }
+
+            // only used for this reply, hence not kept in the announcement
+            final String replyBaseVersion = incomingTopologyAnnouncement.getReplyBaseVersion();
+            incomingTopologyAnnouncement.setReplyBaseVersion(null);
 
             if (!incomingTopologyAnnouncement.getOwnerId().equals(selector)) {
                 response.sendError(HttpServletResponse.SC_BAD_REQUEST);
@@ -237,6 +271,8 @@ public class TopologyConnectorServlet extends HttpServlet {
             	logger.info("doPut: no slingId available. Service not ready as expected at the moment.");
             	return;
             }
+            // the announcement as received is the base for the next delta of the client
+            final Announcement incomingBase = incomingTopologyAnnouncement.copy();
 			incomingTopologyAnnouncement.removeInherited(slingId);
 
             final Announcement replyAnnouncement = new Announcement(
@@ -297,6 +333,8 @@ public class TopologyConnectorServlet extends HttpServlet {
                                     return true;
                                 }
                             });
+                    getDeltaBase(selector, backoffInterval).incoming = incomingBase;
+                    replyAnnouncement.setAcknowledgedVersion(incomingBase.getVersion());
                 }
             }
             if (backoffInterval>0) {
@@ -305,7 +343,21 @@ public class TopologyConnectorServlet extends HttpServlet {
                     logger.debug("doPost: backoffInterval for client set to "+replyAnnouncement.getBackoffInterval());
                 }
             }
-            final String p = requestValidator.encodeMessage(replyAnnouncement.asJSON());
+            final String replyJSON;
+            if (replyAnnouncement.isLoop()) {
+                forgetDeltaBase(selector);
+                replyJSON = replyAnnouncement.asJSON();
+            } else {
+                // send a delta if the client still has the last reply
+                final Announcement lastReply = (deltaBase == null ? null : deltaBase.reply);
+                if (lastReply != null && lastReply.getVersion().equals(replyBaseVersion)) {
+                    replyJSON = replyAnnouncement.asDeltaJSON(lastReply);
+                } else {
+                    replyJSON = replyAnnouncement.asJSON();
+                }
+                getDeltaBase(selector, backoffInterval).reply = replyAnnouncement.copy();
+            }
+            final String p = requestValidator.encodeMessage(replyJSON);
             requestValidator.trustMessage(response, request, p);
             // gzip the response if the client accepts this
             final String acceptEncodingHeader = request.getHeader("Accept-Encoding");
@@ -330,6 +382,38 @@ public class TopologyConnectorServlet extends HttpServlet {
 
     }
     
+    /** Forget the bases for delta announcements of the given client **/
+    private void forgetDeltaBase(final String slingId) {
+        deltaBases.remove(slingId);
+    }
+
+    /**
+     * Get the bases for delta announcements of the given client and extend
+     * their lifetime: like a cached announcement they expire after the
+     * heartbeat timeout, extended by the backoff interval of the client.
+     **/
+    private DeltaBase getDeltaBase(final String slingId, final long backoffInterval) {
+        DeltaBase deltaBase = deltaBases.get(slingId);
+        if (deltaBase == null) {
+            deltaBase = new DeltaBase();
+            deltaBases.put(slingId, deltaBase);
+        }
+        final long goodwill = config.getHeartbeatTimeout() - config.getHeartbeatInterval();
+        final long timeout = Math.max(config.getHeartbeatTimeout(), backoffInterval + goodwill);
+        deltaBase.expires = System.currentTimeMillis() + 1000 * timeout;
+        return deltaBase;
+    }
+
+    /** Remove the bases for delta announcements of clients which stopped sending heartbeats **/
+    private void removeExpiredDeltaBases() {
+        final long now = System.currentTimeMillis();
+        for (final Iterator<DeltaBase> it = deltaBases.values().iterator(); it.hasNext();) {
+            if (it.next().expires < now) {
+                it.remove();
+            }
+        }
+    }
+
     /** Checks if the provided request's remote server is whitelisted **/
     boolean isWhitelisted(final HttpServletRequest request) {
         if (config.isHmacEnabled()) {
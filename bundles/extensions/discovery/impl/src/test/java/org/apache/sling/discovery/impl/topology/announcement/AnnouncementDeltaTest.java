@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.discovery.impl.topology.announcement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.discovery.impl.common.DefaultClusterViewImpl;
+import org.apache.sling.discovery.impl.common.DefaultInstanceDescriptionImpl;
+import org.junit.Test;
+
+public class AnnouncementDeltaTest {
+
+    private Announcement createAnnouncement(final String slingId, final String propertyValue) {
+        final DefaultClusterViewImpl cluster = new DefaultClusterViewImpl(UUID.randomUUID().toString());
+        final Map<String, String> properties = new HashMap<String, String>();
+        properties.put("prop", propertyValue);
+        new DefaultInstanceDescriptionImpl(cluster, true, false, slingId, properties);
+        final Announcement announcement = new Announcement(slingId);
+        announcement.setLocalCluster(cluster);
+        return announcement;
+    }
+
+    /** simulates sending the announcement over the wire **/
+    private Announcement transfer(final Announcement announcement) throws JSONException {
+        return Announcement.fromJSON(announcement.asJSON());
+    }
+
+    @Test
+    public void testVersionIsKept() throws Exception {
+        final Announcement announcement = createAnnouncement("owner", "a");
+        announcement.addIncomingTopologyAnnouncement(createAnnouncement("nested", "b"));
+        final String version = announcement.getVersion();
+        assertNotNull(version);
+        assertEquals(version, announcement.getVersion());
+
+        final Announcement received = transfer(announcement);
+        assertEquals(version, received.getVersion());
+        assertTrue(received.correspondsTo(announcement));
+
+        // changing the content changes the version
+        received.setInherited(true);
+        assertFalse(version.equals(received.getVersion()));
+    }
+
+    @Test
+    public void testCalculatedVersionFollowsChanges() throws Exception {
+        final Announcement announcement = createAnnouncement("owner", "a");
+        final String version = announcement.getVersion();
+
+        announcement.addIncomingTopologyAnnouncement(createAnnouncement("nested", "b"));
+        final String nestedVersion = announcement.getVersion();
+        assertFalse(version.equals(nestedVersion));
+
+        announcement.setResetBackoff(true);
+        assertFalse(nestedVersion.equals(announcement.getVersion()));
+
+        announcement.setResetBackoff(false);
+        assertEquals(nestedVersion, announcement.getVersion());
+    }
+
+    @Test
+    public void testUnchangedDelta() throws Exception {
+        final Announcement base = createAnnouncement("owner", "a");
+        base.addIncomingTopologyAnnouncement(transfer(createAnnouncement("nested1", "b")));
+        base.addIncomingTopologyAnnouncement(transfer(createAnnouncement("nested2", "c")));
+        final Announcement receivedBase = transfer(base);
+
+        final Announcement next = base.copy();
+        final String delta = next.asDeltaJSON(base);
+        assertTrue(delta.length() < next.asJSON().length());
+        final JSONObject deltaJSON = new JSONObject(delta);
+        assertFalse(deltaJSON.has("localClusterView"));
+        assertTrue(deltaJSON.getJSONArray("topologyAnnouncements").getJSONObject(0).getBoolean("unchanged"));
+
+        final Announcement received = Announcement.fromJSON(delta, receivedBase);
+        assertNotNull(received);
+        assertEquals(base.getVersion(), received.getVersion());
+        assertTrue(received.correspondsTo(base));
+        assertEquals(3, received.listInstances().size());
+    }
+
+    @Test
+    public void testChangedDelta() throws Exception {
+        final Announcement nested1 = transfer(createAnnouncement("nested1", "b"));
+        final Announcement base = createAnnouncement("owner", "a");
+        base.addIncomingTopologyAnnouncement(nested1);
+        base.addIncomingTopologyAnnouncement(transfer(createAnnouncement("nested2", "c")));
+        final Announcement receivedBase = transfer(base);
+
+        final Announcement next = createAnnouncement("owner", "a2");
+        next.addIncomingTopologyAnnouncement(nested1);
+        next.addIncomingTopologyAnnouncement(transfer(createAnnouncement("nested2", "c2")));
+        next.addIncomingTopologyAnnouncement(transfer(createAnnouncement("nested3", "d")));
+
+        final JSONObject deltaJSON = new JSONObject(next.asDeltaJSON(base));
+        assertTrue(deltaJSON.has("localClusterView"));
+        assertTrue(deltaJSON.getJSONArray("topologyAnnouncements").getJSONObject(0).getBoolean("unchanged"));
+        assertFalse(deltaJSON.getJSONArray("topologyAnnouncements").getJSONObject(1).has("unchanged"));
+        assertFalse(deltaJSON.getJSONArray("topologyAnnouncements").getJSONObject(2).has("unchanged"));
+
+        final Announcement received = Announcement.fromJSON(deltaJSON.toString(), receivedBase);
+        assertNotNull(received);
+        assertEquals(next.getVersion(), received.getVersion());
+        assertTrue(received.correspondsTo(next));
+        assertEquals(4, received.listInstances().size());
+    }
+
+    @Test
+    public void testUnknownBase() throws Exception {
+        final Announcement base = createAnnouncement("owner", "a");
+        final String delta = createAnnouncement("owner", "a").asDeltaJSON(base);
+
+        assertNull(Announcement.fromJSON(delta, null));
+        assertNull(Announcement.fromJSON(delta, transfer(createAnnouncement("owner", "other"))));
+        try {
+            Announcement.fromJSON(delta);
+            fail("a delta must not be accepted without base");
+        } catch (JSONException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testRemoveInheritedChangesVersion() throws Exception {
+        final Announcement nested = createAnnouncement("nested", "b");
+        nested.setInherited(true);
+        final Announcement announcement = createAnnouncement("owner", "a");
+        announcement.addIncomingTopologyAnnouncement(nested);
+        final Announcement received = transfer(announcement);
+        final Announcement copy = received.copy();
+
+        received.removeInherited("nested");
+        assertFalse(copy.getVersion().equals(received.getVersion()));
+        assertEquals(announcement.getVersion(), copy.getVersion());
+        assertEquals(2, copy.listInstances().size());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.discovery.impl.topology.connector;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.sling.discovery.impl.setup.Instance;
+import org.apache.sling.discovery.impl.topology.TopologyTestHelper;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Runs a chain of instances within this jvm and checks that the
+ * topology connectors switch to delta announcements once stable.
+ */
+public class TopologyConnectorDeltaTest {
+
+    private final List<Instance> instances = new LinkedList<Instance>();
+
+    @After
+    public void tearDown() throws Exception {
+        for (Iterator<Instance> it = instances.iterator(); it.hasNext();) {
+            final Instance instance = it.next();
+            instance.stop();
+        }
+    }
+
+    private TopologyConnectorClient connect(final Instance from, final Instance to) throws Throwable {
+        to.startJetty();
+        return (TopologyConnectorClient) from.connectTo("http://localhost:"+to.getJettyPort()+"/system/console/topology/connector");
+    }
+
+    private void runHeartbeats() {
+        for (Iterator<Instance> it = instances.iterator(); it.hasNext();) {
+            it.next().runHeartbeatOnce();
+        }
+    }
+
+    @Test
+    public void testDeltaAnnouncements() throws Throwable {
+        final Instance instance1 = TopologyTestHelper.createInstance(instances, "instance1");
+        final Instance instance2 = TopologyTestHelper.createInstance(instances, "instance2");
+        final Instance instance3 = TopologyTestHelper.createInstance(instances, "instance3");
+
+        final TopologyConnectorClient client1 = connect(instance1, instance2);
+        final TopologyConnectorClient client3 = connect(instance3, instance2);
+        // the first ping always sends the full announcement
+        assertFalse(client1.isLastRequestDelta());
+        assertFalse(client3.isLastRequestDelta());
+
+        for (int i = 0; i < 3; i++) {
+            runHeartbeats();
+        }
+        assertTrue(client1.isLastRequestDelta());
+        assertTrue(client3.isLastRequestDelta());
+        assertTrue(client1.isConnected());
+        assertTrue(client3.isConnected());
+        TopologyTestHelper.assertTopologyConsistsOf(instance1.getDiscoveryService().getTopology(),
+                instance1.getSlingId(), instance2.getSlingId(), instance3.getSlingId());
+        TopologyTestHelper.assertTopologyConsistsOf(instance3.getDiscoveryService().getTopology(),
+                instance1.getSlingId(), instance2.getSlingId(), instance3.getSlingId());
+
+        // a change behind instance3 must be propagated through the deltas
+        final Instance instance4 = TopologyTestHelper.createInstance(instances, "instance4");
+        connect(instance4, instance3);
+        for (int i = 0; i < 3; i++) {
+            runHeartbeats();
+        }
+        assertTrue(client1.isLastRequestDelta());
+        assertTrue(client1.isConnected());
+        TopologyTestHelper.assertTopologyConsistsOf(instance1.getDiscoveryService().getTopology(),
+                instance1.getSlingId(), instance2.getSlingId(), instance3.getSlingId(), instance4.getSlingId());
+    }
+}
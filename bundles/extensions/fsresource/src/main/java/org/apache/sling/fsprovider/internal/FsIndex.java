@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.fsprovider.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The <code>FsIndex</code> keeps the attributes and the children of the
+ * files and folders read by the provider in memory, including the ones
+ * which do not exist. Entries are read on demand with a single
+ * <code>Files.readAttributes</code> call and are dropped whenever the
+ * {@link WatchingFileMonitor} reports a change of the file or of one of
+ * its children.
+ * <p>
+ * Entries are sorted by their path, so the entries below a folder are
+ * dropped without looking at all other entries. As folders which could
+ * not be watched do not report their changes, entries are read again once
+ * their time to live is over. If the index grows beyond its maximum size,
+ * the least recently used entries are dropped.
+ * <p>
+ * The index is only used together with the watching monitor, as only this
+ * monitor reports all changes independent of the event admin.
+ */
+public class FsIndex {
+
+    /** The default maximum number of entries. */
+    static final int DEFAULT_MAX_ENTRIES = 50000;
+
+    /** The share of the entries dropped if the index is full, in percent. */
+    private static final int EVICTION_PERCENT = 10;
+
+    private static final String[] NO_CHILDREN = new String[0];
+
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<String, Entry>();
+
+    /** The number of entries, as the size of the map is not constant time. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** Incremented on each change, to not cache entries read before the change. */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** Only one thread drops the least recently used entries. */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final long timeToLive;
+
+    private final int maxEntries;
+
+    /**
+     * @param timeToLive The time in milliseconds after which an entry is read again.
+     * @param maxEntries The maximum number of entries.
+     */
+    public FsIndex(final long timeToLive, final int maxEntries) {
+        this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get the entry for the file.
+     */
+    public Entry get(final File file) {
+        final String key = file.getPath();
+        final long now = System.nanoTime();
+        Entry entry = this.entries.get(key);
+        if ( entry == null || now - entry.expires >= 0 ) {
+            final long gen = this.generation.get();
+            entry = Entry.read(file, now + this.timeToLive);
+            entry.lastAccess = now;
+            this.put(key, entry, gen);
+        } else {
+            entry.lastAccess = now;
+        }
+        return entry;
+    }
+
+    /**
+     * Get the names of the children of a folder.
+     */
+    public String[] getChildren(final File dir, final Entry entry) {
+        String[] children = entry.children;
+        if ( children == null ) {
+            final long gen = this.generation.get();
+            children = dir.list();
+            if ( children == null ) {
+                children = NO_CHILDREN;
+            }
+            if ( this.generation.get() == gen ) {
+                entry.children = children;
+            }
+        }
+        return children;
+    }
+
+    /**
+     * The number of entries.
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    private void put(final String key, final Entry entry, final long gen) {
+        if ( this.generation.get() == gen ) {
+            if ( this.entries.put(key, entry) == null ) {
+                if ( this.size.incrementAndGet() > this.maxEntries ) {
+                    this.evict();
+                }
+            }
+            // the file might have changed while putting the entry
+            if ( this.generation.get() != gen ) {
+                this.remove(key, entry);
+            }
+        }
+    }
+
+    private void remove(final String key) {
+        if ( this.entries.remove(key) != null ) {
+            this.size.decrementAndGet();
+        }
+    }
+
+    private void remove(final String key, final Entry entry) {
+        if ( this.entries.remove(key, entry) ) {
+            this.size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Drop the least recently used entries.
+     */
+    private void evict() {
+        if ( !this.evictionLock.tryLock() ) {
+            // another thread is already evicting
+            return;
+        }
+        try {
+            final int count = this.size.get();
+            if ( count <= this.maxEntries ) {
+                return;
+            }
+            long[] accessTimes = new long[count];
+            int n = 0;
+            for(final Entry entry : this.entries.values()) {
+                if ( n == accessTimes.length ) {
+                    break;
+                }
+                accessTimes[n++] = entry.lastAccess;
+            }
+            accessTimes = Arrays.copyOf(accessTimes, n);
+            Arrays.sort(accessTimes);
+            final int drop = Math.max(count - this.maxEntries, this.maxEntries * EVICTION_PERCENT / 100);
+            if ( n == 0 || drop <= 0 ) {
+                return;
+            }
+            final long threshold = accessTimes[Math.min(drop, n) - 1];
+            for(final Map.Entry<String, Entry> e : this.entries.entrySet()) {
+                if ( e.getValue().lastAccess - threshold <= 0 ) {
+                    this.remove(e.getKey(), e.getValue());
+                }
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Drop the entries of a changed file or folder and its parent.
+     * @param file The changed file
+     * @param tree Whether the entries below the file should be dropped as well
+     */
+    public void invalidate(final File file, final boolean tree) {
+        this.generation.incrementAndGet();
+        final String key = file.getPath();
+        final Entry entry = this.entries.get(key);
+        this.remove(key);
+        if ( tree || (entry != null && entry.directory) ) {
+            // drop the entries below an added, removed or replaced folder
+            final String prefix = key + File.separatorChar;
+            final ConcurrentNavigableMap<String, Entry> below = this.entries.subMap(prefix, prefix + Character.MAX_VALUE);
+            final Iterator<Map.Entry<String, Entry>> iter = below.entrySet().iterator();
+            while ( iter.hasNext() ) {
+                final Map.Entry<String, Entry> e = iter.next();
+                this.remove(e.getKey(), e.getValue());
+            }
+        }
+        final File parent = file.getParentFile();
+        if ( parent != null ) {
+            this.remove(parent.getPath());
+        }
+    }
+
+    /**
+     * The cached attributes of a file or folder.
+     */
+    public static final class Entry {
+
+        public final boolean exists;
+
+        public final boolean directory;
+
+        public final long size;
+
+        public final long lastModified;
+
+        /** The time in nanoseconds after which the entry is read again. */
+        final long expires;
+
+        /** The time in nanoseconds of the last access. */
+        volatile long lastAccess;
+
+        /** The names of the children of a folder, read on demand. */
+        volatile String[] children;
+
+        /**
+         * The file mapped into memory, shared by all users of the entry.
+         * The mapping is released by the garbage collector once the entry
+         * has been dropped and the buffers are no longer used.
+         */
+        private volatile ByteBuffer mapping;
+
+        private Entry(final boolean exists, final boolean directory, final long size, final long lastModified,
+                final long expires) {
+            this.exists = exists;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        /**
+         * Get a read only buffer with the content of the file, mapped into
+         * memory on the first call.
+         */
+        public ByteBuffer map(final File file) throws IOException {
+            ByteBuffer buffer = this.mapping;
+            if ( buffer == null ) {
+                final RandomAccessFile raf = new RandomAccessFile(file, "r");
+                try {
+                    final FileChannel channel = raf.getChannel();
+                    if ( channel.size() > Integer.MAX_VALUE ) {
+                        throw new IOException("File is too large to be mapped: " + channel.size());
+                    }
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } finally {
+                    raf.close();
+                }
+                this.mapping = buffer;
+            }
+            // users get their own position and limit
+            return buffer.asReadOnlyBuffer();
+        }
+
+        static Entry read(final File file, final long expires) {
+            try {
+                final BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                return new Entry(true, attrs.isDirectory(), attrs.size(), attrs.lastModifiedTime().toMillis(), expires);
+            } catch (final NoSuchFileException nsfe) {
+                return new Entry(false, false, 0, 0, expires);
+            } catch (final IOException ioe) {
+                return readFile(file, expires);
+            } catch (final InvalidPathException ipe) {
+                return readFile(file, expires);
+            }
+        }
+
+        private static Entry readFile(final File file, final long expires) {
+            if ( !file.exists() ) {
+                return new Entry(false, false, 0, 0, expires);
+            }
+            return new Entry(true, file.isDirectory(), file.length(), file.lastModified(), expires);
+        }
+    }
+}
@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
@@ -45,7 +47,8 @@ import org.slf4j.LoggerFactory;
  */
 @Adaptable(adaptableClass=Resource.class, adapters={
     @Adapter({File.class, URL.class}),
-    @Adapter(condition="If the resource is an FsResource and is a readable file.", value=InputStream.class)
+    @Adapter(condition="If the resource is an FsResource and is a readable file.", value=InputStream.class),
+    @Adapter(condition="If the resource is an FsResource and is a readable file.", value=ByteBuffer.class)
 })
 public class FsResource extends AbstractResource {
 
@@ -73,6 +76,9 @@ public class FsResource extends AbstractResource {
     // the file wrapped by this instance
     private final File file;
 
+    // the cached attributes of the file, might be null
+    private final FsIndex.Entry attributes;
+
     // the resource type, assigned on demand
     private String resourceType;
 
@@ -87,9 +93,22 @@ public class FsResource extends AbstractResource {
      * @param file The wrapped file
      */
     FsResource(ResourceResolver resolver, String resourcePath, File file) {
+        this(resolver, resourcePath, file, null);
+    }
+
+    /**
+     * Creates an instance of this Filesystem resource.
+     *
+     * @param resolver The owning resource resolver
+     * @param resourcePath The resource path in the resource tree
+     * @param file The wrapped file
+     * @param attributes The cached attributes of the file or <code>null</code>
+     */
+    FsResource(ResourceResolver resolver, String resourcePath, File file, FsIndex.Entry attributes) {
         this.resolver = resolver;
         this.resourcePath = resourcePath;
         this.file = file;
+        this.attributes = attributes;
     }
 
     /**
@@ -107,10 +126,10 @@ public class FsResource extends AbstractResource {
     public ResourceMetadata getResourceMetadata() {
         if (metaData == null) {
             metaData = new ResourceMetadata();
-            metaData.setContentLength(file.length());
-            metaData.setModificationTime(file.lastModified());
+            metaData.setContentLength(attributes != null ? attributes.size : file.length());
+            metaData.setModificationTime(lastModified());
             metaData.setResolutionPath(resourcePath);
-            if ( this.file.isDirectory() ) {
+            if ( isDirectory() ) {
                 metaData.put(ResourceMetadata.INTERNAL_CONTINUE_RESOLVING, Boolean.TRUE);
             }
         }
@@ -139,7 +158,8 @@ public class FsResource extends AbstractResource {
      */
     public String getResourceType() {
         if (resourceType == null) {
-            resourceType = file.isFile()
+            final boolean isFile = attributes != null ? !attributes.directory : file.isFile();
+            resourceType = isFile
                     ? RESOURCE_TYPE_FILE
                             : RESOURCE_TYPE_FOLDER;
         }
@@ -177,6 +197,24 @@ public class FsResource extends AbstractResource {
 
             }
 
+        } else if (type == ByteBuffer.class) {
+
+            if (!isDirectory() && file.canRead()) {
+
+                try {
+                    return (AdapterType) map();
+                } catch (IOException ioe) {
+                    getLog().info(
+                            "adaptTo: Cannot map the file " + file,
+                            ioe);
+                }
+
+            } else {
+
+                getLog().debug("adaptTo: File {} is not a readable file", file);
+
+            }
+
         } else if (type == URL.class) {
 
             try {
@@ -196,7 +234,7 @@ public class FsResource extends AbstractResource {
                 props.put("jcr:primaryType", getResourceType());
                 props.put("jcr:createdBy", "system");
                 Calendar lastModifed = Calendar.getInstance();
-                lastModifed.setTimeInMillis(file.lastModified());
+                lastModifed.setTimeInMillis(lastModified());
                 props.put("jcr:created", lastModifed);
                 return (AdapterType) new ValueMapDecorator(props);
             }
@@ -208,6 +246,27 @@ public class FsResource extends AbstractResource {
 
     // ---------- internal
 
+    private boolean isDirectory() {
+        return attributes != null ? attributes.directory : file.isDirectory();
+    }
+
+    private long lastModified() {
+        return attributes != null ? attributes.lastModified : file.lastModified();
+    }
+
+    /**
+     * Map the file read only into memory. The mapping is shared by all
+     * resources of the cached file. Without cached attributes the file is
+     * read into a heap buffer instead, as there is nothing a mapping could
+     * be shared with and released together.
+     */
+    private ByteBuffer map() throws IOException {
+        if ( attributes != null ) {
+            return attributes.map(file);
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file.toPath())).asReadOnlyBuffer();
+    }
+
     private Logger getLog() {
         if (log == null) {
             log = LoggerFactory.getLogger(getClass());
@@ -96,6 +96,12 @@ public class FsResourceProvider implements ResourceProvider {
     /** The monitor to detect file changes. */
     private FileMonitor monitor;
 
+    /** The monitor to detect file changes if the file system supports watching. */
+    private WatchingFileMonitor watcher;
+
+    /** The cached files and folders, only used together with the watcher. */
+    private volatile FsIndex index;
+
     @Reference(cardinality=ReferenceCardinality.OPTIONAL_UNARY, policy=ReferencePolicy.DYNAMIC)
     private volatile EventAdmin eventAdmin;
 
@@ -159,6 +165,11 @@ public class FsResourceProvider implements ResourceProvider {
             }
         }
 
+        final FsIndex index = this.index;
+        if (index != null) {
+            return listChildren(parent, parentFile, index);
+        }
+
         final File[] children = parentFile.listFiles();
 
         if (children != null && children.length > 0) {
@@ -207,6 +218,59 @@ public class FsResourceProvider implements ResourceProvider {
         return null;
     }
 
+    /**
+     * Returns an iterator of the resources for the indexed children of the folder.
+     */
+    private Iterator<Resource> listChildren(final Resource parent, final File parentFile, final FsIndex index) {
+        final FsIndex.Entry entry = index.get(parentFile);
+        if (!entry.directory) {
+            return null;
+        }
+        final String[] children = index.getChildren(parentFile, entry);
+        if (children.length == 0) {
+            return null;
+        }
+
+        final ResourceResolver resolver = parent.getResourceResolver();
+        final String parentPath = parent.getPath();
+        return new Iterator<Resource>() {
+            int index = 0;
+
+            Resource next = seek();
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public Resource next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                Resource result = next;
+                next = seek();
+                return result;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("remove");
+            }
+
+            private Resource seek() {
+                while (index < children.length) {
+                    final String name = children[index++];
+                    Resource result = getResource(resolver, parentPath + "/" + name, new File(parentFile, name));
+                    if (result != null) {
+                        return result;
+                    }
+                }
+
+                // nothing found any more
+                return null;
+            }
+        };
+    }
+
     // ---------- SCR Integration
 
     protected void activate(BundleContext bundleContext, Map<?, ?> props) {
@@ -231,11 +295,23 @@ public class FsResourceProvider implements ResourceProvider {
             checkInterval = (Long)interval;
         }
         if ( checkInterval > 100 ) {
-            this.monitor = new FileMonitor(this, checkInterval);
+            // entries of folders which could not be watched expire like a polling check
+            this.index = new FsIndex(checkInterval, FsIndex.DEFAULT_MAX_ENTRIES);
+            this.watcher = WatchingFileMonitor.create(this, checkInterval);
+            if ( this.watcher == null ) {
+                // without watching, changes are not reliably detected
+                this.index = null;
+                this.monitor = new FileMonitor(this, checkInterval);
+            }
         }
     }
 
     protected void deactivate() {
+        if ( this.watcher != null ) {
+            this.watcher.stop();
+            this.watcher = null;
+        }
+        this.index = null;
         if ( this.monitor != null ) {
             this.monitor.stop();
             this.monitor = null;
@@ -257,6 +333,18 @@ public class FsResourceProvider implements ResourceProvider {
         return this.providerRoot;
     }
 
+    /**
+     * Called by the watcher for each changed file or folder.
+     * @param file The changed file
+     * @param tree Whether the entries below the file should be dropped as well
+     */
+    void fileChanged(final File file, final boolean tree) {
+        final FsIndex index = this.index;
+        if ( index != null ) {
+            index.invalidate(file, tree);
+        }
+    }
+
     // ---------- internal
 
     private File getProviderFile(String providerFileName,
@@ -312,6 +400,12 @@ public class FsResourceProvider implements ResourceProvider {
 
         if (file != null) {
 
+            final FsIndex index = this.index;
+            if (index != null) {
+                final FsIndex.Entry entry = index.get(file);
+                return entry.exists ? new FsResource(resourceResolver, resourcePath, file, entry) : null;
+            }
+
             // if the file exists, but is not a directory or no repository entry
             // exists, return it as a resource
             if (file.exists()) {
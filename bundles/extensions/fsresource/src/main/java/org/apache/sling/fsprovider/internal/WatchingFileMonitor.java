@@ -0,0 +1,437 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.fsprovider.internal;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.SlingConstants;
+import org.osgi.service.event.EventAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is a monitor for the file system using a
+ * {@link WatchService}. Instead of periodically scanning the whole tree,
+ * all directories are registered with the watch service and only the
+ * reported changes are processed.
+ * <p>
+ * Changes are collected until no further change has been reported for
+ * a short time, so a burst of changes to the same file results in a
+ * single event. Changes are sent at the latest after the check interval
+ * though, even if the file system never gets quiet. The events sent are
+ * the same as the ones sent by the polling {@link FileMonitor}.
+ * <p>
+ * Files and folders created in a new folder before it is registered with
+ * the watch service are found by scanning the new folder. If the watch
+ * service lost events of a folder, the folder is scanned for new and
+ * removed sub folders.
+ */
+public class WatchingFileMonitor implements Runnable {
+
+    /** The logger. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatchingFileMonitor.class);
+
+    /** The maximum time in milliseconds to wait for further changes. */
+    private static final long COALESCE_DELAY = 100;
+
+    private final FsResourceProvider provider;
+
+    private final WatchService watcher;
+
+    /** The root file or folder. */
+    private final Path root;
+
+    /** If the provider root is a file, only this name is watched in its directory. */
+    private final Path rootFileName;
+
+    /** The watched directories. */
+    private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+
+    private final Map<Path, WatchKey> directories = new HashMap<Path, WatchKey>();
+
+    private final long coalesceDelay;
+
+    /** The maximum time in milliseconds changes are collected. */
+    private final long maxDelay;
+
+    private final Thread thread;
+
+    /**
+     * Create and start a monitor.
+     * @param provider The resource provider.
+     * @param interval The check interval of the provider, in milliseconds. This
+     *                 is the maximum time changes are collected.
+     * @return The monitor or <code>null</code> if the file system does not support
+     *         watching for changes.
+     */
+    public static WatchingFileMonitor create(final FsResourceProvider provider, final long interval) {
+        WatchService watcher = null;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            return new WatchingFileMonitor(provider, watcher, interval);
+        } catch (final UnsupportedOperationException uoe) {
+            LOGGER.debug("File system does not support watching for changes.", uoe);
+        } catch (final IOException ioe) {
+            LOGGER.info("Unable to watch " + provider.getRootFile() + " for changes. Falling back to polling.", ioe);
+        }
+        if ( watcher != null ) {
+            try {
+                watcher.close();
+            } catch (final IOException ignore) {
+                // ignore
+            }
+        }
+        return null;
+    }
+
+    private WatchingFileMonitor(final FsResourceProvider provider,
+            final WatchService watcher,
+            final long interval)
+    throws IOException {
+        this.provider = provider;
+        this.watcher = watcher;
+        this.coalesceDelay = Math.min(interval, COALESCE_DELAY);
+        this.maxDelay = interval;
+        final File rootFile = provider.getRootFile();
+        this.root = rootFile.toPath();
+        if ( rootFile.isDirectory() ) {
+            this.rootFileName = null;
+            this.registerAll(this.root);
+        } else {
+            this.rootFileName = this.root.getFileName();
+            this.register(this.root.getParent());
+        }
+        LOGGER.debug("Starting file watcher for {}", rootFile);
+        this.thread = new Thread(this, "Apache Sling Filesystem Resource Monitor " + provider.getProviderRoot());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stop watching and wait for the watcher thread to finish.
+     */
+    void stop() {
+        try {
+            this.watcher.close();
+        } catch (final IOException ioe) {
+            LOGGER.debug("Unable to close watch service", ioe);
+        }
+        boolean interrupted = false;
+        while ( this.thread.isAlive() ) {
+            try {
+                this.thread.join();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        LOGGER.debug("Stopped file watcher for {}", this.root);
+    }
+
+    private void register(final Path dir) throws IOException {
+        final WatchKey key = dir.register(this.watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        this.keys.put(key, dir);
+        this.directories.put(dir, key);
+    }
+
+    private void registerAll(final Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+            throws IOException {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Register the folders below the start folder which are not watched yet.
+     * Their files and folders might have been created before the registration,
+     * so they are reported as added. Folders already watched are skipped as
+     * their changes are reported by the watch service.
+     */
+    private void registerNew(final Path start, final Map<Path, Change> changes) throws IOException {
+        final Set<Path> added = new HashSet<Path>();
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+            throws IOException {
+                if ( directories.containsKey(dir) ) {
+                    return dir.equals(start) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+                register(dir);
+                added.add(dir);
+                addChange(changes, dir, Change.ADDED, true);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if ( added.contains(file.getParent()) ) {
+                    addChange(changes, file, Change.ADDED, false);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+                // removed in the meantime
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Events of the folder got lost: scan it for new and removed sub folders
+     * and report a change of the whole folder.
+     */
+    private void rescan(final Path dir, final Map<Path, Change> changes) {
+        LOGGER.debug("Missed changes in {}", dir);
+        final List<Path> removed = new ArrayList<Path>();
+        for(final Path path : this.directories.keySet()) {
+            if ( dir.equals(path.getParent()) && !Files.isDirectory(path) ) {
+                removed.add(path);
+            }
+        }
+        for(final Path path : removed) {
+            this.unregisterAll(path);
+            this.addChange(changes, path, Change.REMOVED, true);
+        }
+        try {
+            this.registerNew(dir, changes);
+        } catch (final IOException ioe) {
+            LOGGER.debug("Unable to scan " + dir, ioe);
+        }
+        // any file of the folder might have changed
+        this.provider.fileChanged(dir.toFile(), true);
+        this.addChange(changes, dir, Change.CHANGED, true);
+    }
+
+    private void unregisterAll(final Path start) {
+        final Iterator<Map.Entry<Path, WatchKey>> iter = this.directories.entrySet().iterator();
+        while ( iter.hasNext() ) {
+            final Map.Entry<Path, WatchKey> entry = iter.next();
+            if ( entry.getKey().startsWith(start) ) {
+                entry.getValue().cancel();
+                this.keys.remove(entry.getValue());
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+        final Map<Path, Change> changes = new LinkedHashMap<Path, Change>();
+        try {
+            while ( true ) {
+                WatchKey key = this.watcher.take();
+                // collect all changes of a burst, but not longer than the maximum delay
+                final long end = System.currentTimeMillis() + this.maxDelay;
+                while ( key != null ) {
+                    this.collect(key, changes);
+                    final long remaining = end - System.currentTimeMillis();
+                    if ( remaining <= 0 ) {
+                        break;
+                    }
+                    key = this.watcher.poll(Math.min(this.coalesceDelay, remaining), TimeUnit.MILLISECONDS);
+                }
+                this.sendEvents(changes);
+                changes.clear();
+            }
+        } catch (final ClosedWatchServiceException cwse) {
+            // stopped
+        } catch (final InterruptedException ie) {
+            // stopped
+        }
+    }
+
+    /**
+     * Collect the changes reported for a directory.
+     */
+    private void collect(final WatchKey key, final Map<Path, Change> changes) {
+        final Path dir = this.keys.get(key);
+        for(final WatchEvent<?> event : key.pollEvents()) {
+            if ( dir == null ) {
+                continue;
+            }
+            if ( event.kind() == OVERFLOW ) {
+                if ( this.rootFileName != null ) {
+                    this.addChange(changes, this.root, Change.CHANGED, false);
+                } else {
+                    this.rescan(dir, changes);
+                }
+                continue;
+            }
+            final Path path = dir.resolve((Path)event.context());
+            if ( this.rootFileName != null && !path.equals(this.root) ) {
+                continue;
+            }
+            if ( event.kind() == ENTRY_CREATE ) {
+                final boolean isDir = Files.isDirectory(path);
+                this.addChange(changes, path, Change.ADDED, isDir);
+                if ( isDir ) {
+                    try {
+                        this.registerNew(path, changes);
+                    } catch (final IOException ioe) {
+                        LOGGER.debug("Unable to watch " + path, ioe);
+                    }
+                }
+            } else if ( event.kind() == ENTRY_DELETE ) {
+                final boolean isDir = this.directories.containsKey(path);
+                if ( isDir ) {
+                    this.unregisterAll(path);
+                }
+                this.addChange(changes, path, Change.REMOVED, isDir);
+            } else {
+                this.addChange(changes, path, Change.CHANGED, Files.isDirectory(path));
+            }
+            // the parent directory changes with the list of its children
+            if ( event.kind() != ENTRY_MODIFY && this.rootFileName == null ) {
+                this.addChange(changes, dir, Change.CHANGED, true);
+            }
+        }
+        if ( !key.reset() ) {
+            // the directory is removed from the directories once
+            // the removal is reported for the parent directory
+            this.keys.remove(key);
+            if ( dir != null && dir.equals(this.root) ) {
+                // the parent of the root folder is not watched
+                this.directories.remove(dir);
+                this.addChange(changes, dir, Change.REMOVED, true);
+            }
+        }
+    }
+
+    /**
+     * Add a change, merging it with a previous change of the same path.
+     */
+    private void addChange(final Map<Path, Change> changes, final Path path, final int type, final boolean isDir) {
+        // a new or removed folder might have cached entries below it
+        this.provider.fileChanged(path.toFile(), isDir && type != Change.CHANGED);
+        final Change previous = changes.get(path);
+        if ( previous == null ) {
+            changes.put(path, new Change(type, isDir));
+        } else {
+            previous.isDir = isDir;
+            if ( previous.type == Change.ADDED ) {
+                if ( type == Change.REMOVED ) {
+                    // never seen
+                    changes.remove(path);
+                }
+            } else if ( previous.type == Change.REMOVED ) {
+                if ( type == Change.ADDED ) {
+                    previous.type = Change.CHANGED;
+                }
+            } else {
+                if ( type == Change.REMOVED ) {
+                    previous.type = Change.REMOVED;
+                }
+            }
+        }
+    }
+
+    private void sendEvents(final Map<Path, Change> changes) {
+        // if we don't have an event admin, we just skip the events
+        final EventAdmin localEA = this.provider.getEventAdmin();
+        if ( localEA == null ) {
+            return;
+        }
+        for(final Map.Entry<Path, Change> entry : changes.entrySet()) {
+            final Change change = entry.getValue();
+            final String topic;
+            if ( change.type == Change.ADDED ) {
+                topic = SlingConstants.TOPIC_RESOURCE_ADDED;
+            } else if ( change.type == Change.REMOVED ) {
+                topic = SlingConstants.TOPIC_RESOURCE_REMOVED;
+            } else {
+                topic = SlingConstants.TOPIC_RESOURCE_CHANGED;
+            }
+            final String path = this.getResourcePath(entry.getKey());
+            if ( LOGGER.isDebugEnabled() ) {
+                LOGGER.debug("Detected change for resource {} : {}", path, topic);
+            }
+
+            final Dictionary<String, String> properties = new Hashtable<String, String>();
+            properties.put(SlingConstants.PROPERTY_PATH, path);
+            properties.put(SlingConstants.PROPERTY_RESOURCE_TYPE,
+                    change.isDir ? FsResource.RESOURCE_TYPE_FOLDER : FsResource.RESOURCE_TYPE_FILE);
+            localEA.postEvent(new org.osgi.service.event.Event(topic, properties));
+        }
+    }
+
+    private String getResourcePath(final Path path) {
+        if ( path.equals(this.root) ) {
+            return this.provider.getProviderRoot();
+        }
+        final StringBuilder sb = new StringBuilder(this.provider.getProviderRoot());
+        for(final Path segment : this.root.relativize(path)) {
+            sb.append('/').append(segment.toString());
+        }
+        return sb.toString();
+    }
+
+    /** A collected change of a file or folder. */
+    private static final class Change {
+        static final int ADDED = 0;
+        static final int CHANGED = 1;
+        static final int REMOVED = 2;
+
+        int type;
+        boolean isDir;
+
+        Change(final int type, final boolean isDir) {
+            this.type = type;
+            this.isDir = isDir;
+        }
+    }
+}
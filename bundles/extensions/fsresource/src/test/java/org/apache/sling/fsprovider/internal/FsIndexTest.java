@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.fsprovider.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FsIndexTest {
+
+    private static final long TIME_TO_LIVE = 60000;
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("fsindex", null);
+        root.delete();
+        root.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if ( children != null ) {
+            for(final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File write(final File file, final String content) throws IOException {
+        file.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testCachedUntilInvalidated() throws IOException {
+        final FsIndex index = new FsIndex(TIME_TO_LIVE, FsIndex.DEFAULT_MAX_ENTRIES);
+        final File file = new File(root, "file.txt");
+        assertFalse(index.get(file).exists);
+
+        write(file, "content");
+        assertFalse(index.get(file).exists);
+
+        index.invalidate(file, false);
+        final FsIndex.Entry entry = index.get(file);
+        assertTrue(entry.exists);
+        assertFalse(entry.directory);
+        assertEquals(7, entry.size);
+        assertSame(entry, index.get(file));
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        final FsIndex index = new FsIndex(50, FsIndex.DEFAULT_MAX_ENTRIES);
+        final File file = new File(root, "unwatched.txt");
+        assertFalse(index.get(file).exists);
+
+        write(file, "content");
+        Thread.sleep(100);
+        assertTrue(index.get(file).exists);
+    }
+
+    @Test
+    public void testInvalidateTree() throws IOException {
+        final FsIndex index = new FsIndex(TIME_TO_LIVE, FsIndex.DEFAULT_MAX_ENTRIES);
+        final File folder = new File(root, "folder");
+        final File a = write(new File(folder, "a.txt"), "a");
+        final File b = write(new File(folder, "sub/b.txt"), "b");
+        final File sibling = write(new File(root, "folder-2/c.txt"), "c");
+        final FsIndex.Entry siblingEntry = index.get(sibling);
+        index.get(root);
+        index.get(folder);
+        index.get(a);
+        final FsIndex.Entry bEntry = index.get(b);
+        assertEquals(5, index.size());
+
+        index.invalidate(folder, true);
+        // the folder, its parent and everything below are dropped
+        assertEquals(1, index.size());
+        assertSame(siblingEntry, index.get(sibling));
+        assertNotSame(bEntry, index.get(b));
+    }
+
+    @Test
+    public void testInvalidateParent() throws IOException {
+        final FsIndex index = new FsIndex(TIME_TO_LIVE, FsIndex.DEFAULT_MAX_ENTRIES);
+        write(new File(root, "a.txt"), "a");
+        final FsIndex.Entry rootEntry = index.get(root);
+        assertEquals(1, index.getChildren(root, rootEntry).length);
+
+        final File added = write(new File(root, "b.txt"), "b");
+        index.invalidate(added, false);
+        assertEquals(2, index.getChildren(root, index.get(root)).length);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        final FsIndex index = new FsIndex(TIME_TO_LIVE, 100);
+        final File used = new File(root, "used");
+        final FsIndex.Entry usedEntry = index.get(used);
+        for(int i = 0; i < 1000; i++) {
+            index.get(new File(root, "missing" + i));
+            // keep the first entry in use
+            assertSame(usedEntry, index.get(used));
+        }
+        assertTrue("Size " + index.size(), index.size() <= 100);
+        assertSame(usedEntry, index.get(used));
+    }
+
+    @Test
+    public void testSharedMapping() throws IOException {
+        final FsIndex index = new FsIndex(TIME_TO_LIVE, FsIndex.DEFAULT_MAX_ENTRIES);
+        final File file = write(new File(root, "mapped.txt"), "mapped");
+        final FsIndex.Entry entry = index.get(file);
+
+        final ByteBuffer first = entry.map(file);
+        first.get();
+        final ByteBuffer second = entry.map(file);
+        assertTrue(first.isReadOnly());
+        assertEquals(0, second.position());
+        assertEquals(6, second.remaining());
+        assertEquals('m', second.get());
+    }
+}
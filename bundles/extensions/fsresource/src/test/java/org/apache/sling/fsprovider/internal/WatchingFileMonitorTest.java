@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.fsprovider.internal;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ResourceProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+/**
+ * Test the events sent for changes detected by the {@link WatchingFileMonitor}.
+ */
+public class WatchingFileMonitorTest {
+
+    private static final long TIMEOUT = 10000;
+
+    private static final long CHECK_INTERVAL = 1000;
+
+    private File root;
+
+    private FsResourceProvider provider;
+
+    private final List<Event> events = new ArrayList<Event>();
+
+    @Before
+    public void setUp() throws Exception {
+        root = File.createTempFile("fsresource", null);
+        root.delete();
+        root.mkdirs();
+        root = root.getCanonicalFile();
+
+        provider = new FsResourceProvider();
+        final Field field = FsResourceProvider.class.getDeclaredField("eventAdmin");
+        field.setAccessible(true);
+        field.set(provider, new EventAdmin() {
+
+            public void postEvent(final Event event) {
+                synchronized ( events ) {
+                    events.add(event);
+                    events.notifyAll();
+                }
+            }
+
+            public void sendEvent(final Event event) {
+                postEvent(event);
+            }
+        });
+
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ResourceProvider.ROOTS, "/fs");
+        props.put(FsResourceProvider.PROP_PROVIDER_FILE, root.getAbsolutePath());
+        props.put(FsResourceProvider.PROP_PROVIDER_CHECKINTERVAL, CHECK_INTERVAL);
+        provider.activate(null, props);
+    }
+
+    @After
+    public void tearDown() {
+        provider.deactivate();
+        delete(root);
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if ( children != null ) {
+            for(final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private boolean hasEvent(final String topic, final String path) {
+        for(final Event event : events) {
+            if ( event.getTopic().equals(topic) && path.equals(event.getProperty(SlingConstants.PROPERTY_PATH)) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Wait until the event has been sent or the time is up. */
+    private boolean waitForEvent(final String topic, final String path, final long timeout)
+    throws InterruptedException {
+        final long end = System.currentTimeMillis() + timeout;
+        synchronized ( events ) {
+            while ( !hasEvent(topic, path) ) {
+                final long remaining = end - System.currentTimeMillis();
+                if ( remaining <= 0 ) {
+                    return false;
+                }
+                events.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    private void assertEvent(final String topic, final String path) throws InterruptedException {
+        if ( !waitForEvent(topic, path, TIMEOUT) ) {
+            synchronized ( events ) {
+                fail("No " + topic + " event for " + path + ", received " + events);
+            }
+        }
+    }
+
+    @Test
+    public void testFileChanges() throws Exception {
+        final File file = new File(root, "file.txt");
+        write(file, "one");
+        assertEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/fs/file.txt");
+        assertEvent(SlingConstants.TOPIC_RESOURCE_CHANGED, "/fs");
+
+        write(file, "two");
+        assertEvent(SlingConstants.TOPIC_RESOURCE_CHANGED, "/fs/file.txt");
+
+        file.delete();
+        assertEvent(SlingConstants.TOPIC_RESOURCE_REMOVED, "/fs/file.txt");
+    }
+
+    @Test
+    public void testFilesInNewFolder() throws Exception {
+        // the files are created before the new folders are watched
+        final File folder = new File(root, "folder");
+        final File subFolder = new File(folder, "sub");
+        subFolder.mkdirs();
+        write(new File(folder, "a.txt"), "a");
+        write(new File(subFolder, "b.txt"), "b");
+
+        assertEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/fs/folder");
+        assertEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/fs/folder/a.txt");
+        assertEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/fs/folder/sub");
+        assertEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/fs/folder/sub/b.txt");
+
+        // changes in the new folders are watched
+        write(new File(subFolder, "c.txt"), "c");
+        assertEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/fs/folder/sub/c.txt");
+    }
+
+    @Test
+    public void testContinuousWrites() throws Exception {
+        final File file = new File(root, "log.txt");
+        write(file, "start");
+        // keep on writing for much longer than the check interval
+        final long end = System.currentTimeMillis() + 4 * CHECK_INTERVAL;
+        boolean sent = false;
+        int i = 0;
+        while ( !sent && System.currentTimeMillis() < end ) {
+            write(file, "line " + i++);
+            sent = waitForEvent(SlingConstants.TOPIC_RESOURCE_ADDED, "/fs/log.txt", 20);
+        }
+        assertTrue("No event sent while the file is written", sent);
+    }
+}
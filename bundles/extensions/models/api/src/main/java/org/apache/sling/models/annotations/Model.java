@@ -60,4 +60,14 @@ public @interface Model {
      */
     public ValidationStrategy validation() default ValidationStrategy.DISABLED;
 
+    /**
+     * @return <code>true</code> if instances of this model should be cached for the current request.
+     *  Repeated adaptations of the same request object or of a resource with the same path to this
+     *  model return the same instance then. Only use this if the model does not depend on anything
+     *  else than the adaptable's identity or path. Nothing is cached for requests with other methods
+     *  than GET and HEAD or for a resource resolver once it had uncommitted changes.
+     * @since 1.3.0
+     */
+    public boolean cache() default false;
+
 }
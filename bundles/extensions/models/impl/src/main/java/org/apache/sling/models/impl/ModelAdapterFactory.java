@@ -42,8 +42,6 @@ import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
-import javax.annotation.PostConstruct;
-
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -110,6 +108,10 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             callbacks = Collections.unmodifiableList(callbacks);
         }
 
+        private boolean hasCallbacks() {
+            return !callbacks.isEmpty();
+        }
+
         private void onDisposed() {
             for (DisposalCallback callback : callbacks) {
                 callback.onDisposed();
@@ -273,30 +275,46 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             if (!isAdaptable) {
                 result.addFailure(FailureType.ADAPTABLE_DOES_NOT_MATCH, modelClass.getType());
             } else {
-                if (!validateModel(modelAnnotation, adaptable, result)) {
-                    return result;
-                }
-                if (modelClass.getType().isInterface()) {
-                    InvocationHandler handler = createInvocationHandler(adaptable, modelClass, result);
-                    if (handler != null) {
-                        ModelType model = (ModelType) Proxy.newProxyInstance(modelClass.getType().getClassLoader(), new Class<?>[] { modelClass.getType() }, handler);
-                        result.setModel(model);
-                    }
-                } else {
-                    try {
-                        ModelType model = createObject(adaptable, modelClass, result);
-                        result.setModel(model);
+                final RequestModelCache cache = modelAnnotation.cache() ? ModelCacheFilter.getCurrentCache() : null;
+                if (cache != null) {
+                    Object cachedModel = cache.get(adaptable, modelClass.getType(), ModelCacheFilter.getChangeCount());
+                    if (cachedModel != null) {
+                        result.setModel((ModelType) cachedModel);
                         return result;
-                    } catch (Exception e) {
-                        result.addFailure(FailureType.OTHER, "Unable to create object", e);
                     }
                 }
+                createModelInstance(adaptable, modelClass, result);
+                if (cache != null && result.getModel() != null) {
+                    cache.put(adaptable, modelClass.getType(), result.getModel(), ModelCacheFilter.getChangeCount());
+                }
             }
             return result;
         } finally {
             threadInvocationCounter.decrease();
         }
     }
+
+    @SuppressWarnings("unchecked")
+    private <ModelType> void createModelInstance(Object adaptable, ModelClass<ModelType> modelClass, Result<ModelType> result) {
+        Model modelAnnotation = modelClass.getModelAnnotation();
+        if (!validateModel(modelAnnotation, adaptable, result)) {
+            return;
+        }
+        if (modelClass.getType().isInterface()) {
+            InvocationHandler handler = createInvocationHandler(adaptable, modelClass, result);
+            if (handler != null) {
+                ModelType model = (ModelType) Proxy.newProxyInstance(modelClass.getType().getClassLoader(), new Class<?>[] { modelClass.getType() }, handler);
+                result.setModel(model);
+            }
+        } else {
+            try {
+                ModelType model = createObject(adaptable, modelClass, result);
+                result.setModel(model);
+            } catch (Exception e) {
+                result.addFailure(FailureType.OTHER, "Unable to create object", e);
+            }
+        }
+    }
     
     private <ModelType> boolean validateModel(Model modelAnnotation, Object adaptable, Result<ModelType> result) {
         if (modelAnnotation.validation() != ValidationStrategy.DISABLED) {
@@ -442,7 +460,6 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         MapBackedInvocationHandler handler = new MapBackedInvocationHandler(methods);
 
         DisposalCallbackRegistryImpl registry = new DisposalCallbackRegistryImpl();
-        registerCallbackRegistry(handler, registry);
         Set<Method> requiredMethods = new HashSet<Method>();
 
         for (InjectableMethod method : injectableMethods) {
@@ -452,29 +469,37 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
         registry.seal();
         if (!requiredMethods.isEmpty()) {
+            registry.onDisposed();
             result.addFailure(FailureType.MISSING_METHODS, requiredMethods, modelClass.getType());
             return null;
         }
+        registerCallbackRegistry(handler, registry);
         return handler;
     }
 
+    /**
+     * Registers the callbacks to be called once the object has been garbage collected.
+     * Nothing is registered if no injector added a callback, which is the common case.
+     */
     private void registerCallbackRegistry(Object object, DisposalCallbackRegistryImpl registry) {
-        PhantomReference<Object> reference = new PhantomReference<Object>(object, queue);
-        disposalCallbacks.put(reference, registry);
+        if (registry.hasCallbacks()) {
+            PhantomReference<Object> reference = new PhantomReference<Object>(object, queue);
+            disposalCallbacks.put(reference, registry);
+        }
     }
 
     private <ModelType> ModelType createObject(final Object adaptable, final ModelClass<ModelType> modelClass, final Result<ModelType> result)
             throws InstantiationException, InvocationTargetException, IllegalAccessException {
         DisposalCallbackRegistryImpl registry = new DisposalCallbackRegistryImpl();
 
-        ModelClassConstructor<ModelType> constructorToUse = getBestMatchingConstructor(adaptable, modelClass);
+        ModelClassConstructor<ModelType> constructorToUse = modelClass.getBestMatchingConstructor(adaptable);
         if (constructorToUse == null) {
             result.addFailure(FailureType.NO_USABLE_CONSTRUCTOR, modelClass.getType());
             return null;
         }
 
         final ModelType object;
-        if (constructorToUse.getConstructor().getParameterTypes().length == 0) {
+        if (constructorToUse.getConstructorParameters().length == 0) {
             // no parameters for constructor injection? instantiate it right away
             object = constructorToUse.getConstructor().newInstance();
         } else {
@@ -498,8 +523,6 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             }
         }
 
-        registerCallbackRegistry(object, registry);
-
         InjectCallback callback = new SetFieldCallback(object);
 
         Set<Field> requiredFields = new HashSet<Field>();
@@ -513,54 +536,26 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
 
         registry.seal();
         if (!requiredFields.isEmpty()) {
+            registry.onDisposed();
             result.addFailure(FailureType.MISSING_FIELDS, requiredFields, modelClass.getType());
             return null;
         }
         try {
-            invokePostConstruct(object);
-            return object;
+            invokePostConstruct(object, modelClass);
         } catch (InvocationTargetException e) {
+            registry.onDisposed();
             result.addFailure(FailureType.FAILED_CALLING_POST_CONSTRUCT, e.getCause());
             return null;
         } catch (IllegalAccessException e) {
+            registry.onDisposed();
             result.addFailure(FailureType.FAILED_CALLING_POST_CONSTRUCT, e);
             return null;
         }
+        registerCallbackRegistry(object, registry);
+        return object;
 
     }
 
-    /**
-     * Gets best matching constructor for constructor injection - or default constructor if none is found.
-     * @param adaptable Adaptable instance
-     * @param type Model type
-     * @return Constructor or null if none found
-     */
-    @SuppressWarnings("unchecked")
-    private <ModelType> ModelClassConstructor<ModelType> getBestMatchingConstructor(Object adaptable, ModelClass<ModelType> type) {
-        ModelClassConstructor[] constructors = type.getConstructors();
-
-        for (ModelClassConstructor constructor : constructors) {
-            // first try to find the constructor with most parameters and @Inject annotation
-            if (constructor.hasInjectAnnotation()) {
-                return constructor;
-            }
-            // compatibility mode for sling models implementation <= 1.0.6:
-            // support constructor without @Inject if it has exactly one parameter matching the adaptable class
-            final Class<?>[] paramTypes = constructor.getConstructor().getParameterTypes();
-            if (paramTypes.length == 1) {
-                Class<?> paramType = constructor.getConstructor().getParameterTypes()[0];
-                if (paramType.isInstance(adaptable)) {
-                    return constructor;
-                }
-            }
-            // if no constructor for injection found use public constructor without any params
-            if (constructor.getConstructor().getParameterTypes().length == 0) {
-                return constructor;
-            }
-        }
-        return null;
-    }
-
     private <ModelType> ModelType newInstanceWithConstructorInjection(final ModelClassConstructor<ModelType> constructor, final Object adaptable,
             final ModelClass<ModelType> modelClass, final DisposalCallbackRegistry registry, final Result<ModelType> result)
             throws InstantiationException, InvocationTargetException, IllegalAccessException {
@@ -665,43 +660,9 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         return element.getName();
     }
 
-    private boolean addMethodIfNotOverriden(List<Method> methods, Method newMethod) {
-        for (Method method : methods) {
-            if (method.getName().equals(newMethod.getName())) {
-                if (Arrays.equals(method.getParameterTypes(),newMethod.getParameterTypes())) {
-                    return false;
-                }
-            }
-        }
-        methods.add(newMethod);
-        return true;
-    }
-
-    private void invokePostConstruct(Object object) throws InvocationTargetException, IllegalAccessException {
-        Class<?> clazz = object.getClass();
-        List<Method> postConstructMethods = new ArrayList<Method>();
-        while (clazz != null) {
-            Method[] methods = clazz.getDeclaredMethods();
-            for (Method method : methods) {
-                if (method.isAnnotationPresent(PostConstruct.class)) {
-                    addMethodIfNotOverriden(postConstructMethods, method);
-                }
-            }
-            clazz = clazz.getSuperclass();
-        }
-        Collections.reverse(postConstructMethods);
-        for (Method method : postConstructMethods) {
-            boolean accessible = method.isAccessible();
-            try {
-                if (!accessible) {
-                    method.setAccessible(true);
-                }
-                method.invoke(object);
-            } finally {
-                if (!accessible) {
-                    method.setAccessible(false);
-                }
-            }
+    private void invokePostConstruct(Object object, ModelClass<?> modelClass) throws InvocationTargetException, IllegalAccessException {
+        for (Method method : modelClass.getPostConstructMethods()) {
+            method.invoke(object);
         }
     }
 
@@ -713,20 +674,12 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             if (value == null) {
                 return false;
             }
-            boolean accessible = field.isAccessible();
             try {
-                if (!accessible) {
-                    field.setAccessible(true);
-                }
-                field.set(createdObject, value);
+                injectableField.set(createdObject, value);
                 return true;
             } catch (Exception e) {
                 log.error("unable to inject field", e);
                 return false;
-            } finally {
-                if (!accessible) {
-                    field.setAccessible(false);
-                }
             }
         } else {
             return false;
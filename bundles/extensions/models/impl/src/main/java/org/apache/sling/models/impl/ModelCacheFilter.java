@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Properties;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * Provides the {@link RequestModelCache} for the current request and
+ * invalidates all caches whenever a resource changes.
+ *
+ * Requests with other methods than GET and HEAD usually modify content. As
+ * the commit of a resource resolver can't be observed and the resource change
+ * events arrive asynchronously, models are not cached for these requests.
+ */
+@Component
+@Service({ Filter.class, EventHandler.class })
+@Properties({
+    @Property(name = "service.description", value = "Sling Models Request Cache Filter"),
+    @Property(name = "service.vendor", value = "The Apache Software Foundation"),
+    @Property(name = "sling.filter.scope", value = "REQUEST"),
+    @Property(name = "service.ranking", intValue = Integer.MAX_VALUE),
+    @Property(name = EventConstants.EVENT_TOPIC, value = "org/apache/sling/api/resource/Resource/*")
+})
+public class ModelCacheFilter implements Filter, EventHandler {
+
+    private static final ThreadLocal<RequestModelCache> CURRENT_CACHE = new ThreadLocal<RequestModelCache>();
+
+    /** Counter for the resource changes, changing it invalidates all caches. */
+    private static final AtomicLong CHANGE_COUNT = new AtomicLong();
+
+    /**
+     * @return The cache for the request processed by the current thread or
+     *  <code>null</code> if there is no request.
+     */
+    static RequestModelCache getCurrentCache() {
+        return CURRENT_CACHE.get();
+    }
+
+    static long getChangeCount() {
+        return CHANGE_COUNT.get();
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        // nothing to do
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        // requests might be processed within a request, these get their own cache
+        RequestModelCache previous = CURRENT_CACHE.get();
+        if (isReadOnly(request)) {
+            CURRENT_CACHE.set(new RequestModelCache(CHANGE_COUNT.get()));
+        } else {
+            CURRENT_CACHE.remove();
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (previous == null) {
+                CURRENT_CACHE.remove();
+            } else {
+                CURRENT_CACHE.set(previous);
+            }
+        }
+    }
+
+    private static boolean isReadOnly(ServletRequest request) {
+        if (!(request instanceof HttpServletRequest)) {
+            return true;
+        }
+        String method = ((HttpServletRequest) request).getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    @Override
+    public void destroy() {
+        // nothing to do
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        CHANGE_COUNT.incrementAndGet();
+    }
+}
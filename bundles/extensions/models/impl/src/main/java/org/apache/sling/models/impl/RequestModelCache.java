@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * Cache for instances of models with {@link org.apache.sling.models.annotations.Model#cache()}
+ * enabled. A cache lives for a single request, see {@link ModelCacheFilter}.
+ *
+ * Models adapted from resources are cached by the path of the resource and the
+ * resource resolver, so wrapped resources share the cached models. Models adapted
+ * from anything else are cached by the identity of the adaptable.
+ *
+ * The cache is cleared whenever a resource resolver has uncommitted changes or
+ * a resource change has been reported since the models were cached. A resource
+ * resolver which had uncommitted changes is not cached for the rest of the request
+ * as its commit can't be observed, see also {@link ModelCacheFilter}.
+ */
+class RequestModelCache {
+
+    private final Map<Object, Map<Class<?>, Object>> models = new HashMap<Object, Map<Class<?>, Object>>();
+
+    /** The resource resolvers which have modified content during the request. */
+    private final Set<ResourceResolver> modifyingResolvers =
+            Collections.newSetFromMap(new IdentityHashMap<ResourceResolver, Boolean>());
+
+    /** The number of resource changes when the cached models were created. */
+    private long changeCount;
+
+    RequestModelCache(long changeCount) {
+        this.changeCount = changeCount;
+    }
+
+    /**
+     * Returns the cached model or <code>null</code>.
+     */
+    Object get(Object adaptable, Class<?> type, long currentChangeCount) {
+        if (!isValid(adaptable, currentChangeCount)) {
+            return null;
+        }
+        Map<Class<?>, Object> adaptableModels = models.get(getKey(adaptable));
+        return adaptableModels == null ? null : adaptableModels.get(type);
+    }
+
+    void put(Object adaptable, Class<?> type, Object model, long currentChangeCount) {
+        if (!isValid(adaptable, currentChangeCount)) {
+            return;
+        }
+        Object key = getKey(adaptable);
+        Map<Class<?>, Object> adaptableModels = models.get(key);
+        if (adaptableModels == null) {
+            adaptableModels = new HashMap<Class<?>, Object>();
+            models.put(key, adaptableModels);
+        }
+        adaptableModels.put(type, model);
+    }
+
+    int size() {
+        int size = 0;
+        for (Map<Class<?>, Object> adaptableModels : models.values()) {
+            size += adaptableModels.size();
+        }
+        return size;
+    }
+
+    /**
+     * Checks whether the cache can be used for the adaptable. Pending
+     * changes of the adaptable's resolver or resource changes since the
+     * models were cached clear the cache. Once a resolver had pending
+     * changes, its models are not cached any longer.
+     */
+    private boolean isValid(Object adaptable, long currentChangeCount) {
+        if (changeCount != currentChangeCount) {
+            models.clear();
+            changeCount = currentChangeCount;
+        }
+        ResourceResolver resolver = getResourceResolver(adaptable);
+        if (resolver != null && (modifyingResolvers.contains(resolver) || resolver.hasChanges())) {
+            if (modifyingResolvers.add(resolver)) {
+                models.clear();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static ResourceResolver getResourceResolver(Object adaptable) {
+        if (adaptable instanceof Resource) {
+            return ((Resource) adaptable).getResourceResolver();
+        } else if (adaptable instanceof SlingHttpServletRequest) {
+            return ((SlingHttpServletRequest) adaptable).getResourceResolver();
+        }
+        return null;
+    }
+
+    private static Object getKey(Object adaptable) {
+        if (adaptable instanceof Resource && ((Resource) adaptable).getPath() != null) {
+            Resource resource = (Resource) adaptable;
+            return new PathKey(resource.getResourceResolver(), resource.getPath());
+        }
+        return new IdentityKey(adaptable);
+    }
+
+    private static final class PathKey {
+
+        private final ResourceResolver resolver;
+
+        private final String path;
+
+        PathKey(ResourceResolver resolver, String path) {
+            this.resolver = resolver;
+            this.path = path;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(resolver) * 31 + path.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PathKey)) {
+                return false;
+            }
+            PathKey other = (PathKey) obj;
+            return resolver == other.resolver && path.equals(other.path);
+        }
+    }
+
+    private static final class IdentityKey {
+
+        private final Object adaptable;
+
+        IdentityKey(Object adaptable) {
+            this.adaptable = adaptable;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(adaptable);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof IdentityKey && ((IdentityKey) obj).adaptable == adaptable;
+        }
+    }
+}
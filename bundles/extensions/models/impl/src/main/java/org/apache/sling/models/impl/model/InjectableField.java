@@ -31,12 +31,25 @@ public class InjectableField extends AbstractInjectableElement {
     public InjectableField(Field field, StaticInjectAnnotationProcessorFactory[] processorFactories, DefaultInjectionStrategy defaultInjectionStrategy) {
         super(field, ReflectionUtil.mapPrimitiveClasses(field.getGenericType()), field.getName(), processorFactories, defaultInjectionStrategy);
         this.field = field;
+        // make the field accessible once instead of for every injection
+        if (!field.isAccessible()) {
+            field.setAccessible(true);
+        }
     }
     
     public Field getField() {
         return field;
     }
 
+    /**
+     * Sets the value of the (already accessible) field.
+     * @param object The model instance
+     * @param value The value to inject
+     */
+    public void set(Object object, Object value) throws IllegalAccessException {
+        field.set(object, value);
+    }
+
     public boolean isPrimitive() {
         return false;
     }
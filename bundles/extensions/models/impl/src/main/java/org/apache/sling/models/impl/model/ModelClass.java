@@ -21,8 +21,14 @@ package org.apache.sling.models.impl.model;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
 
 import org.apache.sling.models.annotations.DefaultInjectionStrategy;
 import org.apache.sling.models.annotations.Model;
@@ -36,6 +42,11 @@ public class ModelClass<ModelType> {
     private final ModelClassConstructor[] constructors;
     private final InjectableField[] injectableFields;
     private final InjectableMethod[] injectableMethods;
+    private final Method[] postConstructMethods;
+
+    /** The constructors to use for the adaptable types seen so far. */
+    private final ConcurrentMap<Class<?>, ModelClassConstructor<ModelType>> constructorsByAdaptableType =
+            new ConcurrentHashMap<Class<?>, ModelClassConstructor<ModelType>>();
 
     public ModelClass(Class<ModelType> type, StaticInjectAnnotationProcessorFactory[] processorFactories) {
         this.type = type;
@@ -49,6 +60,7 @@ public class ModelClass<ModelType> {
         this.constructors = getConstructors(type, processorFactories, defaultInjectionStrategy);
         this.injectableFields = getInjectableFields(type, processorFactories, defaultInjectionStrategy);
         this.injectableMethods = getInjectableMethods(type, processorFactories, defaultInjectionStrategy);
+        this.postConstructMethods = getPostConstructMethods(type);
     }
     
     @SuppressWarnings("unchecked")
@@ -92,6 +104,42 @@ public class ModelClass<ModelType> {
         return array;
     }
 
+    private static Method[] getPostConstructMethods(Class<?> type) {
+        if (type.isInterface()) {
+            return new Method[0];
+        }
+        List<Method> postConstructMethods = new ArrayList<Method>();
+        Class<?> clazz = type;
+        while (clazz != null) {
+            Method[] methods = clazz.getDeclaredMethods();
+            for (Method method : methods) {
+                if (method.isAnnotationPresent(PostConstruct.class)) {
+                    addMethodIfNotOverriden(postConstructMethods, method);
+                }
+            }
+            clazz = clazz.getSuperclass();
+        }
+        Collections.reverse(postConstructMethods);
+        for (Method method : postConstructMethods) {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+        }
+        return postConstructMethods.toArray(new Method[postConstructMethods.size()]);
+    }
+
+    private static boolean addMethodIfNotOverriden(List<Method> methods, Method newMethod) {
+        for (Method method : methods) {
+            if (method.getName().equals(newMethod.getName())) {
+                if (Arrays.equals(method.getParameterTypes(),newMethod.getParameterTypes())) {
+                    return false;
+                }
+            }
+        }
+        methods.add(newMethod);
+        return true;
+    }
+
     public Class<ModelType> getType() {
         return this.type;
     }
@@ -116,4 +164,52 @@ public class ModelClass<ModelType> {
         return this.injectableMethods;
     }
 
+    /**
+     * @return The accessible post construct methods, starting with the methods of the super classes.
+     */
+    public Method[] getPostConstructMethods() {
+        return this.postConstructMethods;
+    }
+
+    /**
+     * Gets best matching constructor for constructor injection - or default constructor if none is found.
+     * The constructor only depends on the type of the adaptable and is cached per adaptable type.
+     * @param adaptable Adaptable instance
+     * @return Constructor or null if none found
+     */
+    public ModelClassConstructor<ModelType> getBestMatchingConstructor(Object adaptable) {
+        ModelClassConstructor<ModelType> constructor = this.constructorsByAdaptableType.get(adaptable.getClass());
+        if (constructor == null) {
+            constructor = findBestMatchingConstructor(adaptable);
+            if (constructor != null) {
+                this.constructorsByAdaptableType.put(adaptable.getClass(), constructor);
+            }
+        }
+        return constructor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ModelClassConstructor<ModelType> findBestMatchingConstructor(Object adaptable) {
+        for (ModelClassConstructor<ModelType> constructor : this.constructors) {
+            // first try to find the constructor with most parameters and @Inject annotation
+            if (constructor.hasInjectAnnotation()) {
+                return constructor;
+            }
+            // compatibility mode for sling models implementation <= 1.0.6:
+            // support constructor without @Inject if it has exactly one parameter matching the adaptable class
+            final Class<?>[] paramTypes = constructor.getConstructor().getParameterTypes();
+            if (paramTypes.length == 1) {
+                Class<?> paramType = paramTypes[0];
+                if (paramType.isInstance(adaptable)) {
+                    return constructor;
+                }
+            }
+            // if no constructor for injection found use public constructor without any params
+            if (paramTypes.length == 0) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
 }
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Hashtable;
+
+import javax.inject.Inject;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.spi.DisposalCallback;
+import org.apache.sling.models.spi.DisposalCallbackRegistry;
+import org.apache.sling.models.spi.Injector;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.ComponentContext;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DisposalTest {
+
+    @Mock
+    private ComponentContext componentCtx;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Resource resource;
+
+    private ModelAdapterFactory factory = new ModelAdapterFactory();
+
+    private int disposed;
+
+    @Before
+    public void setup() {
+        when(componentCtx.getBundleContext()).thenReturn(bundleContext);
+        when(componentCtx.getProperties()).thenReturn(new Hashtable<String, Object>());
+        factory.activate(componentCtx);
+        factory.bindInjector(new DisposingInjector(), Collections.<String, Object> singletonMap(Constants.SERVICE_ID, 1L));
+    }
+
+    @Test
+    public void testCallbacksOfFailedModelAreCalledImmediately() {
+        assertNull(factory.getAdapter(resource, MissingFieldModel.class));
+        assertEquals(2, disposed);
+    }
+
+    @Test
+    public void testCallbacksOfModelAreKept() {
+        RequiredFieldModel model = factory.getAdapter(resource, RequiredFieldModel.class);
+        assertNotNull(model);
+        assertEquals("value", model.present);
+        factory.run();
+        assertEquals(0, disposed);
+    }
+
+    /**
+     * Injector registering a disposal callback for every injection.
+     */
+    private class DisposingInjector implements Injector {
+
+        @Override
+        public String getName() {
+            return "disposing";
+        }
+
+        @Override
+        public Object getValue(Object adaptable, String name, Type declaredType, AnnotatedElement element,
+                DisposalCallbackRegistry callbackRegistry) {
+            callbackRegistry.addDisposalCallback(new DisposalCallback() {
+                @Override
+                public void onDisposed() {
+                    disposed++;
+                }
+            });
+            return "present".equals(name) ? "value" : null;
+        }
+    }
+
+    @Model(adaptables = Resource.class)
+    public static class RequiredFieldModel {
+
+        @Inject
+        public String present;
+    }
+
+    @Model(adaptables = Resource.class)
+    public static class MissingFieldModel {
+
+        @Inject
+        public String present;
+
+        @Inject
+        public String missing;
+    }
+}
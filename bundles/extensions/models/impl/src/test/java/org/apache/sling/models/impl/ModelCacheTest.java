@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.models.annotations.Model;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.Event;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ModelCacheTest {
+
+    @Mock
+    private ComponentContext componentCtx;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private ResourceResolver resolver;
+
+    @Mock
+    private Resource resource;
+
+    @Mock
+    private Resource wrappedResource;
+
+    private ModelAdapterFactory factory = new ModelAdapterFactory();
+
+    private ModelCacheFilter filter = new ModelCacheFilter();
+
+    @Before
+    public void setup() {
+        when(componentCtx.getBundleContext()).thenReturn(bundleContext);
+        when(componentCtx.getProperties()).thenReturn(new Hashtable<String, Object>());
+        factory.activate(componentCtx);
+
+        when(resource.getPath()).thenReturn("/content/a");
+        when(resource.getResourceResolver()).thenReturn(resolver);
+        when(wrappedResource.getPath()).thenReturn("/content/a");
+        when(wrappedResource.getResourceResolver()).thenReturn(resolver);
+    }
+
+    private void inRequest(final Runnable runnable) throws IOException, ServletException {
+        inRequest(mock(ServletRequest.class), runnable);
+    }
+
+    private void inRequest(final ServletRequest request, final Runnable runnable) throws IOException, ServletException {
+        filter.doFilter(request, mock(ServletResponse.class), new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                runnable.run();
+            }
+        });
+    }
+
+    @Test
+    public void testCachedWithinRequest() throws Exception {
+        inRequest(new Runnable() {
+            @Override
+            public void run() {
+                CachedModel model = factory.getAdapter(resource, CachedModel.class);
+                assertNotNull(model);
+                assertSame(model, factory.getAdapter(resource, CachedModel.class));
+                // resources with the same path share the model
+                assertSame(model, factory.getAdapter(wrappedResource, CachedModel.class));
+                // models without caching are created each time
+                assertNotSame(factory.getAdapter(resource, UncachedModel.class), factory.getAdapter(resource, UncachedModel.class));
+            }
+        });
+    }
+
+    @Test
+    public void testNotCachedOutsideOfRequest() throws Exception {
+        assertNotSame(factory.getAdapter(resource, CachedModel.class), factory.getAdapter(resource, CachedModel.class));
+
+        final CachedModel[] models = new CachedModel[2];
+        inRequest(new Runnable() {
+            @Override
+            public void run() {
+                models[0] = factory.getAdapter(resource, CachedModel.class);
+            }
+        });
+        inRequest(new Runnable() {
+            @Override
+            public void run() {
+                models[1] = factory.getAdapter(resource, CachedModel.class);
+            }
+        });
+        assertNotSame(models[0], models[1]);
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        inRequest(new Runnable() {
+            @Override
+            public void run() {
+                CachedModel model = factory.getAdapter(resource, CachedModel.class);
+
+                // pending changes bypass the cache
+                when(resolver.hasChanges()).thenReturn(true);
+                CachedModel changed = factory.getAdapter(resource, CachedModel.class);
+                assertNotSame(model, changed);
+                assertNotSame(changed, factory.getAdapter(resource, CachedModel.class));
+
+                // after the commit the models of the resolver are still not cached
+                when(resolver.hasChanges()).thenReturn(false);
+                CachedModel committed = factory.getAdapter(resource, CachedModel.class);
+                assertNotSame(model, committed);
+                assertNotSame(committed, factory.getAdapter(resource, CachedModel.class));
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidationByResourceChange() throws Exception {
+        inRequest(new Runnable() {
+            @Override
+            public void run() {
+                CachedModel model = factory.getAdapter(resource, CachedModel.class);
+                assertSame(model, factory.getAdapter(resource, CachedModel.class));
+
+                filter.handleEvent(new Event("org/apache/sling/api/resource/Resource/CHANGED", (Dictionary<String, ?>) null));
+                CachedModel changed = factory.getAdapter(resource, CachedModel.class);
+                assertNotSame(model, changed);
+                assertSame(changed, factory.getAdapter(resource, CachedModel.class));
+            }
+        });
+    }
+
+    @Test
+    public void testNotCachedInModifyingRequest() throws Exception {
+        HttpServletRequest post = mock(HttpServletRequest.class);
+        when(post.getMethod()).thenReturn("POST");
+        inRequest(post, new Runnable() {
+            @Override
+            public void run() {
+                CachedModel model = factory.getAdapter(resource, CachedModel.class);
+                // the resource is modified and committed before the next adaptation,
+                // the resolver never reports pending changes to the cache
+                try {
+                    resolver.commit();
+                } catch (PersistenceException e) {
+                    fail(e.getMessage());
+                }
+                assertNotSame(model, factory.getAdapter(resource, CachedModel.class));
+            }
+        });
+
+        HttpServletRequest get = mock(HttpServletRequest.class);
+        when(get.getMethod()).thenReturn("GET");
+        inRequest(get, new Runnable() {
+            @Override
+            public void run() {
+                CachedModel model = factory.getAdapter(resource, CachedModel.class);
+                assertSame(model, factory.getAdapter(resource, CachedModel.class));
+            }
+        });
+    }
+
+    @Model(adaptables = Resource.class, cache = true)
+    public static class CachedModel {
+    }
+
+    @Model(adaptables = Resource.class)
+    public static class UncachedModel {
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A <code>ResourceChange</code> describes the change of a single resource
+ * within a change set delivered to a {@link ResourceChangeListener}.
+ * <p>
+ * All changes of a node within one save or commit are coalesced into a
+ * single change: property changes of an added node are reported as part of
+ * the addition, and an added and removed node is only reported as removed.
+ *
+ * @since 2.3
+ */
+public final class ResourceChange {
+
+    /** The type of a change. */
+    public enum ChangeType {
+        ADDED,
+        CHANGED,
+        REMOVED
+    }
+
+    private final ChangeType type;
+
+    private final String path;
+
+    private final String resourceType;
+
+    private final String resourceSuperType;
+
+    private final String userId;
+
+    private final boolean external;
+
+    private final Set<String> addedAttributes;
+
+    private final Set<String> changedAttributes;
+
+    private final Set<String> removedAttributes;
+
+    public ResourceChange(final ChangeType type,
+            final String path,
+            final String resourceType,
+            final String resourceSuperType,
+            final String userId,
+            final boolean external,
+            final Set<String> addedAttributes,
+            final Set<String> changedAttributes,
+            final Set<String> removedAttributes) {
+        this.type = type;
+        this.path = path;
+        this.resourceType = resourceType;
+        this.resourceSuperType = resourceSuperType;
+        this.userId = userId;
+        this.external = external;
+        this.addedAttributes = toSet(addedAttributes);
+        this.changedAttributes = toSet(changedAttributes);
+        this.removedAttributes = toSet(removedAttributes);
+    }
+
+    private static Set<String> toSet(final Set<String> set) {
+        if ( set == null || set.isEmpty() ) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    public ChangeType getType() {
+        return this.type;
+    }
+
+    /**
+     * The resource path of the changed resource. For the content of an
+     * <code>nt:file</code> node this is the path of the file.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * The resource type or <code>null</code> for removed resources.
+     */
+    public String getResourceType() {
+        return this.resourceType;
+    }
+
+    /**
+     * The resource super type or <code>null</code> if not known.
+     */
+    public String getResourceSuperType() {
+        return this.resourceSuperType;
+    }
+
+    /**
+     * The id of the user causing the change or <code>null</code> if not known.
+     */
+    public String getUserId() {
+        return this.userId;
+    }
+
+    /**
+     * Has the change been made on another cluster node?
+     */
+    public boolean isExternal() {
+        return this.external;
+    }
+
+    /**
+     * The names of the added properties, never <code>null</code>.
+     */
+    public Set<String> getAddedAttributes() {
+        return this.addedAttributes;
+    }
+
+    /**
+     * The names of the changed properties, never <code>null</code>.
+     */
+    public Set<String> getChangedAttributes() {
+        return this.changedAttributes;
+    }
+
+    /**
+     * The names of the removed properties, never <code>null</code>.
+     */
+    public Set<String> getRemovedAttributes() {
+        return this.removedAttributes;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceChange [type=" + this.type + ", path=" + this.path
+                + ", resourceType=" + this.resourceType
+                + ", external=" + this.external + "]";
+    }
+}
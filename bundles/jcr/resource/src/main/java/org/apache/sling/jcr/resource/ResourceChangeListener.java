@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource;
+
+import java.util.List;
+
+/**
+ * A <code>ResourceChangeListener</code> registered as an OSGi service
+ * receives the changes of JCR backed resources in batches, instead of one
+ * OSGi event per changed resource.
+ * <p>
+ * The changes of one save or commit are coalesced and delivered with a
+ * single call, containing only the changes below the paths the listener
+ * is registered for with the {@link #PATHS} service property. Listeners are
+ * called from a dedicated thread in the order the changes have been made,
+ * so a slow listener delays the delivery to all other listeners.
+ * <p>
+ * The resource events sent through the OSGi event admin are not affected
+ * by this service, existing event handlers keep working unchanged.
+ *
+ * @since 2.3
+ */
+public interface ResourceChangeListener {
+
+    /**
+     * The service property containing the path prefixes the listener is
+     * interested in. The value is either a string or an array of strings.
+     * If this property is missing, the listener receives all changes.
+     */
+    String PATHS = "resource.paths";
+
+    /**
+     * Called with the changes of a save or commit.
+     * @param changes The unmodifiable list of changes, never empty.
+     */
+    void onChange(List<ResourceChange> changes);
+}
@@ -36,6 +36,7 @@ import javax.jcr.Value;
 import org.apache.jackrabbit.util.ISO9075;
 import org.apache.jackrabbit.util.Text;
 import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCache;
 import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCacheEntry;
 
 /**
@@ -64,17 +65,41 @@ public final class JcrModifiableValueMap
 
     private final ClassLoader dynamicClassLoader;
 
+    /** The shared value maps to invalidate on modification, might be null. */
+    private final JcrPropertyMapCache propertyMapCache;
+
     /**
      * Constructor
      * @param node The underlying node.
      * @param dynamicCL Dynamic class loader for loading serialized objects.
      */
     public JcrModifiableValueMap(final Node node, final ClassLoader dynamicCL) {
+        this(node, dynamicCL, null);
+    }
+
+    /**
+     * Constructor
+     * @param node The underlying node.
+     * @param dynamicCL Dynamic class loader for loading serialized objects.
+     * @param propertyMapCache The value map cache of the resolver or <code>null</code>
+     */
+    public JcrModifiableValueMap(final Node node, final ClassLoader dynamicCL,
+            final JcrPropertyMapCache propertyMapCache) {
         this.node = node;
         this.cache = new LinkedHashMap<String, JcrPropertyMapCacheEntry>();
         this.valueCache = new LinkedHashMap<String, Object>();
         this.fullyRead = false;
         this.dynamicClassLoader = dynamicCL;
+        this.propertyMapCache = propertyMapCache;
+    }
+
+    /**
+     * Drop the shared value map of the node after a modification.
+     */
+    private void invalidateCache() {
+        if ( this.propertyMapCache != null ) {
+            this.propertyMapCache.invalidate(this.node);
+        }
     }
 
     /**
@@ -447,6 +472,7 @@ public final class JcrModifiableValueMap
         }
         readFully();
         final Object oldValue = this.get(key);
+        invalidateCache();
         try {
             final JcrPropertyMapCacheEntry entry = new JcrPropertyMapCacheEntry(value, this.node);
             this.cache.put(key, entry);
@@ -490,6 +516,7 @@ public final class JcrModifiableValueMap
         readFully();
         final Object oldValue = this.cache.remove(key);
         this.valueCache.remove(key);
+        invalidateCache();
         try {
             final String name = escapeKeyName(key);
             if ( node.hasProperty(name) ) {
@@ -20,8 +20,10 @@ package org.apache.sling.jcr.resource.internal;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -37,6 +39,7 @@ import org.apache.jackrabbit.api.observation.JackrabbitEvent;
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.jcr.resource.ResourceChange;
 import org.apache.sling.jcr.resource.internal.helper.jcr.JcrResourceProvider;
 import org.apache.sling.jcr.resource.internal.helper.jcr.PathMapper;
 import org.osgi.service.event.EventAdmin;
@@ -80,6 +83,18 @@ public class JcrResourceListener implements EventListener, Closeable {
      */
     private final Map<String, Object> TERMINATE_PROCESSING = new HashMap<String, Object>(1);
 
+    /**
+     * Marker event for {@link #processOsgiEventQueue()} signaling the end of
+     * the events of one {@link #onEvent(EventIterator)} call.
+     */
+    private final Map<String, Object> END_OF_CHANGES = new HashMap<String, Object>(1);
+
+    /**
+     * The changes collected for the resource change listeners, only
+     * accessed by the queue processor.
+     */
+    private final List<ResourceChange> pendingChanges = new ArrayList<ResourceChange>();
+
     public JcrResourceListener(
                     final String mountPrefix,
                     final ObservationListenerSupport support,
@@ -132,9 +147,11 @@ public class JcrResourceListener implements EventListener, Closeable {
      * @see javax.jcr.observation.EventListener#onEvent(javax.jcr.observation.EventIterator)
      */
     public void onEvent(final EventIterator events) {
-        // if the event admin is currently not available, we just skip this
+        // if the event admin is currently not available and nobody
+        // listens for change sets, we just skip this
         final EventAdmin localEA = this.support.getEventAdmin();
-        if ( localEA == null ) {
+        final boolean collectChanges = this.support.getChangeDispatcher().hasListeners();
+        if ( localEA == null && !collectChanges ) {
             return;
         }
         final Map<String, Map<String, Object>> addedEvents = new HashMap<String, Map<String, Object>>();
@@ -188,6 +205,11 @@ public class JcrResourceListener implements EventListener, Closeable {
             // Launch an OSGi event.
             sendOsgiEvent(e.getKey(), e.getValue().toEventProperties(), SlingConstants.TOPIC_RESOURCE_CHANGED, null);
         }
+
+        // all events of this call form one change set
+        if ( collectChanges ) {
+            this.osgiEventQueue.offer(END_OF_CHANGES);
+        }
     }
 
     private static final class ChangedAttributes {
@@ -331,10 +353,19 @@ public class JcrResourceListener implements EventListener, Closeable {
                 break;
             }
 
+            if (event == END_OF_CHANGES) {
+                if ( !this.pendingChanges.isEmpty() ) {
+                    this.support.getChangeDispatcher().dispatch(new ArrayList<ResourceChange>(this.pendingChanges));
+                    this.pendingChanges.clear();
+                }
+                continue;
+            }
+
             try {
                 final EventAdmin localEa = this.support.getEventAdmin();
+                final boolean collectChanges = this.support.getChangeDispatcher().hasListeners();
                 final ResourceResolver resolver = this.support.getResourceResolver();
-                if (localEa != null && resolver != null ) {
+                if ((localEa != null || collectChanges) && resolver != null ) {
                     final String topic = (String) event.remove(EventConstants.EVENT_TOPIC);
                     final String path = (String) event.get(SlingConstants.PROPERTY_PATH);
                     Resource resource = resolver.getResource(path);
@@ -383,7 +414,12 @@ public class JcrResourceListener implements EventListener, Closeable {
                     }
 
                     if ( sendEvent ) {
-                        localEa.sendEvent(new org.osgi.service.event.Event(topic, new EventProperties(event)));
+                        if ( localEa != null ) {
+                            localEa.sendEvent(new org.osgi.service.event.Event(topic, new EventProperties(event)));
+                        }
+                        if ( collectChanges ) {
+                            this.pendingChanges.add(ResourceChangeDispatcher.toChange(topic, event));
+                        }
                     }
                 }
             } catch (final Exception e) {
@@ -392,6 +428,7 @@ public class JcrResourceListener implements EventListener, Closeable {
         }
 
         this.osgiEventQueue.clear();
+        this.pendingChanges.clear();
     }
 
     private boolean isExternal(final Event event) {
@@ -30,9 +30,11 @@ import static org.apache.sling.api.SlingConstants.TOPIC_RESOURCE_REMOVED;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
@@ -44,9 +46,11 @@ import org.apache.jackrabbit.oak.plugins.observation.NodeObserver;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.jcr.resource.ResourceChange;
 import org.apache.sling.jcr.resource.internal.helper.jcr.JcrResourceProvider;
 import org.apache.sling.jcr.resource.internal.helper.jcr.PathMapper;
 import org.osgi.framework.BundleContext;
@@ -75,6 +79,12 @@ public class OakResourceListener extends NodeObserver implements Closeable {
 
     private final PathMapper pathMapper;
 
+    /**
+     * The changes of the current commit collected for the resource change
+     * listeners. Only accessed by the observer thread.
+     */
+    private final List<ResourceChange> pendingChanges = new ArrayList<ResourceChange>();
+
     public OakResourceListener(
             final String mountPrefix,
             final ObservationListenerSupport support,
@@ -103,6 +113,21 @@ public class OakResourceListener extends NodeObserver implements Closeable {
         this.support.dispose();
     }
 
+    /**
+     * Deliver all changes of a commit as one change set.
+     */
+    @Override
+    public void contentChanged(final NodeState root, final CommitInfo info) {
+        try {
+            super.contentChanged(root, info);
+        } finally {
+            if ( !this.pendingChanges.isEmpty() ) {
+                this.support.getChangeDispatcher().dispatch(new ArrayList<ResourceChange>(this.pendingChanges));
+                this.pendingChanges.clear();
+            }
+        }
+    }
+
     @Override
     protected void added(final String path,
             final Set<String> added,
@@ -180,7 +205,8 @@ public class OakResourceListener extends NodeObserver implements Closeable {
 
         try {
             final EventAdmin localEa = this.support.getEventAdmin();
-            if (localEa != null ) {
+            final boolean collectChanges = this.support.getChangeDispatcher().hasListeners();
+            if (localEa != null || collectChanges ) {
                 boolean sendEvent = true;
                 if (!TOPIC_RESOURCE_REMOVED.equals(topic)) {
                     String resourceType = properties.get("sling:resourceType");
@@ -253,7 +279,12 @@ public class OakResourceListener extends NodeObserver implements Closeable {
                     if ( resourcePath != null ) {
                         changes.put(SlingConstants.PROPERTY_PATH, resourcePath);
 
-                        localEa.sendEvent(new org.osgi.service.event.Event(topic, new EventProperties(changes)));
+                        if ( localEa != null ) {
+                            localEa.sendEvent(new org.osgi.service.event.Event(topic, new EventProperties(changes)));
+                        }
+                        if ( collectChanges ) {
+                            this.pendingChanges.add(ResourceChangeDispatcher.toChange(topic, changes));
+                        }
                     } else {
                         logger.debug("Dropping observation event for {}", changes.get(SlingConstants.PROPERTY_PATH));
                     }
@@ -25,14 +25,18 @@ import java.util.Map;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.jcr.resource.JcrResourceConstants;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,8 +49,17 @@ public class ObservationListenerSupport  {
     /** Logger */
     private final Logger logger = LoggerFactory.getLogger(ObservationListenerSupport.class);
 
+    private static final String[] RESOURCE_TOPICS = new String[] {
+        SlingConstants.TOPIC_RESOURCE_ADDED,
+        SlingConstants.TOPIC_RESOURCE_CHANGED,
+        SlingConstants.TOPIC_RESOURCE_REMOVED
+    };
+
     private final ServiceTracker eventAdminTracker;
 
+    /** Tracks the event handlers subscribed to resource events. */
+    private final ServiceTracker eventHandlerTracker;
+
     private ServiceReference resourceResolverFactoryReference;
 
     /** The admin resource resolver. */
@@ -56,6 +69,9 @@ public class ObservationListenerSupport  {
 
     private final Session session;
 
+    /** Delivers the change sets to the resource change listeners. */
+    private final ResourceChangeDispatcher changeDispatcher;
+
     public ObservationListenerSupport(final BundleContext bundleContext, final SlingRepository repository)
     throws RepositoryException {
         this.bundleContext = bundleContext;
@@ -63,6 +79,30 @@ public class ObservationListenerSupport  {
         this.eventAdminTracker = new ServiceTracker(bundleContext, EventAdmin.class.getName(), null);
         this.eventAdminTracker.open();
 
+        this.eventHandlerTracker = new ServiceTracker(bundleContext, EventHandler.class.getName(), null) {
+
+            @Override
+            public Object addingService(final ServiceReference reference) {
+                // the handler itself is not needed, so it is not fetched
+                return isResourceEventHandler(reference) ? reference : null;
+            }
+
+            @Override
+            public void modifiedService(final ServiceReference reference, final Object service) {
+                if ( !isResourceEventHandler(reference) ) {
+                    this.remove(reference);
+                }
+            }
+
+            @Override
+            public void removedService(final ServiceReference reference, final Object service) {
+                // nothing to unget
+            }
+        };
+        this.eventHandlerTracker.open();
+
+        this.changeDispatcher = new ResourceChangeDispatcher(bundleContext);
+
         this.session = repository.loginAdministrative(null);
     }
 
@@ -80,6 +120,8 @@ public class ObservationListenerSupport  {
             this.resourceResolverFactoryReference = null;
         }
         this.eventAdminTracker.close();
+        this.eventHandlerTracker.close();
+        this.changeDispatcher.dispose();
 
         this.session.logout();
     }
@@ -88,10 +130,52 @@ public class ObservationListenerSupport  {
         return this.session;
     }
 
+    /**
+     * Get the event admin to send the resource events to.
+     * @return The event admin or <code>null</code> if it is not available
+     *         or if no event handler is subscribed to resource events. In
+     *         the latter case sending the events is not needed at all, which
+     *         avoids flooding the event admin on large saves once the event
+     *         handlers moved to {@link org.apache.sling.jcr.resource.ResourceChangeListener}.
+     */
     public EventAdmin getEventAdmin() {
+        if ( this.eventHandlerTracker.size() == 0 ) {
+            return null;
+        }
         return (EventAdmin) this.eventAdminTracker.getService();
     }
 
+    /**
+     * Is the event handler subscribed to any of the resource topics?
+     * The event filter of the handler is not evaluated.
+     */
+    static boolean isResourceEventHandler(final ServiceReference reference) {
+        final String[] topics = PropertiesUtil.toStringArray(reference.getProperty(EventConstants.EVENT_TOPIC));
+        if ( topics != null ) {
+            for(final String topic : topics) {
+                for(final String resourceTopic : RESOURCE_TOPICS) {
+                    if ( matches(topic, resourceTopic) ) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(final String topic, final String resourceTopic) {
+        if ( topic.endsWith("*") ) {
+            // "*" or a wildcard like "org/apache/sling/*"
+            final String prefix = topic.substring(0, topic.length() - 1);
+            return prefix.length() == 0 || (prefix.endsWith("/") && resourceTopic.startsWith(prefix));
+        }
+        return topic.equals(resourceTopic);
+    }
+
+    public ResourceChangeDispatcher getChangeDispatcher() {
+        return this.changeDispatcher;
+    }
+
     /**
      * Get a resource resolver.
      * We don't need any syncing as this is called from the process OSGi thread.
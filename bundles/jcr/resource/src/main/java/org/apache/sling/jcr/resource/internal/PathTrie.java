@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A <code>PathTrie</code> maps path prefixes to values. Looking up the
+ * values for a path walks the segments of the path once, regardless of
+ * the number of registered prefixes.
+ * <p>
+ * A prefix matches the path itself and all paths below it, but not
+ * paths merely starting with the same characters: <code>/content</code>
+ * matches <code>/content/a</code> but not <code>/contentx</code>.
+ * <p>
+ * Instances are not thread safe, they are built once and then only read.
+ */
+public class PathTrie<T> {
+
+    private final Node<T> root = new Node<T>();
+
+    private boolean empty = true;
+
+    /**
+     * Register the value for the path prefix.
+     */
+    public void add(final String prefix, final T value) {
+        Node<T> current = this.root;
+        int start = 0;
+        while ( start < prefix.length() ) {
+            int end = prefix.indexOf('/', start);
+            if ( end == -1 ) {
+                end = prefix.length();
+            }
+            if ( end > start ) {
+                final String segment = prefix.substring(start, end);
+                Node<T> child = current.children.get(segment);
+                if ( child == null ) {
+                    child = new Node<T>();
+                    current.children.put(segment, child);
+                }
+                current = child;
+            }
+            start = end + 1;
+        }
+        current.values.add(value);
+        this.empty = false;
+    }
+
+    public boolean isEmpty() {
+        return this.empty;
+    }
+
+    /**
+     * Add all values registered for the path or one of its parents
+     * to the collection.
+     */
+    public void collect(final String path, final Collection<T> result) {
+        Node<T> current = this.root;
+        result.addAll(current.values);
+        int start = 0;
+        while ( start < path.length() ) {
+            int end = path.indexOf('/', start);
+            if ( end == -1 ) {
+                end = path.length();
+            }
+            if ( end > start ) {
+                current = current.children.get(path.substring(start, end));
+                if ( current == null ) {
+                    return;
+                }
+                result.addAll(current.values);
+            }
+            start = end + 1;
+        }
+    }
+
+    private static final class Node<T> {
+
+        final Map<String, Node<T>> children = new HashMap<String, Node<T>>();
+
+        final List<T> values = new ArrayList<T>(1);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.apache.sling.jcr.resource.ResourceChange;
+import org.apache.sling.jcr.resource.ResourceChangeListener;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>ResourceChangeDispatcher</code> delivers the change sets of the
+ * observation listeners to the registered {@link ResourceChangeListener}s.
+ * <p>
+ * The subscriptions of all listeners are kept in a {@link PathTrie} which is
+ * rebuilt whenever a listener comes or goes. Each change is matched against
+ * the trie once and the resulting batches are delivered by a single thread,
+ * so listeners see the change sets in order.
+ */
+public class ResourceChangeDispatcher {
+
+    /** Logger */
+    private final Logger logger = LoggerFactory.getLogger(ResourceChangeDispatcher.class);
+
+    private static final String[] DEFAULT_PATHS = new String[] {"/"};
+
+    private final ServiceTracker listenerTracker;
+
+    /** The registered listeners and their paths. */
+    private final Map<ServiceReference, Subscription> listeners = new HashMap<ServiceReference, Subscription>();
+
+    /** The current subscriptions, replaced on each listener change. */
+    private volatile PathTrie<ResourceChangeListener> subscriptions = new PathTrie<ResourceChangeListener>();
+
+    private final ExecutorService executor;
+
+    public ResourceChangeDispatcher(final BundleContext bundleContext) {
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "Apache Sling JCR Resource Change Dispatcher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.listenerTracker = new ServiceTracker(bundleContext, ResourceChangeListener.class.getName(), null) {
+
+            @Override
+            public Object addingService(final ServiceReference reference) {
+                final Object service = super.addingService(reference);
+                if ( service instanceof ResourceChangeListener ) {
+                    bindListener(reference, (ResourceChangeListener)service);
+                }
+                return service;
+            }
+
+            @Override
+            public void modifiedService(final ServiceReference reference, final Object service) {
+                if ( service instanceof ResourceChangeListener ) {
+                    bindListener(reference, (ResourceChangeListener)service);
+                }
+            }
+
+            @Override
+            public void removedService(final ServiceReference reference, final Object service) {
+                unbindListener(reference);
+                super.removedService(reference, service);
+            }
+        };
+        this.listenerTracker.open();
+    }
+
+    /**
+     * Dispose this dispatcher, pending change sets are dropped.
+     */
+    public void dispose() {
+        this.listenerTracker.close();
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Are there any listeners? If not, the observation listeners
+     * do not need to collect the changes at all.
+     */
+    public boolean hasListeners() {
+        return !this.subscriptions.isEmpty();
+    }
+
+    void bindListener(final ServiceReference reference, final ResourceChangeListener listener) {
+        final String[] paths = PropertiesUtil.toStringArray(reference.getProperty(ResourceChangeListener.PATHS), DEFAULT_PATHS);
+        logger.debug("Binding resource change listener {} for {}", listener, Arrays.toString(paths));
+        synchronized ( this.listeners ) {
+            this.listeners.put(reference, new Subscription(listener, paths));
+            this.updateSubscriptions();
+        }
+    }
+
+    void unbindListener(final ServiceReference reference) {
+        synchronized ( this.listeners ) {
+            if ( this.listeners.remove(reference) != null ) {
+                this.updateSubscriptions();
+            }
+        }
+    }
+
+    private void updateSubscriptions() {
+        final PathTrie<ResourceChangeListener> trie = new PathTrie<ResourceChangeListener>();
+        for(final Subscription s : this.listeners.values()) {
+            for(final String path : s.paths) {
+                trie.add(path, s.listener);
+            }
+        }
+        this.subscriptions = trie;
+    }
+
+    /**
+     * Deliver the changes of a save or commit.
+     */
+    public void dispatch(final List<ResourceChange> changes) {
+        final PathTrie<ResourceChangeListener> trie = this.subscriptions;
+        if ( changes.isEmpty() || trie.isEmpty() ) {
+            return;
+        }
+        final Map<ResourceChangeListener, List<ResourceChange>> batches = new LinkedHashMap<ResourceChangeListener, List<ResourceChange>>();
+        final Set<ResourceChangeListener> matching = new HashSet<ResourceChangeListener>();
+        for(final ResourceChange change : changes) {
+            matching.clear();
+            trie.collect(change.getPath(), matching);
+            for(final ResourceChangeListener listener : matching) {
+                List<ResourceChange> batch = batches.get(listener);
+                if ( batch == null ) {
+                    batch = new ArrayList<ResourceChange>();
+                    batches.put(listener, batch);
+                }
+                batch.add(change);
+            }
+        }
+        if ( batches.isEmpty() ) {
+            return;
+        }
+        try {
+            this.executor.execute(new Runnable() {
+
+                public void run() {
+                    for(final Map.Entry<ResourceChangeListener, List<ResourceChange>> entry : batches.entrySet()) {
+                        try {
+                            entry.getKey().onChange(Collections.unmodifiableList(entry.getValue()));
+                        } catch (final Throwable t) {
+                            logger.warn("Resource change listener " + entry.getKey() + " failed to process changes.", t);
+                        }
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            // dispatcher has been disposed, ignore
+            logger.debug("Dropping {} resource changes", changes.size());
+        }
+    }
+
+    /**
+     * Create a change from the properties of a resource event.
+     * @param topic The topic of the event
+     * @param properties The properties of the event
+     */
+    public static ResourceChange toChange(final String topic, final Map<String, Object> properties) {
+        final ResourceChange.ChangeType type;
+        if ( SlingConstants.TOPIC_RESOURCE_ADDED.equals(topic) ) {
+            type = ResourceChange.ChangeType.ADDED;
+        } else if ( SlingConstants.TOPIC_RESOURCE_REMOVED.equals(topic) ) {
+            type = ResourceChange.ChangeType.REMOVED;
+        } else {
+            type = ResourceChange.ChangeType.CHANGED;
+        }
+        return new ResourceChange(type,
+                (String)properties.get(SlingConstants.PROPERTY_PATH),
+                (String)properties.get(SlingConstants.PROPERTY_RESOURCE_TYPE),
+                (String)properties.get(SlingConstants.PROPERTY_RESOURCE_SUPER_TYPE),
+                (String)properties.get(SlingConstants.PROPERTY_USERID),
+                "unknown".equals(properties.get("event.application")),
+                toSet(properties.get(SlingConstants.PROPERTY_ADDED_ATTRIBUTES)),
+                toSet(properties.get(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES)),
+                toSet(properties.get(SlingConstants.PROPERTY_REMOVED_ATTRIBUTES)));
+    }
+
+    private static Set<String> toSet(final Object value) {
+        if ( value instanceof String[] ) {
+            return new HashSet<String>(Arrays.asList((String[])value));
+        }
+        return null;
+    }
+
+    private static final class Subscription {
+
+        final ResourceChangeListener listener;
+
+        final String[] paths;
+
+        Subscription(final ResourceChangeListener listener, final String[] paths) {
+            this.listener = listener;
+            this.paths = paths;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.jcr.resource.JcrPropertyMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>JcrPropertyMapCache</code> shares the read only value maps of
+ * the nodes read through a resource resolver. All resources for the same
+ * node return the same {@link JcrPropertyMap}, so the properties are read
+ * only once from the repository. The maps are keyed by node identifier.
+ * <p>
+ * A map returned a second time has all its properties loaded at once with
+ * a single <code>Node.getProperties()</code> call instead of reading the
+ * properties one by one.
+ * <p>
+ * The cache is bypassed as long as the session has pending changes. It is
+ * cleared when the changes are committed or reverted, and the entry of a
+ * node is removed when the node is modified through a modifiable or a
+ * persistable value map.
+ * <p>
+ * Changes saved directly through the JCR API can not be noticed, as there
+ * is no synchronous save event. Therefore a node is not cached anymore once
+ * it has been handed out by a resource, and the cache is bypassed for good
+ * once the session has been handed out by the resource provider.
+ * <p>
+ * This class is not thread safe, like the resource resolver owning it.
+ */
+public class JcrPropertyMapCache {
+
+    /** The maximum number of cached maps. */
+    private static final int MAX_ENTRIES = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JcrPropertyMapCache.class);
+
+    private final Map<String, Entry> maps = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** The identifiers of the nodes which might be modified directly. */
+    private final Set<String> excludedNodes = new HashSet<String>();
+
+    /** Has the session been handed out? */
+    private boolean disabled;
+
+    /**
+     * Get the value map for the node.
+     * @param node The node
+     * @param dynamicClassLoader Dynamic class loader for loading serialized objects.
+     * @return The shared value map or a new one if the session has pending changes
+     *         or the node might be modified directly.
+     */
+    public ValueMap getValueMap(final Node node, final ClassLoader dynamicClassLoader) {
+        try {
+            if ( this.disabled ) {
+                return new JcrPropertyMap(node, dynamicClassLoader);
+            }
+            if ( node.getSession().hasPendingChanges() ) {
+                this.maps.clear();
+                return new JcrPropertyMap(node, dynamicClassLoader);
+            }
+            final String identifier = node.getIdentifier();
+            if ( this.excludedNodes.contains(identifier) ) {
+                return new JcrPropertyMap(node, dynamicClassLoader);
+            }
+            Entry entry = this.maps.get(identifier);
+            if ( entry == null ) {
+                entry = new Entry(new JcrPropertyMap(node, dynamicClassLoader));
+                this.maps.put(identifier, entry);
+            } else if ( !entry.loaded ) {
+                // reading the key set loads all properties at once
+                entry.map.keySet();
+                entry.loaded = true;
+            }
+            return entry.map;
+        } catch (final RepositoryException re) {
+            LOGGER.debug("Unable to use cached properties of node " + node, re);
+            return new JcrPropertyMap(node, dynamicClassLoader);
+        }
+    }
+
+    /**
+     * Remove the cached value map of the node.
+     * @param node The modified node
+     */
+    public void invalidate(final Node node) {
+        try {
+            this.maps.remove(node.getIdentifier());
+        } catch (final RepositoryException re) {
+            this.maps.clear();
+        }
+    }
+
+    /**
+     * Remove the cached value map of the node and do not cache it anymore,
+     * as the node has been handed out and might be modified directly.
+     * @param node The handed out node
+     */
+    public void exclude(final Node node) {
+        if ( this.disabled ) {
+            return;
+        }
+        try {
+            final String identifier = node.getIdentifier();
+            this.maps.remove(identifier);
+            this.excludedNodes.add(identifier);
+        } catch (final RepositoryException re) {
+            this.disable();
+        }
+    }
+
+    /**
+     * Remove all cached value maps and do not cache anymore, as the session
+     * has been handed out and might be used to save changes directly.
+     */
+    public void disable() {
+        this.disabled = true;
+        this.maps.clear();
+        this.excludedNodes.clear();
+    }
+
+    /**
+     * Remove all cached value maps.
+     */
+    public void clear() {
+        this.maps.clear();
+    }
+
+    private static final class Entry {
+
+        final JcrPropertyMap map;
+
+        /** Have all properties been read? */
+        boolean loaded;
+
+        Entry(final JcrPropertyMap map) {
+            this.map = map;
+        }
+    }
+}
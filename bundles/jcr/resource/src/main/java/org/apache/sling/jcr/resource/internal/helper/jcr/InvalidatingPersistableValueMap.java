@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal.helper.jcr;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Node;
+
+import org.apache.sling.api.resource.PersistableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.jcr.resource.JcrModifiablePropertyMap;
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCache;
+
+/**
+ * The <code>InvalidatingPersistableValueMap</code> wraps a
+ * {@link JcrModifiablePropertyMap} and removes the shared value map of the
+ * node from the cache of the resolver when the changes are saved.
+ */
+final class InvalidatingPersistableValueMap implements PersistableValueMap {
+
+    private final JcrModifiablePropertyMap map;
+
+    private final Node node;
+
+    private final JcrPropertyMapCache propertyMapCache;
+
+    InvalidatingPersistableValueMap(final Node node, final ClassLoader dynamicCL,
+            final JcrPropertyMapCache propertyMapCache) {
+        this.map = new JcrModifiablePropertyMap(node, dynamicCL);
+        this.node = node;
+        this.propertyMapCache = propertyMapCache;
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.PersistableValueMap#save()
+     */
+    public void save() throws PersistenceException {
+        try {
+            this.map.save();
+        } finally {
+            // even a failed save might have stored some of the changes
+            this.propertyMapCache.invalidate(this.node);
+        }
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.PersistableValueMap#reset()
+     */
+    public void reset() {
+        this.map.reset();
+    }
+
+    // ---------- ValueMap
+
+    public <T> T get(final String name, final Class<T> type) {
+        return this.map.get(name, type);
+    }
+
+    public <T> T get(final String name, final T defaultValue) {
+        return this.map.get(name, defaultValue);
+    }
+
+    // ---------- Map
+
+    public int size() {
+        return this.map.size();
+    }
+
+    public boolean isEmpty() {
+        return this.map.isEmpty();
+    }
+
+    public boolean containsKey(final Object key) {
+        return this.map.containsKey(key);
+    }
+
+    public boolean containsValue(final Object value) {
+        return this.map.containsValue(value);
+    }
+
+    public Object get(final Object key) {
+        return this.map.get(key);
+    }
+
+    public Object put(final String key, final Object value) {
+        return this.map.put(key, value);
+    }
+
+    public Object remove(final Object key) {
+        return this.map.remove(key);
+    }
+
+    public void putAll(final Map<? extends String, ? extends Object> t) {
+        this.map.putAll(t);
+    }
+
+    public void clear() {
+        this.map.clear();
+    }
+
+    public Set<String> keySet() {
+        return this.map.keySet();
+    }
+
+    public Collection<Object> values() {
+        return this.map.values();
+    }
+
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return this.map.entrySet();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return this.map.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.map.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.map.toString();
+    }
+}
@@ -42,6 +42,7 @@ import org.apache.sling.jcr.resource.JcrModifiablePropertyMap;
 import org.apache.sling.jcr.resource.JcrPropertyMap;
 import org.apache.sling.jcr.resource.JcrResourceConstants;
 import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,6 +68,9 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
 
     private final PathMapper pathMapper;
 
+    /** The value maps shared by the resources of the resolver, might be null. */
+    private final JcrPropertyMapCache propertyMapCache;
+
     /**
      * Constructor
      * @param resourceResolver
@@ -80,9 +84,27 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
                            final Node node,
                            final ClassLoader dynamicClassLoader,
                            final PathMapper pathMapper) {
+        this(resourceResolver, path, node, dynamicClassLoader, pathMapper, null);
+    }
+
+    /**
+     * Constructor
+     * @param resourceResolver
+     * @param path The path of the resource (lazily initialized if null)
+     * @param node The Node underlying this resource
+     * @param dynamicClassLoader Dynamic class loader for loading serialized objects.
+     * @param propertyMapCache The value map cache of the resolver or <code>null</code>
+     */
+    public JcrNodeResource(final ResourceResolver resourceResolver,
+                           final String path,
+                           final Node node,
+                           final ClassLoader dynamicClassLoader,
+                           final PathMapper pathMapper,
+                           final JcrPropertyMapCache propertyMapCache) {
         super(resourceResolver, path, node, new JcrNodeResourceMetadata(node), pathMapper);
         this.pathMapper = pathMapper;
         this.dynamicClassLoader = dynamicClassLoader;
+        this.propertyMapCache = propertyMapCache;
         this.resourceSuperType = UNSET_RESOURCE_SUPER_TYPE;
     }
 
@@ -125,16 +147,26 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
     @SuppressWarnings("unchecked")
     public <Type> Type adaptTo(Class<Type> type) {
         if (type == Node.class || type == Item.class) {
+            if ( this.propertyMapCache != null ) {
+                // the node might be modified and saved directly
+                this.propertyMapCache.exclude(getNode());
+            }
             return (Type) getNode(); // unchecked cast
         } else if (type == InputStream.class) {
             return (Type) getInputStream(); // unchecked cast
         } else if (type == Map.class || type == ValueMap.class) {
+            if ( this.propertyMapCache != null ) {
+                return (Type) this.propertyMapCache.getValueMap(getNode(), this.dynamicClassLoader); // unchecked cast
+            }
             return (Type) new JcrPropertyMap(getNode(), this.dynamicClassLoader); // unchecked cast
         } else if (type == PersistableValueMap.class ) {
             // check write
             try {
                 getNode().getSession().checkPermission(getPath(),
                     "set_property");
+                if ( this.propertyMapCache != null ) {
+                    return (Type) new InvalidatingPersistableValueMap(getNode(), this.dynamicClassLoader, this.propertyMapCache);
+                }
                 return (Type) new JcrModifiablePropertyMap(getNode(), this.dynamicClassLoader);
             } catch (AccessControlException ace) {
                 // the user has no write permission, cannot adapt
@@ -152,7 +184,7 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
             try {
                 getNode().getSession().checkPermission(getPath(),
                     "set_property");
-                return (Type) new JcrModifiableValueMap(getNode(), this.dynamicClassLoader);
+                return (Type) new JcrModifiableValueMap(getNode(), this.dynamicClassLoader, this.propertyMapCache);
             } catch (AccessControlException ace) {
                 // the user has no write permission, cannot adapt
                 LOGGER.debug(
@@ -242,7 +274,7 @@ class JcrNodeResource extends JcrItemResource<Node> { // this should be package
         try {
             if (getNode().hasNodes()) {
                 return new JcrNodeResourceIterator(getResourceResolver(),
-                    getNode().getNodes(), this.dynamicClassLoader, pathMapper);
+                    getNode().getNodes(), this.dynamicClassLoader, pathMapper, propertyMapCache);
             }
         } catch (final RepositoryException re) {
             LOGGER.error("listChildren: Cannot get children of " + this, re);
@@ -26,6 +26,7 @@ import javax.jcr.NodeIterator;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +54,8 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
 
     private final PathMapper pathMapper;
 
+    private final JcrPropertyMapCache propertyMapCache;
+
     /**
      * Creates an instance using the given resource manager and the nodes
      * provided as a node iterator.
@@ -61,10 +64,24 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
                                    final NodeIterator nodes,
                                    final ClassLoader dynamicClassLoader,
                                    final PathMapper pathMapper) {
+        this(resourceResolver, nodes, dynamicClassLoader, pathMapper, null);
+    }
+
+    /**
+     * Creates an instance using the given resource manager and the nodes
+     * provided as a node iterator. The resources share the value maps of
+     * the <code>propertyMapCache</code> if not <code>null</code>.
+     */
+    public JcrNodeResourceIterator(final ResourceResolver resourceResolver,
+                                   final NodeIterator nodes,
+                                   final ClassLoader dynamicClassLoader,
+                                   final PathMapper pathMapper,
+                                   final JcrPropertyMapCache propertyMapCache) {
         this.resourceResolver = resourceResolver;
         this.nodes = nodes;
         this.dynamicClassLoader = dynamicClassLoader;
         this.pathMapper = pathMapper;
+        this.propertyMapCache = propertyMapCache;
         this.nextResult = seek();
     }
 
@@ -98,7 +115,7 @@ public class JcrNodeResourceIterator implements Iterator<Resource> {
                 if ( path != null ) {
                     final Resource resource = new JcrNodeResource(resourceResolver,
                         path,
-                        n, dynamicClassLoader, pathMapper);
+                        n, dynamicClassLoader, pathMapper, propertyMapCache);
                     LOGGER.debug("seek: Returning Resource {}", resource);
                     return resource;
                 }
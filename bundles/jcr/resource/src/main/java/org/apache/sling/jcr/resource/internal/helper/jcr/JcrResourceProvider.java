@@ -61,6 +61,7 @@ import org.apache.sling.jcr.resource.JcrResourceConstants;
 import org.apache.sling.jcr.resource.JcrResourceUtil;
 import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
 import org.apache.sling.jcr.resource.internal.NodeUtil;
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -107,14 +108,26 @@ public class JcrResourceProvider
     private final RepositoryHolder repositoryHolder;
     private final PathMapper pathMapper;
 
+    /** The value maps shared by the resources of this provider, might be null. */
+    private final JcrPropertyMapCache propertyMapCache;
+
     public JcrResourceProvider(final Session session,
                                final ClassLoader dynamicClassLoader,
                                final RepositoryHolder repositoryHolder,
                                final PathMapper pathMapper) {
+        this(session, dynamicClassLoader, repositoryHolder, pathMapper, false);
+    }
+
+    public JcrResourceProvider(final Session session,
+                               final ClassLoader dynamicClassLoader,
+                               final RepositoryHolder repositoryHolder,
+                               final PathMapper pathMapper,
+                               final boolean cacheProperties) {
         this.session = session;
         this.dynamicClassLoader = dynamicClassLoader;
         this.repositoryHolder = repositoryHolder;
         this.pathMapper = pathMapper;
+        this.propertyMapCache = cacheProperties ? new JcrPropertyMapCache() : null;
     }
 
     // ---------- ResourceProvider interface ----------------------------------
@@ -197,7 +210,7 @@ public class JcrResourceProvider
                 log.debug(
                     "createResource: Found JCR Node Resource at path '{}'",
                     resourcePath);
-                return new JcrNodeResource(resourceResolver, resourcePath, (Node) item, dynamicClassLoader, pathMapper);
+                return new JcrNodeResource(resourceResolver, resourcePath, (Node) item, dynamicClassLoader, pathMapper, propertyMapCache);
             }
 
             log.debug(
@@ -243,6 +256,7 @@ public class JcrResourceProvider
      * @see org.apache.sling.api.resource.DynamicResourceProvider#close()
      */
     public void close() {
+        this.clearPropertyMapCache();
         this.repositoryHolder.release();
         this.closed = true;
     }
@@ -267,7 +281,7 @@ public class JcrResourceProvider
 
         try {
             final QueryResult res = JcrResourceUtil.query(session, query, language);
-            return new JcrNodeResourceIterator(resolver, res.getNodes(), this.dynamicClassLoader, pathMapper);
+            return new JcrNodeResourceIterator(resolver, res.getNodes(), this.dynamicClassLoader, pathMapper, propertyMapCache);
         } catch (final javax.jcr.query.InvalidQueryException iqe) {
             throw new QuerySyntaxException(iqe.getMessage(), query, language, iqe);
         } catch (final RepositoryException re) {
@@ -419,6 +433,10 @@ public class JcrResourceProvider
     @Override
     public <AdapterType> AdapterType adaptTo(Class<AdapterType> type) {
         if (type == Session.class) {
+            if ( this.propertyMapCache != null ) {
+                // changes might be saved directly through the session
+                this.propertyMapCache.disable();
+            }
             return (AdapterType) session;
         } else if (type == Principal.class) {
             try {
@@ -493,7 +511,7 @@ public class JcrResourceProvider
 
             if ( properties != null ) {
                 // create modifiable map
-                final JcrModifiableValueMap jcrMap = new JcrModifiableValueMap(node, this.dynamicClassLoader);
+                final JcrModifiableValueMap jcrMap = new JcrModifiableValueMap(node, this.dynamicClassLoader, propertyMapCache);
                 // check mixin types first
                 final Object value = properties.get(NodeUtil.MIXIN_TYPES);
                 if ( value != null ) {
@@ -515,7 +533,7 @@ public class JcrResourceProvider
                 }
             }
 
-            return new JcrNodeResource(resolver, resourcePath, node, this.dynamicClassLoader, pathMapper);
+            return new JcrNodeResource(resolver, resourcePath, node, this.dynamicClassLoader, pathMapper, propertyMapCache);
         } catch (final RepositoryException e) {
             throw new PersistenceException("Unable to create node at " + jcrPath, e, resourcePath, null);
         }
@@ -545,6 +563,7 @@ public class JcrResourceProvider
      * @see org.apache.sling.api.resource.ModifyingResourceProvider#revert(ResourceResolver)
      */
     public void revert(final ResourceResolver resolver) {
+        this.clearPropertyMapCache();
         try {
             this.session.refresh(false);
         } catch (final RepositoryException ignore) {
@@ -556,6 +575,7 @@ public class JcrResourceProvider
      * @see org.apache.sling.api.resource.ModifyingResourceProvider#commit(ResourceResolver)
      */
     public void commit(final ResourceResolver resolver) throws PersistenceException {
+        this.clearPropertyMapCache();
         try {
             this.session.save();
         } catch (final RepositoryException e) {
@@ -579,10 +599,17 @@ public class JcrResourceProvider
      * @see org.apache.sling.api.resource.RefreshableResourceProvider#refresh()
      */
     public void refresh() {
+        this.clearPropertyMapCache();
         try {
             this.session.refresh(true);
         } catch (final RepositoryException ignore) {
             log.warn("Unable to refresh session.", ignore);
         }
     }
+
+    private void clearPropertyMapCache() {
+        if ( this.propertyMapCache != null ) {
+            this.propertyMapCache.clear();
+        }
+    }
 }
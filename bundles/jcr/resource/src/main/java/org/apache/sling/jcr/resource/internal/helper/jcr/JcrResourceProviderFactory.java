@@ -93,6 +93,16 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
               description="If this switch is enabled, and Oak is used as the repository implementation, some optimized components are used.")
     private static final String PROPERTY_OPTIMIZE_FOR_OAK = "optimize.oak";
 
+    private static final boolean DEFAULT_CACHE_PROPERTIES = false;
+    @Property(boolValue=DEFAULT_CACHE_PROPERTIES,
+              label="Share Value Maps",
+              description="If this switch is enabled, the value maps of a node are shared by all resources " +
+                          "of a resource resolver until it is committed, reverted or refreshed. Nodes adapted from a " +
+                          "resource are not shared anymore and nothing is shared once the session has been " +
+                          "adapted from the resource resolver. Changes made by other sessions might not be " +
+                          "visible before.")
+    private static final String PROPERTY_CACHE_PROPERTIES = "resource.property.cache";
+
     private static final String REPOSITORY_REFERNENCE_NAME = "repository";
 
     /** The dynamic class loader */
@@ -114,6 +124,9 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
     /** The JCR observation listener. */
     private Closeable listener;
 
+    /** Whether the value maps are shared within a resource resolver. */
+    private volatile boolean cacheProperties;
+
     @Activate
     protected void activate(final ComponentContext context) throws RepositoryException {
 
@@ -128,6 +141,7 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
         }
 
         this.repository = repository;
+        this.cacheProperties = PropertiesUtil.toBoolean(context.getProperties().get(PROPERTY_CACHE_PROPERTIES), DEFAULT_CACHE_PROPERTIES);
         // check for Oak
         final boolean optimizeForOak = PropertiesUtil.toBoolean(context.getProperties().get(PROPERTY_OPTIMIZE_FOR_OAK), DEFAULT_OPTIMIZE_FOR_OAK);
         boolean isOak = false;
@@ -347,7 +361,7 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
             holder.setSession(session);
         }
 
-        return new JcrResourceProvider(session, this.getDynamicClassLoader(), holder, pathMapper);
+        return new JcrResourceProvider(session, this.getDynamicClassLoader(), holder, pathMapper, this.cacheProperties);
     }
 
     /**
@@ -16,19 +16,30 @@
  */
 package org.apache.sling.jcr.resource.internal;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.jcr.Node;
 import javax.jcr.Session;
 
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.commons.testing.jcr.RepositoryUtil;
 import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.jcr.resource.ResourceChange;
+import org.apache.sling.jcr.resource.ResourceChange.ChangeType;
 import org.apache.sling.jcr.resource.internal.helper.jcr.JcrTestNodeResource;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Test;
 import org.mockito.Mockito;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.event.Event;
@@ -82,6 +93,8 @@ public class JcrResourceListenerTest extends AbstractListenerTest {
 
         final ServiceTracker tracker = mock(ServiceTracker.class);
         when(tracker.getService()).thenReturn(mockEA);
+        // an event handler for resource events is registered
+        when(tracker.size()).thenReturn(1);
 
         final BundleContext bundleContext = mock(BundleContext.class);
         when(bundleContext.createFilter(any(String.class))).thenReturn(null);
@@ -92,6 +105,39 @@ public class JcrResourceListenerTest extends AbstractListenerTest {
                         bundleContext, resolver, tracker);
     }
 
+    @Test
+    public void testChangeSetPerSave() throws Exception {
+        final ResourceChangeDispatcherTest.RecordingListener changeListener = new ResourceChangeDispatcherTest.RecordingListener();
+        this.listener.support.getChangeDispatcher().bindListener(ResourceChangeDispatcherTest.reference(), changeListener);
+
+        final String path = "/test" + System.currentTimeMillis() + "-changes";
+        final Node node = adminSession.getRootNode().addNode(path.substring(1), "nt:unstructured");
+        node.addNode("child", "nt:unstructured");
+        adminSession.save();
+
+        // all changes of a save are flushed as one change set
+        final List<ResourceChange> added = changeListener.next();
+        assertNotNull(added);
+        final Set<String> addedPaths = new HashSet<String>();
+        for(final ResourceChange change : added) {
+            assertEquals(ChangeType.ADDED, change.getType());
+            addedPaths.add(change.getPath());
+        }
+        assertEquals(2, added.size());
+        assertTrue(addedPaths.contains(path));
+        assertTrue(addedPaths.contains(path + "/child"));
+
+        node.setProperty("prop", "value");
+        adminSession.save();
+
+        final List<ResourceChange> changed = changeListener.next();
+        assertNotNull(changed);
+        assertEquals(1, changed.size());
+        assertEquals(ChangeType.CHANGED, changed.get(0).getType());
+        assertEquals(path, changed.get(0).getPath());
+        assertTrue(changed.get(0).getAddedAttributes().contains("prop"));
+    }
+
     @Override
     public SlingRepository getRepository() {
         return RepositoryUtil.getRepository();
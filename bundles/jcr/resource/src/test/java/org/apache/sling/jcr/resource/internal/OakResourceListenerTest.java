@@ -91,6 +91,8 @@ public class OakResourceListenerTest extends AbstractListenerTest {
 
         ServiceTracker tracker = mock(ServiceTracker.class);
         when(tracker.getService()).thenReturn(mockEA);
+        // an event handler for resource events is registered
+        when(tracker.size()).thenReturn(1);
 
         BundleContext bundleContext = mock(BundleContext.class);
         when(bundleContext.createFilter(any(String.class))).thenReturn(null);
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PathTrieTest {
+
+    private static Set<String> collect(final PathTrie<String> trie, final String path) {
+        final Set<String> result = new HashSet<String>();
+        trie.collect(path, result);
+        return result;
+    }
+
+    private static Set<String> set(final String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+    @Test
+    public void testPrefixes() {
+        final PathTrie<String> trie = new PathTrie<String>();
+        assertTrue(trie.isEmpty());
+
+        trie.add("/", "root");
+        trie.add("/content", "content");
+        trie.add("/content/site/", "site");
+        trie.add("/apps", "apps");
+        assertFalse(trie.isEmpty());
+
+        assertEquals(set("root"), collect(trie, "/"));
+        assertEquals(set("root", "content"), collect(trie, "/content"));
+        assertEquals(set("root", "content"), collect(trie, "/content/other/page"));
+        assertEquals(set("root", "content", "site"), collect(trie, "/content/site/page/jcr:content"));
+        assertEquals(set("root", "apps"), collect(trie, "/apps/sling"));
+        // prefixes only match on segment boundaries
+        assertEquals(set("root"), collect(trie, "/contentx"));
+    }
+
+    @Test
+    public void testNoRoot() {
+        final PathTrie<String> trie = new PathTrie<String>();
+        trie.add("/content", "a");
+        trie.add("/content", "b");
+
+        assertEquals(set(), collect(trie, "/"));
+        assertEquals(set(), collect(trie, "/libs/content"));
+        assertEquals(set("a", "b"), collect(trie, "/content/a"));
+    }
+}
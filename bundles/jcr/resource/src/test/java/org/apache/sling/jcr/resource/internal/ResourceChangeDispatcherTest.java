@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.jcr.resource.ResourceChange;
+import org.apache.sling.jcr.resource.ResourceChange.ChangeType;
+import org.apache.sling.jcr.resource.ResourceChangeListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Test the batching of the {@link ResourceChangeDispatcher}.
+ */
+public class ResourceChangeDispatcherTest {
+
+    private ResourceChangeDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        this.dispatcher = new ResourceChangeDispatcher(mock(BundleContext.class));
+    }
+
+    @After
+    public void tearDown() {
+        this.dispatcher.dispose();
+    }
+
+    /** Listener recording the change sets it receives. */
+    static final class RecordingListener implements ResourceChangeListener {
+
+        final BlockingQueue<List<ResourceChange>> received = new LinkedBlockingQueue<List<ResourceChange>>();
+
+        public void onChange(final List<ResourceChange> changes) {
+            received.add(new ArrayList<ResourceChange>(changes));
+        }
+
+        List<ResourceChange> next() throws InterruptedException {
+            return received.poll(5, TimeUnit.SECONDS);
+        }
+    }
+
+    static ServiceReference reference(final String... paths) {
+        final ServiceReference ref = mock(ServiceReference.class);
+        when(ref.getProperty(ResourceChangeListener.PATHS)).thenReturn(paths.length == 0 ? null : paths);
+        return ref;
+    }
+
+    private static ResourceChange change(final ChangeType type, final String path) {
+        return new ResourceChange(type, path, null, null, null, false, null, null, null);
+    }
+
+    private static List<String> paths(final List<ResourceChange> changes) {
+        final List<String> paths = new ArrayList<String>();
+        for(final ResourceChange change : changes) {
+            paths.add(change.getPath());
+        }
+        return paths;
+    }
+
+    @Test
+    public void testBatchPerListener() throws Exception {
+        final RecordingListener all = new RecordingListener();
+        final RecordingListener content = new RecordingListener();
+        final RecordingListener apps = new RecordingListener();
+        this.dispatcher.bindListener(reference(), all);
+        this.dispatcher.bindListener(reference("/content"), content);
+        this.dispatcher.bindListener(reference("/apps"), apps);
+
+        this.dispatcher.dispatch(Arrays.asList(
+                change(ChangeType.ADDED, "/content/a"),
+                change(ChangeType.CHANGED, "/libs/b"),
+                change(ChangeType.REMOVED, "/content/c")));
+
+        // each listener gets one call with its matching changes in order
+        assertEquals(Arrays.asList("/content/a", "/libs/b", "/content/c"), paths(all.next()));
+        assertEquals(Arrays.asList("/content/a", "/content/c"), paths(content.next()));
+
+        // a listener without matching changes is not called at all
+        this.dispatcher.dispatch(Arrays.asList(change(ChangeType.ADDED, "/apps/x")));
+        assertEquals(Arrays.asList("/apps/x"), paths(apps.next()));
+        assertTrue(apps.received.isEmpty());
+        assertNotNull(all.next());
+        assertNull(content.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testChangeSetsInOrder() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        this.dispatcher.bindListener(reference("/"), listener);
+
+        for(int i = 0; i < 100; i++) {
+            this.dispatcher.dispatch(Arrays.asList(change(ChangeType.CHANGED, "/node" + i)));
+        }
+        for(int i = 0; i < 100; i++) {
+            assertEquals(Arrays.asList("/node" + i), paths(listener.next()));
+        }
+    }
+
+    @Test
+    public void testFailingListener() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        this.dispatcher.bindListener(reference("/"), new ResourceChangeListener() {
+
+            public void onChange(final List<ResourceChange> changes) {
+                throw new IllegalStateException("failure");
+            }
+        });
+        this.dispatcher.bindListener(reference("/"), listener);
+
+        this.dispatcher.dispatch(Arrays.asList(change(ChangeType.ADDED, "/a")));
+        assertEquals(Arrays.asList("/a"), paths(listener.next()));
+    }
+
+    @Test
+    public void testBindAndUnbind() throws Exception {
+        assertFalse(this.dispatcher.hasListeners());
+        // dispatching without listeners is a no op
+        this.dispatcher.dispatch(Arrays.asList(change(ChangeType.ADDED, "/a")));
+
+        final ServiceReference ref = reference("/content");
+        final RecordingListener listener = new RecordingListener();
+        this.dispatcher.bindListener(ref, listener);
+        assertTrue(this.dispatcher.hasListeners());
+
+        this.dispatcher.unbindListener(ref);
+        assertFalse(this.dispatcher.hasListeners());
+        this.dispatcher.dispatch(Arrays.asList(change(ChangeType.ADDED, "/content/a")));
+        assertNull(listener.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+}
@@ -47,6 +47,7 @@ public class SynchronousJcrResourceListener extends JcrResourceListener implemen
         super("/", new ObservationListenerSupport(bundleContext, repo), new PathMapperImpl());
         PrivateAccessor.setField(this.support, "resourceResolver", resolver);
         PrivateAccessor.setField(this.support, "eventAdminTracker", tracker);
+        PrivateAccessor.setField(this.support, "eventHandlerTracker", tracker);
     }
 
     public void dispose() {
@@ -48,6 +48,7 @@ public class SynchronousOakResourceListener extends OakResourceListener {
         super("/", new ObservationListenerSupport(bundleContext, repo), bundleContext, executor, new PathMapperImpl());
         PrivateAccessor.setField(this.support, "resourceResolver", resolver);
         PrivateAccessor.setField(this.support, "eventAdminTracker", tracker);
+        PrivateAccessor.setField(this.support, "eventHandlerTracker", tracker);
     }
 
     public void dispose() {
@@ -29,9 +29,13 @@ import javax.jcr.RepositoryException;
 
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistableValueMap;
 import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.jcr.resource.JcrResourceConstants;
 import org.apache.sling.jcr.resource.internal.PathMapperImpl;
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCache;
 
 public class JcrNodeResourceTest extends JcrItemResourceTestBase {
 
@@ -220,6 +224,100 @@ public class JcrNodeResourceTest extends JcrItemResourceTestBase {
         assertTrue(crossCheck2.isEmpty());
     }
 
+    public void testSharedValueMap() throws Exception {
+
+        String name = "shared";
+        Node res = rootNode.addNode(name, JcrConstants.NT_UNSTRUCTURED);
+        res.setProperty("title", "first");
+        getSession().save();
+
+        res = rootNode.getNode(name);
+        final JcrPropertyMapCache cache = new JcrPropertyMapCache();
+        final JcrNodeResource first = new JcrNodeResource(null, res.getPath(), res, null, new PathMapperImpl(), cache);
+        final JcrNodeResource second = new JcrNodeResource(null, res.getPath(), res, null, new PathMapperImpl(), cache);
+
+        // all resources of the node share the same map
+        final ValueMap props = first.adaptTo(ValueMap.class);
+        assertEquals("first", props.get("title", String.class));
+        assertSame(props, second.adaptTo(ValueMap.class));
+
+        // a modification drops the shared map
+        final ModifiableValueMap mvm = second.adaptTo(ModifiableValueMap.class);
+        mvm.put("title", "second");
+        getSession().save();
+
+        final ValueMap changed = first.adaptTo(ValueMap.class);
+        assertNotSame(props, changed);
+        assertEquals("second", changed.get("title", String.class));
+
+        // without a cache each call returns a new map
+        final JcrNodeResource uncached = new JcrNodeResource(null, res.getPath(), res, null, new PathMapperImpl());
+        assertNotSame(uncached.adaptTo(ValueMap.class), uncached.adaptTo(ValueMap.class));
+    }
+
+    public void testSharedValueMapWithPersistableValueMap() throws Exception {
+
+        String name = "sharedpersistable";
+        Node res = rootNode.addNode(name, JcrConstants.NT_UNSTRUCTURED);
+        res.setProperty("title", "first");
+        getSession().save();
+
+        res = rootNode.getNode(name);
+        final JcrPropertyMapCache cache = new JcrPropertyMapCache();
+        final JcrNodeResource resource = new JcrNodeResource(null, res.getPath(), res, null, new PathMapperImpl(), cache);
+
+        final ValueMap props = resource.adaptTo(ValueMap.class);
+        assertEquals("first", props.get("title", String.class));
+
+        // saving the changes drops the shared map
+        final PersistableValueMap pvm = resource.adaptTo(PersistableValueMap.class);
+        pvm.put("title", "second");
+        pvm.save();
+
+        final ValueMap changed = resource.adaptTo(ValueMap.class);
+        assertNotSame(props, changed);
+        assertEquals("second", changed.get("title", String.class));
+        assertSame(changed, resource.adaptTo(ValueMap.class));
+    }
+
+    public void testSharedValueMapWithDirectSave() throws Exception {
+
+        String name = "shareddirect";
+        Node res = rootNode.addNode(name, JcrConstants.NT_UNSTRUCTURED);
+        res.setProperty("title", "first");
+        getSession().save();
+
+        res = rootNode.getNode(name);
+        final JcrPropertyMapCache cache = new JcrPropertyMapCache();
+        final JcrNodeResource resource = new JcrNodeResource(null, res.getPath(), res, null, new PathMapperImpl(), cache);
+
+        final ValueMap props = resource.adaptTo(ValueMap.class);
+        assertEquals("first", props.get("title", String.class));
+
+        // the node is not shared anymore once it has been handed out
+        final Node node = resource.adaptTo(Node.class);
+        final ValueMap unshared = resource.adaptTo(ValueMap.class);
+        assertNotSame(props, unshared);
+        node.setProperty("title", "second");
+        node.getSession().save();
+
+        assertEquals("second", resource.adaptTo(ValueMap.class).get("title", String.class));
+        assertNotSame(resource.adaptTo(ValueMap.class), resource.adaptTo(ValueMap.class));
+        cache.clear();
+        assertNotSame(resource.adaptTo(ValueMap.class), resource.adaptTo(ValueMap.class));
+
+        // nothing is shared once the session has been handed out
+        final JcrNodeResource other = new JcrNodeResource(null, rootNode.getPath(), rootNode, null, new PathMapperImpl(), cache);
+        assertSame(other.adaptTo(ValueMap.class), other.adaptTo(ValueMap.class));
+        cache.disable();
+        final ValueMap before = other.adaptTo(ValueMap.class);
+        rootNode.setProperty("title", "direct");
+        getSession().save();
+        final ValueMap after = other.adaptTo(ValueMap.class);
+        assertNotSame(before, after);
+        assertEquals("direct", after.get("title", String.class));
+    }
+
     public void testCorrectUTF8ByteLength() throws Exception {
         byte[] utf8bytes = "Übersättigung".getBytes("UTF-8");
         String name = "utf8file";
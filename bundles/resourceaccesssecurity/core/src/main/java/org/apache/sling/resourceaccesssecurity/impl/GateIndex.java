@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceaccesssecurity.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.resourceaccesssecurity.ResourceAccessGate;
+
+/**
+ * The <code>GateIndex</code> finds the gates matching a path in a single
+ * pass over the path instead of evaluating the path pattern of each gate.
+ * <p>
+ * The literal prefix of each pattern, up to the first regular expression
+ * construct, is stored in a character trie. Walking the trie along the path
+ * yields the candidate gates. Patterns which are a plain path, a plain path
+ * followed by <code>.*</code> or <code>.*</code> alone are decided by the
+ * trie without any regular expression. Only the remaining candidates have
+ * their pattern evaluated.
+ * <p>
+ * Instances are immutable and rebuilt whenever the gates change.
+ */
+final class GateIndex {
+
+    static final GateIndex EMPTY = new GateIndex(Collections.<ResourceAccessGateHandler> emptyList());
+
+    private static final String MATCH_ALL = ".*";
+
+    /** The pattern is a plain path. */
+    private static final int KIND_EXACT = 0;
+
+    /** The pattern is a plain path followed by <code>.*</code>. */
+    private static final int KIND_PREFIX = 1;
+
+    /** The pattern needs to be evaluated. */
+    private static final int KIND_REGEX = 2;
+
+    /** The handlers ordered by service ranking. */
+    private final ResourceAccessGateHandler[] handlers;
+
+    private final int[] kinds;
+
+    /** The length of the literal prefix of each pattern. */
+    private final int[] prefixLengths;
+
+    /** The handlers supporting an operation, by operation ordinal. */
+    private final BitSet[] operations;
+
+    private final TrieNode root = new TrieNode();
+
+    GateIndex(final List<ResourceAccessGateHandler> handlers) {
+        this.handlers = handlers.toArray(new ResourceAccessGateHandler[handlers.size()]);
+        this.kinds = new int[this.handlers.length];
+        this.prefixLengths = new int[this.handlers.length];
+
+        final ResourceAccessGate.Operation[] ops = ResourceAccessGate.Operation.values();
+        this.operations = new BitSet[ops.length];
+        for(final ResourceAccessGate.Operation op : ops) {
+            final BitSet set = new BitSet(this.handlers.length);
+            for(int i = 0; i < this.handlers.length; i++) {
+                if ( this.handlers[i].handlesOperation(op) ) {
+                    set.set(i);
+                }
+            }
+            this.operations[op.ordinal()] = set;
+        }
+
+        for(int i = 0; i < this.handlers.length; i++) {
+            final String expression = this.handlers[i].getPathExpression();
+            String prefix = getLiteralPrefix(expression);
+            if ( prefix.length() == expression.length() ) {
+                this.kinds[i] = KIND_EXACT;
+            } else if ( expression.length() == prefix.length() + MATCH_ALL.length() && expression.endsWith(MATCH_ALL) ) {
+                this.kinds[i] = KIND_PREFIX;
+            } else {
+                this.kinds[i] = KIND_REGEX;
+            }
+            this.prefixLengths[i] = prefix.length();
+            this.root.add(prefix, 0, i);
+        }
+    }
+
+    /**
+     * Get the literal part at the start of the regular expression.
+     */
+    static String getLiteralPrefix(final String expression) {
+        if ( expression.indexOf('|') != -1 ) {
+            // an alternative might start anywhere
+            return "";
+        }
+        int length = 0;
+        while ( length < expression.length() && !isSpecial(expression.charAt(length)) ) {
+            length++;
+        }
+        if ( length < expression.length() ) {
+            final char next = expression.charAt(length);
+            if ( next == '?' || next == '*' || next == '+' || next == '{' ) {
+                // the last literal character is quantified
+                length--;
+            }
+        }
+        return expression.substring(0, Math.max(length, 0));
+    }
+
+    private static boolean isSpecial(final char c) {
+        return "\\^$.|?*+()[]{}".indexOf(c) != -1;
+    }
+
+    boolean isEmpty() {
+        return this.handlers.length == 0;
+    }
+
+    /**
+     * Get the handlers for the path and operation, ordered by service ranking.
+     * @param path The path or <code>null</code> in which case all handlers
+     *             supporting the operation are returned.
+     */
+    List<ResourceAccessGateHandler> getMatching(final String path, final ResourceAccessGate.Operation operation) {
+        final BitSet candidates;
+        if ( path == null ) {
+            candidates = this.operations[operation.ordinal()];
+        } else {
+            candidates = new BitSet(this.handlers.length);
+            this.root.collect(path, candidates);
+            candidates.and(this.operations[operation.ordinal()]);
+        }
+        if ( candidates.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        final List<ResourceAccessGateHandler> result = new ArrayList<ResourceAccessGateHandler>(candidates.cardinality());
+        for(int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if ( path == null || this.matches(i, path) ) {
+                result.add(this.handlers[i]);
+            }
+        }
+        return result;
+    }
+
+    private boolean matches(final int index, final String path) {
+        switch ( this.kinds[index] ) {
+            case KIND_EXACT : return path.length() == this.prefixLengths[index];
+            case KIND_PREFIX : return !hasLineTerminator(path, this.prefixLengths[index]);
+            default : return this.handlers[index].matchesPath(path);
+        }
+    }
+
+    /**
+     * Line terminators are not matched by <code>.</code>
+     */
+    private static boolean hasLineTerminator(final String path, final int start) {
+        for(int i = start; i < path.length(); i++) {
+            final char c = path.charAt(i);
+            if ( c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029' ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A node of the prefix trie. A node holds the handlers whose literal
+     * prefix ends at this node.
+     */
+    private static final class TrieNode {
+
+        private final Map<Character, TrieNode> children = new HashMap<Character, TrieNode>();
+
+        private final BitSet handlers = new BitSet();
+
+        void add(final String prefix, final int pos, final int handler) {
+            if ( pos == prefix.length() ) {
+                this.handlers.set(handler);
+            } else {
+                final Character c = prefix.charAt(pos);
+                TrieNode child = this.children.get(c);
+                if ( child == null ) {
+                    child = new TrieNode();
+                    this.children.put(c, child);
+                }
+                child.add(prefix, pos + 1, handler);
+            }
+        }
+
+        void collect(final String path, final BitSet result) {
+            TrieNode current = this;
+            int pos = 0;
+            while ( current != null ) {
+                result.or(current.handlers);
+                if ( pos == path.length() ) {
+                    break;
+                }
+                current = current.children.get(path.charAt(pos));
+                pos++;
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.sling.resourceaccesssecurity.impl;
 
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
@@ -29,7 +30,10 @@ import org.apache.sling.resourceaccesssecurity.ResourceAccessGate;
 
 @Component
 @Service(value=ResourceAccessSecurity.class)
-@Property(name=ResourceAccessSecurity.CONTEXT, value=ResourceAccessSecurity.PROVIDER_CONTEXT)
+@Properties({
+    @Property(name=ResourceAccessSecurity.CONTEXT, value=ResourceAccessSecurity.PROVIDER_CONTEXT),
+    @Property(name=ResourceAccessSecurityImpl.PROP_CACHE_DECISIONS, boolValue=false)
+})
 @Reference(name="ResourceAccessGate", referenceInterface=ResourceAccessGate.class,
            cardinality=ReferenceCardinality.MANDATORY_MULTIPLE,
            policy=ReferencePolicy.DYNAMIC,
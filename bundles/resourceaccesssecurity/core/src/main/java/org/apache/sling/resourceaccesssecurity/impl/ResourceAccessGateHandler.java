@@ -100,6 +100,27 @@ public class ResourceAccessGateHandler implements Comparable<ResourceAccessGateH
         return returnValue;
     }
 
+    /**
+     * Does this gate handle the operation at all?
+     */
+    public boolean handlesOperation(final ResourceAccessGate.Operation operation) {
+        return operations.contains(operation);
+    }
+
+    /**
+     * The regular expression for the paths handled by this gate.
+     */
+    public String getPathExpression() {
+        return pathPattern.pattern();
+    }
+
+    /**
+     * Does the path match the path pattern of this gate?
+     */
+    public boolean matchesPath(final String path) {
+        return pathPattern.matcher(path).matches();
+    }
+
     public boolean isFinalOperation( final ResourceAccessGate.Operation operation ) {
         return finalOperations.contains(operation);
     }
@@ -21,87 +21,154 @@ package org.apache.sling.resourceaccesssecurity.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import org.apache.felix.scr.annotations.Activate;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.security.AccessSecurityException;
 import org.apache.sling.api.security.ResourceAccessSecurity;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.resourceaccesssecurity.ResourceAccessGate;
 import org.apache.sling.resourceaccesssecurity.ResourceAccessGate.GateResult;
 import org.osgi.framework.ServiceReference;
 
 public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecurity {
 
+    /**
+     * Configuration property to cache the decisions per resource resolver.
+     */
+    public static final String PROP_CACHE_DECISIONS = "decision.cache";
+
+    /** The maximum number of cached decisions per resource resolver. */
+    private static final int MAX_DECISIONS = 1000;
+
     private List<ResourceAccessGateHandler> allHandlers = Collections.emptyList();
 
+    /** The index of the handlers for path matching. */
+    private volatile GateIndex gateIndex = GateIndex.EMPTY;
+
     private final boolean defaultAllowIfNoGateMatches;
 
+    private volatile boolean cacheDecisions;
+
+    /** The cached decisions by resource resolver, path and operation. */
+    private final Map<ResourceResolver, Map<String, Object>> decisions = new WeakHashMap<ResourceResolver, Map<String, Object>>();
+
     public ResourceAccessSecurityImpl(final boolean defaultAllowIfNoGateMatches) {
         this.defaultAllowIfNoGateMatches = defaultAllowIfNoGateMatches;
     }
 
+    @Activate
+    protected void activate(final Map<String, Object> props) {
+        this.cacheDecisions = PropertiesUtil.toBoolean(props.get(PROP_CACHE_DECISIONS), false);
+    }
+
     /**
      * This method returns either an iterator delivering the matching handlers
      * or <code>null</code>.
      */
     private Iterator<ResourceAccessGateHandler> getMatchingResourceAccessGateHandlerIterator(
             final String path, final ResourceAccessGate.Operation operation) {
-        //
-        // TODO: maybe caching some frequent paths with read operation would be
-        // a good idea
-        //
-        final List<ResourceAccessGateHandler> handlers = allHandlers;
-        if (handlers.size() > 0) {
+        final GateIndex index = this.gateIndex;
+        if ( !index.isEmpty() ) {
+            return index.getMatching(path, operation).iterator();
+        }
 
-            final Iterator<ResourceAccessGateHandler> iter = handlers.iterator();
-            return new Iterator<ResourceAccessGateHandler>() {
+        return null;
+    }
 
-                private ResourceAccessGateHandler next;
+    /**
+     * Get a cached decision of the resource resolver.
+     * @return The decision or <code>null</code>
+     */
+    private Object getDecision(final ResourceResolver resolver,
+            final ResourceAccessGate.Operation operation,
+            final String path) {
+        if ( !this.cacheDecisions || resolver == null || path == null ) {
+            return null;
+        }
+        synchronized ( this.decisions ) {
+            final Map<String, Object> resolverDecisions = this.decisions.get(resolver);
+            return resolverDecisions == null ? null : resolverDecisions.get(operation.name() + ':' + path);
+        }
+    }
 
-                {
-                    peek();
-                }
+    private void putDecision(final ResourceResolver resolver,
+            final ResourceAccessGate.Operation operation,
+            final String path,
+            final Object decision) {
+        if ( !this.cacheDecisions || resolver == null || path == null ) {
+            return;
+        }
+        synchronized ( this.decisions ) {
+            Map<String, Object> resolverDecisions = this.decisions.get(resolver);
+            if ( resolverDecisions == null ) {
+                resolverDecisions = new LinkedHashMap<String, Object>(16, 0.75f, true) {
 
-                private void peek() {
-                    this.next = null;
-                    while ( iter.hasNext() && next == null ) {
-                        final ResourceAccessGateHandler handler = iter.next();
-                        if (handler.matches(path, operation)) {
-                            next = handler;
-                        }
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+                        return size() > MAX_DECISIONS;
                     }
-                }
+                };
+                this.decisions.put(resolver, resolverDecisions);
+            }
+            resolverDecisions.put(operation.name() + ':' + path, decision);
+        }
+    }
 
-                @Override
-                public boolean hasNext() {
-                    return next != null;
-                }
+    @Override
+    public Resource getReadableResource(final Resource resource) {
+        ReadDecision decision = (ReadDecision) getDecision(resource.getResourceResolver(),
+                ResourceAccessGate.Operation.READ, resource.getPath());
+        if ( decision == null ) {
+            decision = getReadDecision(resource);
+            putDecision(resource.getResourceResolver(), ResourceAccessGate.Operation.READ, resource.getPath(), decision);
+        }
 
-                @Override
-                public ResourceAccessGateHandler next() {
-                    if ( next == null ) {
-                        throw new NoSuchElementException();
-                    }
-                    final ResourceAccessGateHandler handler = this.next;
-                    peek();
-                    return handler;
-                }
+        final Resource returnValue = decision.readable ? resource : null;
 
-                @Override
-                public void remove() {
-                    throw new UnsupportedOperationException();
-                }
-            };
+        boolean canUpdateResource = canUpdate(resource);
+
+        // wrap Resource if read access is not or partly (values) not granted
+        if (returnValue != null) {
+            if( !decision.canReadAllValues || !canUpdateResource ) {
+                return new AccessGateResourceWrapper(returnValue,
+                        decision.accessGatesForReadValues,
+                        canUpdateResource);
+            }
         }
 
-        return null;
+        return returnValue;
     }
 
-    @Override
-    public Resource getReadableResource(final Resource resource) {
-        Resource returnValue = null;
+    /**
+     * The result of the read check.
+     */
+    private static final class ReadDecision {
+
+        final boolean readable;
+
+        final boolean canReadAllValues;
+
+        final List<ResourceAccessGate> accessGatesForReadValues;
+
+        ReadDecision(final boolean readable,
+                final boolean canReadAllValues,
+                final List<ResourceAccessGate> accessGatesForReadValues) {
+            this.readable = readable;
+            this.canReadAllValues = canReadAllValues;
+            this.accessGatesForReadValues = accessGatesForReadValues;
+        }
+    }
+
+    private ReadDecision getReadDecision(final Resource resource) {
+        boolean returnValue = false;
 
         final Iterator<ResourceAccessGateHandler> accessGateHandlers = getMatchingResourceAccessGateHandlerIterator(
                 resource.getPath(), ResourceAccessGate.Operation.READ);
@@ -148,32 +215,32 @@ public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecuri
 
             // return null if access is denied or no ResourceAccessGate is present
             if (finalGateResult == GateResult.DENIED) {
-                returnValue = null;
+                returnValue = false;
             } else if (finalGateResult == GateResult.GRANTED ) {
-                returnValue = resource;
+                returnValue = true;
             } else if (noGateMatched && this.defaultAllowIfNoGateMatches)
             {
-                returnValue = resource;
-            }
-        }
-
-        boolean canUpdateResource = canUpdate(resource);
-
-        // wrap Resource if read access is not or partly (values) not granted
-        if (returnValue != null) {
-            if( !canReadAllValues || !canUpdateResource ) {
-                returnValue = new AccessGateResourceWrapper(returnValue,
-                        accessGatesForReadValues,
-                        canUpdateResource);
+                returnValue = true;
             }
         }
 
-        return returnValue;
+        return new ReadDecision(returnValue, canReadAllValues, accessGatesForReadValues);
     }
 
     @Override
     public boolean canCreate(final String path,
             final ResourceResolver resolver) {
+        final Boolean decision = (Boolean) getDecision(resolver, ResourceAccessGate.Operation.CREATE, path);
+        if ( decision != null ) {
+            return decision;
+        }
+        final boolean result = getCreateDecision(path, resolver);
+        putDecision(resolver, ResourceAccessGate.Operation.CREATE, path, result);
+        return result;
+    }
+
+    private boolean getCreateDecision(final String path,
+            final ResourceResolver resolver) {
         final Iterator<ResourceAccessGateHandler> handlers = getMatchingResourceAccessGateHandlerIterator(
                 path, ResourceAccessGate.Operation.CREATE);
         boolean result = false;
@@ -214,6 +281,17 @@ public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecuri
 
     @Override
     public boolean canUpdate(final Resource resource) {
+        final Boolean decision = (Boolean) getDecision(resource.getResourceResolver(),
+                ResourceAccessGate.Operation.UPDATE, resource.getPath());
+        if ( decision != null ) {
+            return decision;
+        }
+        final boolean result = getUpdateDecision(resource);
+        putDecision(resource.getResourceResolver(), ResourceAccessGate.Operation.UPDATE, resource.getPath(), result);
+        return result;
+    }
+
+    private boolean getUpdateDecision(final Resource resource) {
         final Iterator<ResourceAccessGateHandler> handlers = getMatchingResourceAccessGateHandlerIterator(
                 resource.getPath(), ResourceAccessGate.Operation.UPDATE);
         boolean result = this.defaultAllowIfNoGateMatches;
@@ -254,6 +332,17 @@ public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecuri
 
     @Override
     public boolean canDelete(final Resource resource) {
+        final Boolean decision = (Boolean) getDecision(resource.getResourceResolver(),
+                ResourceAccessGate.Operation.DELETE, resource.getPath());
+        if ( decision != null ) {
+            return decision;
+        }
+        final boolean result = getDeleteDecision(resource);
+        putDecision(resource.getResourceResolver(), ResourceAccessGate.Operation.DELETE, resource.getPath(), result);
+        return result;
+    }
+
+    private boolean getDeleteDecision(final Resource resource) {
         final Iterator<ResourceAccessGateHandler> handlers = getMatchingResourceAccessGateHandlerIterator(
                 resource.getPath(), ResourceAccessGate.Operation.DELETE);
         boolean result = this.defaultAllowIfNoGateMatches;
@@ -294,6 +383,17 @@ public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecuri
 
     @Override
     public boolean canExecute(final Resource resource) {
+        final Boolean decision = (Boolean) getDecision(resource.getResourceResolver(),
+                ResourceAccessGate.Operation.EXECUTE, resource.getPath());
+        if ( decision != null ) {
+            return decision;
+        }
+        final boolean result = getExecuteDecision(resource);
+        putDecision(resource.getResourceResolver(), ResourceAccessGate.Operation.EXECUTE, resource.getPath(), result);
+        return result;
+    }
+
+    private boolean getExecuteDecision(final Resource resource) {
         final Iterator<ResourceAccessGateHandler> handlers = getMatchingResourceAccessGateHandlerIterator(
                 resource.getPath(), ResourceAccessGate.Operation.EXECUTE);
         boolean result = this.defaultAllowIfNoGateMatches;
@@ -381,7 +481,9 @@ public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecuri
             newList.add(h);
             Collections.sort(newList);
             this.allHandlers = newList;
+            this.gateIndex = new GateIndex(newList);
         }
+        this.clearDecisions();
     }
 
     /**
@@ -394,6 +496,14 @@ public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecuri
             final ResourceAccessGateHandler h = new ResourceAccessGateHandler(ref);
             newList.remove(h);
             this.allHandlers = newList;
+            this.gateIndex = new GateIndex(newList);
+        }
+        this.clearDecisions();
+    }
+
+    private void clearDecisions() {
+        synchronized ( this.decisions ) {
+            this.decisions.clear();
         }
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceaccesssecurity.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.sling.resourceaccesssecurity.ResourceAccessGate;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+public class GateIndexTest {
+
+    private static ResourceAccessGateHandler handler(final String path, final String operations) {
+        final ServiceReference reference = mock(ServiceReference.class);
+        final Bundle bundle = mock(Bundle.class);
+        final BundleContext bundleContext = mock(BundleContext.class);
+        when(reference.getBundle()).thenReturn(bundle);
+        when(bundle.getBundleContext()).thenReturn(bundleContext);
+        when(bundleContext.getService(reference)).thenReturn(mock(ResourceAccessGate.class));
+        when(reference.getProperty(ResourceAccessGate.PATH)).thenReturn(path);
+        when(reference.getProperty(ResourceAccessGate.OPERATIONS)).thenReturn(operations);
+        return new ResourceAccessGateHandler(reference);
+    }
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("/content", GateIndex.getLiteralPrefix("/content"));
+        assertEquals("/content/", GateIndex.getLiteralPrefix("/content/.*"));
+        assertEquals("/content", GateIndex.getLiteralPrefix("/content/?.*"));
+        assertEquals("/content/", GateIndex.getLiteralPrefix("/content/(a)"));
+        assertEquals("", GateIndex.getLiteralPrefix("/content|/apps"));
+        assertEquals("", GateIndex.getLiteralPrefix(".*"));
+        assertEquals("", GateIndex.getLiteralPrefix("a*"));
+    }
+
+    @Test
+    public void testMatchingGates() {
+        final List<ResourceAccessGateHandler> handlers = new ArrayList<ResourceAccessGateHandler>();
+        handlers.add(handler("/content", "read"));
+        handlers.add(handler("/content/.*", "read"));
+        handlers.add(handler("/content/[a-z]+", "read,update"));
+        handlers.add(handler(null, "update"));
+        handlers.add(handler("/apps|/libs/.*", "read"));
+        final GateIndex index = new GateIndex(handlers);
+
+        for(final String path : new String[] {"/", "/content", "/content/a", "/content/a/b",
+                "/content/A", "/contents", "/apps", "/libs/x", "/content/a\nb"}) {
+            for(final ResourceAccessGate.Operation op : ResourceAccessGate.Operation.values()) {
+                final List<ResourceAccessGateHandler> expected = new ArrayList<ResourceAccessGateHandler>();
+                for(final ResourceAccessGateHandler h : handlers) {
+                    if ( h.matches(path, op) ) {
+                        expected.add(h);
+                    }
+                }
+                assertEquals(path + " " + op, expected, index.getMatching(path, op));
+            }
+        }
+        assertEquals(4, index.getMatching(null, ResourceAccessGate.Operation.READ).size());
+    }
+
+    @Test
+    public void testEmpty() {
+        final GateIndex index = new GateIndex(Collections.<ResourceAccessGateHandler> emptyList());
+        assertTrue(index.isEmpty());
+        assertTrue(index.getMatching("/content", ResourceAccessGate.Operation.READ).isEmpty());
+    }
+}
@@ -19,9 +19,13 @@
 package org.apache.sling.resourceaccesssecurity.impl;
 
 
+import java.util.HashMap;
+import java.util.Map;
+
 import junit.framework.TestCase;
 import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.security.ResourceAccessSecurity;
 import org.apache.sling.resourceaccesssecurity.ResourceAccessGate;
@@ -168,6 +172,59 @@ public class ResourceAccessSecurityImplTests {
         verify(valueMap, times(0)).put("modified", "value");
     }
 
+    @Test
+    public void testDecisionsNotCachedByDefault(){
+        initMocks("/content", new String[] { "update"} );
+
+        Resource resource = mockResource("/content", mock(ResourceResolver.class));
+        when(resourceAccessGate.canUpdate(resource)).thenReturn(ResourceAccessGate.GateResult.GRANTED);
+        assertTrue(resourceAccessSecurity.canUpdate(resource));
+        assertTrue(resourceAccessSecurity.canUpdate(resource));
+
+        verify(resourceAccessGate, times(2)).canUpdate(resource);
+    }
+
+    @Test
+    public void testCachedDecisions(){
+        activate(true);
+        initMocks("/content", new String[] { "update"} );
+
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        Resource resource = mockResource("/content", resolver);
+        when(resourceAccessGate.canUpdate(resource)).thenReturn(ResourceAccessGate.GateResult.GRANTED);
+        assertTrue(resourceAccessSecurity.canUpdate(resource));
+
+        // the cached decision is used
+        when(resourceAccessGate.canUpdate(resource)).thenReturn(ResourceAccessGate.GateResult.DENIED);
+        assertTrue(resourceAccessSecurity.canUpdate(resource));
+        verify(resourceAccessGate, times(1)).canUpdate(resource);
+
+        // decisions are cached per resource resolver
+        Resource otherResource = mockResource("/content", mock(ResourceResolver.class));
+        when(resourceAccessGate.canUpdate(otherResource)).thenReturn(ResourceAccessGate.GateResult.DENIED);
+        assertFalse(resourceAccessSecurity.canUpdate(otherResource));
+
+        // changing the gates invalidates the decisions
+        ((ProviderResourceAccessSecurityImpl) resourceAccessSecurity).unbindResourceAccessGate(serviceReference);
+        ((ProviderResourceAccessSecurityImpl) resourceAccessSecurity).bindResourceAccessGate(serviceReference);
+        assertFalse(resourceAccessSecurity.canUpdate(resource));
+        verify(resourceAccessGate, times(2)).canUpdate(resource);
+    }
+
+    private void activate(boolean cacheDecisions) {
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ResourceAccessSecurityImpl.PROP_CACHE_DECISIONS, cacheDecisions);
+        ((ResourceAccessSecurityImpl) resourceAccessSecurity).activate(props);
+    }
+
+    private Resource mockResource(String path, ResourceResolver resolver) {
+        Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        when(resource.getResourceResolver()).thenReturn(resolver);
+        when(resourceAccessGate.hasUpdateRestrictions(resolver)).thenReturn(true);
+        return resource;
+    }
+
     private void initMocks(String path, String[] operations){
         serviceReference = mock(ServiceReference.class);
         Bundle bundle = mock(Bundle.class);
@@ -78,7 +78,7 @@ public abstract class AbstractCacheManagerService implements CacheManagerService
 		Map<String, Cache<?>> threadCacheMap = threadCacheMapHolder.get();
 		Cache<V> threadCache = (Cache<V>) threadCacheMap.get(name);
 		if (threadCache == null) {
-			threadCache = new MapCacheImpl<V>();
+			threadCache = createLocalCache(name);
 			threadCacheMap.put(name, threadCache);
 		}
 		return threadCache;
@@ -95,12 +95,23 @@ public abstract class AbstractCacheManagerService implements CacheManagerService
 		Map<String, Cache<?>> requestCacheMap = requestCacheMapHolder.get();
 		Cache<V> requestCache = (Cache<V>) requestCacheMap.get(name);
 		if (requestCache == null) {
-			requestCache = new MapCacheImpl<V>();
+			requestCache = createLocalCache(name);
 			requestCacheMap.put(name, requestCache);
 		}
 		return requestCache;
 	}
 
+	/**
+	 * Create a cache for the request or thread scope. The cache is only used
+	 * by a single thread.
+	 * 
+	 * @param name
+	 * @return an unbounded map based cache, subclasses may bound the cache.
+	 */
+	protected <V> Cache<V> createLocalCache(String name) {
+		return new MapCacheImpl<V>();
+	}
+
 	/**
 	 * @param name
 	 * @return
@@ -155,6 +166,20 @@ public abstract class AbstractCacheManagerService implements CacheManagerService
 		return String.valueOf(object);
 	}
 
+	protected long toLong(Object object, long defaultValue) {
+		if (object instanceof Number) {
+			return ((Number) object).longValue();
+		}
+		if (object != null) {
+			try {
+				return Long.parseLong(String.valueOf(object).trim());
+			} catch (NumberFormatException e) {
+				// fall back to the default
+			}
+		}
+		return defaultValue;
+	}
+
 	
 	protected InputStream processConfig(InputStream in,
 			Map<String, Object> properties) throws IOException {
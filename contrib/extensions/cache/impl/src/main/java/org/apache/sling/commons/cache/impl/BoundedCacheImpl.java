@@ -0,0 +1,538 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.commons.cache.impl;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.sling.commons.cache.api.Cache;
+import org.apache.sling.commons.cache.api.ThreadBound;
+
+/**
+ * A concurrent in memory cache bounded by the number of entries and by the
+ * weight of the entries.
+ * <p>
+ * Entries are evicted with the W-TinyLFU policy: new entries are added to a
+ * small LRU admission window. Entries leaving the window only replace an
+ * entry of the main segmented LRU if their estimated access frequency, kept
+ * in a {@link FrequencySketch}, is higher than the one of the eviction
+ * victim. This protects the cache from being flushed by one time accesses.
+ * <p>
+ * Lookups do not take a lock. Accesses are recorded in a lossy buffer and
+ * applied to the policy by the thread which holds the eviction lock, either
+ * while writing or when the buffer is drained.
+ * <p>
+ * The weight of byte arrays is their length, the weight of strings twice
+ * their length. All other values weigh 1. Byte arrays of at least the off
+ * heap threshold are stored in direct buffers outside of the heap. They are
+ * copied to the heap on the first lookup and the copy is returned by the
+ * following lookups until the garbage collector clears it, so like all other
+ * values the returned arrays must not be modified.
+ * <p>
+ * Entries expire after the time to live passed since they were put into the
+ * cache. Expired entries are removed on access or when being evicted.
+ */
+public class BoundedCacheImpl<V> implements Cache<V> {
+
+	/** The admission window holds 1% of the entries. */
+	private static final int WINDOW_PERCENT = 1;
+
+	/** The protected segment holds 80% of the main entries. */
+	private static final int PROTECTED_PERCENT = 80;
+
+	private static final int READ_BUFFER_SIZE = 128;
+
+	private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+	/** Drain the read buffer after this number of reads. */
+	private static final int READ_BUFFER_DRAIN = 32;
+
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+
+	private final String name;
+	private final long maxEntries;
+	private final long maxWeight;
+	private final long timeToLive;
+	private final int offHeapThreshold;
+
+	private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<String, Node>();
+	private final CacheStatistics statistics = new CacheStatistics(this);
+
+	private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<Node>(
+			READ_BUFFER_SIZE);
+	private final AtomicInteger reads = new AtomicInteger();
+
+	/** Guards the policy state below. */
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final FrequencySketch sketch;
+	private final Node window = new Node();
+	private final Node probation = new Node();
+	private final Node protectedSegment = new Node();
+	private final long windowMax;
+	private final long protectedMax;
+	private long windowSize;
+	private long protectedSize;
+	private volatile long size;
+	private volatile long weight;
+
+	/**
+	 * @param name
+	 *            the name of the cache.
+	 * @param maxEntries
+	 *            the maximum number of entries.
+	 * @param maxWeight
+	 *            the maximum weight of all entries, 0 for no limit.
+	 * @param timeToLive
+	 *            the time to live of an entry in milliseconds, 0 for no limit.
+	 * @param offHeapThreshold
+	 *            the minimum length of byte arrays stored off heap, 0 to store
+	 *            all values on the heap.
+	 */
+	public BoundedCacheImpl(String name, long maxEntries, long maxWeight,
+			long timeToLive, int offHeapThreshold) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException(
+					"The maximum number of entries must be positive: "
+							+ maxEntries);
+		}
+		this.name = name;
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight > 0 ? maxWeight : Long.MAX_VALUE;
+		this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+		this.offHeapThreshold = offHeapThreshold;
+		this.windowMax = Math.max(1, maxEntries * WINDOW_PERCENT / 100);
+		this.protectedMax = (maxEntries - windowMax) * PROTECTED_PERCENT / 100;
+		this.sketch = new FrequencySketch(maxEntries);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public CacheStatisticsMBean getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return the number of entries including expired ones not removed yet.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return the weight of all entries.
+	 */
+	public long weight() {
+		return weight;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#get(java.lang.String)
+	 */
+	public V get(String key) {
+		Node node = data.get(key);
+		if (node == null) {
+			statistics.recordMiss();
+			return null;
+		}
+		if (node.isExpired(System.nanoTime())) {
+			statistics.recordMiss();
+			expire(node);
+			return null;
+		}
+		statistics.recordHit();
+		recordRead(node);
+		return decode(node);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#containsKey(java.lang.String)
+	 */
+	public boolean containsKey(String key) {
+		Node node = data.get(key);
+		return node != null && !node.isExpired(System.nanoTime());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#put(java.lang.String,
+	 *      java.lang.Object)
+	 */
+	public V put(String key, V payload) {
+		long expires = timeToLive > 0 ? System.nanoTime() + timeToLive : 0;
+		Node node = new Node(key, encode(payload), weigh(payload), expires);
+		Node previous = data.put(key, node);
+		evictionLock.lock();
+		try {
+			if (previous != null) {
+				unlink(previous);
+			}
+			// a concurrent remove might already have dropped the new entry
+			if (data.get(key) == node) {
+				sketch.increment(key);
+				link(window, node, WINDOW);
+				size++;
+				weight += node.weight;
+				evict();
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+		if (previous == null || previous.isExpired(System.nanoTime())) {
+			return null;
+		}
+		return decode(previous);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#remove(java.lang.String)
+	 */
+	public boolean remove(String key) {
+		Node node = data.remove(key);
+		if (node == null) {
+			return false;
+		}
+		evictionLock.lock();
+		try {
+			unlink(node);
+		} finally {
+			evictionLock.unlock();
+		}
+		unbind(node);
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#removeChildren(java.lang.String)
+	 */
+	public void removeChildren(String key) {
+		remove(key);
+		if (!key.endsWith("/")) {
+			key = key + "/";
+		}
+		for (String k : data.keySet()) {
+			if (k.startsWith(key)) {
+				remove(k);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#clear()
+	 */
+	public void clear() {
+		for (String k : data.keySet()) {
+			remove(k);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#values()
+	 */
+	public Collection<V> values() {
+		long now = System.nanoTime();
+		List<V> values = new ArrayList<V>();
+		for (Node node : data.values()) {
+			if (!node.isExpired(now)) {
+				values.add(decode(node));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#keys()
+	 */
+	public Collection<String> keys() {
+		long now = System.nanoTime();
+		List<String> keys = new ArrayList<String>();
+		for (Map.Entry<String, Node> e : data.entrySet()) {
+			if (!e.getValue().isExpired(now)) {
+				keys.add(e.getKey());
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Record the access in the read buffer and drain the buffer from time to
+	 * time. Accesses are dropped if the buffer is full or the policy is
+	 * updated by another thread.
+	 */
+	private void recordRead(Node node) {
+		int count = reads.getAndIncrement();
+		readBuffer.set(count & READ_BUFFER_MASK, node);
+		if ((count + 1) % READ_BUFFER_DRAIN == 0 && evictionLock.tryLock()) {
+			try {
+				drainReadBuffer();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	private void drainReadBuffer() {
+		for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+			Node node = readBuffer.getAndSet(i, null);
+			if (node != null && node.queue >= 0) {
+				onAccess(node);
+			}
+		}
+	}
+
+	/**
+	 * Update the frequency and the position of an accessed entry.
+	 */
+	private void onAccess(Node node) {
+		sketch.increment(node.key);
+		switch (node.queue) {
+		case WINDOW:
+			detach(node);
+			link(window, node, WINDOW);
+			break;
+		case PROBATION:
+			detach(node);
+			link(protectedSegment, node, PROTECTED);
+			// demote the least recently used protected entries
+			while (protectedSize > protectedMax) {
+				Node demoted = protectedSegment.next;
+				detach(demoted);
+				link(probation, demoted, PROBATION);
+			}
+			break;
+		case PROTECTED:
+			detach(node);
+			link(protectedSegment, node, PROTECTED);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Move the entries leaving the window to the probation segment and evict
+	 * entries while the cache exceeds its bounds. The entries moved from the
+	 * window are candidates competing with the least recently used probation
+	 * entry, the one with the lower frequency is evicted.
+	 */
+	private void evict() {
+		drainReadBuffer();
+		int candidates = 0;
+		while (windowSize > windowMax) {
+			Node node = window.next;
+			detach(node);
+			link(probation, node, PROBATION);
+			candidates++;
+		}
+		while (size > maxEntries || weight > maxWeight) {
+			Node victim = probation.next;
+			if (victim == probation) {
+				candidates = 0;
+				victim = protectedSegment.next != protectedSegment ? protectedSegment.next
+						: window.next;
+			} else if (candidates > 0) {
+				Node candidate = probation.prev;
+				if (candidate == victim
+						|| sketch.frequency(candidate.key) <= sketch
+								.frequency(victim.key)) {
+					victim = candidate;
+					candidates--;
+				}
+			}
+			evictNode(victim);
+		}
+	}
+
+	private void evictNode(Node node) {
+		data.remove(node.key, node);
+		unlink(node);
+		statistics.recordEviction();
+		unbind(node);
+	}
+
+	private void expire(Node node) {
+		if (data.remove(node.key, node)) {
+			evictionLock.lock();
+			try {
+				unlink(node);
+			} finally {
+				evictionLock.unlock();
+			}
+			statistics.recordExpiration();
+			unbind(node);
+		}
+	}
+
+	/**
+	 * Append the entry to the queue.
+	 */
+	private void link(Node head, Node node, int queue) {
+		node.prev = head.prev;
+		node.next = head;
+		head.prev.next = node;
+		head.prev = node;
+		node.queue = queue;
+		if (queue == WINDOW) {
+			windowSize++;
+		} else if (queue == PROTECTED) {
+			protectedSize++;
+		}
+	}
+
+	/**
+	 * Take the entry out of its queue.
+	 * 
+	 * @return false if the entry is not linked.
+	 */
+	private boolean detach(Node node) {
+		if (node.queue < 0) {
+			return false;
+		}
+		if (node.queue == WINDOW) {
+			windowSize--;
+		} else if (node.queue == PROTECTED) {
+			protectedSize--;
+		}
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		node.prev = null;
+		node.next = null;
+		node.queue = -1;
+		return true;
+	}
+
+	/**
+	 * Remove the entry from the policy, entries not linked are ignored.
+	 */
+	private void unlink(Node node) {
+		if (detach(node)) {
+			size--;
+			weight -= node.weight;
+		}
+	}
+
+	private Object encode(V payload) {
+		if (offHeapThreshold > 0 && payload instanceof byte[]
+				&& ((byte[]) payload).length >= offHeapThreshold) {
+			byte[] bytes = (byte[]) payload;
+			ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+			buffer.put(bytes);
+			buffer.flip();
+			return buffer.asReadOnlyBuffer();
+		}
+		return payload;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V decode(Node node) {
+		if (node.value instanceof ByteBuffer) {
+			SoftReference<byte[]> copy = node.heapCopy;
+			byte[] bytes = copy == null ? null : copy.get();
+			if (bytes == null) {
+				ByteBuffer buffer = ((ByteBuffer) node.value).duplicate();
+				bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				node.heapCopy = new SoftReference<byte[]>(bytes);
+			}
+			return (V) bytes;
+		}
+		return (V) node.value;
+	}
+
+	private static long weigh(Object payload) {
+		if (payload instanceof byte[]) {
+			return Math.max(1, ((byte[]) payload).length);
+		}
+		if (payload instanceof CharSequence) {
+			return Math.max(1, 2L * ((CharSequence) payload).length());
+		}
+		return 1;
+	}
+
+	private static void unbind(Node node) {
+		if (node.value instanceof ThreadBound) {
+			((ThreadBound) node.value).unbind();
+		}
+	}
+
+	/**
+	 * An entry of the cache and of one of the policy queues. The queue links
+	 * are guarded by the eviction lock.
+	 */
+	private static final class Node {
+		final String key;
+		final Object value;
+		final long weight;
+		final long expires;
+		Node prev;
+		Node next;
+		/** The queue containing the entry, -1 if not linked. */
+		volatile int queue = -1;
+		/** The heap copy of a value stored off heap. */
+		volatile SoftReference<byte[]> heapCopy;
+
+		/**
+		 * Creates the head of a queue.
+		 */
+		Node() {
+			this(null, null, 0, 0);
+			prev = this;
+			next = this;
+		}
+
+		Node(String key, Object value, long weight, long expires) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+			this.expires = expires;
+		}
+
+		boolean isExpired(long now) {
+			return expires != 0 && now - expires >= 0;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.commons.cache.impl;
+
+/**
+ * Management interface of the statistics of a {@link BoundedCacheImpl}.
+ */
+public interface CacheStatisticsMBean {
+
+	/**
+	 * @return the name of the cache.
+	 */
+	String getName();
+
+	/**
+	 * @return the number of lookups returning a cached entry.
+	 */
+	long getHits();
+
+	/**
+	 * @return the number of lookups not finding a cached entry.
+	 */
+	long getMisses();
+
+	/**
+	 * @return the ratio of hits to all lookups.
+	 */
+	double getHitRatio();
+
+	/**
+	 * @return the number of entries evicted to keep the cache within its bounds.
+	 */
+	long getEvictions();
+
+	/**
+	 * @return the number of entries removed as their time to live passed.
+	 */
+	long getExpirations();
+
+	/**
+	 * @return the current number of entries.
+	 */
+	long getSize();
+
+	/**
+	 * @return the current weight of all entries.
+	 */
+	long getWeight();
+
+	/**
+	 * Reset the hit, miss, eviction and expiration counters.
+	 */
+	void reset();
+}
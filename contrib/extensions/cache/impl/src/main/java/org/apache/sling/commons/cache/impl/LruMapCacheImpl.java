@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.commons.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.sling.commons.cache.api.Cache;
+import org.apache.sling.commons.cache.api.ThreadBound;
+
+/**
+ * A map based cache for a single thread which evicts the least recently used
+ * entry once the maximum number of entries is exceeded.
+ */
+public class LruMapCacheImpl<V> extends LinkedHashMap<String, V> implements
+		Cache<V> {
+
+	/**
+   *
+   */
+	private static final long serialVersionUID = 4652413744196264617L;
+
+	private final int maxEntries;
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of entries.
+	 */
+	public LruMapCacheImpl(int maxEntries) {
+		super(16, 0.75f, true);
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException(
+					"The maximum number of entries must be positive: "
+							+ maxEntries);
+		}
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+	 */
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+		if (size() > maxEntries) {
+			unbind(eldest.getValue());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#containsKey(java.lang.String)
+	 */
+	public boolean containsKey(String key) {
+		return super.containsKey(key);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#get(java.lang.String)
+	 */
+	public V get(String key) {
+		return super.get(key);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#remove(java.lang.String)
+	 */
+	public boolean remove(String key) {
+		V o = super.remove(key);
+		unbind(o);
+		return (o != null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see java.util.HashMap#clear()
+	 */
+	@Override
+	public void clear() {
+		for (V o : super.values()) {
+			unbind(o);
+		}
+		super.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#removeChildren(java.lang.String)
+	 */
+	public void removeChildren(String key) {
+		super.remove(key);
+		if (!key.endsWith("/")) {
+			key = key + "/";
+		}
+		Iterator<String> keys = super.keySet().iterator();
+		while (keys.hasNext()) {
+			if (keys.next().startsWith(key)) {
+				keys.remove();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.apache.sling.commons.cache.api.Cache#values()
+	 */
+	public Collection<V> values() {
+		return new ArrayList<V>(super.values());
+	}
+
+	public Collection<String> keys() {
+		return new ArrayList<String>(super.keySet());
+	}
+
+	private static void unbind(Object o) {
+		if (o instanceof ThreadBound) {
+			((ThreadBound) o).unbind();
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.cache.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.sling.commons.cache.api.ThreadBound;
+import org.junit.Test;
+
+public class BoundedCacheImplTest {
+
+	@Test
+	public void testSizeBound() {
+		BoundedCacheImpl<String> cache = new BoundedCacheImpl<String>("test",
+				100, 0, 0, 0);
+		for (int i = 0; i < 1000; i++) {
+			cache.put("key" + i, "value" + i);
+			assertTrue(cache.size() <= 100);
+		}
+		assertEquals(100, cache.size());
+		assertEquals(100, cache.keys().size());
+		assertEquals(900, cache.getStatistics().getEvictions());
+	}
+
+	@Test
+	public void testWeightBound() {
+		BoundedCacheImpl<byte[]> cache = new BoundedCacheImpl<byte[]>("test",
+				1000, 1000, 0, 0);
+		for (int i = 0; i < 100; i++) {
+			cache.put("key" + i, new byte[100]);
+			assertTrue(cache.weight() <= 1000);
+		}
+		assertEquals(10, cache.size());
+	}
+
+	@Test
+	public void testFrequentEntriesSurvive() {
+		BoundedCacheImpl<String> cache = new BoundedCacheImpl<String>("test",
+				100, 0, 0, 0);
+		for (int i = 0; i < 50; i++) {
+			cache.put("hot" + i, "value");
+		}
+		// a scan of entries used once must not flush the frequently used ones
+		for (int i = 0; i < 10000; i++) {
+			for (int j = 0; j < 50 && i % 100 == 0; j++) {
+				cache.get("hot" + j);
+			}
+			cache.put("scan" + i, "value");
+		}
+		int hot = 0;
+		for (int i = 0; i < 50; i++) {
+			if (cache.containsKey("hot" + i)) {
+				hot++;
+			}
+		}
+		assertTrue("Only " + hot + " frequently used entries left", hot >= 45);
+	}
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		BoundedCacheImpl<String> cache = new BoundedCacheImpl<String>("test",
+				100, 0, 10, 0);
+		cache.put("key", "value");
+		assertEquals("value", cache.get("key"));
+		Thread.sleep(50);
+		assertFalse(cache.containsKey("key"));
+		assertNull(cache.get("key"));
+		assertEquals(1, cache.getStatistics().getExpirations());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testOffHeap() {
+		BoundedCacheImpl<byte[]> cache = new BoundedCacheImpl<byte[]>("test",
+				100, 0, 0, 16);
+		byte[] value = new byte[32];
+		for (int i = 0; i < value.length; i++) {
+			value[i] = (byte) i;
+		}
+		cache.put("key", value);
+		byte[] cached = cache.get("key");
+		assertArrayEquals(value, cached);
+		assertNotSame(value, cached);
+		// further hits share the heap copy
+		assertSame(cached, cache.get("key"));
+		assertEquals(32, cache.weight());
+	}
+
+	@Test
+	public void testRemove() {
+		final boolean[] unbound = new boolean[1];
+		BoundedCacheImpl<Object> cache = new BoundedCacheImpl<Object>("test",
+				100, 0, 0, 0);
+		cache.put("a", "1");
+		cache.put("a/b", "2");
+		cache.put("a/b/c", new ThreadBound() {
+			public void unbind() {
+				unbound[0] = true;
+			}
+		});
+		cache.put("ab", "3");
+		cache.removeChildren("a");
+		assertTrue(unbound[0]);
+		assertEquals(1, cache.size());
+		assertEquals("3", cache.get("ab"));
+		assertTrue(cache.remove("ab"));
+		assertFalse(cache.remove("ab"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void testStatistics() {
+		BoundedCacheImpl<String> cache = new BoundedCacheImpl<String>("test",
+				100, 0, 0, 0);
+		assertNull(cache.put("key", "value"));
+		assertEquals("value", cache.put("key", "other"));
+		cache.get("key");
+		cache.get("missing");
+		assertEquals(1, cache.getStatistics().getHits());
+		assertEquals(1, cache.getStatistics().getMisses());
+		assertEquals(0.5, cache.getStatistics().getHitRatio(), 0.001);
+		assertEquals(1, cache.getStatistics().getSize());
+	}
+}
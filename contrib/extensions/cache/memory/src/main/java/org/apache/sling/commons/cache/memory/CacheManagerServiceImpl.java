@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.commons.cache.memory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.felix.scr.annotations.Activate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Service;
+import org.apache.sling.commons.cache.api.Cache;
+import org.apache.sling.commons.cache.api.CacheManagerService;
+import org.apache.sling.commons.cache.impl.AbstractCacheManagerService;
+import org.apache.sling.commons.cache.impl.BoundedCacheImpl;
+import org.apache.sling.commons.cache.impl.LruMapCacheImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>CacheManagerServiceImpl</code> provides bounded in memory caches
+ * without any cache library. Cluster scoped caches are local to the instance.
+ */
+@Component(immediate = true, metatype = true)
+@Service(value = CacheManagerService.class)
+public class CacheManagerServiceImpl extends AbstractCacheManagerService {
+
+	public static final long DEFAULT_MAX_ENTRIES = 10000;
+
+	public static final long DEFAULT_MAX_WEIGHT = 64 * 1024 * 1024;
+
+	public static final long DEFAULT_LOCAL_MAX_ENTRIES = 1000;
+
+	@Property(longValue = DEFAULT_MAX_ENTRIES)
+	public static final String MAX_ENTRIES = "max-entries";
+
+	@Property(longValue = DEFAULT_MAX_WEIGHT)
+	public static final String MAX_WEIGHT = "max-weight";
+
+	@Property(longValue = 0)
+	public static final String TIME_TO_LIVE = "time-to-live";
+
+	@Property(intValue = 0)
+	public static final String OFF_HEAP_THRESHOLD = "off-heap-threshold";
+
+	@Property(longValue = DEFAULT_LOCAL_MAX_ENTRIES)
+	public static final String LOCAL_MAX_ENTRIES = "local-max-entries";
+
+	@Property(value = "The Apache Software Foundation")
+	static final String SERVICE_VENDOR = "service.vendor";
+
+	@Property(value = "Cache Manager Service Implementation")
+	static final String SERVICE_DESCRIPTION = "service.description";
+
+	private static final String DEFAULT_CACHE_NAME = "default";
+
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(CacheManagerServiceImpl.class);
+
+	private final ConcurrentMap<String, BoundedCacheImpl<?>> caches = new ConcurrentHashMap<String, BoundedCacheImpl<?>>();
+	private final Map<String, ObjectName> mbeans = new ConcurrentHashMap<String, ObjectName>();
+	private long maxEntries;
+	private long maxWeight;
+	private long timeToLive;
+	private int offHeapThreshold;
+	private long localMaxEntries;
+
+	public CacheManagerServiceImpl() throws IOException {
+	}
+
+	@Activate
+	public void activate(Map<String, Object> properties) {
+		maxEntries = toLong(properties.get(MAX_ENTRIES), DEFAULT_MAX_ENTRIES);
+		maxWeight = toLong(properties.get(MAX_WEIGHT), DEFAULT_MAX_WEIGHT);
+		timeToLive = toLong(properties.get(TIME_TO_LIVE), 0) * 1000;
+		offHeapThreshold = (int) toLong(properties.get(OFF_HEAP_THRESHOLD), 0);
+		localMaxEntries = toLong(properties.get(LOCAL_MAX_ENTRIES),
+				DEFAULT_LOCAL_MAX_ENTRIES);
+		LOGGER.info(
+				"Configured caches with {} entries, weight {}, time to live {}ms",
+				new Object[] { maxEntries, maxWeight, timeToLive });
+	}
+
+	/**
+	 * Unregister the statistics and drop all cached entries.
+	 */
+	@Deactivate
+	public void deactivate() {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName objectName : mbeans.values()) {
+			try {
+				mBeanServer.unregisterMBean(objectName);
+			} catch (JMException e) {
+				LOGGER.debug("Unable to unregister " + objectName, e);
+			}
+		}
+		mbeans.clear();
+		for (Cache<?> cache : caches.values()) {
+			cache.clear();
+		}
+		caches.clear();
+	}
+
+	/**
+	 * @param name
+	 * @return
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected <V> Cache<V> getInstanceCache(String name) {
+		if (name == null) {
+			name = DEFAULT_CACHE_NAME;
+		}
+		BoundedCacheImpl<?> c = caches.get(name);
+		if (c == null) {
+			BoundedCacheImpl<V> created = new BoundedCacheImpl<V>(name,
+					maxEntries, maxWeight, timeToLive, offHeapThreshold);
+			c = caches.putIfAbsent(name, created);
+			if (c == null) {
+				c = created;
+				registerStatistics(created);
+			}
+		}
+		return (Cache<V>) c;
+	}
+
+	/**
+	 * Request and thread caches are short lived and used by a single thread,
+	 * so they are plain LRU maps bounded by the number of entries.
+	 */
+	@Override
+	protected <V> Cache<V> createLocalCache(String name) {
+		return new LruMapCacheImpl<V>((int) Math.min(Integer.MAX_VALUE,
+				localMaxEntries));
+	}
+
+	private void registerStatistics(BoundedCacheImpl<?> cache) {
+		try {
+			ObjectName objectName = new ObjectName(
+					"org.apache.sling:type=CacheStatistics,name="
+							+ ObjectName.quote(cache.getName()));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					cache.getStatistics(), objectName);
+			mbeans.put(cache.getName(), objectName);
+		} catch (JMException e) {
+			LOGGER.warn("Unable to register statistics of cache "
+					+ cache.getName(), e);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.cache.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.sling.commons.cache.api.Cache;
+import org.apache.sling.commons.cache.api.CacheScope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheManagerServiceImplTest {
+
+	private CacheManagerServiceImpl cacheManagerService;
+
+	@Before
+	public void setUp() throws IOException {
+		cacheManagerService = new CacheManagerServiceImpl();
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(CacheManagerServiceImpl.MAX_ENTRIES, 10L);
+		properties.put(CacheManagerServiceImpl.LOCAL_MAX_ENTRIES, "5");
+		cacheManagerService.activate(properties);
+	}
+
+	@After
+	public void tearDown() {
+		cacheManagerService.deactivate();
+	}
+
+	private void exerciseCache(String cacheName, CacheScope scope, int maxEntries) {
+		Cache<String> cache = cacheManagerService.getCache(cacheName, scope);
+		cache.put("fish", "cat");
+		assertTrue("Expected element to be in cache", cache.containsKey("fish"));
+		Cache<String> sameCache = cacheManagerService
+				.getCache(cacheName, scope);
+		assertEquals("Expected cache to work", "cat", sameCache.get("fish"));
+		sameCache.put("fish", "differentcat");
+		assertEquals("Expected cache value to propogate", "differentcat",
+				cache.get("fish"));
+		sameCache.remove("fish");
+		assertNull("Expected item to be removed from cache", cache.get("fish"));
+		for (int i = 0; i < 100; i++) {
+			cache.put("key" + i, "value");
+		}
+		assertEquals(maxEntries, cache.keys().size());
+		cache.clear();
+		assertTrue("Expected cache to be empty", cache.keys().isEmpty());
+		cacheManagerService.unbind(scope);
+	}
+
+	@Test
+	public void testCacheStorage() {
+		for (CacheScope scope : CacheScope.values()) {
+			boolean local = scope == CacheScope.REQUEST || scope == CacheScope.THREAD;
+			exerciseCache("TestCache" + scope, scope, local ? 5 : 10);
+		}
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		Cache<String> cache = cacheManagerService.getCache("StatsCache",
+				CacheScope.INSTANCE);
+		cache.put("fish", "cat");
+		cache.get("fish");
+		cache.get("dog");
+
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName(
+				"org.apache.sling:type=CacheStatistics,name=\"StatsCache\"");
+		assertEquals(1L, mBeanServer.getAttribute(objectName, "Hits"));
+		assertEquals(1L, mBeanServer.getAttribute(objectName, "Misses"));
+		assertEquals(1L, mBeanServer.getAttribute(objectName, "Size"));
+
+		cacheManagerService.deactivate();
+		assertFalse(mBeanServer.isRegistered(objectName));
+	}
+}
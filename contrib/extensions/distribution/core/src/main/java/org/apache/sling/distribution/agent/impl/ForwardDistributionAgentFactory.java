@@ -30,6 +30,7 @@ import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.jackrabbit.vault.packaging.Packaging;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.apache.sling.commons.scheduler.Scheduler;
 import org.apache.sling.distribution.component.impl.DistributionComponentUtils;
 import org.apache.sling.distribution.component.impl.SettingsUtils;
 import org.apache.sling.distribution.event.impl.DistributionEventFactory;
@@ -42,7 +43,9 @@ import org.apache.sling.distribution.queue.DistributionQueueProvider;
 import org.apache.sling.distribution.queue.impl.DistributionQueueDispatchingStrategy;
 import org.apache.sling.distribution.queue.impl.MultipleQueueDispatchingStrategy;
 import org.apache.sling.distribution.queue.impl.SingleQueueDispatchingStrategy;
+import org.apache.sling.distribution.queue.impl.file.FileDistributionQueueProvider;
 import org.apache.sling.distribution.queue.impl.jobhandling.JobHandlingDistributionQueueProvider;
+import org.apache.sling.distribution.queue.impl.simple.SimpleDistributionQueueProvider;
 import org.apache.sling.distribution.serialization.DistributionPackageBuilder;
 import org.apache.sling.distribution.transport.DistributionTransportSecretProvider;
 import org.apache.sling.distribution.transport.impl.TransportEndpointStrategyType;
@@ -53,6 +56,9 @@ import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.Map;
 
 /**
@@ -71,6 +77,10 @@ import java.util.Map;
 public class ForwardDistributionAgentFactory extends AbstractDistributionAgentFactory {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    private static final String JOBS_QUEUE_PROVIDER = "jobs";
+    private static final String SIMPLE_QUEUE_PROVIDER = "simple";
+    private static final String FILE_QUEUE_PROVIDER = "file";
+
     @Property(label = "Name", description = "The name of the agent.")
     public static final String NAME = DistributionComponentUtils.PN_NAME;
 
@@ -107,6 +117,21 @@ public class ForwardDistributionAgentFactory extends AbstractDistributionAgentFa
     public static final String USE_MULTIPLE_QUEUES = "useMultipleQueues";
 
 
+    @Property(options = {
+            @PropertyOption(name = "jobs", value = "jobs"), @PropertyOption(name = "simple", value = "simple"),
+            @PropertyOption(name = "file", value = "file")},
+            value = "jobs",
+            label = "Queue Provider", description = "The queue provider used by the agent, 'jobs' for Sling jobs based queues, " +
+            "'simple' for in memory queues or 'file' for queues persisted in the bundle data area. " +
+            "'simple' and 'file' queues are processed by a scheduled task, which can import several packages at once.")
+    public static final String QUEUE_PROVIDER = "queue.provider";
+
+
+    @Property(intValue = 1, label = "Queue Batch Size", description = "The maximum number of adjacent queue items imported as a single batch, " +
+            "requires a queue provider supporting batches, 1 disables batching.")
+    public static final String QUEUE_BATCH_SIZE = "queue.batch.size";
+
+
 
     @Property(name = "requestAuthorizationStrategy.target", label = "Request Authorization Strategy", description = "The target reference for the DistributionRequestAuthorizationStrategy used to authorize the access to distribution process," +
             "e.g. use target=(name=...) to bind to services by name.")
@@ -144,6 +169,9 @@ public class ForwardDistributionAgentFactory extends AbstractDistributionAgentFa
     @Reference
     private ResourceResolverFactory resourceResolverFactory;
 
+    @Reference
+    private Scheduler scheduler;
+
 
     @Activate
     protected void activate(BundleContext context, Map<String, Object> config) {
@@ -172,7 +200,27 @@ public class ForwardDistributionAgentFactory extends AbstractDistributionAgentFa
 
 
         DistributionPackageExporter packageExporter = new LocalDistributionPackageExporter(packageBuilder);
-        DistributionQueueProvider queueProvider =  new JobHandlingDistributionQueueProvider(agentName, jobManager, context);
+        String queueProviderName = PropertiesUtil.toString(config.get(QUEUE_PROVIDER), JOBS_QUEUE_PROVIDER);
+        int batchSize = PropertiesUtil.toInteger(config.get(QUEUE_BATCH_SIZE), 1);
+
+        DistributionQueueProvider queueProvider;
+        if (SIMPLE_QUEUE_PROVIDER.equals(queueProviderName)) {
+            queueProvider = new SimpleDistributionQueueProvider(scheduler, agentName);
+        } else if (FILE_QUEUE_PROVIDER.equals(queueProviderName)) {
+            File queuesDirectory = context.getDataFile("queues");
+            if (queuesDirectory == null) {
+                throw new IllegalArgumentException("file queues require a bundle data area");
+            }
+            try {
+                // the agent name is not necessarily a valid file name
+                File agentDirectory = new File(queuesDirectory, URLEncoder.encode(agentName, "UTF-8"));
+                queueProvider = new FileDistributionQueueProvider(scheduler, agentName, agentDirectory);
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalArgumentException("cannot encode agent name " + agentName, e);
+            }
+        } else {
+            queueProvider = new JobHandlingDistributionQueueProvider(agentName, jobManager, context);
+        }
 
         DistributionQueueDispatchingStrategy dispatchingStrategy = null;
         DistributionPackageImporter packageImporter = null;
@@ -192,7 +240,7 @@ public class ForwardDistributionAgentFactory extends AbstractDistributionAgentFa
 
         return new SimpleDistributionAgent(agentName, queueProcessingEnabled, serviceName,
                 packageImporter, packageExporter, requestAuthorizationStrategy,
-                queueProvider, dispatchingStrategy, distributionEventFactory, resourceResolverFactory, distributionLog);
+                queueProvider, dispatchingStrategy, distributionEventFactory, resourceResolverFactory, distributionLog, batchSize);
 
 
     }
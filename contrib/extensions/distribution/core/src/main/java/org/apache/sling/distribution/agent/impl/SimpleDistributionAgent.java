@@ -19,6 +19,8 @@
 package org.apache.sling.distribution.agent.impl;
 
 import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -26,6 +28,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -50,12 +53,13 @@ import org.apache.sling.distribution.packaging.DistributionPackageExporter;
 import org.apache.sling.distribution.packaging.DistributionPackageImportException;
 import org.apache.sling.distribution.packaging.DistributionPackageImporter;
 import org.apache.sling.distribution.packaging.SharedDistributionPackage;
+import org.apache.sling.distribution.serialization.impl.BatchDistributionPackage;
 import org.apache.sling.distribution.queue.DistributionQueue;
+import org.apache.sling.distribution.queue.impl.DistributionQueueBatchProcessor;
 import org.apache.sling.distribution.queue.impl.DistributionQueueDispatchingStrategy;
 import org.apache.sling.distribution.queue.DistributionQueueException;
 import org.apache.sling.distribution.queue.DistributionQueueItem;
 import org.apache.sling.distribution.queue.DistributionQueueItemStatus;
-import org.apache.sling.distribution.queue.DistributionQueueProcessor;
 import org.apache.sling.distribution.queue.DistributionQueueProvider;
 import org.apache.sling.distribution.trigger.DistributionRequestHandler;
 import org.apache.sling.distribution.trigger.DistributionTrigger;
@@ -86,6 +90,7 @@ public class SimpleDistributionAgent implements DistributionAgent {
     private AgentBasedRequestHandler agentBasedRequestHandler;
     private boolean active = false;
     private final DefaultDistributionLog log;
+    private final int batchSize;
 
     public SimpleDistributionAgent(String name,
                                    boolean queueProcessingEnabled,
@@ -98,6 +103,23 @@ public class SimpleDistributionAgent implements DistributionAgent {
                                    DistributionEventFactory distributionEventFactory,
                                    ResourceResolverFactory resourceResolverFactory,
                                    DefaultDistributionLog log) {
+        this(name, queueProcessingEnabled, subServiceName, distributionPackageImporter, distributionPackageExporter,
+                distributionRequestAuthorizationStrategy, queueProvider, queueDistributionStrategy, distributionEventFactory,
+                resourceResolverFactory, log, 1);
+    }
+
+    public SimpleDistributionAgent(String name,
+                                   boolean queueProcessingEnabled,
+                                   String subServiceName,
+                                   DistributionPackageImporter distributionPackageImporter,
+                                   DistributionPackageExporter distributionPackageExporter,
+                                   DistributionRequestAuthorizationStrategy distributionRequestAuthorizationStrategy,
+                                   DistributionQueueProvider queueProvider,
+                                   DistributionQueueDispatchingStrategy queueDistributionStrategy,
+                                   DistributionEventFactory distributionEventFactory,
+                                   ResourceResolverFactory resourceResolverFactory,
+                                   DefaultDistributionLog log,
+                                   int batchSize) {
         this.log = log;
 
         // check configuration is valid
@@ -133,7 +155,7 @@ public class SimpleDistributionAgent implements DistributionAgent {
         this.queueProvider = queueProvider;
         this.queueDistributionStrategy = queueDistributionStrategy;
         this.distributionEventFactory = distributionEventFactory;
-
+        this.batchSize = Math.max(1, batchSize);
 
     }
 
@@ -298,6 +320,18 @@ public class SimpleDistributionAgent implements DistributionAgent {
             }
         }
 
+        // release the files of persisted queues, also used by passive agents
+        if (queueProvider instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) queueProvider);
+        }
+
+        // release the connections of remote exporters and importers
+        if (distributionPackageExporter instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) distributionPackageExporter);
+        }
+        if (distributionPackageImporter instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) distributionPackageImporter);
+        }
     }
 
     private boolean processQueue(String queueName, DistributionQueueItem queueItem) {
@@ -339,6 +373,64 @@ public class SimpleDistributionAgent implements DistributionAgent {
         return success;
     }
 
+    private boolean[] processQueue(String queueName, List<DistributionQueueItem> queueItems) {
+        boolean[] result = new boolean[queueItems.size()];
+        ResourceResolver agentResourceResolver = null;
+        List<DistributionPackage> distributionPackages = new ArrayList<DistributionPackage>(queueItems.size());
+        try {
+
+            agentResourceResolver = getAgentResourceResolver();
+
+            for (int i = 0; i < queueItems.size(); i++) {
+                DistributionQueueItem queueItem = queueItems.get(i);
+                DistributionPackage distributionPackage = distributionPackageExporter.getPackage(agentResourceResolver, queueItem.getId());
+                if (distributionPackage != null) {
+                    distributionPackage.getInfo().fillInfo(queueItem.getPackageInfo());
+                    distributionPackage.getInfo().setQueue(queueName);
+                    distributionPackages.add(distributionPackage);
+                } else {
+                    result[i] = true; // return success if package does not exist in order to clear the queue.
+                    log.error("distribution package with id {} does not exist", queueItem.getId());
+                }
+            }
+
+            if (distributionPackages.size() > 1) {
+                DistributionPackage batchPackage = new BatchDistributionPackage(distributionPackages.get(0).getType(), distributionPackages);
+                distributionPackageImporter.importPackage(agentResourceResolver, batchPackage);
+                log.debug("batch {} of {} packages imported", batchPackage.getId(), distributionPackages.size());
+
+                for (DistributionPackage distributionPackage : distributionPackages) {
+                    distributionEventFactory.generateAgentPackageEvent(DistributionEventType.AGENT_PACKAGE_DISTRIBUTED, name, distributionPackage.getInfo());
+
+                    if (distributionPackage instanceof SharedDistributionPackage) {
+                        ((SharedDistributionPackage) distributionPackage).release(queueName);
+                        log.debug("package {} released from queue {}", distributionPackage.getId(), queueName);
+                    } else {
+                        distributionPackage.delete();
+                        log.debug("package {} deleted", distributionPackage.getId());
+                    }
+                }
+                Arrays.fill(result, true);
+                return result;
+            }
+        } catch (DistributionPackageImportException e) {
+            log.warn("could not import batch of {} packages, importing them one by one", distributionPackages.size());
+        } catch (LoginException e) {
+            log.info("cannot obtain resource resolver", e);
+            return result;
+        } finally {
+            ungetAgentResourceResolver(agentResourceResolver);
+        }
+
+        // a single package or a failed batch, process the remaining items one by one
+        for (int i = 0; i < queueItems.size(); i++) {
+            if (!result[i]) {
+                result[i] = processQueue(queueName, queueItems.get(i));
+            }
+        }
+        return result;
+    }
+
     private ResourceResolver getAgentResourceResolver() throws LoginException {
         ResourceResolver resourceResolver;
 
@@ -364,7 +456,7 @@ public class SimpleDistributionAgent implements DistributionAgent {
 
     }
 
-    class PackageQueueProcessor implements DistributionQueueProcessor {
+    class PackageQueueProcessor implements DistributionQueueBatchProcessor {
         public boolean process(@Nonnull String queueName, @Nonnull DistributionQueueItem queueItem) {
             try {
 
@@ -381,6 +473,28 @@ public class SimpleDistributionAgent implements DistributionAgent {
                 return false;
             }
         }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        @Nonnull
+        public boolean[] process(@Nonnull String queueName, @Nonnull List<DistributionQueueItem> queueItems) {
+            try {
+
+                log.info("queue {} processing {} items", queueName, queueItems.size());
+
+                boolean[] result = processQueue(queueName, queueItems);
+
+                log.info("queue {} processing {} items ended", queueName, queueItems.size());
+
+                return result;
+
+            } catch (Throwable e) {
+                log.error("queue {} error while processing items {}", queueName, queueItems);
+                return new boolean[queueItems.size()];
+            }
+        }
     }
 
     public class AgentBasedRequestHandler implements DistributionRequestHandler {
@@ -19,6 +19,7 @@
 package org.apache.sling.distribution.packaging.impl.exporter;
 
 import javax.annotation.Nonnull;
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -40,14 +41,14 @@ import org.slf4j.LoggerFactory;
 /**
  * Default implementation of {@link org.apache.sling.distribution.packaging.DistributionPackageExporter}
  */
-public class RemoteDistributionPackageExporter implements DistributionPackageExporter {
+public class RemoteDistributionPackageExporter implements DistributionPackageExporter, Closeable {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final DistributionPackageBuilder packageBuilder;
     private final DistributionTransportSecretProvider secretProvider;
 
-    private DistributionTransport transportHandler;
+    private MultipleEndpointDistributionTransport transportHandler;
 
     public RemoteDistributionPackageExporter(DistributionPackageBuilder packageBuilder,
                                              DistributionTransportSecretProvider secretProvider,
@@ -94,4 +95,11 @@ public class RemoteDistributionPackageExporter implements DistributionPackageExp
     public DistributionPackage getPackage(@Nonnull ResourceResolver resourceResolver, @Nonnull String distributionPackageId) {
         return packageBuilder.getPackage(resourceResolver, distributionPackageId);
     }
+
+    /**
+     * closes the transports to the remote endpoints
+     */
+    public void close() {
+        transportHandler.close();
+    }
 }
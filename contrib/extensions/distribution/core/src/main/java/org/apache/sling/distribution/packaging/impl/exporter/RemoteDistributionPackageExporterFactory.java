@@ -102,7 +102,7 @@ public class RemoteDistributionPackageExporterFactory implements DistributionPac
     @Reference(name = "transportSecretProvider")
     DistributionTransportSecretProvider transportSecretProvider;
 
-    private DistributionPackageExporter exporter;
+    private RemoteDistributionPackageExporter exporter;
 
     @Activate
     protected void activate(Map<String, Object> config) throws Exception {
@@ -120,7 +120,10 @@ public class RemoteDistributionPackageExporterFactory implements DistributionPac
 
     @Deactivate
     protected void deactivate() {
-        exporter = null;
+        if (exporter != null) {
+            exporter.close();
+            exporter = null;
+        }
     }
 
     @Nonnull
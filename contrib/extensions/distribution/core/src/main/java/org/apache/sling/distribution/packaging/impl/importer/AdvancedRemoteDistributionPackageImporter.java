@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.felix.scr.annotations.Activate;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.PropertyOption;
 import org.apache.felix.scr.annotations.Reference;
@@ -86,7 +87,7 @@ public class AdvancedRemoteDistributionPackageImporter implements DistributionPa
     @Reference
     private DistributionEventFactory distributionEventFactory;
 
-    private DistributionTransport transportHandler;
+    private MultipleEndpointDistributionTransport transportHandler;
 
     @Activate
     protected void activate(Map<String, ?> config) throws Exception {
@@ -117,6 +118,14 @@ public class AdvancedRemoteDistributionPackageImporter implements DistributionPa
 
     }
 
+    @Deactivate
+    protected void deactivate() {
+        if (transportHandler != null) {
+            transportHandler.close();
+            transportHandler = null;
+        }
+    }
+
 
     public void importPackage(@Nonnull ResourceResolver resourceResolver, @Nonnull DistributionPackage distributionPackage) {
         try {
@@ -28,6 +28,7 @@ import org.apache.sling.distribution.packaging.DistributionPackageImportExceptio
 import org.apache.sling.distribution.packaging.DistributionPackageImporter;
 import org.apache.sling.distribution.serialization.DistributionPackageBuilder;
 import org.apache.sling.distribution.serialization.DistributionPackageReadingException;
+import org.apache.sling.distribution.serialization.impl.BatchDistributionPackage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,25 +54,35 @@ public class LocalDistributionPackageImporter implements DistributionPackageImpo
 
 
     public void importPackage(@Nonnull ResourceResolver resourceResolver, @Nonnull DistributionPackage distributionPackage) throws DistributionPackageImportException {
+        boolean success;
         try {
-            boolean success = packageBuilder.installPackage(resourceResolver, distributionPackage);
-
-            if (success) {
-                log.info("Distribution package read and installed for path(s) {}", Arrays.toString(distributionPackage.getInfo().getPaths()));
-
-            } else {
-                log.warn("could not read a distribution package");
-            }
+            success = packageBuilder.installPackage(resourceResolver, distributionPackage);
         } catch (Exception e) {
             log.error("cannot import a package from the given stream of type {}", distributionPackage.getType());
             throw new DistributionPackageImportException(e);
         }
+
+        if (success) {
+            log.info("Distribution package read and installed for path(s) {}", Arrays.toString(distributionPackage.getInfo().getPaths()));
+
+        } else if (distributionPackage instanceof BatchDistributionPackage) {
+            // the batch has been discarded, the caller has to import its packages one by one
+            throw new DistributionPackageImportException("could not install batch package " + distributionPackage.getId());
+        } else {
+            log.warn("could not read a distribution package");
+        }
     }
 
     public DistributionPackage importStream(@Nonnull ResourceResolver resourceResolver, @Nonnull InputStream stream) throws DistributionPackageImportException {
         try {
             DistributionPackage distributionPackage = packageBuilder.readPackage(resourceResolver, stream);
-            importPackage(resourceResolver, distributionPackage);
+            try {
+                importPackage(resourceResolver, distributionPackage);
+            } catch (DistributionPackageImportException e) {
+                // nobody else holds the package read from the stream
+                distributionPackage.delete();
+                throw e;
+            }
             return distributionPackage;
         } catch (DistributionPackageReadingException e) {
             throw new DistributionPackageImportException("cannot read a package from the given stream", e);
@@ -19,6 +19,7 @@
 package org.apache.sling.distribution.packaging.impl.importer;
 
 import javax.annotation.Nonnull;
+import java.io.Closeable;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
@@ -39,17 +40,24 @@ import org.slf4j.LoggerFactory;
 /**
  * Remote implementation of {@link org.apache.sling.distribution.packaging.DistributionPackageImporter}
  */
-public class RemoteDistributionPackageImporter implements DistributionPackageImporter {
+public class RemoteDistributionPackageImporter implements DistributionPackageImporter, Closeable {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private DistributionTransport transportHandler;
+    private MultipleEndpointDistributionTransport transportHandler;
     private DistributionTransportSecretProvider distributionTransportSecretProvider;
 
 
     public RemoteDistributionPackageImporter(DistributionTransportSecretProvider distributionTransportSecretProvider,
                                              Map<String, String> endpointsMap,
                                              TransportEndpointStrategyType transportEndpointStrategyType) {
+        this(distributionTransportSecretProvider, endpointsMap, transportEndpointStrategyType, false);
+    }
+
+    public RemoteDistributionPackageImporter(DistributionTransportSecretProvider distributionTransportSecretProvider,
+                                             Map<String, String> endpointsMap,
+                                             TransportEndpointStrategyType transportEndpointStrategyType,
+                                             boolean compress) {
         this.distributionTransportSecretProvider = distributionTransportSecretProvider;
 
         if (distributionTransportSecretProvider == null) {
@@ -63,7 +71,7 @@ public class RemoteDistributionPackageImporter implements DistributionPackageImp
             String endpointKey = entry.getKey();
             String endpoint = entry.getValue();
             if (endpoint != null && endpoint.length() > 0) {
-                transportHandlers.put(endpointKey, new SimpleHttpDistributionTransport(new DistributionEndpoint(endpoint), null, -1));
+                transportHandlers.put(endpointKey, new SimpleHttpDistributionTransport(new DistributionEndpoint(endpoint), null, -1, compress));
             }
         }
         transportHandler = new MultipleEndpointDistributionTransport(transportHandlers,
@@ -83,4 +91,10 @@ public class RemoteDistributionPackageImporter implements DistributionPackageImp
         throw new DistributionPackageImportException("not supported");
     }
 
+    /**
+     * closes the transports to the remote endpoints
+     */
+    public void close() {
+        transportHandler.close();
+    }
 }
@@ -25,6 +25,7 @@ import java.util.Map;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.PropertyOption;
 import org.apache.felix.scr.annotations.Reference;
@@ -83,13 +84,19 @@ public class RemoteDistributionPackageImporterFactory implements DistributionPac
     )
     public static final String ENDPOINTS_STRATEGY = "endpoints.strategy";
 
+    /**
+     * compression property
+     */
+    @Property(boolValue = false, label = "Compress", description = "Specifies whether packages are gzip compressed when sent to the endpoints.")
+    public static final String COMPRESS = "compress";
+
 
     @Property(name = "transportSecretProvider.target", label = "Transport Secret Provider", description = "The target reference for the DistributionTransportSecretProvider used to obtain the credentials used for accessing the remote endpoints, " +
             "e.g. use target=(name=...) to bind to services by name.")
     @Reference(name = "transportSecretProvider")
     DistributionTransportSecretProvider transportSecretProvider;
 
-    private DistributionPackageImporter importer;
+    private RemoteDistributionPackageImporter importer;
 
     @Activate
     protected void activate(Map<String, Object> config) {
@@ -99,8 +106,18 @@ public class RemoteDistributionPackageImporterFactory implements DistributionPac
 
         TransportEndpointStrategyType transportEndpointStrategyType = TransportEndpointStrategyType.valueOf(endpointStrategyName);
 
-        importer =  new RemoteDistributionPackageImporter(transportSecretProvider, endpoints, transportEndpointStrategyType);
+        boolean compress = PropertiesUtil.toBoolean(config.get(COMPRESS), false);
+
+        importer =  new RemoteDistributionPackageImporter(transportSecretProvider, endpoints, transportEndpointStrategyType, compress);
+
+    }
 
+    @Deactivate
+    protected void deactivate() {
+        if (importer != null) {
+            importer.close();
+            importer = null;
+        }
     }
 
     public void importPackage(@Nonnull ResourceResolver resourceResolver, @Nonnull DistributionPackage distributionPackage) throws DistributionPackageImportException {
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+import org.apache.sling.distribution.queue.DistributionQueueItem;
+import org.apache.sling.distribution.queue.DistributionQueueProcessor;
+
+/**
+ * A {@link org.apache.sling.distribution.queue.DistributionQueueProcessor} which is able to process several adjacent
+ * {@link org.apache.sling.distribution.queue.DistributionQueueItem}s of a queue at once
+ */
+public interface DistributionQueueBatchProcessor extends DistributionQueueProcessor {
+
+    /**
+     * get the maximum number of items processed at once
+     *
+     * @return the batch size, a size of 1 disables batching
+     */
+    int getBatchSize();
+
+    /**
+     * Process a batch of items taken from the head of a certain {@link org.apache.sling.distribution.queue.DistributionQueue}
+     *
+     * @param queueName the name of the {@link org.apache.sling.distribution.queue.DistributionQueue} to be processed
+     * @param items     the {@link org.apache.sling.distribution.queue.DistributionQueueItem}s to be processed, in queue order
+     * @return for each item {@code true} if it was successfully processed, {@code false} otherwise
+     */
+    @Nonnull
+    boolean[] process(@Nonnull String queueName, @Nonnull List<DistributionQueueItem> items);
+}
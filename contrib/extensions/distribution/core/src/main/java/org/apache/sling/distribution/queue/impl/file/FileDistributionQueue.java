@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.file;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.distribution.DistributionRequestType;
+import org.apache.sling.distribution.packaging.DistributionPackageInfo;
+import org.apache.sling.distribution.queue.DistributionQueue;
+import org.apache.sling.distribution.queue.DistributionQueueItem;
+import org.apache.sling.distribution.queue.DistributionQueueItemStatus;
+import org.apache.sling.distribution.queue.DistributionQueueItemStatus.ItemState;
+import org.apache.sling.distribution.queue.DistributionQueueState;
+import org.apache.sling.distribution.queue.impl.DistributionQueueUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link org.apache.sling.distribution.queue.DistributionQueue} persisted in an append only {@link SegmentLog}.
+ * <p/>
+ * Added items are appended to the log, the head of the log works as the consumer offset and is moved forward when
+ * the head of the queue is removed, removing any other item appends a removal record. The items are kept in memory
+ * and are read back from the log when the queue is created, so that queued items survive a restart.
+ * Records are written to memory mapped files, so they survive a crash of the JVM without being synced each time,
+ * segments are forced to the storage device once complete.
+ * When most of the log after the head is made of removed items, e.g. because the head item keeps failing, the log is
+ * compacted by appending the queued items again and moving the head to the first of them.
+ * The queue must be closed to release the mapped files, it can't be changed any longer afterwards.
+ */
+public class FileDistributionQueue implements DistributionQueue, Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private static final byte ADD = 1;
+
+    private static final byte REMOVE = 2;
+
+    private final String name;
+
+    private final SegmentLog segmentLog;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    private long liveBytes;
+
+    public FileDistributionQueue(String agentName, String name, File directory) throws IOException {
+        this(agentName, name, directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    FileDistributionQueue(String agentName, String name, File directory, int segmentSize) throws IOException {
+        log.info("starting a file queue for agent {} in {}", agentName, directory);
+        this.name = name;
+        this.segmentLog = new SegmentLog(directory, segmentSize);
+        this.segmentLog.open(new SegmentLog.RecordHandler() {
+            public void record(long position, byte[] data) throws IOException {
+                replay(position, data);
+            }
+        });
+        log.info("queue {} opened with {} items", name, entries.size());
+    }
+
+    private void replay(long position, byte[] data) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        byte type = input.readByte();
+        if (type == ADD) {
+            long entered = input.readLong();
+            DistributionQueueItem item = readItem(input);
+            // items appended again by an interrupted compaction are already queued
+            if (!entries.containsKey(item.getId())) {
+                entries.put(item.getId(), new Entry(item, position, data.length, entered));
+                liveBytes += data.length;
+            }
+        } else if (type == REMOVE) {
+            Entry entry = entries.remove(input.readUTF());
+            if (entry != null) {
+                liveBytes -= entry.size;
+            }
+        } else {
+            log.warn("skipping record of unknown type {} at position {}", type, position);
+        }
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    public synchronized boolean add(@Nonnull DistributionQueueItem item) {
+        if (entries.containsKey(item.getId())) {
+            log.debug("item {} already queued", item.getId());
+            return true;
+        }
+        try {
+            long entered = System.currentTimeMillis();
+            byte[] record = writeAdd(item, entered);
+            long position = segmentLog.append(record);
+            entries.put(item.getId(), new Entry(item, position, record.length, entered));
+            liveBytes += record.length;
+            return true;
+        } catch (IOException e) {
+            log.error("cannot add an item to the queue", e);
+            return false;
+        }
+    }
+
+    @Nonnull
+    public synchronized DistributionQueueItemStatus getStatus(@Nonnull DistributionQueueItem queueItem) {
+        Entry entry = entries.get(queueItem.getId());
+        if (entry != null) {
+            return new DistributionQueueItemStatus(entry.getEntered(), ItemState.QUEUED, entry.attempts, name);
+        } else {
+            return new DistributionQueueItemStatus(ItemState.SUCCEEDED, name);
+        }
+    }
+
+    public synchronized DistributionQueueItem getHead() {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        Entry entry = entries.values().iterator().next();
+        entry.attempts++;
+        return entry.item;
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized int getItemsCount() {
+        return entries.size();
+    }
+
+    public DistributionQueueState getState() {
+        return DistributionQueueUtils.calculateState(this);
+    }
+
+    @Nonnull
+    public synchronized Iterable<DistributionQueueItem> getItems(int skip, int limit) {
+        List<DistributionQueueItem> items = new ArrayList<DistributionQueueItem>();
+        int index = 0;
+        for (Entry entry : entries.values()) {
+            if (limit >= 0 && items.size() >= limit) {
+                break;
+            }
+            if (index++ >= skip) {
+                items.add(entry.item);
+            }
+        }
+        return items;
+    }
+
+    public synchronized DistributionQueueItem getItem(@Nonnull String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.item : null;
+    }
+
+    public synchronized DistributionQueueItem remove(@Nonnull String id) {
+        if (!entries.containsKey(id)) {
+            return null;
+        }
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        boolean head = iterator.next().item.getId().equals(id);
+        Entry entry = entries.remove(id);
+        liveBytes -= entry.size;
+
+        try {
+            if (head) {
+                // move the consumer offset to the next queued item, skipping any removed one
+                segmentLog.setHead(entries.isEmpty() ? segmentLog.getEnd() : entries.values().iterator().next().position);
+            } else {
+                segmentLog.append(writeRemove(id));
+            }
+            compactIfNeeded();
+        } catch (IOException e) {
+            log.error("cannot persist the removal of item {}", id, e);
+        }
+
+        log.info("item with id {} removed from the queue", id);
+        return entry.item;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        long used = segmentLog.getEnd() - segmentLog.getHead();
+        if (used < 2L * segmentLog.getSegmentSize() || liveBytes * 4 > used) {
+            return;
+        }
+
+        log.info("compacting queue {}, {} bytes used by {} items", new Object[]{name, used, entries.size()});
+
+        // the new positions are only used once all items have been appended again
+        long[] positions = new long[entries.size()];
+        int i = 0;
+        for (Entry entry : entries.values()) {
+            positions[i++] = segmentLog.append(writeAdd(entry.item, entry.entered));
+        }
+
+        i = 0;
+        for (Entry entry : entries.values()) {
+            entry.position = positions[i++];
+        }
+        segmentLog.setHead(positions.length > 0 ? positions[0] : segmentLog.getEnd());
+        segmentLog.force();
+    }
+
+    int getSegmentCount() {
+        return segmentLog.getSegmentCount();
+    }
+
+    /**
+     * forces the log to the storage device and unmaps its files
+     */
+    public synchronized void close() {
+        segmentLog.close();
+        log.info("queue {} closed with {} items", name, entries.size());
+    }
+
+    private static byte[] writeAdd(DistributionQueueItem item, long entered) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(ADD);
+        output.writeLong(entered);
+        output.writeUTF(item.getId());
+        output.writeUTF(item.getType());
+
+        DistributionPackageInfo info = item.getPackageInfo();
+        writeOptional(output, info.getOrigin() != null ? info.getOrigin().toString() : null);
+        writeOptional(output, info.getRequestType() != null ? info.getRequestType().name() : null);
+        writeOptional(output, info.getQueue());
+        String[] paths = info.getPaths();
+        output.writeInt(paths != null ? paths.length : -1);
+        if (paths != null) {
+            for (String path : paths) {
+                output.writeUTF(path);
+            }
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] writeRemove(String id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(REMOVE);
+        output.writeUTF(id);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static DistributionQueueItem readItem(DataInputStream input) throws IOException {
+        String id = input.readUTF();
+        String type = input.readUTF();
+
+        DistributionPackageInfo info = new DistributionPackageInfo();
+        String origin = readOptional(input);
+        if (origin != null) {
+            info.setOrigin(URI.create(origin));
+        }
+        String requestType = readOptional(input);
+        if (requestType != null) {
+            info.setRequestType(DistributionRequestType.valueOf(requestType));
+        }
+        info.setQueue(readOptional(input));
+        int pathCount = input.readInt();
+        if (pathCount >= 0) {
+            String[] paths = new String[pathCount];
+            for (int i = 0; i < pathCount; i++) {
+                paths[i] = input.readUTF();
+            }
+            info.setPaths(paths);
+        }
+        return new DistributionQueueItem(id, type, info);
+    }
+
+    private static void writeOptional(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readOptional(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static class Entry {
+
+        private final DistributionQueueItem item;
+
+        private final int size;
+
+        private final long entered;
+
+        private long position;
+
+        private int attempts;
+
+        private Entry(DistributionQueueItem item, long position, int size, long entered) {
+            this.item = item;
+            this.position = position;
+            this.size = size;
+            this.entered = entered;
+        }
+
+        private Calendar getEntered() {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(entered);
+            return calendar;
+        }
+    }
+}
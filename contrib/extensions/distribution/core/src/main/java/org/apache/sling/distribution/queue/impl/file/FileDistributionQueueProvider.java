@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.file;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.apache.sling.distribution.queue.DistributionQueue;
+import org.apache.sling.distribution.queue.DistributionQueueException;
+import org.apache.sling.distribution.queue.DistributionQueueProcessor;
+import org.apache.sling.distribution.queue.impl.simple.SimpleDistributionQueueProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * a queue provider {@link org.apache.sling.distribution.queue.DistributionQueueProvider} for
+ * {@link FileDistributionQueue}s, each queue is stored in its own sub directory of the given directory and
+ * the queues are processed by a scheduled task as the {@link SimpleDistributionQueueProvider} ones.
+ * The queues are closed when their processing is disabled or when the provider is closed.
+ */
+public class FileDistributionQueueProvider extends SimpleDistributionQueueProvider implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private static final String ENCODING = "UTF-8";
+
+    private final File directory;
+
+    public FileDistributionQueueProvider(Scheduler scheduler, String name, File directory) {
+        super(scheduler, name);
+        if (directory == null) {
+            throw new IllegalArgumentException("all arguments are required");
+        }
+        this.directory = directory;
+    }
+
+    @Nonnull
+    @Override
+    protected DistributionQueue createQueue(@Nonnull String agentName, @Nonnull String queueName) throws DistributionQueueException {
+        try {
+            return new FileDistributionQueue(agentName, queueName, new File(directory, URLEncoder.encode(queueName, ENCODING)));
+        } catch (IOException e) {
+            throw new DistributionQueueException("cannot open queue " + queueName, e);
+        }
+    }
+
+    @Override
+    public void enableQueueProcessing(@Nonnull DistributionQueueProcessor queueProcessor) {
+        // open the queues persisted before a restart, so that their items get processed
+        File[] queueDirectories = directory.listFiles();
+        if (queueDirectories != null) {
+            for (File queueDirectory : queueDirectories) {
+                if (queueDirectory.isDirectory()) {
+                    try {
+                        getQueue(URLDecoder.decode(queueDirectory.getName(), ENCODING));
+                    } catch (DistributionQueueException e) {
+                        log.error("cannot open queue in {}", queueDirectory, e);
+                    } catch (UnsupportedEncodingException e) {
+                        log.error("cannot decode queue name {}", queueDirectory.getName(), e);
+                    }
+                }
+            }
+        }
+        super.enableQueueProcessing(queueProcessor);
+    }
+
+    @Override
+    public void disableQueueProcessing() {
+        super.disableQueueProcessing();
+        close();
+    }
+
+    /**
+     * closes all the opened queues, they are opened again when they are used the next time
+     */
+    public void close() {
+        for (DistributionQueue queue : removeQueues()) {
+            ((FileDistributionQueue) queue).close();
+        }
+    }
+}
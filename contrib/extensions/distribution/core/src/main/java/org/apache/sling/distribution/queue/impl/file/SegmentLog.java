@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.file;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append only log of records stored in memory mapped segment files of a fixed size.
+ * <p/>
+ * Records are addressed by their position in the log, the segment files are named after the position of their
+ * first byte. Each record is written as its length, the CRC32 checksum of its data and the data itself, so that
+ * a partially written record at the end of the log is detected and discarded when the log is opened again.
+ * The log keeps a persisted head position, the segments entirely before the head are deleted.
+ * Only the head and the current segment stay mapped, {@link #close()} unmaps them.
+ */
+class SegmentLog {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String HEAD_FILE = "head";
+
+    private static final int RECORD_HEADER = 8;
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    private final LinkedList<Long> segments = new LinkedList<Long>();
+
+    private MappedByteBuffer headBuffer;
+
+    private MappedByteBuffer current;
+
+    private long currentBase;
+
+    private long head;
+
+    private long end;
+
+    /**
+     * handler of the records read when opening the log
+     */
+    interface RecordHandler {
+
+        void record(long position, byte[] data) throws IOException;
+    }
+
+    SegmentLog(File directory, int segmentSize) {
+        if (segmentSize <= RECORD_HEADER) {
+            throw new IllegalArgumentException("segment size too small " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * opens the log and reads all the records between the head and the end of the log
+     */
+    void open(RecordHandler handler) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create directory " + directory);
+        }
+
+        headBuffer = map(new File(directory, HEAD_FILE), 8);
+        head = headBuffer.getLong(0);
+
+        List<Long> bases = listSegments();
+        if (!bases.isEmpty() && head < bases.get(0)) {
+            log.warn("head {} is before the first segment {}", head, bases.get(0));
+            head = bases.get(0);
+        }
+
+        // segments left over by a crash after the head was moved
+        long headBase = segmentBase(head);
+        for (Iterator<Long> iterator = bases.iterator(); iterator.hasNext(); ) {
+            long base = iterator.next();
+            if (base < headBase) {
+                deleteSegment(base);
+                iterator.remove();
+            }
+        }
+
+        if (bases.isEmpty()) {
+            currentBase = headBase;
+            current = map(segmentFile(currentBase), segmentSize);
+            segments.add(currentBase);
+            end = head;
+            return;
+        }
+
+        for (int i = 0; i < bases.size(); i++) {
+            long base = bases.get(i);
+            boolean last = i == bases.size() - 1;
+            MappedByteBuffer buffer = map(segmentFile(base), segmentSize);
+            segments.add(base);
+
+            int position = base < head ? (int) (head - base) : 0;
+            int valid = readSegment(base, position, buffer, handler);
+
+            if (valid + 4 <= segmentSize && buffer.getInt(valid) != 0) {
+                log.warn("discarding a corrupted record at position {} of segment {}", valid, base);
+                if (last) {
+                    // clear the partially written record so that new records can be appended
+                    clear(buffer, valid);
+                }
+            }
+
+            if (last) {
+                currentBase = base;
+                current = buffer;
+                end = base + valid;
+            } else {
+                unmap(buffer);
+            }
+        }
+    }
+
+    private int readSegment(long base, int start, MappedByteBuffer buffer, RecordHandler handler) throws IOException {
+        int position = start;
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER + length > segmentSize) {
+                break;
+            }
+            byte[] data = new byte[length];
+            buffer.position(position + RECORD_HEADER);
+            buffer.get(data);
+            crc.reset();
+            crc.update(data);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            handler.record(base + position, data);
+            position += RECORD_HEADER + length;
+        }
+        return position;
+    }
+
+    /**
+     * appends a record at the end of the log
+     *
+     * @return the position of the record
+     */
+    long append(byte[] data) throws IOException {
+        checkOpen();
+        if (RECORD_HEADER + data.length > segmentSize) {
+            throw new IOException("record of " + data.length + " bytes exceeds the segment size " + segmentSize);
+        }
+
+        int position = (int) (end - currentBase);
+        if (position + RECORD_HEADER + data.length > segmentSize) {
+            roll();
+            position = 0;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        // the length is written last, a record is only visible once it is complete
+        current.position(position + RECORD_HEADER);
+        current.put(data);
+        current.putInt(position + 4, (int) crc.getValue());
+        current.putInt(position, data.length);
+
+        long recordPosition = currentBase + position;
+        end = recordPosition + RECORD_HEADER + data.length;
+        return recordPosition;
+    }
+
+    private void roll() throws IOException {
+        long base = currentBase + segmentSize;
+        MappedByteBuffer buffer = map(segmentFile(base), segmentSize);
+        current.force();
+        unmap(current);
+        current = buffer;
+        currentBase = base;
+        segments.add(base);
+        end = base;
+    }
+
+    /**
+     * moves the head of the log and deletes the segments before it
+     */
+    void setHead(long position) throws IOException {
+        checkOpen();
+        if (position < head || position > end) {
+            throw new IllegalArgumentException("invalid head position " + position);
+        }
+        head = position;
+        headBuffer.putLong(0, position);
+
+        long headBase = segmentBase(position);
+        while (segments.size() > 1 && segments.getFirst() < headBase) {
+            deleteSegment(segments.removeFirst());
+        }
+    }
+
+    long getHead() {
+        return head;
+    }
+
+    long getEnd() {
+        return end;
+    }
+
+    int getSegmentSize() {
+        return segmentSize;
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * forces the content of the current segment and the head on the storage device
+     */
+    void force() {
+        if (current != null) {
+            current.force();
+            headBuffer.force();
+        }
+    }
+
+    /**
+     * forces and unmaps the current segment and the head, the log can't be used any longer afterwards
+     */
+    void close() {
+        if (current != null) {
+            force();
+            unmap(current);
+            unmap(headBuffer);
+            current = null;
+            headBuffer = null;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (current == null) {
+            throw new IOException("log " + directory + " is not open");
+        }
+    }
+
+    private long segmentBase(long position) {
+        return position - position % segmentSize;
+    }
+
+    private File segmentFile(long base) {
+        return new File(directory, String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    private void deleteSegment(long base) {
+        File file = segmentFile(base);
+        if (file.delete()) {
+            log.debug("segment {} deleted", file);
+        } else {
+            log.warn("cannot delete segment {}", file);
+        }
+    }
+
+    private List<Long> listSegments() {
+        List<Long> bases = new ArrayList<Long>();
+        String[] names = directory.list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (names != null) {
+            for (String name : names) {
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("ignoring file {}", name);
+                }
+            }
+        }
+        Collections.sort(bases);
+        return bases;
+    }
+
+    private static void clear(MappedByteBuffer buffer, int from) {
+        byte[] zeros = new byte[Math.min(8192, buffer.capacity() - from)];
+        buffer.position(from);
+        while (buffer.remaining() > 0) {
+            buffer.put(zeros, 0, Math.min(zeros.length, buffer.remaining()));
+        }
+    }
+
+    /**
+     * releases the mapping right away instead of waiting for the buffer to be garbage collected, which also
+     * allows to delete the file on all platforms; a buffer must not be used once it is unmapped
+     */
+    private void unmap(MappedByteBuffer buffer) {
+        try {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                // Java 8 and earlier
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            // the mapping is released once the buffer is garbage collected
+            log.debug("cannot unmap buffer", e);
+        }
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // the mapping stays valid once the file is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -18,9 +18,13 @@
  */
 package org.apache.sling.distribution.queue.impl.simple;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.sling.distribution.queue.DistributionQueue;
 import org.apache.sling.distribution.queue.DistributionQueueItem;
 import org.apache.sling.distribution.queue.DistributionQueueProcessor;
+import org.apache.sling.distribution.queue.impl.DistributionQueueBatchProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +46,11 @@ class ScheduledDistributionQueueProcessorTask implements Runnable {
     public void run() {
         try {
             for (DistributionQueue queue : queueProvider.getQueues()) {
+                if (queueProcessor instanceof DistributionQueueBatchProcessor
+                        && ((DistributionQueueBatchProcessor) queueProcessor).getBatchSize() > 1) {
+                    processBatches(queue, (DistributionQueueBatchProcessor) queueProcessor);
+                    continue;
+                }
                 while (!queue.isEmpty()) {
                     // synchronized (queue) {
                     DistributionQueueItem item = queue.getHead();
@@ -62,4 +71,40 @@ class ScheduledDistributionQueueProcessorTask implements Runnable {
         }
 
     }
+
+    /**
+     * process adjacent items of the queue together, the status of each item is kept by only removing the
+     * successfully processed ones from the queue
+     */
+    private void processBatches(DistributionQueue queue, DistributionQueueBatchProcessor batchProcessor) {
+        int batchSize = batchProcessor.getBatchSize();
+        while (!queue.isEmpty()) {
+            DistributionQueueItem head = queue.getHead();
+            if (head == null) {
+                break;
+            }
+            List<DistributionQueueItem> items = new ArrayList<DistributionQueueItem>(batchSize);
+            items.add(head);
+            for (DistributionQueueItem item : queue.getItems(0, batchSize)) {
+                if (items.size() == batchSize) {
+                    break;
+                }
+                if (item != head && !item.getId().equals(head.getId())) {
+                    items.add(item);
+                }
+            }
+
+            boolean[] results = batchProcessor.process(queue.getName(), items);
+            for (int i = 0; i < items.size(); i++) {
+                DistributionQueueItem item = items.get(i);
+                if (i < results.length && results[i]) {
+                    if (queue.remove(item.getId()) != null) {
+                        log.info("item {} processed and removed from the queue", item);
+                    }
+                } else {
+                    log.warn("processing of item {} failed", item.getId());
+                }
+            }
+        }
+    }
 }
@@ -19,6 +19,7 @@
 package org.apache.sling.distribution.queue.impl.simple;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -58,25 +59,45 @@ public class SimpleDistributionQueueProvider implements DistributionQueueProvide
     }
 
     @Nonnull
-    public DistributionQueue getQueue(@Nonnull String queueName)
+    public synchronized DistributionQueue getQueue(@Nonnull String queueName)
             throws DistributionQueueException {
         String key = name + queueName;
 
         DistributionQueue queue = queueMap.get(key);
         if (queue == null) {
             log.info("creating a queue with key {}", key);
-            queue = new SimpleDistributionQueue(name, queueName);
+            queue = createQueue(name, queueName);
             queueMap.put(key, queue);
             log.info("queue created {}", queue);
         }
         return queue;
     }
 
+    /**
+     * creates the {@link org.apache.sling.distribution.queue.DistributionQueue} with the given name
+     */
+    @Nonnull
+    protected DistributionQueue createQueue(@Nonnull String agentName, @Nonnull String queueName)
+            throws DistributionQueueException {
+        return new SimpleDistributionQueue(agentName, queueName);
+    }
+
 
     Collection<DistributionQueue> getQueues() {
         return queueMap.values();
     }
 
+    /**
+     * removes all the queues, they are created again when they are used the next time
+     *
+     * @return the removed queues
+     */
+    protected synchronized Collection<DistributionQueue> removeQueues() {
+        Collection<DistributionQueue> queues = new ArrayList<DistributionQueue>(queueMap.values());
+        queueMap.clear();
+        return queues;
+    }
+
     public void enableQueueProcessing(@Nonnull DistributionQueueProcessor queueProcessor) {
         ScheduleOptions options = scheduler.NOW(-1, 10)
                 .canRunConcurrently(false)
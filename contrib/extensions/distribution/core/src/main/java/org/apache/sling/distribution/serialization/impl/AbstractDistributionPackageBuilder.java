@@ -23,7 +23,10 @@ import javax.annotation.Nonnull;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.distribution.DistributionRequest;
@@ -45,6 +48,11 @@ public abstract class AbstractDistributionPackageBuilder implements Distribution
 
     private final String type;
 
+    /**
+     * set while a batch is installed, the session is then saved once after all packages of the batch are installed
+     */
+    private final ThreadLocal<Boolean> saveDeferred = new ThreadLocal<Boolean>();
+
     protected AbstractDistributionPackageBuilder(String type) {
         this.type = type;
     }
@@ -81,6 +89,13 @@ public abstract class AbstractDistributionPackageBuilder implements Distribution
         if (!stream.markSupported()) {
             stream = new BufferedInputStream(stream);
         }
+        try {
+            if (BatchDistributionPackage.isBatch(stream)) {
+                return readBatchPackage(resourceResolver, stream);
+            }
+        } catch (IOException e) {
+            throw new DistributionPackageReadingException("cannot read stream", e);
+        }
         distributionPackage = SimpleDistributionPackage.fromStream(stream);
 
 
@@ -93,8 +108,39 @@ public abstract class AbstractDistributionPackageBuilder implements Distribution
         return distributionPackage;
     }
 
+    private DistributionPackage readBatchPackage(ResourceResolver resourceResolver, InputStream stream) throws DistributionPackageReadingException {
+        List<DistributionPackage> packages = new ArrayList<DistributionPackage>();
+        boolean success = false;
+        try {
+            BatchDistributionPackage.Reader reader = BatchDistributionPackage.read(stream);
+            InputStream packageStream;
+            while ((packageStream = reader.next()) != null) {
+                DistributionPackage distributionPackage = readPackage(resourceResolver, packageStream);
+                if (distributionPackage == null) {
+                    throw new DistributionPackageReadingException("cannot read package " + packages.size() + " of the batch");
+                }
+                packages.add(distributionPackage);
+            }
+            log.debug("read a batch of {} packages", packages.size());
+            success = true;
+            return new BatchDistributionPackage(type, packages);
+        } catch (IOException e) {
+            throw new DistributionPackageReadingException("cannot read batch stream", e);
+        } finally {
+            if (!success) {
+                for (DistributionPackage distributionPackage : packages) {
+                    distributionPackage.delete();
+                }
+            }
+        }
+    }
+
     public boolean installPackage(@Nonnull ResourceResolver resourceResolver, @Nonnull DistributionPackage distributionPackage) throws DistributionPackageReadingException {
 
+        if (distributionPackage instanceof BatchDistributionPackage) {
+            return installBatchPackage(resourceResolver, (BatchDistributionPackage) distributionPackage);
+        }
+
         DistributionRequestType actionType = distributionPackage.getInfo().getRequestType();
         boolean installed;
         if (DistributionRequestType.DELETE.equals(actionType)) {
@@ -106,6 +152,46 @@ public abstract class AbstractDistributionPackageBuilder implements Distribution
         return installed;
     }
 
+    private boolean installBatchPackage(ResourceResolver resourceResolver, BatchDistributionPackage batchPackage) throws DistributionPackageReadingException {
+        if (Boolean.TRUE.equals(saveDeferred.get())) {
+            // nested batch, the outer batch saves the session
+            for (DistributionPackage distributionPackage : batchPackage.getPackages()) {
+                if (!installPackage(resourceResolver, distributionPackage)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Session session = null;
+        boolean installed = false;
+        saveDeferred.set(Boolean.TRUE);
+        try {
+            session = getSession(resourceResolver);
+            for (DistributionPackage distributionPackage : batchPackage.getPackages()) {
+                if (!installPackage(resourceResolver, distributionPackage)) {
+                    log.warn("could not install package {} of batch {}", distributionPackage.getId(), batchPackage.getId());
+                    return false;
+                }
+            }
+            installed = true;
+            return true;
+        } catch (RepositoryException e) {
+            throw new DistributionPackageReadingException(e);
+        } finally {
+            saveDeferred.remove();
+            if (session != null && !installed) {
+                // drop the partially installed batch
+                try {
+                    session.refresh(false);
+                } catch (RepositoryException e) {
+                    log.warn("cannot discard changes of a partially installed batch", e);
+                }
+            }
+            ungetSession(session);
+        }
+    }
+
     private boolean installDeletePackage(ResourceResolver resourceResolver, DistributionPackage distributionPackage) throws DistributionPackageReadingException {
         Session session = null;
         try {
@@ -116,7 +202,9 @@ public abstract class AbstractDistributionPackageBuilder implements Distribution
                         session.removeItem(path);
                     }
                 }
-                session.save();
+                if (!Boolean.TRUE.equals(saveDeferred.get())) {
+                    session.save();
+                }
                 return true;
             }
         } catch (Exception e) {
@@ -150,7 +238,7 @@ public abstract class AbstractDistributionPackageBuilder implements Distribution
     }
 
     protected void ungetSession(Session session) {
-        if (session != null) {
+        if (session != null && !Boolean.TRUE.equals(saveDeferred.get())) {
             try {
                 session.save();
             } catch (RepositoryException e) {
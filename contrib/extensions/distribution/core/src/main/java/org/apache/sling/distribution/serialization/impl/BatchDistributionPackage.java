@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.serialization.impl;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.sling.distribution.DistributionRequestType;
+import org.apache.sling.distribution.packaging.DistributionPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A batch {@link org.apache.sling.distribution.packaging.DistributionPackage} aggregates several packages so that
+ * they are transported and installed together.
+ * <p/>
+ * The stream of a batch starts with a header followed by the streams of the aggregated packages. Each of them is
+ * written as a sequence of length prefixed chunks, so the packages are streamed without knowing their size upfront.
+ */
+public class BatchDistributionPackage extends AbstractDistributionPackage implements DistributionPackage {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchDistributionPackage.class);
+
+    private final static String PACKAGE_START = "DSTRBTCH:";
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final int MEMBER = 1;
+
+    private static final int END = 0;
+
+    private final String id;
+
+    private final String type;
+
+    private final List<DistributionPackage> packages;
+
+    public BatchDistributionPackage(String type, List<DistributionPackage> packages) {
+        this.id = "batch_" + System.currentTimeMillis() + "_" + UUID.randomUUID();
+        this.type = type;
+        this.packages = Collections.unmodifiableList(new ArrayList<DistributionPackage>(packages));
+
+        Set<String> paths = new LinkedHashSet<String>();
+        for (DistributionPackage distributionPackage : packages) {
+            String[] packagePaths = distributionPackage.getInfo().getPaths();
+            if (packagePaths != null) {
+                paths.addAll(Arrays.asList(packagePaths));
+            }
+        }
+        this.getInfo().setPaths(paths.toArray(new String[paths.size()]));
+        this.getInfo().setRequestType(DistributionRequestType.ADD);
+    }
+
+    /**
+     * the aggregated packages in the order they are installed
+     */
+    @Nonnull
+    public List<DistributionPackage> getPackages() {
+        return packages;
+    }
+
+    @Nonnull
+    public String getId() {
+        return id;
+    }
+
+    @Nonnull
+    public String getType() {
+        return type;
+    }
+
+    @Nonnull
+    public InputStream createInputStream() throws IOException {
+        return new BatchInputStream(packages);
+    }
+
+    /**
+     * deletes all the aggregated packages
+     */
+    public void delete() {
+        for (DistributionPackage distributionPackage : packages) {
+            distributionPackage.delete();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchDistributionPackage{" +
+                "id='" + id + '\'' +
+                ", packages=" + packages +
+                '}';
+    }
+
+    /**
+     * checks, without consuming it, if the stream contains a batch.
+     * the stream must support marks.
+     */
+    public static boolean isBatch(InputStream stream) throws IOException {
+        byte[] start = PACKAGE_START.getBytes("UTF-8");
+        stream.mark(start.length);
+        try {
+            byte[] buffer = new byte[start.length];
+            int read = 0;
+            int count;
+            while (read < buffer.length && (count = stream.read(buffer, read, buffer.length - read)) > 0) {
+                read += count;
+            }
+            return read == buffer.length && Arrays.equals(start, buffer);
+        } finally {
+            stream.reset();
+        }
+    }
+
+    /**
+     * reads the header of a batch stream
+     *
+     * @return a reader for the streams of the aggregated packages
+     * @throws IOException if the stream does not contain a batch
+     */
+    public static Reader read(InputStream stream) throws IOException {
+        DataInputStream dataStream = new DataInputStream(stream);
+        byte[] start = PACKAGE_START.getBytes("UTF-8");
+        byte[] buffer = new byte[start.length];
+        dataStream.readFully(buffer);
+        if (!Arrays.equals(start, buffer)) {
+            throw new IOException("stream does not contain a batch of packages");
+        }
+        return new Reader(dataStream);
+    }
+
+    /**
+     * sequential reader of the aggregated package streams
+     */
+    public static class Reader {
+
+        private final DataInputStream stream;
+
+        private ChunkedInputStream current;
+
+        private Reader(DataInputStream stream) {
+            this.stream = stream;
+        }
+
+        /**
+         * gets the stream of the next package, any unread content of the previous package is skipped
+         *
+         * @return the stream or {@code null} if there are no more packages
+         */
+        @CheckForNull
+        public InputStream next() throws IOException {
+            if (current != null) {
+                current.skipRemaining();
+                current = null;
+            }
+            int marker = stream.read();
+            if (marker == MEMBER) {
+                current = new ChunkedInputStream(stream);
+                return current;
+            } else if (marker == END) {
+                return null;
+            }
+            throw new EOFException("unexpected end of batch stream");
+        }
+    }
+
+    /**
+     * reads the chunks of a single package
+     */
+    private static class ChunkedInputStream extends InputStream {
+
+        private final DataInputStream stream;
+
+        private int remaining;
+
+        private boolean finished;
+
+        private ChunkedInputStream(DataInputStream stream) {
+            this.stream = stream;
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (!finished && remaining == 0) {
+                remaining = stream.readInt();
+                if (remaining == 0) {
+                    finished = true;
+                }
+            }
+            return !finished;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            int b = stream.read();
+            if (b < 0) {
+                throw new EOFException("unexpected end of batch stream");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int count = stream.read(b, off, Math.min(len, remaining));
+            if (count < 0) {
+                throw new EOFException("unexpected end of batch stream");
+            }
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            // the underlying stream is closed by the owner of the batch stream
+        }
+
+        private void skipRemaining() throws IOException {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // skip
+            }
+        }
+    }
+
+    /**
+     * writes the header and the chunks of all packages, the package streams are opened one after the other
+     */
+    private static class BatchInputStream extends InputStream {
+
+        private final List<DistributionPackage> packages;
+
+        private int nextPackage;
+
+        private InputStream packageStream;
+
+        private final byte[] buffer = new byte[CHUNK_SIZE + 5];
+
+        private int position;
+
+        private int limit;
+
+        private boolean finished;
+
+        private BatchInputStream(List<DistributionPackage> packages) throws IOException {
+            this.packages = packages;
+            byte[] start = PACKAGE_START.getBytes("UTF-8");
+            System.arraycopy(start, 0, buffer, 0, start.length);
+            limit = start.length;
+        }
+
+        private boolean fill() throws IOException {
+            while (position == limit) {
+                if (finished) {
+                    return false;
+                }
+                position = 0;
+                limit = 0;
+                if (packageStream == null) {
+                    if (nextPackage == packages.size()) {
+                        buffer[limit++] = END;
+                        finished = true;
+                        continue;
+                    }
+                    packageStream = packages.get(nextPackage++).createInputStream();
+                    buffer[limit++] = MEMBER;
+                }
+                int count;
+                do {
+                    count = packageStream.read(buffer, limit + 4, CHUNK_SIZE);
+                } while (count == 0);
+                if (count < 0) {
+                    packageStream.close();
+                    packageStream = null;
+                    count = 0;
+                }
+                // a chunk of length 0 ends the package
+                buffer[limit] = (byte) (count >>> 24);
+                buffer[limit + 1] = (byte) (count >>> 16);
+                buffer[limit + 2] = (byte) (count >>> 8);
+                buffer[limit + 3] = (byte) count;
+                limit += 4 + count;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (packageStream != null) {
+                try {
+                    packageStream.close();
+                } catch (IOException e) {
+                    log.debug("cannot close package stream", e);
+                }
+                packageStream = null;
+            }
+            finished = true;
+            position = limit;
+        }
+    }
+}
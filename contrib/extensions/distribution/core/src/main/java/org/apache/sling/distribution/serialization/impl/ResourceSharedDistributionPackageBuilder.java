@@ -21,8 +21,10 @@ package org.apache.sling.distribution.serialization.impl;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -114,6 +116,20 @@ public class ResourceSharedDistributionPackageBuilder implements DistributionPac
     }
 
     public boolean installPackage(@Nonnull ResourceResolver resourceResolver, @Nonnull DistributionPackage distributionPackage) throws DistributionPackageReadingException {
+        if (distributionPackage instanceof BatchDistributionPackage) {
+            // install the original packages of the shared ones together
+            List<DistributionPackage> originalPackages = new ArrayList<DistributionPackage>();
+            for (DistributionPackage batchedPackage : ((BatchDistributionPackage) distributionPackage).getPackages()) {
+                if (batchedPackage instanceof ResourceSharedDistributionPackage) {
+                    originalPackages.add(((ResourceSharedDistributionPackage) batchedPackage).getPackage());
+                } else {
+                    originalPackages.add(batchedPackage);
+                }
+            }
+            return distributionPackageBuilder.installPackage(resourceResolver,
+                    new BatchDistributionPackage(distributionPackage.getType(), originalPackages));
+        }
+
         if (! (distributionPackage instanceof ResourceSharedDistributionPackage)) {
             return false;
         }
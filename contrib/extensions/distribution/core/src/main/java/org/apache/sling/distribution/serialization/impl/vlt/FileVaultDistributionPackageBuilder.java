@@ -19,10 +19,12 @@
 package org.apache.sling.distribution.serialization.impl.vlt;
 
 import javax.jcr.Session;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.UUID;
 
 import org.apache.commons.io.IOUtils;
@@ -103,11 +105,16 @@ public class FileVaultDistributionPackageBuilder extends AbstractDistributionPac
             throws DistributionPackageReadingException {
         log.debug("reading a stream");
         DistributionPackage pkg = null;
+        File tmpFile = null;
         try {
-            File tmpFile = File.createTempFile("rp-vlt-read-" + System.nanoTime(), ".zip");
-            FileOutputStream fileStream = new FileOutputStream(tmpFile);
-            IOUtils.copy(stream, fileStream);
-            IOUtils.closeQuietly(fileStream);
+            // a vlt package needs random access to the zip entries, it can't be opened on the stream itself
+            tmpFile = File.createTempFile("rp-vlt-read-" + System.nanoTime(), ".zip");
+            OutputStream fileStream = new BufferedOutputStream(new FileOutputStream(tmpFile));
+            try {
+                IOUtils.copy(stream, fileStream);
+            } finally {
+                IOUtils.closeQuietly(fileStream);
+            }
 
             VaultPackage vaultPackage = packaging.getPackageManager().open(tmpFile);
 
@@ -119,6 +126,10 @@ public class FileVaultDistributionPackageBuilder extends AbstractDistributionPac
 
         } catch (Exception e) {
             throw new DistributionPackageReadingException("could not read / install the package", e);
+        } finally {
+            if (pkg == null && tmpFile != null && !tmpFile.delete()) {
+                log.warn("could not delete temporary file {}", tmpFile);
+            }
         }
         return pkg;
     }
@@ -21,6 +21,7 @@ package org.apache.sling.distribution.servlet;
 import javax.servlet.ServletException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.felix.scr.annotations.sling.SlingServlet;
 import org.apache.sling.api.SlingHttpServletRequest;
@@ -54,6 +55,10 @@ public class DistributionPackageImporterServlet extends SlingAllMethodsServlet {
         response.setCharacterEncoding("utf-8");
 
         InputStream stream = request.getInputStream();
+        if ("gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+            // compressed by the transport, the package is still read straight from the request
+            stream = new GZIPInputStream(stream);
+        }
         ResourceResolver resourceResolver = request.getResourceResolver();
         try {
             DistributionPackage distributionPackage = distributionPackageImporter.importStream(resourceResolver, stream);
@@ -31,7 +31,6 @@ import org.apache.http.client.fluent.Content;
 import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.client.fluent.Response;
-import org.apache.http.entity.ContentType;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.distribution.packaging.DistributionPackage;
 import org.apache.sling.distribution.serialization.DistributionPackageBuilder;
@@ -86,7 +85,7 @@ public class AdvancedHttpDistributionTransport extends SimpleHttpDistributionTra
                         distributionEndpoint.getUri(), secret});
 
         try {
-            Executor executor = authenticate(secret, Executor.newInstance());
+            Executor executor = authenticate(secret, getExecutor());
 
             deliverPackage(executor, distributionPackage, distributionEndpoint);
 
@@ -158,7 +157,7 @@ public class AdvancedHttpDistributionTransport extends SimpleHttpDistributionTra
                 inputStream = distributionPackage.createInputStream();
             }
 
-            req = req.bodyStream(inputStream, ContentType.APPLICATION_OCTET_STREAM);
+            req = req.body(createEntity(inputStream));
 
             response = executor.execute(req);
         } finally {
@@ -19,11 +19,13 @@
 package org.apache.sling.distribution.transport.impl;
 
 import javax.annotation.Nonnull;
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.distribution.DistributionRequest;
 import org.apache.sling.distribution.component.impl.SettingsUtils;
@@ -37,7 +39,7 @@ import org.apache.sling.distribution.transport.DistributionTransportSecret;
  * {@link org.apache.sling.distribution.transport.core.DistributionTransport} supporting delivery / retrieval from multiple
  * endpoints.
  */
-public class MultipleEndpointDistributionTransport implements DistributionTransport {
+public class MultipleEndpointDistributionTransport implements DistributionTransport, Closeable {
 
     private final Map<String, DistributionTransport> transportHelpers;
     private final TransportEndpointStrategyType endpointStrategyType;
@@ -115,6 +117,17 @@ public class MultipleEndpointDistributionTransport implements DistributionTransp
         return result;
     }
 
+    /**
+     * closes all the endpoint transports holding resources, e.g. pooled connections
+     */
+    public void close() {
+        for (DistributionTransport distributionTransport : transportHelpers.values()) {
+            if (distributionTransport instanceof Closeable) {
+                IOUtils.closeQuietly((Closeable) distributionTransport);
+            }
+        }
+    }
+
     DistributionTransport getDefaultTransport() {
         java.util.Collection<DistributionTransport> var = transportHelpers.values();
         DistributionTransport[] handlers = var.toArray(new DistributionTransport[var.size()]);
@@ -19,6 +19,8 @@
 package org.apache.sling.distribution.transport.impl;
 
 import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
@@ -30,16 +32,24 @@ import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.entity.GzipCompressingEntity;
 import org.apache.http.client.fluent.Content;
 import org.apache.http.client.fluent.Executor;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.client.fluent.Response;
 import org.apache.http.conn.HttpHostConnectException;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.distribution.DistributionRequest;
 import org.apache.sling.distribution.packaging.DistributionPackage;
 import org.apache.sling.distribution.serialization.DistributionPackageBuilder;
+import org.apache.sling.distribution.serialization.DistributionPackageReadingException;
 import org.apache.sling.distribution.transport.core.DistributionTransport;
 import org.apache.sling.distribution.transport.core.DistributionTransportException;
 import org.apache.sling.distribution.transport.DistributionTransportSecret;
@@ -47,21 +57,50 @@ import org.apache.sling.distribution.util.RequestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class SimpleHttpDistributionTransport implements DistributionTransport {
+/**
+ * HTTP {@link org.apache.sling.distribution.transport.core.DistributionTransport} pushing package streams to and
+ * pulling package streams from a single endpoint.
+ * <p/>
+ * All requests to the endpoint share a pool of keep-alive connections, which is released by {@link #close()}. Package
+ * streams are written into the request and read from the response without buffering them, optionally the pushed
+ * packages are gzip compressed.
+ */
+public class SimpleHttpDistributionTransport implements DistributionTransport, Closeable {
+
+    /**
+     * maximum number of pooled connections to the endpoint
+     */
+    private static final int MAX_CONNECTIONS = 10;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final DistributionEndpoint distributionEndpoint;
     private final DistributionPackageBuilder packageBuilder;
     private final int maxNumberOfPackages;
+    private final boolean compress;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
 
     public SimpleHttpDistributionTransport(DistributionEndpoint distributionEndpoint,
                                            DistributionPackageBuilder packageBuilder,
                                            int maxNumberOfPackages) {
+        this(distributionEndpoint, packageBuilder, maxNumberOfPackages, false);
+    }
+
+    public SimpleHttpDistributionTransport(DistributionEndpoint distributionEndpoint,
+                                           DistributionPackageBuilder packageBuilder,
+                                           int maxNumberOfPackages,
+                                           boolean compress) {
 
         this.distributionEndpoint = distributionEndpoint;
         this.packageBuilder = packageBuilder;
         this.maxNumberOfPackages = maxNumberOfPackages;
+        this.compress = compress;
+
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        this.httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
     }
 
     public void deliverPackage(@Nonnull ResourceResolver resourceResolver, @Nonnull DistributionPackage distributionPackage,
@@ -70,7 +109,7 @@ public class SimpleHttpDistributionTransport implements DistributionTransport {
 
         URI packageOrigin = distributionPackage.getInfo().getOrigin();
         if (packageOrigin != null && hostAndPort.equals(getHostAndPort(packageOrigin))) {
-            log.info("skipping distribution of package {} to same origin {}", distributionPackage.getId(), hostAndPort);
+            log.info("skipping distribution of package {} to same origin {}", distributionPackage.getId(), hostAndPort);
         } else {
             log.info("delivering package {} to {} using secret {}", new Object[]{
                     distributionPackage.getId(),
@@ -79,9 +118,7 @@ public class SimpleHttpDistributionTransport implements DistributionTransport {
             });
 
             try {
-                Executor executor = Executor.newInstance();
-
-                executor = authenticate(secret, executor);
+                Executor executor = authenticate(secret, getExecutor());
 
                 Request req = Request.Post(distributionEndpoint.getUri()).useExpectContinue();
 
@@ -90,7 +127,7 @@ public class SimpleHttpDistributionTransport implements DistributionTransport {
                 try {
                     inputStream = distributionPackage.createInputStream();
 
-                    req = req.bodyStream(inputStream, ContentType.APPLICATION_OCTET_STREAM);
+                    req = req.body(createEntity(inputStream));
                     response = executor.execute(req);
                 } finally {
                     IOUtils.closeQuietly(inputStream);
@@ -118,39 +155,30 @@ public class SimpleHttpDistributionTransport implements DistributionTransport {
             URI distributionURI = RequestUtils.appendDistributionRequest(distributionEndpoint.getUri(), distributionRequest);
             List<DistributionPackage> result = new ArrayList<DistributionPackage>();
 
-            // TODO : executor should be cached and reused
-
-            Executor executor = Executor.newInstance();
-
-            executor = authenticate(secret, executor);
+            Executor executor = authenticate(secret, getExecutor());
 
             Request req = Request.Post(distributionURI).useExpectContinue();
 
             // TODO : add queue parameter
 
             // continuously requests package streams as long as type header is received with the response (meaning there's a package of a certain type)
-            HttpResponse httpResponse;
             try {
 
                 int pulls = 0;
-                while ((httpResponse = executor.execute(req).returnResponse())
-                        .getStatusLine().getStatusCode() == 200
-                        && pulls < maxNumberOfPackages) {
-                    HttpEntity entity = httpResponse.getEntity();
-                    if (entity != null) {
-                        final DistributionPackage responsePackage = packageBuilder.readPackage(resourceResolver, entity.getContent());
-                        if (responsePackage != null) {
-                            responsePackage.getInfo().setOrigin(distributionURI);
-                            result.add(responsePackage);
-                        } else {
-                            log.warn("responsePackage is null");
-                        }
-
-                        pulls++;
-                    } else {
-                        log.info("no entity available");
+                while (pulls < maxNumberOfPackages) {
+                    PackageResponseHandler handler = new PackageResponseHandler(resourceResolver);
+                    if (!executor.execute(req).handleResponse(handler)) {
                         break;
                     }
+                    final DistributionPackage responsePackage = handler.distributionPackage;
+                    if (responsePackage != null) {
+                        responsePackage.getInfo().setOrigin(distributionURI);
+                        result.add(responsePackage);
+                    } else {
+                        log.warn("responsePackage is null");
+                    }
+
+                    pulls++;
                 }
 
                 // only log.info when something is pulled in order to keep a quite log
@@ -174,6 +202,77 @@ public class SimpleHttpDistributionTransport implements DistributionTransport {
 
     }
 
+    /**
+     * creates a new executor for a single request, executors keep the credentials and the authentication cache so they
+     * must not be shared by concurrent requests while the pooled connections of the http client are
+     */
+    protected Executor getExecutor() {
+        return Executor.newInstance(httpClient);
+    }
+
+    /**
+     * closes the http client and the pooled connections to the endpoint
+     */
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("cannot close http client for {}", distributionEndpoint.getUri(), e);
+        } finally {
+            connectionManager.shutdown();
+        }
+    }
+
+    /**
+     * creates the streamed, optionally compressed, request entity for a package stream
+     */
+    protected HttpEntity createEntity(InputStream inputStream) {
+        HttpEntity entity = new InputStreamEntity(inputStream, ContentType.APPLICATION_OCTET_STREAM);
+        if (compress) {
+            entity = new GzipCompressingEntity(entity);
+        }
+        return entity;
+    }
+
+    /**
+     * reads the package directly from the response stream, the stream is not buffered
+     */
+    private class PackageResponseHandler implements ResponseHandler<Boolean> {
+
+        private final ResourceResolver resourceResolver;
+
+        private DistributionPackage distributionPackage;
+
+        private PackageResponseHandler(ResourceResolver resourceResolver) {
+            this.resourceResolver = resourceResolver;
+        }
+
+        public Boolean handleResponse(HttpResponse httpResponse) throws IOException {
+            HttpEntity entity = httpResponse.getEntity();
+            try {
+                if (httpResponse.getStatusLine().getStatusCode() != 200) {
+                    return false;
+                }
+                if (entity == null) {
+                    log.info("no entity available");
+                    return false;
+                }
+                InputStream inputStream = entity.getContent();
+                try {
+                    distributionPackage = packageBuilder.readPackage(resourceResolver, inputStream);
+                } catch (DistributionPackageReadingException e) {
+                    throw new IOException("cannot read package from response", e);
+                } finally {
+                    IOUtils.closeQuietly(inputStream);
+                }
+                return true;
+            } finally {
+                // release the connection to the pool
+                EntityUtils.consumeQuietly(entity);
+            }
+        }
+    }
+
     protected Executor authenticate(DistributionTransportSecret secret, Executor executor) {
         Map<String, String> credentialsMap = secret.asCredentialsMap();
         if (credentialsMap != null) {
@@ -19,6 +19,7 @@
 package org.apache.sling.distribution.agent.impl;
 
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
@@ -31,20 +32,31 @@ import org.apache.sling.distribution.event.impl.DistributionEventFactory;
 import org.apache.sling.distribution.log.impl.DefaultDistributionLog;
 import org.apache.sling.distribution.packaging.DistributionPackage;
 import org.apache.sling.distribution.packaging.DistributionPackageExporter;
+import org.apache.sling.distribution.packaging.DistributionPackageImportException;
 import org.apache.sling.distribution.packaging.DistributionPackageImporter;
 import org.apache.sling.distribution.packaging.DistributionPackageInfo;
 import org.apache.sling.distribution.queue.DistributionQueue;
+import org.apache.sling.distribution.queue.DistributionQueueItem;
 import org.apache.sling.distribution.queue.impl.DistributionQueueDispatchingStrategy;
 import org.apache.sling.distribution.queue.DistributionQueueItemStatus;
 import org.apache.sling.distribution.queue.DistributionQueueProvider;
 import org.apache.sling.distribution.queue.impl.simple.SimpleDistributionQueue;
+import org.apache.sling.distribution.serialization.impl.BatchDistributionPackage;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -213,4 +225,58 @@ public class SimpleDistributionAgentTest {
         when(queueProvider.getQueue("priority")).thenReturn(queue);
         assertNull(agent.getQueue("weird"));
     }
+
+    @Test
+    public void testBatchWithFailingPackage() throws Exception {
+        String name = "sample-agent";
+        DistributionPackageImporter packageImporter = mock(DistributionPackageImporter.class);
+        DistributionPackageExporter packageExporter = mock(DistributionPackageExporter.class);
+        DistributionRequestAuthorizationStrategy packageExporterStrategy = mock(DistributionRequestAuthorizationStrategy.class);
+        DistributionQueueProvider queueProvider = mock(DistributionQueueProvider.class);
+        DistributionQueueDispatchingStrategy distributionHandler = mock(DistributionQueueDispatchingStrategy.class);
+        DistributionEventFactory distributionEventFactory = mock(DistributionEventFactory.class);
+        ResourceResolverFactory resolverFactory = mock(ResourceResolverFactory.class);
+
+        SimpleDistributionAgent agent = new SimpleDistributionAgent(name,
+                true, "serviceName", packageImporter,
+                packageExporter, packageExporterStrategy,
+                queueProvider, distributionHandler,
+                distributionEventFactory, resolverFactory, mock(DefaultDistributionLog.class), 3);
+
+        DistributionPackage first = mockPackage(packageExporter, "first");
+        DistributionPackage failing = mockPackage(packageExporter, "failing");
+        DistributionPackage last = mockPackage(packageExporter, "last");
+
+        // the batch and its failing package cannot be imported
+        doThrow(new DistributionPackageImportException("batch")).when(packageImporter)
+                .importPackage(any(ResourceResolver.class), isA(BatchDistributionPackage.class));
+        doThrow(new DistributionPackageImportException("failing")).when(packageImporter)
+                .importPackage(any(ResourceResolver.class), eq(failing));
+
+        List<DistributionQueueItem> items = Arrays.asList(
+                new DistributionQueueItem("first", "type", new DistributionPackageInfo()),
+                new DistributionQueueItem("failing", "type", new DistributionPackageInfo()),
+                new DistributionQueueItem("last", "type", new DistributionPackageInfo()));
+        boolean[] result = agent.new PackageQueueProcessor().process("queue", items);
+
+        // the packages are imported one by one after the batch failed
+        assertEquals(3, result.length);
+        assertTrue(result[0]);
+        assertFalse(result[1]);
+        assertTrue(result[2]);
+        verify(packageImporter, times(1)).importPackage(any(ResourceResolver.class), eq(first));
+        verify(packageImporter, times(1)).importPackage(any(ResourceResolver.class), eq(last));
+        verify(first).delete();
+        verify(failing, never()).delete();
+        verify(last).delete();
+    }
+
+    private DistributionPackage mockPackage(DistributionPackageExporter packageExporter, String id) {
+        DistributionPackage distributionPackage = mock(DistributionPackage.class);
+        when(distributionPackage.getId()).thenReturn(id);
+        when(distributionPackage.getType()).thenReturn("type");
+        when(distributionPackage.getInfo()).thenReturn(new DistributionPackageInfo());
+        when(packageExporter.getPackage(any(ResourceResolver.class), eq(id))).thenReturn(distributionPackage);
+        return distributionPackage;
+    }
 }
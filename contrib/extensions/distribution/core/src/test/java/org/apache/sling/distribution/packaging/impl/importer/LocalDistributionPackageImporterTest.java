@@ -18,13 +18,20 @@
  */
 package org.apache.sling.distribution.packaging.impl.importer;
 
+import java.util.Arrays;
+
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.distribution.event.impl.DistributionEventFactory;
 import org.apache.sling.distribution.packaging.DistributionPackage;
+import org.apache.sling.distribution.packaging.DistributionPackageImportException;
+import org.apache.sling.distribution.packaging.DistributionPackageInfo;
 import org.apache.sling.distribution.serialization.DistributionPackageBuilder;
+import org.apache.sling.distribution.serialization.impl.BatchDistributionPackage;
 import org.junit.Test;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Testcase for {@link LocalDistributionPackageImporter}
@@ -39,4 +46,19 @@ public class LocalDistributionPackageImporterTest {
         DistributionPackage distributionPackage = mock(DistributionPackage.class);
         localdistributionPackageImporter.importPackage(resourceResolver, distributionPackage);
     }
+
+    @Test(expected = DistributionPackageImportException.class)
+    public void testFailedBatchImport() throws Exception {
+        DistributionPackageBuilder packageBuilder = mock(DistributionPackageBuilder.class);
+        // a member of the batch cannot be installed
+        when(packageBuilder.installPackage(any(ResourceResolver.class), any(DistributionPackage.class))).thenReturn(false);
+        LocalDistributionPackageImporter localdistributionPackageImporter = new LocalDistributionPackageImporter(packageBuilder);
+        ResourceResolver resourceResolver = mock(ResourceResolver.class);
+        DistributionPackage first = mock(DistributionPackage.class);
+        when(first.getInfo()).thenReturn(new DistributionPackageInfo());
+        DistributionPackage second = mock(DistributionPackage.class);
+        when(second.getInfo()).thenReturn(new DistributionPackageInfo());
+        BatchDistributionPackage batchPackage = new BatchDistributionPackage("type", Arrays.asList(first, second));
+        localdistributionPackageImporter.importPackage(resourceResolver, batchPackage);
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.file;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.commons.scheduler.ScheduleOptions;
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.apache.sling.distribution.packaging.DistributionPackageInfo;
+import org.apache.sling.distribution.queue.DistributionQueue;
+import org.apache.sling.distribution.queue.DistributionQueueItem;
+import org.apache.sling.distribution.queue.DistributionQueueProcessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Testcase for {@link FileDistributionQueueProvider}
+ */
+public class FileDistributionQueueProviderTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("queues", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testGetOrCreateQueue() throws Exception {
+        FileDistributionQueueProvider queueProvider = new FileDistributionQueueProvider(mock(Scheduler.class), "agentName", directory);
+        DistributionQueue queue = queueProvider.getQueue("default");
+        assertNotNull(queue);
+        assertEquals(queue, queueProvider.getQueue("default"));
+    }
+
+    @Test
+    public void testPersistedQueuesAreProcessedAfterRestart() throws Exception {
+        FileDistributionQueueProvider queueProvider = new FileDistributionQueueProvider(mock(Scheduler.class), "agentName", directory);
+        DistributionQueueItem item = new DistributionQueueItem("id", "type", new DistributionPackageInfo());
+        assertTrue(queueProvider.getQueue("queue/1").add(item));
+
+        Scheduler scheduler = mock(Scheduler.class);
+        ScheduleOptions options = mock(ScheduleOptions.class);
+        when(scheduler.NOW(-1, 10)).thenReturn(options);
+        when(options.canRunConcurrently(false)).thenReturn(options);
+        when(options.name(any(String.class))).thenReturn(options);
+
+        FileDistributionQueueProvider restartedQueueProvider = new FileDistributionQueueProvider(scheduler, "agentName", directory);
+        DistributionQueueProcessor processor = mock(DistributionQueueProcessor.class);
+        when(processor.process(eq("queue/1"), any(DistributionQueueItem.class))).thenReturn(true);
+        restartedQueueProvider.enableQueueProcessing(processor);
+
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(task.capture(), eq(options));
+        task.getValue().run();
+
+        ArgumentCaptor<DistributionQueueItem> processed = ArgumentCaptor.forClass(DistributionQueueItem.class);
+        verify(processor).process(eq("queue/1"), processed.capture());
+        assertEquals("id", processed.getValue().getId());
+        assertTrue(restartedQueueProvider.getQueue("queue/1").isEmpty());
+    }
+}
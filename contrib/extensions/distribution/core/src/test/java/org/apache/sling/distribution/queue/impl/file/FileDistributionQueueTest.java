@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.queue.impl.file;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sling.distribution.DistributionRequestType;
+import org.apache.sling.distribution.packaging.DistributionPackageInfo;
+import org.apache.sling.distribution.queue.DistributionQueue;
+import org.apache.sling.distribution.queue.DistributionQueueItem;
+import org.apache.sling.distribution.queue.DistributionQueueItemStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testcase for {@link FileDistributionQueue}
+ */
+public class FileDistributionQueueTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("queue", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testPackageAdditionAndRemoval() throws Exception {
+        DistributionQueue queue = new FileDistributionQueue("agentName", "default", directory);
+        DistributionQueueItem item = createItem("id");
+        assertTrue(queue.add(item));
+        assertFalse(queue.isEmpty());
+        assertEquals(item, queue.getHead());
+        assertEquals(1, queue.getStatus(item).getAttempts());
+        assertNotNull(queue.remove("id"));
+        assertTrue(queue.isEmpty());
+        DistributionQueueItemStatus status = queue.getStatus(item);
+        assertTrue(status.isSuccessful());
+        assertNull(queue.remove("id"));
+    }
+
+    @Test
+    public void testItemsSurviveRestart() throws Exception {
+        DistributionQueue queue = new FileDistributionQueue("agentName", "default", directory, 4096);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.add(createItem("item-" + i)));
+        }
+        // the head moves the consumer offset, the others are removed by a removal record
+        queue.remove("item-0");
+        queue.remove("item-1");
+        queue.remove("item-50");
+
+        DistributionQueue reopened = new FileDistributionQueue("agentName", "default", directory, 4096);
+        assertEquals(97, reopened.getItemsCount());
+        assertEquals("item-2", reopened.getHead().getId());
+        assertNull(reopened.getItem("item-50"));
+
+        DistributionQueueItem item = reopened.getItem("item-99");
+        assertNotNull(item);
+        assertEquals("type", item.getType());
+        assertEquals(DistributionRequestType.ADD, item.getPackageInfo().getRequestType());
+        assertEquals(URI.create("http://localhost:4502/origin"), item.getPackageInfo().getOrigin());
+        assertArrayEquals(new String[]{"/content/item-99", "/content/other"}, item.getPackageInfo().getPaths());
+
+        List<String> ids = new ArrayList<String>();
+        for (DistributionQueueItem queueItem : reopened.getItems(0, 3)) {
+            ids.add(queueItem.getId());
+        }
+        assertEquals(Arrays.asList("item-2", "item-3", "item-4"), ids);
+    }
+
+    @Test
+    public void testPartiallyWrittenRecordIsDiscarded() throws Exception {
+        FileDistributionQueue queue = new FileDistributionQueue("agentName", "default", directory, 4096);
+        queue.add(createItem("first"));
+        queue.add(createItem("second"));
+
+        // simulate a crash while the last record was written by corrupting its content
+        File segment = new File(directory, String.format("%020d.seg", 0));
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            long end = 0;
+            while (true) {
+                file.seek(end);
+                int length = file.readInt();
+                if (length == 0) {
+                    break;
+                }
+                end += 8 + length;
+            }
+            file.seek(end - 2);
+            file.writeShort(0x7f7f);
+        } finally {
+            file.close();
+        }
+
+        FileDistributionQueue reopened = new FileDistributionQueue("agentName", "default", directory, 4096);
+        assertEquals(1, reopened.getItemsCount());
+        assertEquals("first", reopened.getHead().getId());
+
+        // the log is appended after the last valid record
+        assertTrue(reopened.add(createItem("third")));
+        FileDistributionQueue again = new FileDistributionQueue("agentName", "default", directory, 4096);
+        assertEquals(2, again.getItemsCount());
+        assertNotNull(again.getItem("third"));
+    }
+
+    @Test
+    public void testConsumedSegmentsAreDeleted() throws Exception {
+        FileDistributionQueue queue = new FileDistributionQueue("agentName", "default", directory, 4096);
+        for (int i = 0; i < 500; i++) {
+            queue.add(createItem("item-" + i));
+        }
+        assertTrue(queue.getSegmentCount() > 10);
+
+        while (!queue.isEmpty()) {
+            queue.remove(queue.getHead().getId());
+        }
+        assertEquals(1, queue.getSegmentCount());
+
+        FileDistributionQueue reopened = new FileDistributionQueue("agentName", "default", directory, 4096);
+        assertTrue(reopened.isEmpty());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        FileDistributionQueue queue = new FileDistributionQueue("agentName", "default", directory, 4096);
+        queue.add(createItem("stuck"));
+        for (int i = 0; i < 500; i++) {
+            queue.add(createItem("item-" + i));
+            // the head keeps failing while the other items are removed
+            queue.remove("item-" + i);
+        }
+        queue.add(createItem("last"));
+
+        assertTrue(queue.getSegmentCount() <= 3);
+
+        FileDistributionQueue reopened = new FileDistributionQueue("agentName", "default", directory, 4096);
+        assertEquals(2, reopened.getItemsCount());
+        assertEquals("stuck", reopened.getHead().getId());
+        assertNotNull(reopened.getItem("last"));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        FileDistributionQueue queue = new FileDistributionQueue("agentName", "default", directory, 4096);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.add(createItem("item-" + i)));
+        }
+        queue.close();
+        assertFalse(queue.add(createItem("closed")));
+        // closing twice is harmless
+        queue.close();
+
+        FileDistributionQueue reopened = new FileDistributionQueue("agentName", "default", directory, 4096);
+        assertEquals(100, reopened.getItemsCount());
+        assertNull(reopened.getItem("closed"));
+        reopened.close();
+    }
+
+    private DistributionQueueItem createItem(String id) {
+        DistributionPackageInfo info = new DistributionPackageInfo();
+        info.setRequestType(DistributionRequestType.ADD);
+        info.setOrigin(URI.create("http://localhost:4502/origin"));
+        info.setPaths(new String[]{"/content/" + id, "/content/other"});
+        return new DistributionQueueItem(id, "type", info);
+    }
+}
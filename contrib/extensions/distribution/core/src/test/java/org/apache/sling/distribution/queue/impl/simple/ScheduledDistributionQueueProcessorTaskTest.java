@@ -18,14 +18,23 @@
  */
 package org.apache.sling.distribution.queue.impl.simple;
 
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
 
+import org.apache.sling.distribution.packaging.DistributionPackageInfo;
 import org.apache.sling.distribution.queue.DistributionQueue;
 import org.apache.sling.distribution.queue.DistributionQueueItem;
 import org.apache.sling.distribution.queue.DistributionQueueProcessor;
+import org.apache.sling.distribution.queue.impl.DistributionQueueBatchProcessor;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -73,4 +82,76 @@ public class ScheduledDistributionQueueProcessorTaskTest {
                 queueProvider, queueProcessor);
         scheduledDistributionQueueProcessorTask.run();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRunWithBatchProcessor() throws Exception {
+        SimpleDistributionQueueProvider queueProvider = mock(SimpleDistributionQueueProvider.class);
+        DistributionQueue queue = createQueue(25);
+        Collection<DistributionQueue> queues = new LinkedList<DistributionQueue>();
+        queues.add(queue);
+        when(queueProvider.getQueues()).thenReturn(queues);
+
+        // the third item fails the first time it is processed
+        TestBatchProcessor queueProcessor = new TestBatchProcessor(10, "item-2");
+        ScheduledDistributionQueueProcessorTask scheduledDistributionQueueProcessorTask = new ScheduledDistributionQueueProcessorTask(
+                queueProvider, queueProcessor);
+        scheduledDistributionQueueProcessorTask.run();
+
+        assertTrue(queue.isEmpty());
+        assertEquals(26, queueProcessor.processed.size());
+        // items are processed in queue order and the failed item is processed again in the following batch
+        assertEquals("item-0", queueProcessor.processed.get(0));
+        assertEquals("item-2", queueProcessor.processed.get(2));
+        assertEquals("item-2", queueProcessor.processed.get(10));
+        assertEquals("item-24", queueProcessor.processed.get(25));
+        assertEquals(3, queueProcessor.calls);
+    }
+
+    private DistributionQueue createQueue(int items) {
+        DistributionQueue queue = new SimpleDistributionQueue("agentName", "default");
+        for (int i = 0; i < items; i++) {
+            queue.add(new DistributionQueueItem("item-" + i, "type", new DistributionPackageInfo()));
+        }
+        return queue;
+    }
+
+    private static class TestBatchProcessor implements DistributionQueueBatchProcessor {
+
+        private final int batchSize;
+
+        private final Set<String> failing = new HashSet<String>();
+
+        private final List<String> processed = new ArrayList<String>();
+
+        private int calls;
+
+        private TestBatchProcessor(int batchSize, String... failing) {
+            this.batchSize = batchSize;
+            for (String id : failing) {
+                this.failing.add(id);
+            }
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        @Nonnull
+        public boolean[] process(@Nonnull String queueName, @Nonnull List<DistributionQueueItem> items) {
+            calls++;
+            boolean[] result = new boolean[items.size()];
+            for (int i = 0; i < items.size(); i++) {
+                String id = items.get(i).getId();
+                processed.add(id);
+                result[i] = !failing.remove(id);
+            }
+            return result;
+        }
+
+        public boolean process(@Nonnull String queueName, @Nonnull DistributionQueueItem queueItem) {
+            calls++;
+            processed.add(queueItem.getId());
+            return !failing.remove(queueItem.getId());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.serialization.impl;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.distribution.DistributionRequestType;
+import org.apache.sling.distribution.SimpleDistributionRequest;
+import org.apache.sling.distribution.packaging.DistributionPackage;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testcase for {@link BatchDistributionPackage}
+ */
+public class BatchDistributionPackageTest {
+
+    @Test
+    public void testWriteAndReadBatch() throws Exception {
+        List<DistributionPackage> packages = new ArrayList<DistributionPackage>();
+        packages.add(new SimpleDistributionPackage(new SimpleDistributionRequest(DistributionRequestType.DELETE, "/a"), "VOID"));
+        byte[] content = new byte[100000];
+        new Random(42).nextBytes(content);
+        packages.add(new BytesDistributionPackage("bytes", content));
+        packages.add(new BytesDistributionPackage("empty", new byte[0]));
+        packages.add(new SimpleDistributionPackage(new SimpleDistributionRequest(DistributionRequestType.DELETE, "/b", "/a"), "VOID"));
+
+        BatchDistributionPackage batch = new BatchDistributionPackage("VOID", packages);
+        assertEquals(Arrays.asList("/a", "/b"), Arrays.asList(batch.getInfo().getPaths()));
+
+        InputStream stream = new BufferedInputStream(batch.createInputStream());
+        assertTrue(BatchDistributionPackage.isBatch(stream));
+
+        BatchDistributionPackage.Reader reader = BatchDistributionPackage.read(stream);
+        for (DistributionPackage distributionPackage : packages) {
+            InputStream member = reader.next();
+            assertNotNull(member);
+            assertArrayEquals(IOUtils.toByteArray(distributionPackage.createInputStream()), IOUtils.toByteArray(member));
+        }
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testSkipUnreadMembers() throws Exception {
+        byte[] content = new byte[20000];
+        new Random(7).nextBytes(content);
+        List<DistributionPackage> packages = new ArrayList<DistributionPackage>();
+        packages.add(new BytesDistributionPackage("first", content));
+        packages.add(new BytesDistributionPackage("second", "second".getBytes("UTF-8")));
+
+        BatchDistributionPackage batch = new BatchDistributionPackage("VOID", packages);
+        BatchDistributionPackage.Reader reader = BatchDistributionPackage.read(batch.createInputStream());
+
+        InputStream first = reader.next();
+        assertNotNull(first);
+        assertEquals(content[0] & 0xff, first.read());
+
+        InputStream second = reader.next();
+        assertNotNull(second);
+        assertEquals("second", IOUtils.toString(second, "UTF-8"));
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testNotABatch() throws Exception {
+        InputStream stream = new BufferedInputStream(new ByteArrayInputStream("DSTRPCK:DELETE|/abc|VOID".getBytes("UTF-8")));
+        assertFalse(BatchDistributionPackage.isBatch(stream));
+        // the stream is left untouched
+        assertEquals("DSTRPCK:DELETE|/abc|VOID", IOUtils.toString(stream, "UTF-8"));
+    }
+
+    private static class BytesDistributionPackage extends AbstractDistributionPackage {
+
+        private final String id;
+
+        private final byte[] content;
+
+        private BytesDistributionPackage(String id, byte[] content) {
+            this.id = id;
+            this.content = content;
+        }
+
+        @Nonnull
+        public String getId() {
+            return id;
+        }
+
+        @Nonnull
+        public String getType() {
+            return "VOID";
+        }
+
+        @Nonnull
+        public InputStream createInputStream() throws IOException {
+            return new ByteArrayInputStream(content);
+        }
+
+        public void delete() {
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.distribution.transport.impl;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.distribution.DistributionRequestType;
+import org.apache.sling.distribution.SimpleDistributionRequest;
+import org.apache.sling.distribution.packaging.DistributionPackage;
+import org.apache.sling.distribution.packaging.DistributionPackageInfo;
+import org.apache.sling.distribution.serialization.DistributionPackageBuilder;
+import org.apache.sling.distribution.transport.DistributionTransportSecret;
+import org.apache.sling.distribution.transport.core.DistributionTransportException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Testcase for {@link SimpleHttpDistributionTransport} against a local stand-in endpoint
+ */
+public class SimpleHttpDistributionTransportEndpointTest {
+
+    private static final String CONTENT = "package binary stuff";
+
+    private HttpServer server;
+
+    private final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+
+    private final List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private final List<String> authorizations = Collections.synchronizedList(new ArrayList<String>());
+
+    private final AtomicInteger exported = new AtomicInteger();
+
+    private DistributionEndpoint endpoint;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/importer", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream stream = exchange.getRequestBody();
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                    stream = new GZIPInputStream(stream);
+                }
+                received.add(IOUtils.toString(stream, "UTF-8"));
+                authorizations.add(String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")));
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                respond(exchange, 200, "ok");
+            }
+        });
+        server.createContext("/exporter", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                if (exported.incrementAndGet() <= 3) {
+                    respond(exchange, 200, CONTENT);
+                } else {
+                    exchange.sendResponseHeaders(204, -1);
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        endpoint = new DistributionEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/importer");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private DistributionPackage createPackage() throws IOException {
+        DistributionPackage distributionPackage = mock(DistributionPackage.class);
+        when(distributionPackage.getInfo()).thenReturn(new DistributionPackageInfo());
+        when(distributionPackage.createInputStream()).thenAnswer(new Answer<InputStream>() {
+            public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                return new ByteArrayInputStream(CONTENT.getBytes("UTF-8"));
+            }
+        });
+        return distributionPackage;
+    }
+
+    @Test
+    public void testDeliverPackagesCompressed() throws Exception {
+        SimpleHttpDistributionTransport transport = new SimpleHttpDistributionTransport(endpoint, null, -1, true);
+        ResourceResolver resourceResolver = mock(ResourceResolver.class);
+        DistributionTransportSecret secret = mock(DistributionTransportSecret.class);
+
+        for (int i = 0; i < 3; i++) {
+            transport.deliverPackage(resourceResolver, createPackage(), secret);
+        }
+
+        assertEquals(3, received.size());
+        for (String content : received) {
+            assertEquals(CONTENT, content);
+        }
+        // the connection is kept alive and reused
+        assertEquals(1, new HashSet<Integer>(clientPorts).size());
+    }
+
+    @Test
+    public void testRetrievePackages() throws Exception {
+        DistributionPackageBuilder packageBuilder = mock(DistributionPackageBuilder.class);
+        when(packageBuilder.readPackage(any(ResourceResolver.class), any(InputStream.class))).thenAnswer(new Answer<DistributionPackage>() {
+            public DistributionPackage answer(InvocationOnMock invocation) throws Throwable {
+                // the package is read straight from the response stream
+                assertEquals(CONTENT, IOUtils.toString((InputStream) invocation.getArguments()[1], "UTF-8"));
+                return createPackage();
+            }
+        });
+        DistributionEndpoint exporterEndpoint = new DistributionEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/exporter");
+        SimpleHttpDistributionTransport transport = new SimpleHttpDistributionTransport(exporterEndpoint, packageBuilder, 2);
+        ResourceResolver resourceResolver = mock(ResourceResolver.class);
+        DistributionTransportSecret secret = mock(DistributionTransportSecret.class);
+
+        List<DistributionPackage> packages = transport.retrievePackages(resourceResolver,
+                new SimpleDistributionRequest(DistributionRequestType.PULL, "/"), secret);
+        assertEquals(2, packages.size());
+        // no package is pulled beyond the maximum
+        assertEquals(2, exported.get());
+
+        packages = transport.retrievePackages(resourceResolver,
+                new SimpleDistributionRequest(DistributionRequestType.PULL, "/"), secret);
+        assertEquals(1, packages.size());
+        assertEquals(4, exported.get());
+        assertEquals(1, new HashSet<Integer>(clientPorts).size());
+    }
+
+    private DistributionTransportSecret createSecret(String username) {
+        DistributionTransportSecret secret = mock(DistributionTransportSecret.class);
+        if (username != null) {
+            Map<String, String> credentials = new HashMap<String, String>();
+            credentials.put("username", username);
+            credentials.put("password", "secret");
+            when(secret.asCredentialsMap()).thenReturn(credentials);
+        }
+        return secret;
+    }
+
+    @Test
+    public void testCredentialsPerRequest() throws Exception {
+        SimpleHttpDistributionTransport transport = new SimpleHttpDistributionTransport(endpoint, null, -1);
+        ResourceResolver resourceResolver = mock(ResourceResolver.class);
+
+        transport.deliverPackage(resourceResolver, createPackage(), createSecret("first"));
+        transport.deliverPackage(resourceResolver, createPackage(), createSecret("second"));
+        transport.deliverPackage(resourceResolver, createPackage(), createSecret(null));
+
+        assertEquals(3, authorizations.size());
+        assertEquals("Basic " + DatatypeConverter.printBase64Binary("first:secret".getBytes("UTF-8")), authorizations.get(0));
+        assertEquals("Basic " + DatatypeConverter.printBase64Binary("second:secret".getBytes("UTF-8")), authorizations.get(1));
+        // the credentials of earlier requests are not reused
+        assertEquals("null", authorizations.get(2));
+        transport.close();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        SimpleHttpDistributionTransport transport = new SimpleHttpDistributionTransport(endpoint, null, -1);
+        ResourceResolver resourceResolver = mock(ResourceResolver.class);
+        DistributionTransportSecret secret = mock(DistributionTransportSecret.class);
+
+        transport.deliverPackage(resourceResolver, createPackage(), secret);
+        transport.close();
+        try {
+            transport.deliverPackage(resourceResolver, createPackage(), secret);
+            fail("the pooled connections are shut down");
+        } catch (DistributionTransportException e) {
+            // expected
+        }
+        assertEquals(1, received.size());
+    }
+}
@@ -18,18 +18,24 @@
  */
 package org.apache.sling.i18n.impl;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
 
 import org.apache.jackrabbit.util.ISO9075;
 import org.apache.sling.api.SlingException;
@@ -62,27 +68,56 @@ public class JcrResourceBundle extends ResourceBundle {
      */
     private static final String QUERY_MESSAGES_FORMAT = "/jcr:root%s//element(*,sling:Message)";
 
+    static final String NODE_TYPE_MESSAGE = "sling:Message";
+
     static final String QUERY_LANGUAGE_ROOTS = "//element(*,mix:language)[@jcr:language]";
 
-    private final Map<String, Object> resources;
+    /**
+     * The messages of this bundle and its parents. The table is immutable
+     * and replaced whenever the messages of this bundle or one of its
+     * parents change.
+     */
+    private volatile MessageTable table = MessageTable.EMPTY;
+
+    /**
+     * The generation of the messages of this bundle and its parents. It is
+     * incremented on every change and passed on to the child bundles, so a
+     * lookup only needs to compare it with the generation of the table.
+     */
+    private final AtomicInteger generation = new AtomicInteger(1);
+
+    /** The bundles using this bundle as their parent. */
+    private final List<JcrResourceBundle> children = new CopyOnWriteArrayList<JcrResourceBundle>();
 
     private final Locale locale;
 
+    private final String baseName;
+
+    /**
+     * The messages per language root in the order of the roots. Access to
+     * these messages must be synchronized on this bundle.
+     */
+    private final Map<String, RootMessages> rootMessages = new LinkedHashMap<String, RootMessages>();
+
     private final Set<String> languageRoots = new HashSet<String>();
 
+    /** The search path used to prioritize the messages. */
+    private String[] searchPath;
+
     JcrResourceBundle(Locale locale, String baseName,
             ResourceResolver resourceResolver) {
         this.locale = locale;
+        this.baseName = baseName;
 
         long start = System.currentTimeMillis();
         refreshSession(resourceResolver);
         Set<String> roots = loadPotentialLanguageRoots(resourceResolver, locale, baseName);
-        this.resources = loadFully(resourceResolver, roots, this.languageRoots);
+        loadFully(resourceResolver, roots, this.languageRoots);
         long end = System.currentTimeMillis();
         if (log.isDebugEnabled()) {
             log.debug(
                 "JcrResourceBundle: Fully loaded {} entries for {} (base: {}) in {}ms",
-                new Object[] { resources.size(), locale, baseName,
+                new Object[] { getSize(), locale, baseName,
                     (end - start) });
             log.debug("JcrResourceBundle: Language roots: {}", languageRoots);
         }
@@ -96,9 +131,24 @@ public class JcrResourceBundle extends ResourceBundle {
         return languageRoots;
     }
 
+    String getBaseName() {
+        return baseName;
+    }
+
+    /**
+     * The number of messages provided by this bundle only.
+     */
+    int getSize() {
+        return getTable().getOwnSize();
+    }
+
     @Override
     protected void setParent(ResourceBundle parent) {
         super.setParent(parent);
+        if ( parent instanceof JcrResourceBundle ) {
+            ((JcrResourceBundle)parent).children.add(this);
+        }
+        invalidate();
     }
 
     @Override
@@ -116,7 +166,7 @@ public class JcrResourceBundle extends ResourceBundle {
      */
     @Override
     protected Set<String> handleKeySet() {
-        return resources.keySet();
+        return getTable().getOwnKeys();
     }
 
     @Override
@@ -124,12 +174,65 @@ public class JcrResourceBundle extends ResourceBundle {
         Enumeration<String> parentKeys = (parent != null)
                 ? parent.getKeys()
                 : null;
-        return new ResourceBundleEnumeration(resources.keySet(), parentKeys);
+        return new ResourceBundleEnumeration(handleKeySet(), parentKeys);
     }
 
+    /**
+     * Returns the message of this bundle or, if missing, the message
+     * inherited from the parent bundles. The fallback to the parents
+     * is precomputed in the message table, so only keys missing in
+     * the whole chain are passed on to the parent by the
+     * <code>ResourceBundle</code>.
+     */
     @Override
     protected Object handleGetObject(String key) {
-        return resources.get(key);
+        return getTable().get(key);
+    }
+
+    /**
+     * Marks the table of this bundle and of all bundles inheriting
+     * from it as outdated.
+     */
+    private void invalidate() {
+        this.generation.incrementAndGet();
+        for(final JcrResourceBundle child : this.children) {
+            child.invalidate();
+        }
+    }
+
+    MessageTable getTable() {
+        final MessageTable current = this.table;
+        if ( current.getGeneration() == this.generation.get() ) {
+            return current;
+        }
+        return rebuildTable();
+    }
+
+    private synchronized MessageTable rebuildTable() {
+        // read before building, a concurrent change leads to another rebuild
+        final int generation = this.generation.get();
+        if ( this.table.getGeneration() != generation ) {
+            final ResourceBundle parent = this.parent;
+            final MessageTable parentTable = (parent instanceof JcrResourceBundle)
+                    ? ((JcrResourceBundle)parent).getTable() : null;
+            this.table = new MessageTable(mergeMessages(), parentTable, generation);
+        }
+        return this.table;
+    }
+
+    /**
+     * Merges the messages of all language roots. Messages in the search
+     * path overwrite the rest, the first search path entry has the
+     * highest priority.
+     */
+    private Map<String, Object> mergeMessages() {
+        final Map<String, Object> result = new HashMap<String, Object>();
+        for (int i = this.searchPath.length; i >= 0; i--) {
+            for(final RootMessages current : this.rootMessages.values()) {
+                current.collect(i, result);
+            }
+        }
+        return result;
     }
 
     /**
@@ -145,90 +248,157 @@ public class JcrResourceBundle extends ResourceBundle {
      *      loaded.
      * @param languageRoots The set of actualy dictionary subtrees. While
      *      processing the resources, all subtrees listed in the {@code roots}
-     *      set is added to this set if it actually contains resources. This
-     *      must not be {@code null}.
-     * @return
+     *      set is added to this set if they could be queried, even if they
+     *      do not contain any messages yet. This must not be {@code null}.
      *
      * @throws NullPointerException if either of the parameters is {@code null}.
      */
-    @SuppressWarnings("deprecation")
-    private Map<String, Object> loadFully(final ResourceResolver resourceResolver, Set<String> roots, Set<String> languageRoots) {
-        final List<List<Map<String, Object>>> allResources = new ArrayList<List<Map<String,Object>>>();
-
-        final String[] path = resourceResolver.getSearchPath();
+    private synchronized void loadFully(final ResourceResolver resourceResolver, Set<String> roots, Set<String> languageRoots) {
+        this.searchPath = resourceResolver.getSearchPath();
 
         for (final String root: roots) {
-            String fullLoadQuery = String.format(QUERY_MESSAGES_FORMAT, ISO9075.encodePath(root));
+            final RootMessages messages = loadRoot(resourceResolver, root);
+            if ( messages != null ) {
+                this.rootMessages.put(root, messages);
 
-            log.debug("Executing full load query {}", fullLoadQuery);
-
-            // do an XPath query because this won't go away soon and still
-            // (2011/04/04) is the fastest query language ...
-            Iterator<Map<String, Object>> bundles = null;
-            try {
-                bundles = resourceResolver.queryResources(fullLoadQuery, "xpath");
-            } catch (final SlingException se) {
-                log.error("Exception during resource query " + fullLoadQuery, se);
+                // also remember the root for updates if it is still empty
+                languageRoots.add(root);
             }
+        }
+    }
 
-            if ( bundles != null ) {
-
-                final Map<String, Object> rest = new HashMap<String, Object>();
-                final List<Map<String, Object>> res0 = new ArrayList<Map<String, Object>>();
-                for (int i = 0; i < path.length; i++) {
-                    res0.add(new HashMap<String, Object>());
-                }
-                res0.add(rest); // add global list at the end
+    /**
+     * Loads the messages of a single language root.
+     * @return The messages or <code>null</code> if the query failed.
+     */
+    @SuppressWarnings("deprecation")
+    private RootMessages loadRoot(final ResourceResolver resourceResolver, final String root) {
+        String fullLoadQuery = String.format(QUERY_MESSAGES_FORMAT, ISO9075.encodePath(root));
+
+        log.debug("Executing full load query {}", fullLoadQuery);
+
+        // do an XPath query because this won't go away soon and still
+        // (2011/04/04) is the fastest query language ...
+        Iterator<Map<String, Object>> bundles = null;
+        try {
+            bundles = resourceResolver.queryResources(fullLoadQuery, "xpath");
+        } catch (final SlingException se) {
+            log.error("Exception during resource query " + fullLoadQuery, se);
+        }
 
-                allResources.add(res0);
+        if ( bundles == null ) {
+            return null;
+        }
+        final RootMessages messages = new RootMessages();
+        while (bundles.hasNext()) {
+            final Map<String, Object> row = bundles.next();
+            if (row.containsKey(PROP_VALUE)) {
+                final String jcrPath = (String) row.get(JCR_PATH);
+                messages.put(jcrPath, getKey(jcrPath, (String) row.get(PROP_KEY)),
+                        row.get(PROP_VALUE), getSearchPathIndex(jcrPath));
+            }
+        }
+        return messages;
+    }
 
-                while (bundles.hasNext()) {
-                    final Map<String, Object> row = bundles.next();
-                    if (row.containsKey(PROP_VALUE)) {
-                        final String jcrPath = (String) row.get(JCR_PATH);
-                        String key = (String) row.get(PROP_KEY);
+    /**
+     * Updates the messages at or below the given path of one of the
+     * language roots of this bundle in place. The bundle does not need
+     * to be reloaded from the storage and its parent is kept.
+     * <p>
+     * The caller is expected to have refreshed the resolver.
+     *
+     * @param resourceResolver The storage access
+     * @param path The path of the added, changed or removed resource. This
+     *      must be below one of the {@link #getLanguageRootPaths() language roots}.
+     * @param removed Whether the resource has been removed.
+     * @return The number of updated messages.
+     */
+    synchronized int update(final ResourceResolver resourceResolver, final String path, final boolean removed) {
+        String root = null;
+        for(final String current : this.rootMessages.keySet()) {
+            if ( path.startsWith(current + "/") ) {
+                root = current;
+                break;
+            }
+        }
+        if ( root == null ) {
+            return 0;
+        }
 
-                        if (key == null) {
-                            key = ResourceUtil.getName(jcrPath);
-                        }
+        final RootMessages messages = this.rootMessages.get(root);
+        int count = 0;
+        final Resource resource = (removed ? null : resourceResolver.getResource(path));
+        if ( resource != null ) {
+            // additions might be a whole subtree (e.g. after a move)
+            count = addMessages(messages, resource);
+        } else if ( messages.remove(path) ) {
+            count = 1;
+        } else {
+            // removal of a whole subtree, the paths of the messages
+            // are not kept, so this root is queried again
+            final RootMessages reloaded = loadRoot(resourceResolver, root);
+            if ( reloaded != null ) {
+                count = messages.countChanges(reloaded);
+                this.rootMessages.put(root, reloaded);
+            }
+        }
 
-                        Map<String, Object> dst = rest;
-                        for (int i = 0; i < path.length; i++) {
-                            if (jcrPath.startsWith(path[i])) {
-                                dst = res0.get(i);
-                                break;
-                            }
-                        }
+        if ( count > 0 ) {
+            invalidate();
+        }
+        log.debug("update: Updated {} messages of {} (base: {}) for {}",
+                new Object[] {count, this.locale, this.baseName, path});
+        return count;
+    }
 
-                        dst.put(key, row.get(PROP_VALUE));
-                    }
-                }
+    private int addMessages(final RootMessages messages, final Resource resource) {
+        int count = 0;
+        final String path = resource.getPath();
+        final ValueMap properties = resource.adaptTo(ValueMap.class);
+        if ( isMessage(resource) && properties != null && properties.containsKey(PROP_VALUE) ) {
+            messages.put(path, getKey(path, properties.get(PROP_KEY, String.class)),
+                    properties.get(PROP_VALUE), getSearchPathIndex(path));
+            count++;
+        } else if ( messages.remove(path) ) {
+            // no message anymore
+            count++;
+        }
+        final Iterator<Resource> children = resource.listChildren();
+        while ( children.hasNext() ) {
+            count += addMessages(messages, children.next());
+        }
+        return count;
+    }
 
-                for (int i = res0.size() - 1; i >= 0; i--) {
-                    final Map<String, Object> resources = res0.get(i);
-                    if (!resources.isEmpty()) {
-                        // also remember root (in case we face a non-empty map)
-                        languageRoots.add(root);
-                        break;
-                    }
-                }
+    private static boolean isMessage(final Resource resource) {
+        final Node node = resource.adaptTo(Node.class);
+        if ( node != null ) {
+            try {
+                return node.isNodeType(NODE_TYPE_MESSAGE);
+            } catch (final RepositoryException re) {
+                log.warn("Unable to check node type of " + resource.getPath(), re);
+                return false;
             }
         }
-        final Map<String, Object> result = new HashMap<String, Object>();
-        for(final List<Map<String, Object>> current : allResources) {
-            final Map<String, Object> rest = current.get(current.size() - 1);
-            result.putAll(rest);
-        }
+        return true;
+    }
 
-        for (int i = path.length - 1; i >= 0; i--) {
+    private static String getKey(final String jcrPath, final String key) {
+        return (key != null ? key : ResourceUtil.getName(jcrPath));
+    }
 
-            for(final List<Map<String, Object>> current : allResources) {
-                final Map<String, Object> resources = current.get(i);
-                result.putAll(resources);
+    /**
+     * The index of the search path entry containing the path or the length
+     * of the search path for all other paths.
+     */
+    private int getSearchPathIndex(final String jcrPath) {
+        for (int i = 0; i < this.searchPath.length; i++) {
+            if (jcrPath.startsWith(this.searchPath[i])) {
+                return i;
             }
         }
-
-        return result;
+        return this.searchPath.length;
     }
 
     private Set<String> loadPotentialLanguageRoots(ResourceResolver resourceResolver, Locale locale, String baseName) {
@@ -263,4 +433,140 @@ public class JcrResourceBundle extends ResourceBundle {
     private static String toRFC4646String(Locale locale) {
         return locale.toString().replace('_', '-');
     }
+
+
+    /**
+     * The messages of a single language root together with their search
+     * path index, kept in plain arrays sorted by a 64 bit hash of the
+     * message paths. The paths themselves are compared on a hash match.
+     */
+    private static final class RootMessages {
+
+        private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+        private static final long FNV_PRIME = 0x100000001b3L;
+
+        private long[] pathHashes = new long[0];
+
+        private String[] paths = new String[0];
+
+        private String[] keys = new String[0];
+
+        private Object[] values = new Object[0];
+
+        private byte[] slots = new byte[0];
+
+        private int size;
+
+        static long hash(final String path) {
+            long h = FNV_OFFSET;
+            for(int i = 0; i < path.length(); i++) {
+                h ^= path.charAt(i);
+                h *= FNV_PRIME;
+            }
+            return h;
+        }
+
+        /**
+         * Returns the index of the path or <code>-(insertion point + 1)</code>
+         * if the path is not contained. Paths with the same hash are adjacent.
+         */
+        private int indexOf(final String path) {
+            final long hash = hash(path);
+            int low = 0;
+            int high = this.size - 1;
+            while ( low <= high ) {
+                final int mid = (low + high) >>> 1;
+                if ( this.pathHashes[mid] < hash ) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            // low is the first index with an equal or higher hash
+            while ( low < this.size && this.pathHashes[low] == hash ) {
+                if ( this.paths[low].equals(path) ) {
+                    return low;
+                }
+                low++;
+            }
+            return -(low + 1);
+        }
+
+        void put(final String path, final String key, final Object value, final int slot) {
+            int index = indexOf(path);
+            if ( index < 0 ) {
+                index = -index - 1;
+                if ( this.size == this.pathHashes.length ) {
+                    final int capacity = Math.max(8, this.size + (this.size >> 1));
+                    this.pathHashes = Arrays.copyOf(this.pathHashes, capacity);
+                    this.paths = Arrays.copyOf(this.paths, capacity);
+                    this.keys = Arrays.copyOf(this.keys, capacity);
+                    this.values = Arrays.copyOf(this.values, capacity);
+                    this.slots = Arrays.copyOf(this.slots, capacity);
+                }
+                final int moved = this.size - index;
+                System.arraycopy(this.pathHashes, index, this.pathHashes, index + 1, moved);
+                System.arraycopy(this.paths, index, this.paths, index + 1, moved);
+                System.arraycopy(this.keys, index, this.keys, index + 1, moved);
+                System.arraycopy(this.values, index, this.values, index + 1, moved);
+                System.arraycopy(this.slots, index, this.slots, index + 1, moved);
+                this.size++;
+                this.pathHashes[index] = hash(path);
+                this.paths[index] = path;
+            }
+            this.keys[index] = key;
+            this.values[index] = value;
+            this.slots[index] = (byte) slot;
+        }
+
+        boolean remove(final String path) {
+            final int index = indexOf(path);
+            if ( index < 0 ) {
+                return false;
+            }
+            final int moved = this.size - index - 1;
+            System.arraycopy(this.pathHashes, index + 1, this.pathHashes, index, moved);
+            System.arraycopy(this.paths, index + 1, this.paths, index, moved);
+            System.arraycopy(this.keys, index + 1, this.keys, index, moved);
+            System.arraycopy(this.values, index + 1, this.values, index, moved);
+            System.arraycopy(this.slots, index + 1, this.slots, index, moved);
+            this.size--;
+            this.paths[this.size] = null;
+            this.keys[this.size] = null;
+            this.values[this.size] = null;
+            return true;
+        }
+
+        /**
+         * Adds all messages of the search path index to the map.
+         */
+        void collect(final int slot, final Map<String, Object> result) {
+            for(int i = 0; i < this.size; i++) {
+                if ( this.slots[i] == slot ) {
+                    result.put(this.keys[i], this.values[i]);
+                }
+            }
+        }
+
+        /**
+         * Counts the messages which are different in the other messages.
+         */
+        int countChanges(final RootMessages other) {
+            int count = 0;
+            for(int i = 0; i < this.size; i++) {
+                final int index = other.indexOf(this.paths[i]);
+                if ( index < 0 || !this.keys[i].equals(other.keys[index])
+                        || !this.values[i].equals(other.values[index]) ) {
+                    count++;
+                }
+            }
+            for(int i = 0; i < other.size; i++) {
+                if ( this.indexOf(other.paths[i]) < 0 ) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
 }
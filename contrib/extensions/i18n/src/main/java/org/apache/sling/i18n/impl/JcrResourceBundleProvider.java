@@ -21,6 +21,7 @@ package org.apache.sling.i18n.impl;
 import static org.apache.sling.i18n.impl.JcrResourceBundle.PROP_BASENAME;
 import static org.apache.sling.i18n.impl.JcrResourceBundle.PROP_LANGUAGE;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
@@ -36,6 +37,7 @@ import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Property;
@@ -119,7 +121,13 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
     private final ConcurrentHashMap<Key, Semaphore> loadingGuards = new ConcurrentHashMap<Key, Semaphore>();
 
-    private final Set<String> languageRootPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /**
+     * The language roots of the cached bundles mapped to the keys of the
+     * bundles containing them.
+     */
+    private final ConcurrentHashMap<String, Set<Key>> languageRootPaths = new ConcurrentHashMap<String, Set<Key>>();
+
+    private final Statistics statistics = new Statistics();
 
     /**
      * Return root resource bundle as created on-demand by
@@ -133,6 +141,8 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
     private boolean preloadBundles;
 
+    private ServiceRegistration printerRegistration;
+
     // ---------- ResourceBundleProvider ---------------------------------------
 
     /**
@@ -176,27 +186,62 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
     public void handleEvent(final org.osgi.service.event.Event event) {
         final String path = (String)event.getProperty(SlingConstants.PROPERTY_PATH);
         if ( path != null ) {
+            final boolean removed = SlingConstants.TOPIC_RESOURCE_REMOVED.equals(event.getTopic());
+            final boolean changed = SlingConstants.TOPIC_RESOURCE_CHANGED.equals(event.getTopic());
             boolean invalidate = false;
-            if ( languageRootPaths.contains(path) ) {
-                log.debug("handleEvent: Detected change of cached language root {}, removing cached ResourceBundles", path);
-                invalidate = true;
-            } else {
-                for(final String root : languageRootPaths) {
-                    if ( path.startsWith(root) ) {
-                        log.debug("handleEvent: Resource changes, removing cached ResourceBundles");
-                        invalidate = true;
-                        break;
-                    }
+            final Set<Key> affected = new HashSet<Key>();
+            for(final Map.Entry<String, Set<Key>> entry : languageRootPaths.entrySet()) {
+                final String root = entry.getKey();
+                if ( root.equals(path) ) {
+                    // language or base name might have changed
+                    log.debug("handleEvent: Detected change of cached language root {}, removing cached ResourceBundles", path);
+                    invalidate = true;
+                    break;
+                } else if ( path.startsWith(root + "/") ) {
+                    affected.addAll(entry.getValue());
+                } else if ( !changed && root.startsWith(path + "/") ) {
+                    log.debug("handleEvent: Detected change of parent {} of cached language root {}, removing cached ResourceBundles", path, root);
+                    invalidate = true;
+                    break;
                 }
             }
 
             if ( invalidate ) {
+                final long start = System.currentTimeMillis();
                 clearCache();
                 preloadBundles();
+                statistics.fullReload(System.currentTimeMillis() - start);
+            } else if ( !affected.isEmpty() ) {
+                updateResourceBundles(affected, path, removed);
             }
         }
     }
 
+    /**
+     * Patches the affected cached bundles in place instead of reloading
+     * all bundles. The bundles keep their parents and their service
+     * registrations.
+     */
+    private void updateResourceBundles(final Set<Key> keys, final String path, final boolean removed) {
+        final ResourceResolver resolver = getResourceResolver();
+        if ( resolver == null ) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        JcrResourceBundle.refreshSession(resolver);
+        int count = 0;
+        for(final Key key : keys) {
+            final JcrResourceBundle bundle = resourceBundleCache.get(key);
+            if ( bundle != null ) {
+                count += bundle.update(resolver, path, removed);
+            }
+        }
+        final long duration = System.currentTimeMillis() - start;
+        statistics.update(duration);
+        log.debug("updateResourceBundles: Updated {} messages in {} for {} in {}ms",
+                new Object[] {count, keys, path, duration});
+    }
+
     // ---------- SCR Integration ----------------------------------------------
 
     /**
@@ -224,6 +269,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
         this.bundleContext = context.getBundleContext();
         this.bundleServiceRegistrations = new ArrayList<ServiceRegistration>();
+        this.printerRegistration = WebConsoleConfigPrinter.register(this.bundleContext, this);
         if (this.resourceResolverFactory != null) {
             final Thread t = new Thread() {
                 @Override
@@ -236,6 +282,10 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
     }
 
     protected void deactivate() {
+        if (this.printerRegistration != null) {
+            this.printerRegistration.unregister();
+            this.printerRegistration = null;
+        }
         clearCache();
     }
 
@@ -322,7 +372,17 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
         // register language root paths
         final Set<String> languageRoots = resourceBundle.getLanguageRootPaths();
-        languageRootPaths.addAll(languageRoots);
+        for(final String root : languageRoots) {
+            Set<Key> keys = languageRootPaths.get(root);
+            if ( keys == null ) {
+                final Set<Key> newKeys = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+                keys = languageRootPaths.putIfAbsent(root, newKeys);
+                if ( keys == null ) {
+                    keys = newKeys;
+                }
+            }
+            keys.add(key);
+        }
         log.debug("registerResourceBundle({}, ...): added service registration and language roots {}", key, languageRoots);
     }
 
@@ -481,6 +541,22 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         }
     }
 
+    /**
+     * Prints the reload statistics and the cached bundles.
+     */
+    void printConfiguration(final PrintWriter pw) {
+        pw.println("Apache Sling I18N Resource Bundles");
+        pw.println("==================================");
+        pw.println();
+        pw.printf("Full reloads: %d (%dms)%n", statistics.fullReloads.get(), statistics.fullReloadTime.get());
+        pw.printf("Incremental updates: %d (%dms)%n", statistics.updates.get(), statistics.updateTime.get());
+        pw.println();
+        for(final Map.Entry<Key, JcrResourceBundle> entry : resourceBundleCache.entrySet()) {
+            pw.printf("%s : %d messages, language roots %s%n", entry.getKey(),
+                    entry.getValue().getSize(), entry.getValue().getLanguageRootPaths());
+        }
+    }
+
     /**
      * Logs out from the repository and clears the resource bundle cache.
      */
@@ -566,6 +642,31 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
     //---------- internal class
 
+    /**
+     * Counts the reloads and updates of the cached bundles together with
+     * their accumulated durations.
+     */
+    private static final class Statistics {
+
+        final AtomicLong fullReloads = new AtomicLong();
+
+        final AtomicLong fullReloadTime = new AtomicLong();
+
+        final AtomicLong updates = new AtomicLong();
+
+        final AtomicLong updateTime = new AtomicLong();
+
+        void fullReload(final long duration) {
+            fullReloads.incrementAndGet();
+            fullReloadTime.addAndGet(duration);
+        }
+
+        void update(final long duration) {
+            updates.incrementAndGet();
+            updateTime.addAndGet(duration);
+        }
+    }
+
     /**
      * The <code>Key</code> class encapsulates the base name and Locale in a
      * single object that can be used as the key in a <code>HashMap</code>.
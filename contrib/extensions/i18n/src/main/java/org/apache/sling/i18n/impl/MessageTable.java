@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The <code>MessageTable</code> is an immutable open addressed hash table
+ * of messages. Keys and values are stored in two plain arrays instead of
+ * one entry object per message. Keys also contained in the parent table
+ * reuse the key instance of the parent, so they are shared between the
+ * tables of all locales.
+ * <p>
+ * A table contains the messages of a bundle together with the messages
+ * inherited from its parents. The messages of the bundle itself are
+ * flagged as own messages.
+ */
+final class MessageTable {
+
+    /** The maximum fill ratio of the table is 1/2 */
+    private static final int MIN_CAPACITY_FACTOR = 2;
+
+    static final MessageTable EMPTY = new MessageTable(Collections.<String, Object> emptyMap(),
+            null, 0);
+
+    private final String[] keys;
+
+    private final Object[] values;
+
+    /** The slots containing own messages. */
+    private final BitSet own;
+
+    private final int size;
+
+    private final int ownSize;
+
+    /** The generation of the bundle chain this table has been built for. */
+    private final int generation;
+
+    /**
+     * Creates a table.
+     * @param messages The own messages
+     * @param parent The table of the parent or <code>null</code>. All messages
+     *      of the parent not overwritten by an own message are inherited.
+     * @param generation The generation of the bundle chain.
+     */
+    MessageTable(final Map<String, Object> messages, final MessageTable parent, final int generation) {
+        int count = messages.size();
+        if ( parent != null ) {
+            for(int i = 0; i < parent.keys.length; i++) {
+                if ( parent.keys[i] != null && !messages.containsKey(parent.keys[i]) ) {
+                    count++;
+                }
+            }
+        }
+
+        int capacity = 1;
+        while ( capacity < count * MIN_CAPACITY_FACTOR ) {
+            capacity <<= 1;
+        }
+        this.keys = new String[capacity];
+        this.values = new Object[capacity];
+        this.own = new BitSet(capacity);
+        this.generation = generation;
+
+        for(final Map.Entry<String, Object> entry : messages.entrySet()) {
+            final String parentKey = (parent != null ? parent.getKey(entry.getKey()) : null);
+            final int index = this.insert(parentKey != null ? parentKey : entry.getKey(), entry.getValue());
+            this.own.set(index);
+        }
+        this.ownSize = messages.size();
+        if ( parent != null ) {
+            for(int i = 0; i < parent.keys.length; i++) {
+                if ( parent.keys[i] != null && !messages.containsKey(parent.keys[i]) ) {
+                    this.insert(parent.keys[i], parent.values[i]);
+                }
+            }
+        }
+        this.size = count;
+    }
+
+    private int insert(final String key, final Object value) {
+        int index = indexFor(key);
+        while ( this.keys[index] != null ) {
+            index = (index + 1) & (this.keys.length - 1);
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        return index;
+    }
+
+    private int indexFor(final String key) {
+        int h = key.hashCode();
+        // spread the hash bits as the table size is a power of two
+        h ^= (h >>> 16);
+        return h & (this.keys.length - 1);
+    }
+
+    /**
+     * Returns the own or inherited message for the key or <code>null</code>.
+     */
+    Object get(final String key) {
+        int index = indexFor(key);
+        String current;
+        while ( (current = this.keys[index]) != null ) {
+            if ( current == key || current.equals(key) ) {
+                return this.values[index];
+            }
+            index = (index + 1) & (this.keys.length - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the keys of the own messages.
+     */
+    Set<String> getOwnKeys() {
+        final Set<String> result = new HashSet<String>(this.ownSize * 2);
+        for(int i = this.own.nextSetBit(0); i >= 0; i = this.own.nextSetBit(i + 1)) {
+            result.add(this.keys[i]);
+        }
+        return result;
+    }
+
+    /**
+     * The number of own messages.
+     */
+    int getOwnSize() {
+        return this.ownSize;
+    }
+
+    /**
+     * The number of own and inherited messages.
+     */
+    int size() {
+        return this.size;
+    }
+
+    int getCapacity() {
+        return this.keys.length;
+    }
+
+    int getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Returns the key instance stored in this table or <code>null</code>.
+     */
+    String getKey(final String key) {
+        int index = indexFor(key);
+        String current;
+        while ( (current = this.keys[index]) != null ) {
+            if ( current.equals(key) ) {
+                return current;
+            }
+            index = (index + 1) & (this.keys.length - 1);
+        }
+        return null;
+    }
+}
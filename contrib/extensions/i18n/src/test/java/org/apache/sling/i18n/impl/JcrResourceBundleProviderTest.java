@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.Event;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.spy;
+import static org.powermock.api.mockito.PowerMockito.verifyPrivate;
+
+/**
+ * Test case to verify which changes in the repository reload all
+ * cached bundles and which ones only update the affected bundles.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(JcrResourceBundleProvider.class)
+public class JcrResourceBundleProviderTest {
+
+    private static final String ENGLISH_ROOT = "/libs/i18n/en";
+
+    private static final String GERMAN_ROOT = "/libs/i18n/de";
+
+    @Mock JcrResourceBundle english;
+    @Mock JcrResourceBundle german;
+
+    private ResourceResolver resolver;
+
+    private JcrResourceBundleProvider provider;
+
+    @Before
+    public void setUp() throws Exception {
+        Mockito.when(english.getLanguageRootPaths()).thenReturn(Collections.singleton(ENGLISH_ROOT));
+        Mockito.when(german.getLanguageRootPaths()).thenReturn(Collections.singleton(GERMAN_ROOT));
+
+        provider = spy(new JcrResourceBundleProvider());
+        provider.activate(createComponentContext(new Hashtable<String, Object>()));
+
+        resolver = PowerMockito.mock(ResourceResolver.class);
+        final ResourceResolverFactory factory = PowerMockito.mock(ResourceResolverFactory.class);
+        Mockito.when(factory.getAdministrativeResourceResolver(null)).thenReturn(resolver);
+        provider.bindResourceResolverFactory(factory);
+
+        doReturn(english).when(provider, "createResourceBundle", eq(null), eq(Locale.ENGLISH));
+        doReturn(german).when(provider, "createResourceBundle", eq(null), eq(Locale.GERMAN));
+
+        assertEquals(english, provider.getResourceBundle(Locale.ENGLISH));
+        assertEquals(german, provider.getResourceBundle(Locale.GERMAN));
+    }
+
+    @Test
+    public void reloadOnLanguageRootChange() throws Exception {
+        provider.handleEvent(event(SlingConstants.TOPIC_RESOURCE_CHANGED, ENGLISH_ROOT));
+
+        assertFullReload();
+    }
+
+    @Test
+    public void reloadOnAncestorRemoval() throws Exception {
+        provider.handleEvent(event(SlingConstants.TOPIC_RESOURCE_REMOVED, "/libs/i18n"));
+
+        assertFullReload();
+    }
+
+    @Test
+    public void reloadOnAncestorAddition() throws Exception {
+        provider.handleEvent(event(SlingConstants.TOPIC_RESOURCE_ADDED, "/libs"));
+
+        assertFullReload();
+    }
+
+    @Test
+    public void noReloadOnAncestorPropertyChange() throws Exception {
+        provider.handleEvent(event(SlingConstants.TOPIC_RESOURCE_CHANGED, "/libs/i18n"));
+
+        assertNoReload();
+        verify(english, never()).update(any(ResourceResolver.class), anyString(), anyBoolean());
+        verify(german, never()).update(any(ResourceResolver.class), anyString(), anyBoolean());
+    }
+
+    @Test
+    public void updateOnMessageChange() throws Exception {
+        final String path = ENGLISH_ROOT + "/msg";
+        provider.handleEvent(event(SlingConstants.TOPIC_RESOURCE_CHANGED, path));
+
+        assertNoReload();
+        verify(resolver).refresh();
+        verify(english).update(resolver, path, false);
+        verify(german, never()).update(any(ResourceResolver.class), anyString(), anyBoolean());
+    }
+
+    @Test
+    public void updateOnMessageRemoval() throws Exception {
+        final String path = GERMAN_ROOT + "/folder/msg";
+        provider.handleEvent(event(SlingConstants.TOPIC_RESOURCE_REMOVED, path));
+
+        assertNoReload();
+        verify(german).update(resolver, path, true);
+        verify(english, never()).update(any(ResourceResolver.class), anyString(), anyBoolean());
+    }
+
+    @Test
+    public void ignoreUnrelatedChange() throws Exception {
+        // a sibling with a common name prefix is not below the language root
+        provider.handleEvent(event(SlingConstants.TOPIC_RESOURCE_ADDED, ENGLISH_ROOT + "x/msg"));
+        provider.handleEvent(event(SlingConstants.TOPIC_RESOURCE_REMOVED, "/content/page"));
+
+        assertNoReload();
+        verify(english, never()).update(any(ResourceResolver.class), anyString(), anyBoolean());
+        verify(german, never()).update(any(ResourceResolver.class), anyString(), anyBoolean());
+    }
+
+    /** All bundles have been dropped from the cache and are created again on access */
+    private void assertFullReload() throws Exception {
+        assertEquals(english, provider.getResourceBundle(Locale.ENGLISH));
+        assertEquals(german, provider.getResourceBundle(Locale.GERMAN));
+        verifyPrivate(provider, times(2)).invoke("createResourceBundle", eq(null), eq(Locale.ENGLISH));
+        verifyPrivate(provider, times(2)).invoke("createResourceBundle", eq(null), eq(Locale.GERMAN));
+        verify(english, never()).update(any(ResourceResolver.class), anyString(), anyBoolean());
+        verify(german, never()).update(any(ResourceResolver.class), anyString(), anyBoolean());
+    }
+
+    /** The cached bundles are still used */
+    private void assertNoReload() throws Exception {
+        assertEquals(english, provider.getResourceBundle(Locale.ENGLISH));
+        assertEquals(german, provider.getResourceBundle(Locale.GERMAN));
+        verifyPrivate(provider, times(1)).invoke("createResourceBundle", eq(null), eq(Locale.ENGLISH));
+        verifyPrivate(provider, times(1)).invoke("createResourceBundle", eq(null), eq(Locale.GERMAN));
+    }
+
+    private Event event(final String topic, final String path) {
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(SlingConstants.PROPERTY_PATH, path);
+        return new Event(topic, props);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ComponentContext createComponentContext(Hashtable<String, Object> config) {
+        final ComponentContext componentContext = PowerMockito.mock(ComponentContext.class);
+        final BundleContext bundleContext = PowerMockito.mock(BundleContext.class);
+        Mockito.when(bundleContext.registerService(anyString(), any(), any(Dictionary.class)))
+            .thenReturn(PowerMockito.mock(ServiceRegistration.class));
+        Mockito.when(componentContext.getBundleContext()).thenReturn(bundleContext);
+        Mockito.when(componentContext.getProperties()).thenReturn(config);
+        return componentContext;
+    }
+}
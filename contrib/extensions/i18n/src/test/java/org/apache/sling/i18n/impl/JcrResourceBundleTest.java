@@ -84,63 +84,7 @@ public class JcrResourceBundleTest extends RepositoryTestBase {
 
                         @Override
                         public Resource next() {
-                            final Node node = nodes.nextNode();
-                            final Resource rsrc = new AbstractResource() {
-
-                                @Override
-                                public String getResourceType() {
-                                    // TODO Auto-generated method stub
-                                    return null;
-                                }
-
-                                @Override
-                                public String getResourceSuperType() {
-                                    // TODO Auto-generated method stub
-                                    return null;
-                                }
-
-                                @Override
-                                public ResourceResolver getResourceResolver() {
-                                    // TODO Auto-generated method stub
-                                    return null;
-                                }
-
-                                @Override
-                                public ResourceMetadata getResourceMetadata() {
-                                    // TODO Auto-generated method stub
-                                    return null;
-                                }
-
-                                @Override
-                                public String getPath() {
-                                    try {
-                                        return node.getPath();
-                                    } catch ( final RepositoryException re ) {
-                                        throw new RuntimeException(re);
-                                    }
-                                }
-
-                                @Override
-                                public <AdapterType> AdapterType adaptTo(
-                                        Class<AdapterType> type) {
-                                    if ( type == ValueMap.class) {
-                                        try {
-                                            final Map<String, Object> props = new HashMap<String, Object>();
-                                            if ( node.hasProperty(JcrResourceBundle.PROP_LANGUAGE) ) {
-                                                props.put(JcrResourceBundle.PROP_LANGUAGE, node.getProperty(JcrResourceBundle.PROP_LANGUAGE).getString());
-                                            }
-                                            if ( node.hasProperty(JcrResourceBundle.PROP_BASENAME) ) {
-                                                props.put(JcrResourceBundle.PROP_BASENAME, node.getProperty(JcrResourceBundle.PROP_BASENAME).getString());
-                                            }
-                                            return (AdapterType)new ValueMapDecorator(props);
-                                        } catch ( final RepositoryException re ) {
-                                            throw new RuntimeException(re);
-                                        }
-                                    }
-                                    return super.adaptTo(type);
-                                }
-                            };
-                            return rsrc;
+                            return toResource(nodes.nextNode());
                         }
 
                         @Override
@@ -163,8 +107,11 @@ public class JcrResourceBundleTest extends RepositoryTestBase {
 
             @Override
             public Resource getResource(String path) {
-                // TODO Auto-generated method stub
-                return null;
+                try {
+                    return getSession().nodeExists(path) ? toResource(getSession().getNode(path)) : null;
+                } catch (RepositoryException re) {
+                    return null;
+                }
             }
 
             @Override
@@ -377,6 +324,92 @@ public class JcrResourceBundleTest extends RepositoryTestBase {
     public static final Map<String, Message> MESSAGES_DE_APPS = new LinkedHashMap<String, Message>();
     public static final Map<String, Message> MESSAGES_DE_BASENAME = new LinkedHashMap<String, Message>();
 
+    private Resource toResource(final Node node) {
+        return new AbstractResource() {
+
+            @Override
+            public String getResourceType() {
+                // TODO Auto-generated method stub
+                return null;
+            }
+
+            @Override
+            public String getResourceSuperType() {
+                // TODO Auto-generated method stub
+                return null;
+            }
+
+            @Override
+            public ResourceResolver getResourceResolver() {
+                // TODO Auto-generated method stub
+                return null;
+            }
+
+            @Override
+            public ResourceMetadata getResourceMetadata() {
+                // TODO Auto-generated method stub
+                return null;
+            }
+
+            @Override
+            public String getPath() {
+                try {
+                    return node.getPath();
+                } catch ( final RepositoryException re ) {
+                    throw new RuntimeException(re);
+                }
+            }
+
+            @Override
+            public Iterator<Resource> listChildren() {
+                try {
+                    final NodeIterator children = node.getNodes();
+                    return new Iterator<Resource>() {
+                        @Override
+                        public boolean hasNext() {
+                            return children.hasNext();
+                        }
+
+                        @Override
+                        public Resource next() {
+                            return toResource(children.nextNode());
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("remove");
+                        }
+                    };
+                } catch ( final RepositoryException re ) {
+                    throw new RuntimeException(re);
+                }
+            }
+
+            @Override
+            public <AdapterType> AdapterType adaptTo(
+                    Class<AdapterType> type) {
+                if ( type == ValueMap.class) {
+                    try {
+                        final Map<String, Object> props = new HashMap<String, Object>();
+                        final String[] names = new String[] {JcrResourceBundle.PROP_LANGUAGE, JcrResourceBundle.PROP_BASENAME,
+                                JcrResourceBundle.PROP_KEY, JcrResourceBundle.PROP_VALUE};
+                        for(final String name : names) {
+                            if ( node.hasProperty(name) ) {
+                                props.put(name, node.getProperty(name).getString());
+                            }
+                        }
+                        return (AdapterType)new ValueMapDecorator(props);
+                    } catch ( final RepositoryException re ) {
+                        throw new RuntimeException(re);
+                    }
+                } else if ( type == Node.class ) {
+                    return (AdapterType)node;
+                }
+                return super.adaptTo(type);
+            }
+        };
+    }
+
     public static void add(Map<String, Message> map, Message msg) {
         map.put(msg.key, msg);
     }
@@ -579,4 +612,33 @@ public class JcrResourceBundleTest extends RepositoryTestBase {
         }
         assertEquals(MESSAGES_DE.size(), counter);
     }
+
+    public void test_update() throws Exception {
+        JcrResourceBundle bundle = new JcrResourceBundle(new Locale("de"), null, resolver);
+        assertTrue(bundle.getLanguageRootPaths().contains("/libs/i18n/de"));
+
+        // change an existing message
+        Node plate = getSession().getNode("/libs/i18n/de/plate");
+        plate.setProperty("sling:message", "Untertasse");
+        // add a new message in a new subtree
+        new Message("n", "knife", "Messer", true).add(getSession().getNode("/libs/i18n/de"));
+        getSession().save();
+
+        resolver.refresh();
+        assertEquals(1, bundle.update(resolver, plate.getPath(), false));
+        assertEquals(1, bundle.update(resolver, "/libs/i18n/de/n", false));
+        assertEquals("Untertasse", bundle.getString("plate"));
+        assertEquals("Messer", bundle.getString("knife"));
+
+        // remove the subtree
+        getSession().getNode("/libs/i18n/de/n").remove();
+        getSession().save();
+        resolver.refresh();
+        assertEquals(1, bundle.update(resolver, "/libs/i18n/de/n", true));
+        bundle.setParent(new RootResourceBundle());
+        assertEquals("knife", bundle.getString("knife"));
+
+        // other messages are untouched
+        assertEquals(MESSAGES_DE.get("kitchen").message, bundle.getString("kitchen"));
+    }
 }
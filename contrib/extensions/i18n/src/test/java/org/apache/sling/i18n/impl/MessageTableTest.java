@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MessageTableTest {
+
+    private static Map<String, Object> messages(final String prefix, final int count) {
+        final Map<String, Object> result = new HashMap<String, Object>();
+        for(int i = 0; i < count; i++) {
+            result.put("key" + i, prefix + i);
+        }
+        return result;
+    }
+
+    @Test
+    public void testLookup() {
+        final MessageTable table = new MessageTable(messages("de", 100), null, 1);
+        for(int i = 0; i < 100; i++) {
+            // lookup must not depend on the key instance
+            assertEquals("de" + i, table.get(new String("key" + i)));
+        }
+        assertNull(table.get("missing"));
+        assertEquals(100, table.size());
+        assertEquals(100, table.getOwnSize());
+        assertEquals(1, table.getGeneration());
+
+        assertNull(MessageTable.EMPTY.get("key0"));
+        assertEquals(0, MessageTable.EMPTY.getOwnKeys().size());
+    }
+
+    @Test
+    public void testFallback() {
+        final MessageTable parent = new MessageTable(messages("en", 10), null, 1);
+        final MessageTable child = new MessageTable(messages("de", 5), parent, 2);
+
+        // own messages overwrite the parent, missing ones are inherited
+        assertEquals("de4", child.get("key4"));
+        assertEquals("en5", child.get("key5"));
+        assertEquals(10, child.size());
+        assertEquals(5, child.getOwnSize());
+        assertEquals(messages("de", 5).keySet(), child.getOwnKeys());
+    }
+
+    @Test
+    public void testFootprint() {
+        final int count = 40000;
+        final MessageTable parent = new MessageTable(messages("en", count), null, 1);
+        final MessageTable child = new MessageTable(messages("de", count), parent, 2);
+
+        // at most two array slots per key and message
+        assertTrue(parent.getCapacity() <= count * 4);
+        assertTrue(child.getCapacity() <= count * 4);
+
+        // keys are shared instead of copied per locale
+        for(int i = 0; i < count; i += 1000) {
+            assertSame(parent.getKey("key" + i), child.getKey("key" + i));
+        }
+    }
+}
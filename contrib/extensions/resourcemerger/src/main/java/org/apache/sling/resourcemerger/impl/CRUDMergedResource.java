@@ -58,7 +58,25 @@ public class CRUDMergedResource extends MergedResource {
                    final List<Resource> mappedResources,
                    final List<ValueMap> valueMaps,
                    final MergedResourcePicker picker) {
-        super(resolver, mergeRootPath, relativePath, mappedResources, valueMaps);
+        this(resolver, mergeRootPath, relativePath, mappedResources, MergedValueMap.createLayers(valueMaps), picker);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param resolver      Resource resolver
+     * @param mergeRootPath   Merge root path
+     * @param relativePath    Relative path
+     * @param mappedResources List of physical mapped resources' paths
+     * @param layers          The shared property layers of the mapped resources
+     */
+    CRUDMergedResource(final ResourceResolver resolver,
+                   final String mergeRootPath,
+                   final String relativePath,
+                   final List<Resource> mappedResources,
+                   final MergedValueMap.Layer[] layers,
+                   final MergedResourcePicker picker) {
+        super(resolver, mergeRootPath, relativePath, mappedResources, layers);
         this.picker = picker;
         this.relativePath = relativePath;
     }
@@ -44,6 +44,12 @@ public class CRUDMergingResourceProvider
         super(mergeRootPath, picker, false);
     }
 
+    CRUDMergingResourceProvider(final String mergeRootPath,
+            final MergedResourcePicker picker,
+            final MergingResourceProviderFactory factory) {
+        super(mergeRootPath, picker, false, factory);
+    }
+
     private static final class ExtendedResourceHolder {
         public final String name;
         public final List<Resource> resources = new ArrayList<Resource>();
@@ -91,6 +97,7 @@ public class CRUDMergingResourceProvider
             final String path,
             final Map<String, Object> properties)
     throws PersistenceException {
+        this.clearCache();
         // check if the resource exists
         final Resource mountResource = this.getResource(resolver, path);
         if ( mountResource != null ) {
@@ -129,6 +136,7 @@ public class CRUDMergingResourceProvider
      */
     public void delete(final ResourceResolver resolver, final String path)
     throws PersistenceException {
+        this.clearCache();
         // deleting of the root mount resource is not supported
         final String relativePath = getRelativePath(path);
         if ( relativePath == null || relativePath.length() == 0 ) {
@@ -164,6 +172,7 @@ public class CRUDMergingResourceProvider
      */
     public void revert(final ResourceResolver resolver) {
         // the provider for the merged resources will revert
+        this.clearCache();
     }
 
     /**
@@ -171,6 +180,7 @@ public class CRUDMergingResourceProvider
      */
     public void commit(final ResourceResolver resolver) throws PersistenceException {
         // the provider for the merged resources will commit
+        this.clearCache();
     }
 
     /**
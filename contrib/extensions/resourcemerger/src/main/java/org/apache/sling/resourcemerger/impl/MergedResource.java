@@ -60,9 +60,26 @@ public class MergedResource extends AbstractResource {
                    final String relativePath,
                    final List<Resource> mappedResources,
                    final List<ValueMap> valueMaps) {
+        this(resolver, mergeRootPath, relativePath, mappedResources, MergedValueMap.createLayers(valueMaps));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param resolver      Resource resolver
+     * @param mergeRootPath   Merge root path
+     * @param relativePath    Relative path
+     * @param mappedResources List of physical mapped resources' paths
+     * @param layers          The shared property layers of the mapped resources
+     */
+    MergedResource(final ResourceResolver resolver,
+                   final String mergeRootPath,
+                   final String relativePath,
+                   final List<Resource> mappedResources,
+                   final MergedValueMap.Layer[] layers) {
         this.resolver = resolver;
         this.path = (relativePath.length() == 0 ? mergeRootPath : mergeRootPath + "/" + relativePath);
-        this.properties = new DeepReadValueMapDecorator(this, new MergedValueMap(valueMaps));
+        this.properties = new DeepReadValueMapDecorator(this, new MergedValueMap(layers));
         // get resource type
         String rt = this.properties.get(ResourceResolver.PROPERTY_RESOURCE_TYPE, String.class);
         if (rt == null) {
@@ -26,14 +26,18 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.ResourceProvider;
 import org.apache.sling.api.resource.ResourceProviderFactory;
 import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.apache.sling.resourcemerger.impl.picker.MergingResourcePicker;
 import org.apache.sling.resourcemerger.spi.MergedResourcePicker;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.osgi.util.tracker.ServiceTracker;
 import org.osgi.util.tracker.ServiceTrackerCustomizer;
 
@@ -64,13 +68,22 @@ public class MergedResourcePickerWhiteboard implements ServiceTrackerCustomizer
             final String mergeRoot = PropertiesUtil.toString(reference.getProperty(MergedResourcePicker.MERGE_ROOT), null);
             if (mergeRoot != null) {
                 final ResourceProviderFactory providerFactory = new MergingResourceProviderFactory(mergeRoot, picker,
-                        PropertiesUtil.toBoolean(reference.getProperty(MergedResourcePicker.READ_ONLY), true));
+                        PropertiesUtil.toBoolean(reference.getProperty(MergedResourcePicker.READ_ONLY), true),
+                        picker instanceof MergingResourcePicker);
                 final Dictionary<Object, Object> props = new Hashtable<Object, Object>();
                 props.put(ResourceProvider.ROOTS, mergeRoot);
                 props.put(ResourceProvider.OWNS_ROOTS, true);
+                // the factory invalidates the cached merged views on changes
+                props.put(EventConstants.EVENT_TOPIC, new String[] {
+                        SlingConstants.TOPIC_RESOURCE_ADDED,
+                        SlingConstants.TOPIC_RESOURCE_CHANGED,
+                        SlingConstants.TOPIC_RESOURCE_REMOVED
+                });
 
                 final Long key = (Long) reference.getProperty(Constants.SERVICE_ID);
-                final ServiceRegistration reg = bundleContext.registerService(ResourceProviderFactory.class.getName(), providerFactory, props);
+                final ServiceRegistration reg = bundleContext.registerService(
+                        new String[] {ResourceProviderFactory.class.getName(), EventHandler.class.getName()},
+                        providerFactory, props);
 
                 serviceRegistrations.put(key, reg);
 
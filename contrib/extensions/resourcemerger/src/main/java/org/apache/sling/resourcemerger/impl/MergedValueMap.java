@@ -18,9 +18,12 @@
  */
 package org.apache.sling.resourcemerger.impl;
 
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.sling.api.resource.ValueMap;
@@ -29,6 +32,12 @@ import org.apache.sling.api.wrappers.ValueMapDecorator;
 /**
  * A <code>MergedValueMap</code> is a {@link ValueMap} aggregated from the
  * different resources mapped to a {@link MergedResource}.
+ *
+ * The properties are not copied. A property is looked up in the layers,
+ * starting with the topmost one, when it is requested. The complete map
+ * is only computed if the keys, values or entries are requested or if the
+ * map is changed. Changes are only applied to this map, never to the
+ * merged resources.
  */
 public class MergedValueMap extends ValueMapDecorator {
 
@@ -45,34 +54,147 @@ public class MergedValueMap extends ValueMapDecorator {
     }
 
     /**
-     * Constructor
-     *
-     * @param resource The merged resource to get properties from
+     * The properties of one of the merged resources together with the
+     * properties it hides. A layer is immutable and can be shared by
+     * all merged resources created for the same resources.
      */
-    public MergedValueMap(final List<ValueMap> valueMaps) {
-        super(new HashMap<String, Object>());
-        // Iterate over value maps
-        for (final ValueMap vm : valueMaps) {
-            // Add all properties
-            this.putAll(vm);
+    static final class Layer {
+
+        public final ValueMap properties;
+
+        /** Whether this layer hides all properties, its own and the ones of the underlying layers. */
+        public final boolean hidesAll;
 
-            // Get properties to hide
-            final String[] propertiesToHide = vm.get(MergedResourceConstants.PN_HIDE_PROPERTIES, String[].class);
+        /**
+         * The properties hidden by this layer only. Each of them is hidden
+         * in this layer and in all underlying layers.
+         */
+        public final Set<String> hidden;
+
+        public Layer(final ValueMap properties) {
+            this.properties = properties;
+            final String[] propertiesToHide = properties.get(MergedResourceConstants.PN_HIDE_PROPERTIES, String[].class);
+            boolean hidesAll = false;
+            Set<String> hidden = Collections.emptySet();
             if ( propertiesToHide != null ) {
+                hidden = new HashSet<String>();
                 for (final String propName : propertiesToHide) {
                     if (propName.equals("*")) {
-                        this.clear();
+                        hidesAll = true;
                         break;
-                    } else {
-                        this.remove(propName);
                     }
+                    hidden.add(propName);
                 }
             }
+            this.hidesAll = hidesAll;
+            this.hidden = hidden;
         }
 
-        // Hide excluded properties
-        for (final String excludedProperty : EXCLUDED_PROPERTIES) {
-            this.remove(excludedProperty);
+        public boolean hides(final String name) {
+            return this.hidesAll || this.hidden.contains(name);
+        }
+    }
+
+    /**
+     * Create the layers for the value maps of the merged resources.
+     */
+    static Layer[] createLayers(final List<ValueMap> valueMaps) {
+        final Layer[] layers = new Layer[valueMaps.size()];
+        int index = 0;
+        for (final ValueMap vm : valueMaps) {
+            layers[index] = new Layer(vm);
+            index++;
+        }
+        return layers;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param valueMaps The value maps of the merged resources
+     */
+    public MergedValueMap(final List<ValueMap> valueMaps) {
+        this(createLayers(valueMaps));
+    }
+
+    /**
+     * Create a value map on top of the shared layers.
+     */
+    MergedValueMap(final Layer[] layers) {
+        super(new MergedProperties(layers));
+    }
+
+    /**
+     * The map of the merged properties.
+     */
+    private static final class MergedProperties extends AbstractMap<String, Object> {
+
+        private final Layer[] layers;
+
+        /** The complete map, only computed on demand. */
+        private volatile Map<String, Object> all;
+
+        public MergedProperties(final Layer[] layers) {
+            this.layers = layers;
+        }
+
+        @Override
+        public Object get(final Object key) {
+            if ( this.all != null ) {
+                return this.all.get(key);
+            }
+            if ( !(key instanceof String) || EXCLUDED_PROPERTIES.contains(key) ) {
+                return null;
+            }
+            final String name = (String)key;
+            for(int i = this.layers.length - 1; i >= 0; i--) {
+                final Layer layer = this.layers[i];
+                // a layer hides its own properties as well
+                if ( layer.hides(name) ) {
+                    return null;
+                }
+                final Object value = layer.properties.get(name);
+                if ( value != null ) {
+                    return value;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return this.get(key) != null;
+        }
+
+        @Override
+        public Object put(final String key, final Object value) {
+            return this.getAll().put(key, value);
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return this.getAll().entrySet();
+        }
+
+        /**
+         * Compute the complete map, which is changed directly from then on.
+         */
+        private Map<String, Object> getAll() {
+            Map<String, Object> result = this.all;
+            if ( result == null ) {
+                result = new HashMap<String, Object>();
+                for (final Layer layer : this.layers) {
+                    result.putAll(layer.properties);
+                    if ( layer.hidesAll ) {
+                        result.clear();
+                    } else {
+                        result.keySet().removeAll(layer.hidden);
+                    }
+                }
+                result.keySet().removeAll(EXCLUDED_PROPERTIES);
+                this.all = result;
+            }
+            return result;
         }
     }
 }
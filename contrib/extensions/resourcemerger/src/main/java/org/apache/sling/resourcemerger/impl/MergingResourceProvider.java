@@ -19,8 +19,12 @@
 package org.apache.sling.resourcemerger.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -39,12 +43,61 @@ class MergingResourceProvider implements ResourceProvider {
 
     private final boolean readOnly;
 
+    /** Marker for a cached missing resource. */
+    private static final ResourceHolder NO_RESOURCE = new ResourceHolder(null);
+
+    /** The maximum number of cached merged views per type. */
+    private static final int MAX_CACHE_SIZE = 1000;
+
+    /** The factory providing the cache generation or <code>null</code> if caching is disabled. */
+    private final MergingResourceProviderFactory factory;
+
+    private long cacheGeneration;
+
+    private boolean searchPathsRegistered;
+
+    /** The merged resources by relative path. */
+    private final Map<String, ResourceHolder> resourceCache = new LruCache<ResourceHolder>();
+
+    /** The merged children by relative path of the parent. */
+    private final Map<String, List<ResourceHolder>> childrenCache = new LruCache<List<ResourceHolder>>();
+
     MergingResourceProvider(final String mergeRootPath,
             final MergedResourcePicker picker,
             final boolean readOnly) {
+        this(mergeRootPath, picker, readOnly, null);
+    }
+
+    /**
+     * Create a provider caching the merged views. As a provider is used by a
+     * single resource resolver only, the cache respects the access rights
+     * of this resolver. Changes reported to the factory invalidate the cache.
+     */
+    MergingResourceProvider(final String mergeRootPath,
+            final MergedResourcePicker picker,
+            final boolean readOnly,
+            final MergingResourceProviderFactory factory) {
         this.mergeRootPath = mergeRootPath;
         this.picker = picker;
         this.readOnly = readOnly;
+        this.factory = factory;
+        if ( factory != null ) {
+            this.cacheGeneration = factory.getGeneration();
+        }
+    }
+
+    private static final class LruCache<V> extends LinkedHashMap<String, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        public LruCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+            return this.size() > MAX_CACHE_SIZE;
+        }
     }
 
     protected static final class ExcludeEntry {
@@ -101,6 +154,13 @@ class MergingResourceProvider implements ResourceProvider {
             }
         }
 
+        /**
+         * Does this handler hide any children at all?
+         */
+        public boolean hidesChildren() {
+            return !this.entries.isEmpty();
+        }
+
         public boolean isHidden(final String name) {
             boolean hidden = false;
             if ( this.entries != null ) {
@@ -135,16 +195,106 @@ class MergingResourceProvider implements ResourceProvider {
         public final List<Resource> resources = new ArrayList<Resource>();
         public final List<ValueMap> valueMaps = new ArrayList<ValueMap>();
 
+        /** The property layers, shared by all merged resources created from this holder. */
+        private MergedValueMap.Layer[] layers;
+
+        /** Links within the {@link Candidates}. */
+        private ResourceHolder previous;
+        private ResourceHolder next;
+
         public ResourceHolder(final String n) {
             this.name = n;
         }
     }
 
     /**
-     * Create the merged resource based on the provided resources
+     * The ordered child candidates with a lookup by name. Looking up,
+     * reordering and removing a candidate takes constant time, therefore
+     * the children can be merged in a single pass.
      */
-    private Resource createMergedResource(final ResourceResolver resolver, final String relativePath,
-            final ResourceHolder holder) {
+    private static final class Candidates implements Iterable<ResourceHolder> {
+
+        /** Sentinel of the doubly linked list. */
+        private final ResourceHolder head = new ResourceHolder(null);
+
+        private final Map<String, ResourceHolder> byName = new HashMap<String, ResourceHolder>();
+
+        public Candidates() {
+            this.head.previous = this.head;
+            this.head.next = this.head;
+        }
+
+        public ResourceHolder get(final String name) {
+            return this.byName.get(name);
+        }
+
+        public ResourceHolder getOrCreate(final String name) {
+            ResourceHolder holder = this.byName.get(name);
+            if ( holder == null ) {
+                holder = new ResourceHolder(name);
+                this.byName.put(name, holder);
+                this.link(holder, this.head);
+            }
+            return holder;
+        }
+
+        /**
+         * Move the holder in front of the other holder.
+         */
+        public void moveBefore(final ResourceHolder holder, final ResourceHolder before) {
+            if ( holder != before && holder.next != before ) {
+                this.unlink(holder);
+                this.link(holder, before);
+            }
+        }
+
+        public boolean isEmpty() {
+            return this.byName.isEmpty();
+        }
+
+        private void link(final ResourceHolder holder, final ResourceHolder before) {
+            holder.previous = before.previous;
+            holder.next = before;
+            before.previous.next = holder;
+            before.previous = holder;
+        }
+
+        private void unlink(final ResourceHolder holder) {
+            holder.previous.next = holder.next;
+            holder.next.previous = holder.previous;
+        }
+
+        public Iterator<ResourceHolder> iterator() {
+            return new Iterator<ResourceHolder>() {
+
+                private ResourceHolder current = head;
+
+                public boolean hasNext() {
+                    return this.current.next != head;
+                }
+
+                public ResourceHolder next() {
+                    if ( !this.hasNext() ) {
+                        throw new NoSuchElementException();
+                    }
+                    this.current = this.current.next;
+                    return this.current;
+                }
+
+                public void remove() {
+                    unlink(this.current);
+                    byName.remove(this.current.name);
+                }
+            };
+        }
+    }
+
+    /**
+     * Apply the hiding of resources to the holder and collect the
+     * value maps.
+     * @return <code>true</code> if a merged resource exists for the holder.
+     */
+    private boolean merge(final ResourceHolder holder) {
         int index = 0;
         while (index < holder.resources.size()) {
             final Resource baseRes = holder.resources.get(index);
@@ -162,15 +312,56 @@ class MergingResourceProvider implements ResourceProvider {
                 index++;
             }
         }
+        if ( holder.resources.isEmpty() ) {
+            return false;
+        }
+        holder.layers = MergedValueMap.createLayers(holder.valueMaps);
+        return true;
+    }
 
-        if (!holder.resources.isEmpty()) {
-            // create a new merged resource based on the list of mapped physical resources
-            if ( this.readOnly ) {
-                return new MergedResource(resolver, mergeRootPath, relativePath, holder.resources, holder.valueMaps);
-            }
-            return new CRUDMergedResource(resolver, mergeRootPath, relativePath, holder.resources, holder.valueMaps, this.picker);
+    /**
+     * Create the merged resource based on the provided resources
+     */
+    private Resource createMergedResource(final ResourceResolver resolver, final String relativePath,
+            final ResourceHolder holder) {
+        // create a new merged resource based on the list of mapped physical resources
+        if ( this.readOnly ) {
+            return new MergedResource(resolver, mergeRootPath, relativePath, holder.resources, holder.layers);
         }
-        return null;
+        return new CRUDMergedResource(resolver, mergeRootPath, relativePath, holder.resources, holder.layers, this.picker);
+    }
+
+    /**
+     * Check if the cache can be used for the resolver. The cache is
+     * cleared if the content has been changed in the meantime and it is
+     * not used as long as the resolver has uncommitted changes.
+     */
+    private boolean useCache(final ResourceResolver resolver) {
+        if ( this.factory == null ) {
+            return false;
+        }
+        final long generation = this.factory.getGeneration();
+        if ( generation != this.cacheGeneration ) {
+            this.clearCache();
+            this.cacheGeneration = generation;
+        }
+        if ( resolver.hasChanges() ) {
+            this.clearCache();
+            return false;
+        }
+        if ( !this.searchPathsRegistered ) {
+            this.factory.addSearchPaths(resolver.getSearchPath());
+            this.searchPathsRegistered = true;
+        }
+        return true;
+    }
+
+    /**
+     * Clear all cached merged views.
+     */
+    protected void clearCache() {
+        this.resourceCache.clear();
+        this.childrenCache.clear();
     }
 
     /**
@@ -198,32 +389,47 @@ class MergingResourceProvider implements ResourceProvider {
         final String relativePath = getRelativePath(path);
 
         if (relativePath != null) {
-            final ResourceHolder holder = new ResourceHolder(ResourceUtil.getName(path));
-
-            final Iterator<Resource> resources = picker.pickResources(resolver, relativePath).iterator();
-
-            if (!resources.hasNext()) {
-                return null;
-            }
-
-            while (resources.hasNext()) {
-                final Resource resource = resources.next();
-                // check parent for hiding
-                // SLING 3521 : if parent is not readable, nothing is hidden
-                final Resource parent = resource.getParent();
-                final boolean hidden = new ParentHidingHandler(parent).isHidden(holder.name);
-                if (hidden) {
-                    holder.resources.clear();
-                } else if (!ResourceUtil.isNonExistingResource(resource)) {
-                    holder.resources.add(resource);
+            final boolean useCache = this.useCache(resolver);
+            if ( useCache ) {
+                final ResourceHolder cached = this.resourceCache.get(relativePath);
+                if ( cached != null ) {
+                    return (cached == NO_RESOURCE ? null : this.createMergedResource(resolver, relativePath, cached));
                 }
             }
-            return createMergedResource(resolver, relativePath, holder);
+            final ResourceHolder holder = this.pickResource(resolver, relativePath, ResourceUtil.getName(path));
+            if ( useCache ) {
+                this.resourceCache.put(relativePath, holder != null ? holder : NO_RESOURCE);
+            }
+            return (holder == null ? null : this.createMergedResource(resolver, relativePath, holder));
         }
 
         return null;
     }
 
+    private ResourceHolder pickResource(final ResourceResolver resolver, final String relativePath, final String name) {
+        final ResourceHolder holder = new ResourceHolder(name);
+
+        final Iterator<Resource> resources = picker.pickResources(resolver, relativePath).iterator();
+
+        if (!resources.hasNext()) {
+            return null;
+        }
+
+        while (resources.hasNext()) {
+            final Resource resource = resources.next();
+            // check parent for hiding
+            // SLING 3521 : if parent is not readable, nothing is hidden
+            final Resource parent = resource.getParent();
+            final boolean hidden = new ParentHidingHandler(parent).isHidden(holder.name);
+            if (hidden) {
+                holder.resources.clear();
+            } else if (!ResourceUtil.isNonExistingResource(resource)) {
+                holder.resources.add(resource);
+            }
+        }
+        return (this.merge(holder) ? holder : null);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -233,50 +439,49 @@ class MergingResourceProvider implements ResourceProvider {
         final String relativePath = getRelativePath(resource.getPath());
 
         if (relativePath != null) {
-            final List<ResourceHolder> candidates = new ArrayList<ResourceHolder>();
-
-            final Iterator<Resource> resources = picker.pickResources(resolver, relativePath).iterator();
-
-            while (resources.hasNext()) {
-                Resource parentResource = resources.next();
-                final ParentHidingHandler handler = new ParentHidingHandler(parentResource);
-                for (final Resource child : parentResource.getChildren()) {
-                    final String rsrcName = child.getName();
-                    ResourceHolder holder = null;
-                    for (final ResourceHolder current : candidates) {
-                        if (current.name.equals(rsrcName)) {
-                            holder = current;
-                            break;
-                        }
-                    }
-                    if (holder == null) {
-                        holder = new ResourceHolder(rsrcName);
-                        candidates.add(holder);
-                    }
-                    holder.resources.add(child);
-
-                    // Check if children need reordering
-                    int orderBeforeIndex = -1;
-                    final ValueMap vm = child.getValueMap();
-                    final String orderBefore = vm.get(MergedResourceConstants.PN_ORDER_BEFORE, String.class);
-                    if (orderBefore != null && !orderBefore.equals(rsrcName)) {
-                        // search entry
-                        int index = 0;
-                        while (index < candidates.size()) {
-                            final ResourceHolder current = candidates.get(index);
-                            if (current.name.equals(orderBefore)) {
-                                orderBeforeIndex = index;
-                                break;
-                            }
-                            index++;
-                        }
-                    }
+            final boolean useCache = this.useCache(resolver);
+            List<ResourceHolder> holders = (useCache ? this.childrenCache.get(relativePath) : null);
+            if ( holders == null ) {
+                holders = this.pickChildren(resolver, relativePath);
+                if ( useCache ) {
+                    this.childrenCache.put(relativePath, holders);
+                }
+            }
+            final List<Resource> children = new ArrayList<Resource>(holders.size());
+            for (final ResourceHolder holder : holders) {
+                children.add(this.createMergedResource(resolver,
+                        (relativePath.length() == 0 ? holder.name : relativePath + '/' + holder.name), holder));
+            }
+            return children.iterator();
+        }
+
+        return null;
+    }
 
-                    if (orderBeforeIndex > -1) {
-                        candidates.add(orderBeforeIndex, holder);
-                        candidates.remove(candidates.size() - 1);
+    private List<ResourceHolder> pickChildren(final ResourceResolver resolver, final String relativePath) {
+        final Candidates candidates = new Candidates();
+
+        final Iterator<Resource> resources = picker.pickResources(resolver, relativePath).iterator();
+
+        while (resources.hasNext()) {
+            Resource parentResource = resources.next();
+            final ParentHidingHandler handler = new ParentHidingHandler(parentResource);
+            for (final Resource child : parentResource.getChildren()) {
+                final String rsrcName = child.getName();
+                final ResourceHolder holder = candidates.getOrCreate(rsrcName);
+                holder.resources.add(child);
+
+                // Check if children need reordering
+                final ValueMap vm = child.getValueMap();
+                final String orderBefore = vm.get(MergedResourceConstants.PN_ORDER_BEFORE, String.class);
+                if (orderBefore != null && !orderBefore.equals(rsrcName)) {
+                    final ResourceHolder before = candidates.get(orderBefore);
+                    if ( before != null ) {
+                        candidates.moveBefore(holder, before);
                     }
                 }
+            }
+            if ( handler.hidesChildren() && !candidates.isEmpty() ) {
                 final Iterator<ResourceHolder> iter = candidates.iterator();
                 while (iter.hasNext()) {
                     final ResourceHolder holder = iter.next();
@@ -285,18 +490,14 @@ class MergingResourceProvider implements ResourceProvider {
                     }
                 }
             }
-            final List<Resource> children = new ArrayList<Resource>();
-            for (final ResourceHolder holder : candidates) {
-                final Resource mergedResource = this.createMergedResource(resolver,
-                        (relativePath.length() == 0 ? holder.name : relativePath + '/' + holder.name), holder);
-                if (mergedResource != null) {
-                    children.add(mergedResource);
-                }
+        }
+        final List<ResourceHolder> children = new ArrayList<ResourceHolder>();
+        for (final ResourceHolder holder : candidates) {
+            if ( this.merge(holder) ) {
+                children.add(holder);
             }
-            return children.iterator();
         }
-
-        return null;
+        return children;
     }
 
 
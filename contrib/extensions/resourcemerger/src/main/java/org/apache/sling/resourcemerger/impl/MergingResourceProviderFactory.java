@@ -19,13 +19,29 @@
 package org.apache.sling.resourcemerger.impl;
 
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ResourceProvider;
 import org.apache.sling.api.resource.ResourceProviderFactory;
 import org.apache.sling.resourcemerger.spi.MergedResourcePicker;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 
-class MergingResourceProviderFactory implements ResourceProviderFactory {
+/**
+ * The provider factory creates a provider per resource resolver.
+ *
+ * The factory is registered as an event handler for resource changes as well.
+ * Each change increases the cache generation, which invalidates the merged
+ * views cached by the providers. If the picker only picks resources
+ * from the search paths, changes outside of the search paths are ignored.
+ * As the events are delivered asynchronously, the providers drop their
+ * cached views on each commit and revert of their resource resolver.
+ */
+class MergingResourceProviderFactory implements ResourceProviderFactory, EventHandler {
 
     private final String mergeRootPath;
 
@@ -33,28 +49,88 @@ class MergingResourceProviderFactory implements ResourceProviderFactory {
 
     private final boolean readOnly;
 
+    /** Search paths used by the providers or <code>null</code> if every change is relevant. */
+    private final Set<String> searchPaths;
+
+    private final AtomicLong generation = new AtomicLong();
+
     MergingResourceProviderFactory(final String mergeRootPath,
             final MergedResourcePicker picker,
             final boolean readOnly) {
+        this(mergeRootPath, picker, readOnly, false);
+    }
+
+    /**
+     * @param searchPathsOnly Whether the picker only picks resources from the
+     *        search paths of the resource resolver.
+     */
+    MergingResourceProviderFactory(final String mergeRootPath,
+            final MergedResourcePicker picker,
+            final boolean readOnly,
+            final boolean searchPathsOnly) {
         this.mergeRootPath = mergeRootPath;
         this.picker = picker;
         this.readOnly = readOnly;
+        this.searchPaths = (searchPathsOnly ? new CopyOnWriteArraySet<String>() : null);
     }
 
     public ResourceProvider getResourceProvider(final Map<String, Object> authenticationInfo)
     throws LoginException {
         if ( this.readOnly ) {
-            return new MergingResourceProvider(mergeRootPath, picker, this.readOnly);
+            return new ReadOnlyMergingResourceProvider(mergeRootPath, picker, this);
         }
-        return new CRUDMergingResourceProvider(mergeRootPath, picker);
+        return new CRUDMergingResourceProvider(mergeRootPath, picker, this);
     }
 
     public ResourceProvider getAdministrativeResourceProvider(final Map<String, Object> authenticationInfo)
     throws LoginException {
         if ( this.readOnly ) {
-            return new MergingResourceProvider(mergeRootPath, picker, this.readOnly);
+            return new ReadOnlyMergingResourceProvider(mergeRootPath, picker, this);
+        }
+        return new CRUDMergingResourceProvider(mergeRootPath, picker, this);
+    }
+
+    /**
+     * The current cache generation. Cached merged views of an older
+     * generation are outdated.
+     */
+    long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * Register the search paths of a resource resolver. Changes below
+     * these paths invalidate the cached merged views.
+     */
+    void addSearchPaths(final String[] paths) {
+        if ( this.searchPaths != null && paths != null ) {
+            for(final String path : paths) {
+                final String prefix = (path.endsWith("/") ? path : path + '/');
+                if ( !this.searchPaths.contains(prefix) ) {
+                    this.searchPaths.add(prefix);
+                }
+            }
         }
-        return new CRUDMergingResourceProvider(mergeRootPath, picker);
     }
 
+    /**
+     * @see org.osgi.service.event.EventHandler#handleEvent(org.osgi.service.event.Event)
+     */
+    public void handleEvent(final Event event) {
+        final Object path = event.getProperty(SlingConstants.PROPERTY_PATH);
+        if ( this.searchPaths == null || !(path instanceof String) || isBelowSearchPath(path.toString()) ) {
+            this.generation.incrementAndGet();
+        }
+    }
+
+    private boolean isBelowSearchPath(final String path) {
+        final String prefix = path.endsWith("/") ? path : path + '/';
+        for(final String searchPath : this.searchPaths) {
+            // the changed resource is either in the search path or one of its ancestors
+            if ( prefix.startsWith(searchPath) || searchPath.startsWith(prefix) ) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
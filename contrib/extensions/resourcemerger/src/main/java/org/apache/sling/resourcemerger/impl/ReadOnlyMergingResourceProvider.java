@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourcemerger.impl;
+
+import java.util.Map;
+
+import org.apache.sling.api.resource.ModifyingResourceProvider;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.resourcemerger.spi.MergedResourcePicker;
+
+/**
+ * The read only provider with a cache of the merged views.
+ *
+ * It is only a modifying resource provider to take part in the commits
+ * and reverts of its resource resolver. Both drop the cached views, so the
+ * resolver reads its own changes right away and not only once the change
+ * events have been delivered. As the provider owns its root, creating and
+ * deleting resources is not supported, exactly like before.
+ */
+class ReadOnlyMergingResourceProvider
+    extends MergingResourceProvider
+    implements ModifyingResourceProvider {
+
+    ReadOnlyMergingResourceProvider(final String mergeRootPath,
+            final MergedResourcePicker picker,
+            final MergingResourceProviderFactory factory) {
+        super(mergeRootPath, picker, true, factory);
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ModifyingResourceProvider#create(org.apache.sling.api.resource.ResourceResolver, java.lang.String, java.util.Map)
+     */
+    public Resource create(final ResourceResolver resolver,
+            final String path,
+            final Map<String, Object> properties) {
+        throw new UnsupportedOperationException("create '" + ResourceUtil.getName(path) + "' at " + ResourceUtil.getParent(path));
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ModifyingResourceProvider#delete(org.apache.sling.api.resource.ResourceResolver, java.lang.String)
+     */
+    public void delete(final ResourceResolver resolver, final String path) {
+        throw new UnsupportedOperationException("delete at '" + path + "'");
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ModifyingResourceProvider#revert(org.apache.sling.api.resource.ResourceResolver)
+     */
+    public void revert(final ResourceResolver resolver) {
+        this.clearCache();
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ModifyingResourceProvider#commit(org.apache.sling.api.resource.ResourceResolver)
+     */
+    public void commit(final ResourceResolver resolver) {
+        this.clearCache();
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.ModifyingResourceProvider#hasChanges(org.apache.sling.api.resource.ResourceResolver)
+     */
+    public boolean hasChanges(final ResourceResolver resolver) {
+        return false;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourcemerger.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ModifyingResourceProvider;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.resourcemerger.impl.picker.MergingResourcePicker;
+import org.apache.sling.testing.resourceresolver.MockHelper;
+import org.apache.sling.testing.resourceresolver.MockResourceResolverFactory;
+import org.apache.sling.testing.resourceresolver.MockResourceResolverFactoryOptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class MergedResourceCacheTest {
+
+    private static final int CHILDREN = 500;
+
+    private ResourceResolver resolver;
+
+    private MergingResourceProviderFactory factory;
+
+    @Before public void setup() throws Exception {
+        final MockResourceResolverFactoryOptions options = new MockResourceResolverFactoryOptions();
+        options.setSearchPaths(new String[] {"/apps/", "/libs/", "/base/"});
+        final ResourceResolverFactory resolverFactory = new MockResourceResolverFactory(options);
+        this.resolver = resolverFactory.getResourceResolver(null);
+
+        final MockHelper helper = MockHelper.create(this.resolver);
+        // every search path defines the same children, the overlays reorder and hide some
+        helper.resource("/base").resource("/libs").resource("/apps");
+        helper.resource("/base/list");
+        for(int i = 0; i < CHILDREN; i++) {
+            helper.resource("/base/list/c" + i).p("base", i);
+        }
+        helper.resource("/libs/list");
+        for(int i = 0; i < CHILDREN - 1; i++) {
+            helper.resource("/libs/list/c" + i).p("libs", i);
+        }
+        helper.resource("/libs/list/c" + (CHILDREN - 1)).p(MergedResourceConstants.PN_ORDER_BEFORE, "c0");
+        helper.resource("/apps/list").p(MergedResourceConstants.PN_HIDE_CHILDREN, new String[] {"c1", "c2"});
+        for(int i = 0; i < CHILDREN; i++) {
+            helper.resource("/apps/list/c" + i).p("apps", i);
+        }
+        helper.commit();
+
+        this.factory = new MergingResourceProviderFactory("/merged", new MergingResourcePicker(), true, true);
+    }
+
+    private List<String> getChildNames(final MergingResourceProvider provider) {
+        final Resource list = provider.getResource(this.resolver, "/merged/list");
+        assertNotNull(list);
+        final List<String> names = new ArrayList<String>();
+        final Iterator<Resource> i = provider.listChildren(list);
+        while ( i.hasNext() ) {
+            names.add(i.next().getName());
+        }
+        return names;
+    }
+
+    private void sendEvent(final String path) {
+        final Hashtable<String, Object> props = new Hashtable<String, Object>();
+        props.put(SlingConstants.PROPERTY_PATH, path);
+        this.factory.handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_CHANGED, props));
+    }
+
+    @Test public void testMergeOrder() throws Exception {
+        final List<String> names = getChildNames((MergingResourceProvider)this.factory.getResourceProvider(null));
+        assertEquals(CHILDREN - 2, names.size());
+        assertEquals("c" + (CHILDREN - 1), names.get(0));
+        assertEquals("c0", names.get(1));
+        assertEquals("c3", names.get(2));
+        assertEquals("c" + (CHILDREN - 2), names.get(names.size() - 1));
+    }
+
+    @Test public void testInvalidation() throws Exception {
+        final MergingResourceProvider provider = (MergingResourceProvider)this.factory.getResourceProvider(null);
+        assertNotNull(provider.getResource(this.resolver, "/merged/list/c3"));
+        assertNull(provider.getResource(this.resolver, "/merged/list/new"));
+        assertEquals(CHILDREN - 2, getChildNames(provider).size());
+
+        MockHelper.create(this.resolver).resource("/base/list/new").commit();
+        // changes outside of the search paths are ignored
+        sendEvent("/content/new");
+        assertNull(provider.getResource(this.resolver, "/merged/list/new"));
+        assertEquals(CHILDREN - 2, getChildNames(provider).size());
+
+        sendEvent("/base/list/new");
+        assertNotNull(provider.getResource(this.resolver, "/merged/list/new"));
+        assertEquals(CHILDREN - 1, getChildNames(provider).size());
+    }
+
+    @Test public void testReadOwnCommittedChanges() throws Exception {
+        final MergingResourceProvider provider = (MergingResourceProvider)this.factory.getResourceProvider(null);
+        assertNull(provider.getResource(this.resolver, "/merged/list/new"));
+        assertEquals(CHILDREN - 2, getChildNames(provider).size());
+
+        MockHelper.create(this.resolver).resource("/base/list/new").commit();
+        // the resource resolver commits all its modifying providers
+        ((ModifyingResourceProvider)provider).commit(this.resolver);
+        assertNotNull(provider.getResource(this.resolver, "/merged/list/new"));
+        assertEquals(CHILDREN - 1, getChildNames(provider).size());
+    }
+
+    @Test public void testReadOwnUncommittedChanges() throws Exception {
+        final MergingResourceProvider provider = (MergingResourceProvider)this.factory.getResourceProvider(null);
+        assertNull(provider.getResource(this.resolver, "/merged/list/new"));
+
+        MockHelper.create(this.resolver).resource("/base/list/new").add();
+        assertNotNull(provider.getResource(this.resolver, "/merged/list/new"));
+        assertEquals(CHILDREN - 1, getChildNames(provider).size());
+
+        this.resolver.revert();
+        ((ModifyingResourceProvider)provider).revert(this.resolver);
+        assertNull(provider.getResource(this.resolver, "/merged/list/new"));
+        assertEquals(CHILDREN - 2, getChildNames(provider).size());
+    }
+}
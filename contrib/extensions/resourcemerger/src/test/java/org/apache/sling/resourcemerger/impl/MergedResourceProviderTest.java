@@ -176,6 +176,33 @@ public class MergedResourceProviderTest {
         assertEquals("x", vm.get("b"));
     }
 
+    @Test public void testLazyProperties() {
+        // single lookups and the complete map must be consistent
+        final ValueMap vm = this.provider.getResource(this.resolver, "/merged/a/4").getValueMap();
+        assertNull(vm.get("a"));
+        assertNull(vm.get("c"));
+        assertNull(vm.get(MergedResourceConstants.PN_HIDE_PROPERTIES));
+        assertEquals("x", vm.get("b", String.class));
+        assertTrue(vm.containsKey("d"));
+        assertEquals(3, vm.keySet().size());
+        assertNull(vm.get("a"));
+        assertEquals("x", vm.get("b"));
+    }
+
+    @Test public void testChangeProperties() {
+        // changes are only applied to the value map itself
+        final ValueMap vm = this.provider.getResource(this.resolver, "/merged/a/4").getValueMap();
+        assertNull(vm.put("a", "new"));
+        assertEquals("x", vm.remove("b"));
+        assertEquals("new", vm.get("a"));
+        assertNull(vm.get("b"));
+        assertEquals(3, vm.keySet().size());
+
+        final ValueMap fresh = this.provider.getResource(this.resolver, "/merged/a/4").getValueMap();
+        assertNull(fresh.get("a"));
+        assertEquals("x", fresh.get("b"));
+    }
+
     @Test public void testSimpleCreateAndDelete() throws PersistenceException {
         final String path = "/merged/a/new";
         try {
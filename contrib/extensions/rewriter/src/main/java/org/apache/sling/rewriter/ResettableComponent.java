@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.rewriter;
+
+
+/**
+ * A {@link Generator}, {@link Transformer} or {@link Serializer} can
+ * implement this interface to signal that an instance can be reused
+ * for other requests.
+ *
+ * After the component has been disposed, the rewriter calls {@link #reset()}
+ * and, if this succeeds, keeps the instance in a pool instead of creating
+ * a new one through the factory for the next request using the same
+ * pipeline. A reused component is initialized again before it is used.
+ *
+ * @since 1.1.0
+ */
+public interface ResettableComponent {
+
+    /**
+     * Reset the component to the state after it has been created
+     * by its factory.
+     * @return <code>true</code> if the component can be reused,
+     *         <code>false</code> if it should be discarded.
+     */
+    boolean reset();
+}
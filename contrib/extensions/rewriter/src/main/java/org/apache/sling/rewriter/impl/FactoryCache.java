@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.sling.commons.osgi.OsgiUtil;
 import org.apache.sling.rewriter.Generator;
@@ -85,16 +86,28 @@ public class FactoryCache {
     /** The tracker for processor factories. */
     private final HashingServiceTrackerCustomizer<ProcessorFactory> processorTracker;
 
+    /** Counter incremented whenever a factory is added or removed. */
+    private final AtomicInteger generation = new AtomicInteger();
+
     public FactoryCache(final BundleContext context)
     throws InvalidSyntaxException {
         this.generatorTracker = new HashingServiceTrackerCustomizer<GeneratorFactory>(context,
-                GeneratorFactory.class.getName());
+                GeneratorFactory.class.getName(), this.generation);
         this.serializerTracker = new HashingServiceTrackerCustomizer<SerializerFactory>(context,
-                SerializerFactory.class.getName());
+                SerializerFactory.class.getName(), this.generation);
         this.transformerTracker = new TransformerFactoryServiceTracker<TransformerFactory>(context,
-                TransformerFactory.class.getName());
+                TransformerFactory.class.getName(), this.generation);
         this.processorTracker = new HashingServiceTrackerCustomizer<ProcessorFactory>(context,
-                ProcessorFactory.class.getName());
+                ProcessorFactory.class.getName(), this.generation);
+    }
+
+    /**
+     * The generation of the available factories. It changes whenever
+     * a factory is added or removed, therefore everything resolved
+     * from the factories of an older generation should be resolved again.
+     */
+    public int getGeneration() {
+        return this.generation.get();
     }
 
     /**
@@ -118,45 +131,72 @@ public class FactoryCache {
     }
 
     /**
-     * Get the generator of the given type.
+     * Get the generator factory of the given type.
      * @param type The generator type.
-     * @return The generator or null if the generator is not available.
+     * @return The factory or null if the factory is not available.
      */
-    public Generator getGenerator(final String type) {
+    public GeneratorFactory getGeneratorFactory(final String type) {
         final GeneratorFactory factory = this.generatorTracker.getFactory(type);
         if ( factory == null ) {
             LOGGER.debug("Requested generator factory for type '{}' not found.", type);
-            return null;
         }
-        return factory.createGenerator();
+        return factory;
     }
 
     /**
-     * Get the serializer of the given type.
+     * Get the serializer factory of the given type.
      * @param type The serializer type.
-     * @return The serializer or null if the serializer is not available.
+     * @return The factory or null if the factory is not available.
      */
-    public Serializer getSerializer(final String type) {
+    public SerializerFactory getSerializerFactory(final String type) {
         final SerializerFactory factory = this.serializerTracker.getFactory(type);
         if ( factory == null ) {
             LOGGER.debug("Requested serializer factory for type '{}' not found.", type);
-            return null;
         }
-        return factory.createSerializer();
+        return factory;
     }
 
     /**
-     * Get the transformer of the given type.
+     * Get the transformer factory of the given type.
      * @param type The transformer type.
-     * @return The transformer or null if the transformer is not available.
+     * @return The factory or null if the factory is not available.
      */
-    public Transformer getTransformer(final String type) {
+    public TransformerFactory getTransformerFactory(final String type) {
         final TransformerFactory factory = this.transformerTracker.getFactory(type);
         if ( factory == null ) {
             LOGGER.debug("Requested transformer factory for type '{}' not found.", type);
-            return null;
         }
-        return factory.createTransformer();
+        return factory;
+    }
+
+    /**
+     * Get the generator of the given type.
+     * @param type The generator type.
+     * @return The generator or null if the generator is not available.
+     */
+    public Generator getGenerator(final String type) {
+        final GeneratorFactory factory = this.getGeneratorFactory(type);
+        return (factory == null ? null : factory.createGenerator());
+    }
+
+    /**
+     * Get the serializer of the given type.
+     * @param type The serializer type.
+     * @return The serializer or null if the serializer is not available.
+     */
+    public Serializer getSerializer(final String type) {
+        final SerializerFactory factory = this.getSerializerFactory(type);
+        return (factory == null ? null : factory.createSerializer());
+    }
+
+    /**
+     * Get the transformer of the given type.
+     * @param type The transformer type.
+     * @return The transformer or null if the transformer is not available.
+     */
+    public Transformer getTransformer(final String type) {
+        final TransformerFactory factory = this.getTransformerFactory(type);
+        return (factory == null ? null : factory.createTransformer());
     }
 
     /**
@@ -230,9 +270,14 @@ public class FactoryCache {
         /** The bundle context. */
         protected final BundleContext context;
 
-        public HashingServiceTrackerCustomizer(final BundleContext bc, final String serviceClassName) {
+        /** The generation of the factory cache. */
+        private final AtomicInteger generation;
+
+        public HashingServiceTrackerCustomizer(final BundleContext bc, final String serviceClassName,
+                final AtomicInteger generation) {
             super(bc, serviceClassName, null);
             this.context = bc;
+            this.generation = generation;
         }
 
         public T getFactory(final String type) {
@@ -256,6 +301,7 @@ public class FactoryCache {
                     LOGGER.debug("Found service {}, type={}.", factory, type);
                 }
                 this.services.put(type, factory);
+                this.generation.incrementAndGet();
             }
             return factory;
         }
@@ -267,6 +313,7 @@ public class FactoryCache {
             final String type = this.getType(reference);
             if ( type != null ) {
                 this.services.remove(type);
+                this.generation.incrementAndGet();
                 this.context.ungetService(reference);
             }
         }
@@ -294,8 +341,9 @@ public class FactoryCache {
         /** flag for cache. */
         private boolean cacheIsValid = true;
 
-        public TransformerFactoryServiceTracker(final BundleContext bc, final String serviceClassName) {
-            super(bc, serviceClassName);
+        public TransformerFactoryServiceTracker(final BundleContext bc, final String serviceClassName,
+                final AtomicInteger generation) {
+            super(bc, serviceClassName, generation);
         }
 
         /**
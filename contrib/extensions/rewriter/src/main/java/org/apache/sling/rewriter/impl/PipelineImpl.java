@@ -19,8 +19,8 @@ package org.apache.sling.rewriter.impl;
 import java.io.IOException;
 import java.io.PrintWriter;
 
+import org.apache.sling.api.request.RequestProgressTracker;
 import org.apache.sling.rewriter.Generator;
-import org.apache.sling.rewriter.PipelineConfiguration;
 import org.apache.sling.rewriter.ProcessingComponentConfiguration;
 import org.apache.sling.rewriter.ProcessingContext;
 import org.apache.sling.rewriter.Processor;
@@ -36,6 +36,12 @@ import org.xml.sax.SAXException;
  * The <code>PipelineImpl</code> is the heart of the pipeline
  * processing. It uses the configured pipeline components,
  * assembles a pipeline and runs the pipeline.
+ *
+ * The components are taken from the {@link PipelineTemplate} of
+ * the configuration and returned to it once the pipeline is finished.
+ * The setup time of each stage is reported to the request progress
+ * tracker. If debug logging is enabled, the processing time of each
+ * stage is measured and reported as well.
  */
 public class PipelineImpl implements Processor {
 
@@ -59,11 +65,30 @@ public class PipelineImpl implements Processor {
     /** The factory cache. */
     private final FactoryCache factoryCache;
 
+    /** The template providing the configured components. */
+    private final PipelineTemplate template;
+
+    /** The number of global pre transformers. */
+    private int preTransformerCount;
+
+    /** The progress tracker of the current request. */
+    private RequestProgressTracker tracker;
+
+    /** The names of the stages: generator, transformers and serializer. */
+    private String[] stageNames;
+
+    /** The setup time of each stage in nano seconds. */
+    private long[] setupTimes;
+
+    /** The timing handlers in front of each transformer and the serializer, if enabled. */
+    private TimingContentHandler[] timers;
+
     /**
      * Setup this pipeline.
      */
-    public PipelineImpl(final FactoryCache factoryCache) {
+    public PipelineImpl(final FactoryCache factoryCache, final PipelineTemplate template) {
         this.factoryCache = factoryCache;
+        this.template = template;
     }
 
     /**
@@ -73,63 +98,78 @@ public class PipelineImpl implements Processor {
                      ProcessorConfiguration c)
     throws IOException {
         LOGGER.debug("Setting up pipeline...");
-        final PipelineConfiguration config = (PipelineConfiguration)c;
-        final ProcessingComponentConfiguration[] transformerConfigs = config.getTransformerConfigurations();
+        this.tracker = processingContext.getRequest().getRequestProgressTracker();
 
         // create components and initialize them
 
         // lets get custom rewriter transformers
         final Transformer[][] rewriters = this.factoryCache.getGlobalTransformers(processingContext);
 
-        final ProcessingComponentConfiguration generatorConfig = config.getGeneratorConfiguration();
-        this.generator = this.getPipelineComponent(Generator.class, generatorConfig.getType(), false);
+        final int transformerCount = this.template.getTransformerCount() + rewriters[0].length + rewriters[1].length;
+        this.stageNames = new String[transformerCount + 2];
+        this.setupTimes = new long[transformerCount + 2];
+
+        final ProcessingComponentConfiguration generatorConfig = this.template.getGeneratorConfiguration();
+        long start = System.nanoTime();
+        this.generator = this.template.getGenerator();
         LOGGER.debug("Using generator type {}: {}.", generatorConfig.getType(), generator);
         generator.init(processingContext, generatorConfig);
+        this.stageNames[0] = generatorConfig.getType();
+        this.setupTimes[0] = System.nanoTime() - start;
 
-        final int transformerCount = (transformerConfigs == null ? 0 : transformerConfigs.length) + rewriters[0].length + rewriters[1].length;
-        int index = 0;
+        this.preTransformerCount = rewriters[0].length;
         if ( transformerCount > 0 ) {
             // add all pre rewriter transformers
             transformers = new Transformer[transformerCount];
+            int index = 0;
             for(int i=0; i< rewriters[0].length; i++) {
+                start = System.nanoTime();
                 transformers[index] = rewriters[0][i];
                 LOGGER.debug("Using pre transformer: {}.", transformers[index]);
                 transformers[index].init(processingContext, ProcessingComponentConfigurationImpl.EMPTY);
+                this.stageNames[index + 1] = transformers[index].getClass().getName();
+                this.setupTimes[index + 1] = System.nanoTime() - start;
                 index++;
             }
-            if ( transformerConfigs != null ) {
-                for(int i=0; i< transformerConfigs.length;i++) {
-                    transformers[index] = this.getPipelineComponent(Transformer.class, transformerConfigs[i].getType(),
-                            transformerConfigs[i].getConfiguration().get(ProcessingComponentConfiguration.CONFIGURATION_COMPONENT_OPTIONAL, false));
-                    if ( transformers[index] != null ) {
-                        LOGGER.debug("Using transformer type {}: {}.", transformerConfigs[i].getType(), transformers[index]);
-                        transformers[index].init(processingContext, transformerConfigs[i]);
-                        index++;
-                    } else {
-                        LOGGER.debug("Skipping missing optional transformer of type {}", transformerConfigs[i].getType());
-                    }
-                }
+            for(int i=0; i< this.template.getTransformerCount(); i++) {
+                start = System.nanoTime();
+                final ProcessingComponentConfiguration transformerConfig = this.template.getTransformerConfiguration(i);
+                transformers[index] = this.template.getTransformer(i);
+                LOGGER.debug("Using transformer type {}: {}.", transformerConfig.getType(), transformers[index]);
+                transformers[index].init(processingContext, transformerConfig);
+                this.stageNames[index + 1] = transformerConfig.getType();
+                this.setupTimes[index + 1] = System.nanoTime() - start;
+                index++;
             }
             for(int i=0; i< rewriters[1].length; i++) {
+                start = System.nanoTime();
                 transformers[index] = rewriters[1][i];
                 LOGGER.debug("Using post transformer: {}.", transformers[index]);
                 transformers[index].init(processingContext, ProcessingComponentConfigurationImpl.EMPTY);
+                this.stageNames[index + 1] = transformers[index].getClass().getName();
+                this.setupTimes[index + 1] = System.nanoTime() - start;
                 index++;
             }
         } else {
             transformers = EMPTY_TRANSFORMERS;
         }
 
-        final ProcessingComponentConfiguration serializerConfig = config.getSerializerConfiguration();
-        this.serializer = this.getPipelineComponent(Serializer.class, serializerConfig.getType(), false);
+        final ProcessingComponentConfiguration serializerConfig = this.template.getSerializerConfiguration();
+        start = System.nanoTime();
+        this.serializer = this.template.getSerializer();
         LOGGER.debug("Using serializer type {}: {}.", serializerConfig.getType(), serializer);
         serializer.init(processingContext, serializerConfig);
+        this.stageNames[transformerCount + 1] = serializerConfig.getType();
+        this.setupTimes[transformerCount + 1] = System.nanoTime() - start;
 
-        ContentHandler pipelineComponent = serializer;
+        if ( LOGGER.isDebugEnabled() ) {
+            this.timers = new TimingContentHandler[transformerCount + 1];
+        }
+        ContentHandler pipelineComponent = this.measure(serializer, transformerCount);
         // now chain pipeline
-        for(int i=index; i>0; i--) {
+        for(int i=transformerCount; i>0; i--) {
             transformers[i-1].setContentHandler(pipelineComponent);
-            pipelineComponent = transformers[i-1];
+            pipelineComponent = this.measure(transformers[i-1], i-1);
         }
 
         this.firstContentHandler = pipelineComponent;
@@ -138,29 +178,14 @@ public class PipelineImpl implements Processor {
     }
 
     /**
-     * Lookup a pipeline component.
+     * Put a timing handler in front of the component if timing is enabled.
      */
-    @SuppressWarnings("unchecked")
-    private <ComponentType> ComponentType getPipelineComponent(final Class<ComponentType> typeClass,
-                                                               final String type,
-                                                               final boolean optional)
-    throws IOException {
-        final ComponentType component;
-        if ( typeClass == Generator.class ) {
-            component = (ComponentType)this.factoryCache.getGenerator(type);
-        } else if ( typeClass == Transformer.class ) {
-            component = (ComponentType)this.factoryCache.getTransformer(type);
-        } else if ( typeClass == Serializer.class ) {
-            component = (ComponentType)this.factoryCache.getSerializer(type);
-        } else {
-            component = null;
-        }
-
-        if ( component == null && !optional ) {
-            throw new IOException("Unable to get component of class '" + typeClass + "' with type '" + type + "'.");
+    private ContentHandler measure(final ContentHandler component, final int index) {
+        if ( this.timers == null ) {
+            return component;
         }
-
-        return component;
+        this.timers[index] = new TimingContentHandler(component);
+        return this.timers[index];
     }
 
     /**
@@ -181,6 +206,7 @@ public class PipelineImpl implements Processor {
      * @see org.apache.sling.rewriter.Processor#finished(boolean)
      */
     public void finished(final boolean errorOccured) throws IOException {
+        final long start = System.nanoTime();
         try {
             // if an error occurred, we only clean up
             if ( !errorOccured ) {
@@ -197,21 +223,62 @@ public class PipelineImpl implements Processor {
                 }
             }
         } finally {
-            // dispose components
+            final long finishTime = System.nanoTime() - start;
+            // dispose components and return them to the template
             if ( this.generator != null ) {
                 this.generator.dispose();
+                this.template.release(this.generator);
+                this.generator = null;
             }
             if ( this.transformers != null ) {
-                for(final Transformer transformer : this.transformers ) {
+                for(int i=0; i<this.transformers.length; i++) {
+                    final Transformer transformer = this.transformers[i];
                     if ( transformer != null ) {
                         transformer.dispose();
+                        final int templateIndex = i - this.preTransformerCount;
+                        if ( templateIndex >= 0 && templateIndex < this.template.getTransformerCount() ) {
+                            this.template.release(templateIndex, transformer);
+                        }
                     }
                 }
+                this.transformers = null;
             }
             if ( this.serializer != null ) {
                 this.serializer.dispose();
+                this.template.release(this.serializer);
+                this.serializer = null;
+            }
+            this.logTimings(finishTime);
+        }
+    }
+
+    /**
+     * Report the setup and processing time of each stage.
+     */
+    private void logTimings(final long finishTime) {
+        if ( this.tracker == null || this.stageNames == null ) {
+            return;
+        }
+        for(int i=0; i<this.stageNames.length; i++) {
+            // the timer of a stage includes all following stages
+            final int timerIndex = i - 1;
+            if ( this.timers != null && timerIndex >= 0 && this.timers[timerIndex] != null ) {
+                long processingTime = this.timers[timerIndex].getTime();
+                if ( timerIndex + 1 < this.timers.length && this.timers[timerIndex + 1] != null ) {
+                    processingTime -= this.timers[timerIndex + 1].getTime();
+                }
+                this.tracker.log("Rewriter pipeline stage {0}: setup {1}ms, processing {2}ms",
+                        this.stageNames[i], toMillis(this.setupTimes[i]), toMillis(processingTime));
+            } else {
+                this.tracker.log("Rewriter pipeline stage {0}: setup {1}ms",
+                        this.stageNames[i], toMillis(this.setupTimes[i]));
             }
         }
+        this.tracker.log("Rewriter pipeline finished in {0}ms", toMillis(finishTime));
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / 1000000.0;
     }
 
     @Override
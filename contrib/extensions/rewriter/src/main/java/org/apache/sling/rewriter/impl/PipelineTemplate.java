@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.rewriter.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.rewriter.Generator;
+import org.apache.sling.rewriter.GeneratorFactory;
+import org.apache.sling.rewriter.PipelineConfiguration;
+import org.apache.sling.rewriter.ProcessingComponentConfiguration;
+import org.apache.sling.rewriter.ResettableComponent;
+import org.apache.sling.rewriter.Serializer;
+import org.apache.sling.rewriter.SerializerFactory;
+import org.apache.sling.rewriter.Transformer;
+import org.apache.sling.rewriter.TransformerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>PipelineTemplate</code> is a pipeline configuration
+ * resolved against the available factories. It is created once per
+ * configuration and factory generation and is shared by all pipelines
+ * using this configuration.
+ *
+ * Components implementing {@link ResettableComponent} are pooled per
+ * pipeline stage and reused by later pipelines.
+ */
+public class PipelineTemplate {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineTemplate.class);
+
+    /** The maximum number of idle instances per stage. */
+    private static final int MAX_POOL_SIZE = 32;
+
+    /** The generation of the factory cache this template has been created for. */
+    private final int generation;
+
+    private final ProcessingComponentConfiguration generatorConfig;
+
+    private final GeneratorFactory generatorFactory;
+
+    private final ComponentPool<Generator> generatorPool = new ComponentPool<Generator>();
+
+    /** The configurations of the available transformers. */
+    private final ProcessingComponentConfiguration[] transformerConfigs;
+
+    private final TransformerFactory[] transformerFactories;
+
+    private final ComponentPool<Transformer>[] transformerPools;
+
+    private final ProcessingComponentConfiguration serializerConfig;
+
+    private final SerializerFactory serializerFactory;
+
+    private final ComponentPool<Serializer> serializerPool = new ComponentPool<Serializer>();
+
+    /**
+     * Resolve the factories for the configuration.
+     * @throws IOException If a required component is not available.
+     */
+    @SuppressWarnings("unchecked")
+    public PipelineTemplate(final FactoryCache factoryCache, final PipelineConfiguration config)
+    throws IOException {
+        // get the generation first, a factory change afterwards invalidates this template
+        this.generation = factoryCache.getGeneration();
+
+        this.generatorConfig = config.getGeneratorConfiguration();
+        this.generatorFactory = factoryCache.getGeneratorFactory(this.generatorConfig.getType());
+        if ( this.generatorFactory == null ) {
+            throw new IOException("Unable to get component of class '" + Generator.class + "' with type '" + this.generatorConfig.getType() + "'.");
+        }
+
+        final List<ProcessingComponentConfiguration> configs = new ArrayList<ProcessingComponentConfiguration>();
+        final List<TransformerFactory> factories = new ArrayList<TransformerFactory>();
+        final ProcessingComponentConfiguration[] transformerConfigs = config.getTransformerConfigurations();
+        if ( transformerConfigs != null ) {
+            for(final ProcessingComponentConfiguration transformerConfig : transformerConfigs) {
+                final TransformerFactory factory = factoryCache.getTransformerFactory(transformerConfig.getType());
+                if ( factory != null ) {
+                    configs.add(transformerConfig);
+                    factories.add(factory);
+                } else if ( transformerConfig.getConfiguration().get(ProcessingComponentConfiguration.CONFIGURATION_COMPONENT_OPTIONAL, false) ) {
+                    LOGGER.debug("Skipping missing optional transformer of type {}", transformerConfig.getType());
+                } else {
+                    throw new IOException("Unable to get component of class '" + Transformer.class + "' with type '" + transformerConfig.getType() + "'.");
+                }
+            }
+        }
+        this.transformerConfigs = configs.toArray(new ProcessingComponentConfiguration[configs.size()]);
+        this.transformerFactories = factories.toArray(new TransformerFactory[factories.size()]);
+        this.transformerPools = new ComponentPool[this.transformerFactories.length];
+        for(int i=0; i<this.transformerPools.length; i++) {
+            this.transformerPools[i] = new ComponentPool<Transformer>();
+        }
+
+        this.serializerConfig = config.getSerializerConfiguration();
+        this.serializerFactory = factoryCache.getSerializerFactory(this.serializerConfig.getType());
+        if ( this.serializerFactory == null ) {
+            throw new IOException("Unable to get component of class '" + Serializer.class + "' with type '" + this.serializerConfig.getType() + "'.");
+        }
+    }
+
+    /**
+     * Is this template still valid for the current factories?
+     */
+    public boolean isValid(final FactoryCache factoryCache) {
+        return this.generation == factoryCache.getGeneration();
+    }
+
+    public ProcessingComponentConfiguration getGeneratorConfiguration() {
+        return this.generatorConfig;
+    }
+
+    /**
+     * Get a pooled or a new generator.
+     */
+    public Generator getGenerator() {
+        final Generator generator = this.generatorPool.get();
+        return (generator != null ? generator : this.generatorFactory.createGenerator());
+    }
+
+    /**
+     * Return a disposed generator.
+     */
+    public void release(final Generator generator) {
+        this.generatorPool.release(generator);
+    }
+
+    /**
+     * The number of configured transformers, without missing optional ones.
+     */
+    public int getTransformerCount() {
+        return this.transformerFactories.length;
+    }
+
+    public ProcessingComponentConfiguration getTransformerConfiguration(final int index) {
+        return this.transformerConfigs[index];
+    }
+
+    /**
+     * Get a pooled or a new transformer for the stage.
+     */
+    public Transformer getTransformer(final int index) {
+        final Transformer transformer = this.transformerPools[index].get();
+        return (transformer != null ? transformer : this.transformerFactories[index].createTransformer());
+    }
+
+    /**
+     * Return a disposed transformer of the stage.
+     */
+    public void release(final int index, final Transformer transformer) {
+        this.transformerPools[index].release(transformer);
+    }
+
+    public ProcessingComponentConfiguration getSerializerConfiguration() {
+        return this.serializerConfig;
+    }
+
+    /**
+     * Get a pooled or a new serializer.
+     */
+    public Serializer getSerializer() {
+        final Serializer serializer = this.serializerPool.get();
+        return (serializer != null ? serializer : this.serializerFactory.createSerializer());
+    }
+
+    /**
+     * Return a disposed serializer.
+     */
+    public void release(final Serializer serializer) {
+        this.serializerPool.release(serializer);
+    }
+
+    /**
+     * Pool for the idle instances of a stage. Only resettable
+     * components are pooled, all others are simply dropped.
+     */
+    private static final class ComponentPool<T> {
+
+        private final Queue<T> instances = new ConcurrentLinkedQueue<T>();
+
+        private final AtomicInteger size = new AtomicInteger();
+
+        public T get() {
+            final T instance = this.instances.poll();
+            if ( instance != null ) {
+                this.size.decrementAndGet();
+            }
+            return instance;
+        }
+
+        public void release(final T instance) {
+            if ( instance instanceof ResettableComponent && this.size.get() < MAX_POOL_SIZE ) {
+                try {
+                    if ( !((ResettableComponent)instance).reset() ) {
+                        return;
+                    }
+                } catch (final RuntimeException re) {
+                    LOGGER.warn("Unable to reset pipeline component " + instance, re);
+                    return;
+                }
+                this.size.incrementAndGet();
+                this.instances.offer(instance);
+            }
+        }
+    }
+}
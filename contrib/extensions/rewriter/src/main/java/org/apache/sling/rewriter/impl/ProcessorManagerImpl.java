@@ -27,6 +27,7 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
@@ -91,6 +92,9 @@ public class ProcessorManagerImpl
     /** The factory cache. */
     private FactoryCache factoryCache;
 
+    /** The pipeline templates for the processor configurations. */
+    private final Map<ProcessorConfiguration, PipelineTemplate> pipelineTemplates = new ConcurrentHashMap<ProcessorConfiguration, PipelineTemplate>();
+
     /**
      * Activate this component.
      * @param ctx
@@ -132,6 +136,7 @@ public class ProcessorManagerImpl
         }
         this.factoryCache.stop();
         this.factoryCache = null;
+        this.pipelineTemplates.clear();
         if ( this.resourceResolver != null ) {
             this.resourceResolver.close();
             this.resourceResolver = null;
@@ -228,6 +233,7 @@ public class ProcessorManagerImpl
      * adds a processor configuration
      */
     protected void addProcessor(final String key, final String configPath, final ProcessorConfigurationImpl config) {
+        this.pipelineTemplates.clear();
         ConfigEntry[] configs = this.processors.get(key);
         if ( configs == null ) {
             configs = new ConfigEntry[1];
@@ -305,6 +311,7 @@ public class ProcessorManagerImpl
             return;
         }
         final ProcessorConfigurationImpl config = this.getProcessorConfiguration(configResource);
+        this.pipelineTemplates.clear();
 
         final ConfigEntry[] configs = this.processors.get(key);
         if ( configs != null ) {
@@ -399,6 +406,7 @@ public class ProcessorManagerImpl
                 }
             }
             if ( found != null ) {
+                this.pipelineTemplates.clear();
                 this.orderedProcessors.remove(found.config);
                 if ( configs.length == 1 ) {
                     this.processors.remove(key);
@@ -440,7 +448,8 @@ public class ProcessorManagerImpl
         }
         try {
             if ( isPipeline ) {
-                final PipelineImpl pipeline = new PipelineImpl(this.factoryCache);
+                final PipelineImpl pipeline = new PipelineImpl(this.factoryCache,
+                        this.getPipelineTemplate((PipelineConfiguration)configuration));
                 pipeline.init(context, configuration);
                 return pipeline;
             }
@@ -452,6 +461,25 @@ public class ProcessorManagerImpl
         }
     }
 
+    /**
+     * Get the template for a pipeline configuration.
+     * Templates are only kept for the configurations managed by this
+     * component, they are resolved again if the factories change.
+     */
+    private PipelineTemplate getPipelineTemplate(final PipelineConfiguration configuration)
+    throws IOException {
+        final FactoryCache cache = this.factoryCache;
+        if ( !(configuration instanceof ProcessorConfigurationImpl) ) {
+            return new PipelineTemplate(cache, configuration);
+        }
+        PipelineTemplate template = this.pipelineTemplates.get(configuration);
+        if ( template == null || !template.isValid(cache) ) {
+            template = new PipelineTemplate(cache, configuration);
+            this.pipelineTemplates.put(configuration, template);
+        }
+        return template;
+    }
+
     /**
      * @see org.apache.sling.rewriter.ProcessorManager#getProcessorConfigurations()
      */
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.rewriter.impl;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+
+/**
+ * Content handler measuring the time spent in the wrapped
+ * handler, which includes all following pipeline components.
+ */
+class TimingContentHandler implements ContentHandler, LexicalHandler {
+
+    private final ContentHandler contentHandler;
+
+    private final LexicalHandler lexicalHandler;
+
+    /** The accumulated time in nano seconds. */
+    private long time;
+
+    public TimingContentHandler(final ContentHandler handler) {
+        this.contentHandler = handler;
+        this.lexicalHandler = (handler instanceof LexicalHandler ? (LexicalHandler)handler : null);
+    }
+
+    /**
+     * The time spent in the wrapped handler in nano seconds.
+     */
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#setDocumentLocator(org.xml.sax.Locator)
+     */
+    public void setDocumentLocator(Locator locator) {
+        contentHandler.setDocumentLocator(locator);
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#startDocument()
+     */
+    public void startDocument() throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.startDocument();
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#endDocument()
+     */
+    public void endDocument() throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.endDocument();
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#startPrefixMapping(java.lang.String, java.lang.String)
+     */
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.startPrefixMapping(prefix, uri);
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#endPrefixMapping(java.lang.String)
+     */
+    public void endPrefixMapping(String prefix) throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.endPrefixMapping(prefix);
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
+     */
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.startElement(uri, localName, qName, atts);
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+     */
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.endElement(uri, localName, qName);
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#characters(char[], int, int)
+     */
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.characters(ch, start, length);
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#ignorableWhitespace(char[], int, int)
+     */
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.ignorableWhitespace(ch, start, length);
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#processingInstruction(java.lang.String, java.lang.String)
+     */
+    public void processingInstruction(String target, String data) throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.processingInstruction(target, data);
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ContentHandler#skippedEntity(java.lang.String)
+     */
+    public void skippedEntity(String name) throws SAXException {
+        final long begin = System.nanoTime();
+        contentHandler.skippedEntity(name);
+        time += System.nanoTime() - begin;
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#startDTD(java.lang.String, java.lang.String, java.lang.String)
+     */
+    public void startDTD(String name, String publicId, String systemId) throws SAXException {
+        if ( lexicalHandler != null ) {
+            final long begin = System.nanoTime();
+            lexicalHandler.startDTD(name, publicId, systemId);
+            time += System.nanoTime() - begin;
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#endDTD()
+     */
+    public void endDTD() throws SAXException {
+        if ( lexicalHandler != null ) {
+            final long begin = System.nanoTime();
+            lexicalHandler.endDTD();
+            time += System.nanoTime() - begin;
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#startEntity(java.lang.String)
+     */
+    public void startEntity(String name) throws SAXException {
+        if ( lexicalHandler != null ) {
+            final long begin = System.nanoTime();
+            lexicalHandler.startEntity(name);
+            time += System.nanoTime() - begin;
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#endEntity(java.lang.String)
+     */
+    public void endEntity(String name) throws SAXException {
+        if ( lexicalHandler != null ) {
+            final long begin = System.nanoTime();
+            lexicalHandler.endEntity(name);
+            time += System.nanoTime() - begin;
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#startCDATA()
+     */
+    public void startCDATA() throws SAXException {
+        if ( lexicalHandler != null ) {
+            final long begin = System.nanoTime();
+            lexicalHandler.startCDATA();
+            time += System.nanoTime() - begin;
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#endCDATA()
+     */
+    public void endCDATA() throws SAXException {
+        if ( lexicalHandler != null ) {
+            final long begin = System.nanoTime();
+            lexicalHandler.endCDATA();
+            time += System.nanoTime() - begin;
+        }
+    }
+
+    /**
+     * @see org.xml.sax.ext.LexicalHandler#comment(char[], int, int)
+     */
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        if ( lexicalHandler != null ) {
+            final long begin = System.nanoTime();
+            lexicalHandler.comment(ch, start, length);
+            time += System.nanoTime() - begin;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.sling.rewriter.Generator;
 import org.apache.sling.rewriter.GeneratorFactory;
 import org.apache.sling.rewriter.ProcessingComponentConfiguration;
 import org.apache.sling.rewriter.ProcessingContext;
+import org.apache.sling.rewriter.ResettableComponent;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
@@ -37,6 +38,11 @@ import org.xml.sax.SAXException;
  * On the fly HTML parser which can be used as the
  * starting point for html pipelines.
  *
+ * By default the whole response is buffered and parsed with the
+ * html parser service at the end. If incremental parsing is enabled,
+ * the written html is parsed with the {@link StreamingHtmlParser}
+ * and the events are sent down the pipeline while the response
+ * is written.
  */
 @Component
 @Service(value=GeneratorFactory.class)
@@ -53,37 +59,66 @@ public class HtmlGeneratorFactory implements GeneratorFactory {
         return new HtmlGenerator(htmlParser);
     }
 
-    public static final class HtmlGenerator implements Generator {
+    public static final class HtmlGenerator implements Generator, ResettableComponent {
 
-        private final StringWriter writer;
+        /**
+         * Configuration property to switch on incremental parsing (default is
+         * <code>false</code>). The incremental parser only balances the events
+         * while the html parser service restructures malformed html, so this
+         * should only be enabled for pipelines processing well formed html.
+         */
+        public static final String PROPERTY_INCREMENTAL = "incremental";
 
         private final HtmlParser htmlParser;
 
+        /** The streaming parser if incremental parsing is used. */
+        private StreamingHtmlParser streamingParser;
+
+        /** The buffer if incremental parsing is not used. */
+        private StringWriter buffer;
+
+        private PrintWriter writer;
+
         private ContentHandler contentHandler;
 
         public HtmlGenerator(final HtmlParser parser) {
             this.htmlParser = parser;
-            this.writer = new StringWriter();
         }
 
         /**
          * @see org.apache.sling.rewriter.Generator#finished()
          */
         public void finished() throws IOException, SAXException {
-            this.htmlParser.parse(new ByteArrayInputStream(this.writer.toString().getBytes("UTF-8")), "UTF-8", this.contentHandler);
+            if ( this.streamingParser != null ) {
+                this.streamingParser.finished();
+            } else if ( this.buffer != null ) {
+                this.htmlParser.parse(new ByteArrayInputStream(this.buffer.toString().getBytes("UTF-8")), "UTF-8", this.contentHandler);
+            }
         }
 
         /**
          * @see org.apache.sling.rewriter.Generator#getWriter()
          */
         public PrintWriter getWriter() {
-            return new PrintWriter(writer);
+            if ( this.writer == null ) {
+                if ( this.streamingParser != null ) {
+                    this.writer = new PrintWriter(this.streamingParser);
+                } else {
+                    this.buffer = new StringWriter();
+                    this.writer = new PrintWriter(this.buffer);
+                }
+            }
+            return this.writer;
         }
 
         public void init(ProcessingContext context,
                          ProcessingComponentConfiguration config)
         throws IOException {
-            // nothing to do
+            if ( !config.getConfiguration().get(PROPERTY_INCREMENTAL, false) ) {
+                this.streamingParser = null;
+            } else if ( this.streamingParser == null ) {
+                this.streamingParser = new StreamingHtmlParser();
+            }
         }
 
         /**
@@ -91,6 +126,9 @@ public class HtmlGeneratorFactory implements GeneratorFactory {
          */
         public void setContentHandler(ContentHandler handler) {
             this.contentHandler = handler;
+            if ( this.streamingParser != null ) {
+                this.streamingParser.setContentHandler(handler);
+            }
         }
 
         /**
@@ -99,5 +137,18 @@ public class HtmlGeneratorFactory implements GeneratorFactory {
         public void dispose() {
             // nothing to do
         }
+
+        /**
+         * @see org.apache.sling.rewriter.ResettableComponent#reset()
+         */
+        public boolean reset() {
+            if ( this.streamingParser != null ) {
+                this.streamingParser.reset();
+            }
+            this.buffer = null;
+            this.writer = null;
+            this.contentHandler = null;
+            return true;
+        }
     }
-}
\ No newline at end of file
+}
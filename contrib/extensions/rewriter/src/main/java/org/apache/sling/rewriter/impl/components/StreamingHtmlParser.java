@@ -0,0 +1,805 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.rewriter.impl.components;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * The <code>StreamingHtmlParser</code> is a push based html tokenizer.
+ *
+ * All characters written to this writer are parsed immediately and the
+ * SAX events are sent to the content handler as soon as a token is
+ * complete. Only an incomplete token, like a tag which is not closed yet,
+ * and the current text are buffered.
+ *
+ * The events are the same as the ones of the TagSoup based html parser:
+ * elements are in the xhtml namespace and element and attribute names are
+ * lower case. Unlike TagSoup this parser does not restructure the document,
+ * it only keeps the events well formed: empty elements are closed
+ * immediately, the end of elements like paragraphs, list items or table
+ * cells is implied, unmatched end tags are ignored and open elements are
+ * closed at the end of the document.
+ */
+public class StreamingHtmlParser extends Writer {
+
+    /** The namespace for all elements. */
+    private static final String NAMESPACE = "http://www.w3.org/1999/xhtml";
+
+    /** Maximum length of an entity name. */
+    private static final int MAX_ENTITY_LENGTH = 32;
+
+    /** Size of the text buffer. */
+    private static final int TEXT_BUFFER_SIZE = 8192;
+
+    private static final int TEXT = 0;
+    private static final int TAG_OPEN = 1;
+    private static final int TAG = 2;
+    private static final int DECLARATION = 3;
+    private static final int COMMENT = 4;
+    private static final int CDATA = 5;
+    private static final int PROCESSING_INSTRUCTION = 6;
+    private static final int RAW_TEXT = 7;
+    private static final int RAW_END_TAG = 8;
+    private static final int ENTITY = 9;
+
+    /** Elements without content. */
+    private static final Set<String> EMPTY_ELEMENTS = set("area", "base", "basefont", "br", "col", "embed",
+            "frame", "hr", "img", "input", "isindex", "keygen", "link", "meta", "param", "source", "track", "wbr");
+
+    /** Elements containing text which is not parsed. */
+    private static final Set<String> RAW_TEXT_ELEMENTS = set("script", "style", "textarea", "title", "xmp");
+
+    /** Raw text elements which may contain entities. */
+    private static final Set<String> ESCAPABLE_RAW_TEXT_ELEMENTS = set("textarea", "title");
+
+    /** Elements implying the end of an open paragraph. */
+    private static final Set<String> PARAGRAPH_CLOSERS = set("address", "article", "aside", "blockquote", "div",
+            "dl", "fieldset", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "menu",
+            "nav", "ol", "p", "pre", "section", "table", "ul");
+
+    private static final Set<String> LIST_SCOPE = set("ul", "ol", "menu");
+    private static final Set<String> DEFINITION_SCOPE = set("dl");
+    private static final Set<String> TABLE_SCOPE = set("table");
+    private static final Set<String> ROW_SCOPE = set("tr", "table");
+    private static final Set<String> SELECT_SCOPE = set("select", "datalist");
+
+    /** The html 4 entities and apos. */
+    private static final Map<String, Integer> ENTITIES = new HashMap<String, Integer>();
+    static {
+        final String entities =
+        "quot=34,amp=38,apos=39,lt=60,gt=62,nbsp=160,iexcl=161,cent=162,pound=163,"
+        + "curren=164,yen=165,brvbar=166,sect=167,uml=168,copy=169,ordf=170,"
+        + "laquo=171,not=172,shy=173,reg=174,macr=175,deg=176,plusmn=177,"
+        + "sup2=178,sup3=179,acute=180,micro=181,para=182,middot=183,cedil=184,"
+        + "sup1=185,ordm=186,raquo=187,frac14=188,frac12=189,frac34=190,"
+        + "iquest=191,Agrave=192,Aacute=193,Acirc=194,Atilde=195,Auml=196,"
+        + "Aring=197,AElig=198,Ccedil=199,Egrave=200,Eacute=201,Ecirc=202,"
+        + "Euml=203,Igrave=204,Iacute=205,Icirc=206,Iuml=207,ETH=208,Ntilde=209,"
+        + "Ograve=210,Oacute=211,Ocirc=212,Otilde=213,Ouml=214,times=215,"
+        + "Oslash=216,Ugrave=217,Uacute=218,Ucirc=219,Uuml=220,Yacute=221,"
+        + "THORN=222,szlig=223,agrave=224,aacute=225,acirc=226,atilde=227,"
+        + "auml=228,aring=229,aelig=230,ccedil=231,egrave=232,eacute=233,"
+        + "ecirc=234,euml=235,igrave=236,iacute=237,icirc=238,iuml=239,eth=240,"
+        + "ntilde=241,ograve=242,oacute=243,ocirc=244,otilde=245,ouml=246,"
+        + "divide=247,oslash=248,ugrave=249,uacute=250,ucirc=251,uuml=252,"
+        + "yacute=253,thorn=254,yuml=255,OElig=338,oelig=339,Scaron=352,"
+        + "scaron=353,Yuml=376,fnof=402,circ=710,tilde=732,Alpha=913,Beta=914,"
+        + "Gamma=915,Delta=916,Epsilon=917,Zeta=918,Eta=919,Theta=920,Iota=921,"
+        + "Kappa=922,Lambda=923,Mu=924,Nu=925,Xi=926,Omicron=927,Pi=928,Rho=929,"
+        + "Sigma=931,Tau=932,Upsilon=933,Phi=934,Chi=935,Psi=936,Omega=937,"
+        + "alpha=945,beta=946,gamma=947,delta=948,epsilon=949,zeta=950,eta=951,"
+        + "theta=952,iota=953,kappa=954,lambda=955,mu=956,nu=957,xi=958,"
+        + "omicron=959,pi=960,rho=961,sigmaf=962,sigma=963,tau=964,upsilon=965,"
+        + "phi=966,chi=967,psi=968,omega=969,thetasym=977,upsih=978,piv=982,"
+        + "ensp=8194,emsp=8195,thinsp=8201,zwnj=8204,zwj=8205,lrm=8206,rlm=8207,"
+        + "ndash=8211,mdash=8212,lsquo=8216,rsquo=8217,sbquo=8218,ldquo=8220,"
+        + "rdquo=8221,bdquo=8222,dagger=8224,Dagger=8225,bull=8226,hellip=8230,"
+        + "permil=8240,prime=8242,Prime=8243,lsaquo=8249,rsaquo=8250,oline=8254,"
+        + "frasl=8260,euro=8364,image=8465,weierp=8472,real=8476,trade=8482,"
+        + "alefsym=8501,larr=8592,uarr=8593,rarr=8594,darr=8595,harr=8596,"
+        + "crarr=8629,lArr=8656,uArr=8657,rArr=8658,dArr=8659,hArr=8660,"
+        + "forall=8704,part=8706,exist=8707,empty=8709,nabla=8711,isin=8712,"
+        + "notin=8713,ni=8715,prod=8719,sum=8721,minus=8722,lowast=8727,"
+        + "radic=8730,prop=8733,infin=8734,ang=8736,and=8743,or=8744,cap=8745,"
+        + "cup=8746,int=8747,there4=8756,sim=8764,cong=8773,asymp=8776,ne=8800,"
+        + "equiv=8801,le=8804,ge=8805,sub=8834,sup=8835,nsub=8836,sube=8838,"
+        + "supe=8839,oplus=8853,otimes=8855,perp=8869,sdot=8901,lceil=8968,"
+        + "rceil=8969,lfloor=8970,rfloor=8971,lang=9001,rang=9002,loz=9674,"
+        + "spades=9824,clubs=9827,hearts=9829,diams=9830";
+        for(final String entry : entities.split(",")) {
+            final int pos = entry.indexOf('=');
+            ENTITIES.put(entry.substring(0, pos), Integer.valueOf(entry.substring(pos + 1)));
+        }
+    }
+
+    private static Set<String> set(final String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+    /** The content handler receiving the events. */
+    private ContentHandler contentHandler;
+
+    /** The lexical handler receiving the events, if supported by the content handler. */
+    private LexicalHandler lexicalHandler;
+
+    /** The current state. */
+    private int state = TEXT;
+
+    /** The state to return to after an entity. */
+    private int entityReturnState;
+
+    /** The buffer for the current token. */
+    private final StringBuilder buffer = new StringBuilder();
+
+    /** The buffer for the current entity. */
+    private final StringBuilder entity = new StringBuilder();
+
+    /** The quote character of the current attribute value or 0. */
+    private char quote;
+
+    /** The last non whitespace character of the current tag. */
+    private char lastTagChar;
+
+    /** The text buffer. */
+    private final char[] text = new char[TEXT_BUFFER_SIZE];
+
+    /** The number of characters in the text buffer. */
+    private int textLength;
+
+    /** The name of the current raw text element. */
+    private String rawTextElement;
+
+    /** The open elements. */
+    private final List<String> openElements = new ArrayList<String>();
+
+    /** Has the document been started? */
+    private boolean documentStarted;
+
+    /** The first exception thrown by the content handler. */
+    private SAXException exception;
+
+    /**
+     * Set the content handler receiving the events.
+     * If the content handler implements the lexical handler interface,
+     * it receives comments, cdata sections and the doctype as well.
+     */
+    public void setContentHandler(final ContentHandler handler) {
+        this.contentHandler = handler;
+        this.lexicalHandler = (handler instanceof LexicalHandler ? (LexicalHandler)handler : null);
+    }
+
+    /**
+     * Reset the parser, so it can be used for another document.
+     */
+    public void reset() {
+        this.contentHandler = null;
+        this.lexicalHandler = null;
+        this.state = TEXT;
+        this.buffer.setLength(0);
+        this.entity.setLength(0);
+        this.quote = 0;
+        this.textLength = 0;
+        this.rawTextElement = null;
+        this.openElements.clear();
+        this.documentStarted = false;
+        this.exception = null;
+    }
+
+    /**
+     * @see java.io.Writer#write(char[], int, int)
+     */
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+        if ( this.exception != null ) {
+            // the pipeline is broken, the exception is reported in finished()
+            return;
+        }
+        try {
+            this.startDocument();
+            final int end = off + len;
+            int pos = off;
+            while ( pos < end ) {
+                if ( this.state == TEXT ) {
+                    // copy plain text in one go
+                    final int start = pos;
+                    while ( pos < end && cbuf[pos] != '<' && cbuf[pos] != '&' ) {
+                        pos++;
+                    }
+                    this.appendText(cbuf, start, pos - start);
+                    if ( pos < end ) {
+                        this.process(cbuf[pos]);
+                        pos++;
+                    }
+                } else if ( this.process(cbuf[pos]) ) {
+                    pos++;
+                }
+            }
+        } catch (final SAXException se) {
+            this.exception = se;
+            throw (IOException)new IOException("Unable to parse html: " + se.getMessage()).initCause(se);
+        }
+    }
+
+    /**
+     * Sends the buffered text to the content handler.
+     * @see java.io.Writer#flush()
+     */
+    @Override
+    public void flush() throws IOException {
+        if ( this.exception == null ) {
+            try {
+                this.flushText();
+            } catch (final SAXException se) {
+                this.exception = se;
+                throw (IOException)new IOException("Unable to parse html: " + se.getMessage()).initCause(se);
+            }
+        }
+    }
+
+    /**
+     * Closing the writer does not end the document, this is done
+     * by {@link #finished()}.
+     * @see java.io.Writer#close()
+     */
+    @Override
+    public void close() throws IOException {
+        this.flush();
+    }
+
+    /**
+     * Finish parsing: process any incomplete token, close all open
+     * elements and end the document.
+     * @throws SAXException If the content handler failed, either now or while
+     *                      processing the written characters.
+     */
+    public void finished() throws SAXException {
+        if ( this.exception != null ) {
+            throw this.exception;
+        }
+        this.startDocument();
+        switch ( this.state ) {
+            case TAG_OPEN : this.appendText('<');
+                            break;
+            case TAG :
+            case RAW_END_TAG : this.appendText('<');
+                               this.appendText(this.buffer);
+                               break;
+            case ENTITY : this.endEntity();
+                          break;
+            case COMMENT : this.comment(this.buffer);
+                           break;
+            case CDATA : this.appendText(this.buffer);
+                         break;
+        }
+        this.state = TEXT;
+        this.flushText();
+        while ( !this.openElements.isEmpty() ) {
+            this.closeElement();
+        }
+        this.contentHandler.endDocument();
+    }
+
+    /**
+     * Process a single character.
+     * @return <code>false</code> if the character has not been consumed and
+     *         needs to be processed again in the new state.
+     */
+    private boolean process(final char c) throws SAXException {
+        switch ( this.state ) {
+            case TEXT:
+                if ( c == '<' ) {
+                    this.state = TAG_OPEN;
+                } else if ( c == '&' ) {
+                    this.startEntity(TEXT);
+                } else {
+                    this.appendText(c);
+                }
+                return true;
+
+            case TAG_OPEN:
+                this.buffer.setLength(0);
+                if ( c == '/' || Character.isLetter(c) ) {
+                    this.buffer.append(c);
+                    this.quote = 0;
+                    this.lastTagChar = c;
+                    this.state = TAG;
+                } else if ( c == '!' ) {
+                    this.state = DECLARATION;
+                } else if ( c == '?' ) {
+                    this.state = PROCESSING_INSTRUCTION;
+                } else {
+                    // not a tag
+                    this.appendText('<');
+                    this.state = TEXT;
+                    return false;
+                }
+                return true;
+
+            case TAG:
+                if ( this.quote != 0 ) {
+                    if ( c == this.quote ) {
+                        this.quote = 0;
+                    }
+                } else if ( c == '>' ) {
+                    this.state = TEXT;
+                    this.tag(this.buffer.toString());
+                    return true;
+                } else if ( (c == '"' || c == '\'') && this.lastTagChar == '=' ) {
+                    this.quote = c;
+                }
+                if ( !Character.isWhitespace(c) ) {
+                    this.lastTagChar = c;
+                }
+                this.buffer.append(c);
+                return true;
+
+            case DECLARATION:
+                this.buffer.append(c);
+                if ( this.buffer.length() == 2 && this.buffer.charAt(0) == '-' && c == '-' ) {
+                    this.buffer.setLength(0);
+                    this.state = COMMENT;
+                } else if ( this.buffer.length() == 7 && "[CDATA[".contentEquals(this.buffer) ) {
+                    this.buffer.setLength(0);
+                    this.state = CDATA;
+                } else if ( c == '>' ) {
+                    this.buffer.setLength(this.buffer.length() - 1);
+                    this.state = TEXT;
+                    this.declaration(this.buffer.toString());
+                }
+                return true;
+
+            case COMMENT:
+                if ( c == '>' && this.endsWith("--") ) {
+                    this.buffer.setLength(this.buffer.length() - 2);
+                    this.state = TEXT;
+                    this.comment(this.buffer);
+                } else {
+                    this.buffer.append(c);
+                }
+                return true;
+
+            case CDATA:
+                if ( c == '>' && this.endsWith("]]") ) {
+                    this.buffer.setLength(this.buffer.length() - 2);
+                    this.state = TEXT;
+                    this.cdata();
+                } else {
+                    this.buffer.append(c);
+                }
+                return true;
+
+            case PROCESSING_INSTRUCTION:
+                if ( c == '>' ) {
+                    this.state = TEXT;
+                    this.processingInstruction(this.buffer.toString());
+                } else {
+                    this.buffer.append(c);
+                }
+                return true;
+
+            case RAW_TEXT:
+                if ( c == '<' ) {
+                    this.buffer.setLength(0);
+                    this.state = RAW_END_TAG;
+                } else if ( c == '&' && ESCAPABLE_RAW_TEXT_ELEMENTS.contains(this.rawTextElement) ) {
+                    this.startEntity(RAW_TEXT);
+                } else {
+                    this.appendText(c);
+                }
+                return true;
+
+            case RAW_END_TAG:
+                final int length = this.buffer.length();
+                final int nameLength = this.rawTextElement.length();
+                if ( length == 0 ? c == '/'
+                     : (length <= nameLength && Character.toLowerCase(c) == this.rawTextElement.charAt(length - 1)) ) {
+                    this.buffer.append(c);
+                    return true;
+                }
+                if ( length == nameLength + 1 && (c == '>' || c == '/' || Character.isWhitespace(c)) ) {
+                    // the end of the raw text element, parse as usual
+                    this.quote = 0;
+                    this.lastTagChar = c;
+                    this.state = TAG;
+                    return false;
+                }
+                this.appendText('<');
+                this.appendText(this.buffer);
+                this.state = RAW_TEXT;
+                return false;
+
+            case ENTITY:
+                if ( (this.entity.length() == 0 && c == '#')
+                     || (Character.isLetterOrDigit(c) && this.entity.length() < MAX_ENTITY_LENGTH) ) {
+                    this.entity.append(c);
+                    return true;
+                }
+                final boolean resolved = this.endEntity();
+                return c == ';' && resolved;
+        }
+        return true;
+    }
+
+    private boolean endsWith(final String suffix) {
+        final int start = this.buffer.length() - suffix.length();
+        return start >= 0 && this.buffer.indexOf(suffix, start) == start;
+    }
+
+    private void startEntity(final int returnState) {
+        this.entity.setLength(0);
+        this.entityReturnState = returnState;
+        this.state = ENTITY;
+    }
+
+    /**
+     * End the current entity and append its value to the text.
+     * @return <code>true</code> if the entity could be resolved
+     */
+    private boolean endEntity() throws SAXException {
+        this.state = this.entityReturnState;
+        final String value = resolveEntity(this.entity);
+        if ( value != null ) {
+            this.appendText(value);
+            return true;
+        }
+        this.appendText('&');
+        this.appendText(this.entity);
+        return false;
+    }
+
+    /**
+     * Resolve an entity name or character reference.
+     * @return The value or <code>null</code>
+     */
+    private static String resolveEntity(final CharSequence name) {
+        if ( name.length() > 1 && name.charAt(0) == '#' ) {
+            try {
+                final int codePoint;
+                if ( name.charAt(1) == 'x' || name.charAt(1) == 'X' ) {
+                    codePoint = Integer.parseInt(name.subSequence(2, name.length()).toString(), 16);
+                } else {
+                    codePoint = Integer.parseInt(name.subSequence(1, name.length()).toString());
+                }
+                if ( codePoint > 0 && codePoint <= Character.MAX_CODE_POINT ) {
+                    return new String(Character.toChars(codePoint));
+                }
+            } catch (final NumberFormatException nfe) {
+                // no valid reference
+            }
+            return null;
+        }
+        final Integer codePoint = ENTITIES.get(name.toString());
+        return (codePoint == null ? null : String.valueOf((char)codePoint.intValue()));
+    }
+
+    /**
+     * Resolve all entities in an attribute value.
+     */
+    private static String decode(final String value) {
+        int pos = value.indexOf('&');
+        if ( pos == -1 ) {
+            return value;
+        }
+        final StringBuilder sb = new StringBuilder(value.length());
+        sb.append(value, 0, pos);
+        while ( pos < value.length() ) {
+            final char c = value.charAt(pos);
+            if ( c == '&' ) {
+                int end = pos + 1;
+                if ( end < value.length() && value.charAt(end) == '#' ) {
+                    end++;
+                }
+                while ( end < value.length() && end - pos <= MAX_ENTITY_LENGTH
+                        && Character.isLetterOrDigit(value.charAt(end)) ) {
+                    end++;
+                }
+                final String resolved = resolveEntity(value.substring(pos + 1, end));
+                if ( resolved != null ) {
+                    sb.append(resolved);
+                    pos = (end < value.length() && value.charAt(end) == ';' ? end + 1 : end);
+                    continue;
+                }
+            }
+            sb.append(c);
+            pos++;
+        }
+        return sb.toString();
+    }
+
+    private void startDocument() throws SAXException {
+        if ( !this.documentStarted ) {
+            this.documentStarted = true;
+            this.contentHandler.startDocument();
+        }
+    }
+
+    private void appendText(final char c) throws SAXException {
+        if ( this.textLength == this.text.length ) {
+            this.flushText();
+        }
+        this.text[this.textLength++] = c;
+    }
+
+    private void appendText(final char[] chars, int offset, int length) throws SAXException {
+        while ( length > 0 ) {
+            if ( this.textLength == this.text.length ) {
+                this.flushText();
+            }
+            final int count = Math.min(length, this.text.length - this.textLength);
+            System.arraycopy(chars, offset, this.text, this.textLength, count);
+            this.textLength += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void appendText(final CharSequence chars) throws SAXException {
+        for(int i=0; i<chars.length(); i++) {
+            this.appendText(chars.charAt(i));
+        }
+    }
+
+    private void flushText() throws SAXException {
+        if ( this.textLength > 0 ) {
+            final int length = this.textLength;
+            this.textLength = 0;
+            this.contentHandler.characters(this.text, 0, length);
+        }
+    }
+
+    /**
+     * Parse a start or end tag, the content is the text between the angle brackets.
+     */
+    private void tag(final String content) throws SAXException {
+        this.flushText();
+        final int length = content.length();
+        if ( content.charAt(0) == '/' ) {
+            int end = 1;
+            while ( end < length && content.charAt(end) != '/' && !Character.isWhitespace(content.charAt(end)) ) {
+                end++;
+            }
+            if ( end > 1 ) {
+                this.endElement(content.substring(1, end).toLowerCase(Locale.ENGLISH));
+            }
+            return;
+        }
+
+        int pos = 0;
+        while ( pos < length && content.charAt(pos) != '/' && !Character.isWhitespace(content.charAt(pos)) ) {
+            pos++;
+        }
+        final String name = content.substring(0, pos).toLowerCase(Locale.ENGLISH);
+        final AttributesImpl attributes = new AttributesImpl();
+        boolean empty = false;
+        while ( pos < length ) {
+            char c = content.charAt(pos);
+            if ( Character.isWhitespace(c) ) {
+                pos++;
+                continue;
+            }
+            if ( c == '/' ) {
+                empty = true;
+                pos++;
+                continue;
+            }
+            empty = false;
+
+            // attribute name
+            final int nameStart = pos;
+            while ( pos < length && (c = content.charAt(pos)) != '=' && c != '/' && !Character.isWhitespace(c) ) {
+                pos++;
+            }
+            final String attrName = content.substring(nameStart, pos).toLowerCase(Locale.ENGLISH);
+            while ( pos < length && Character.isWhitespace(content.charAt(pos)) ) {
+                pos++;
+            }
+
+            // attribute value, attributes without a value get their name as the value
+            String value = attrName;
+            if ( pos < length && content.charAt(pos) == '=' ) {
+                pos++;
+                while ( pos < length && Character.isWhitespace(content.charAt(pos)) ) {
+                    pos++;
+                }
+                if ( pos < length && (content.charAt(pos) == '"' || content.charAt(pos) == '\'') ) {
+                    final char valueQuote = content.charAt(pos);
+                    int end = content.indexOf(valueQuote, pos + 1);
+                    if ( end == -1 ) {
+                        end = length;
+                    }
+                    value = content.substring(pos + 1, end);
+                    pos = end + 1;
+                } else {
+                    final int valueStart = pos;
+                    while ( pos < length && !Character.isWhitespace(content.charAt(pos)) ) {
+                        pos++;
+                    }
+                    value = content.substring(valueStart, pos);
+                }
+            }
+            if ( attributes.getIndex(attrName) == -1 ) {
+                attributes.addAttribute("", attrName, attrName, "CDATA", decode(value));
+            }
+        }
+        this.startElement(name, attributes, empty);
+    }
+
+    private void startElement(final String name, final AttributesImpl attributes, final boolean empty)
+    throws SAXException {
+        this.closeImpliedElements(name);
+        this.contentHandler.startElement(NAMESPACE, name, name, attributes);
+        if ( empty || EMPTY_ELEMENTS.contains(name) ) {
+            this.contentHandler.endElement(NAMESPACE, name, name);
+        } else {
+            this.openElements.add(name);
+            if ( RAW_TEXT_ELEMENTS.contains(name) ) {
+                this.rawTextElement = name;
+                this.state = RAW_TEXT;
+            }
+        }
+    }
+
+    /**
+     * Close all elements up to and including the named one.
+     * End tags without a matching open element are ignored.
+     */
+    private void endElement(final String name) throws SAXException {
+        if ( this.openElements.lastIndexOf(name) != -1 ) {
+            String closed;
+            do {
+                closed = this.closeElement();
+            } while ( !closed.equals(name) );
+        }
+    }
+
+    private String closeElement() throws SAXException {
+        final String name = this.openElements.remove(this.openElements.size() - 1);
+        this.contentHandler.endElement(NAMESPACE, name, name);
+        return name;
+    }
+
+    /**
+     * Close elements whose end is implied by the start of the named element.
+     */
+    private void closeImpliedElements(final String name) throws SAXException {
+        if ( "li".equals(name) ) {
+            this.closeInScope("li", LIST_SCOPE);
+        } else if ( "dt".equals(name) || "dd".equals(name) ) {
+            this.closeInScope("dt", DEFINITION_SCOPE);
+            this.closeInScope("dd", DEFINITION_SCOPE);
+        } else if ( "tr".equals(name) ) {
+            this.closeInScope("tr", TABLE_SCOPE);
+        } else if ( "td".equals(name) || "th".equals(name) ) {
+            this.closeInScope("td", ROW_SCOPE);
+            this.closeInScope("th", ROW_SCOPE);
+        } else if ( "option".equals(name) || "optgroup".equals(name) ) {
+            this.closeInScope("option", SELECT_SCOPE);
+        }
+        if ( PARAGRAPH_CLOSERS.contains(name) && !this.openElements.isEmpty()
+             && "p".equals(this.openElements.get(this.openElements.size() - 1)) ) {
+            this.closeElement();
+        }
+    }
+
+    /**
+     * Close the named element if it is open and not outside the scope.
+     */
+    private void closeInScope(final String name, final Set<String> scope) throws SAXException {
+        for(int i=this.openElements.size() - 1; i >= 0; i--) {
+            final String current = this.openElements.get(i);
+            if ( current.equals(name) ) {
+                this.endElement(name);
+                return;
+            }
+            if ( scope.contains(current) ) {
+                return;
+            }
+        }
+    }
+
+    private void comment(final CharSequence content) throws SAXException {
+        if ( this.lexicalHandler != null ) {
+            this.flushText();
+            final char[] chars = content.toString().toCharArray();
+            this.lexicalHandler.comment(chars, 0, chars.length);
+        }
+    }
+
+    private void cdata() throws SAXException {
+        this.flushText();
+        if ( this.lexicalHandler != null ) {
+            this.lexicalHandler.startCDATA();
+        }
+        this.appendText(this.buffer);
+        this.flushText();
+        if ( this.lexicalHandler != null ) {
+            this.lexicalHandler.endCDATA();
+        }
+    }
+
+    private void processingInstruction(String content) throws SAXException {
+        if ( content.endsWith("?") ) {
+            content = content.substring(0, content.length() - 1);
+        }
+        int pos = 0;
+        while ( pos < content.length() && !Character.isWhitespace(content.charAt(pos)) ) {
+            pos++;
+        }
+        if ( pos > 0 ) {
+            this.flushText();
+            this.contentHandler.processingInstruction(content.substring(0, pos), content.substring(pos).trim());
+        }
+    }
+
+    /**
+     * Only the doctype declaration is reported, all other declarations are ignored.
+     */
+    private void declaration(final String content) throws SAXException {
+        if ( this.lexicalHandler == null || !content.regionMatches(true, 0, "doctype", 0, 7) ) {
+            return;
+        }
+        final List<String> tokens = new ArrayList<String>();
+        int pos = 7;
+        while ( pos < content.length() ) {
+            final char c = content.charAt(pos);
+            if ( Character.isWhitespace(c) ) {
+                pos++;
+            } else if ( c == '"' || c == '\'' ) {
+                int end = content.indexOf(c, pos + 1);
+                if ( end == -1 ) {
+                    end = content.length();
+                }
+                tokens.add(content.substring(pos + 1, end));
+                pos = end + 1;
+            } else {
+                final int start = pos;
+                while ( pos < content.length() && !Character.isWhitespace(content.charAt(pos)) ) {
+                    pos++;
+                }
+                tokens.add(content.substring(start, pos));
+            }
+        }
+        if ( tokens.isEmpty() ) {
+            return;
+        }
+        String publicId = null;
+        String systemId = null;
+        if ( tokens.size() > 2 && "public".equalsIgnoreCase(tokens.get(1)) ) {
+            publicId = tokens.get(2);
+            systemId = (tokens.size() > 3 ? tokens.get(3) : null);
+        } else if ( tokens.size() > 2 && "system".equalsIgnoreCase(tokens.get(1)) ) {
+            systemId = tokens.get(2);
+        }
+        this.flushText();
+        this.lexicalHandler.startDTD(tokens.get(0), publicId, systemId);
+        this.lexicalHandler.endDTD();
+    }
+}
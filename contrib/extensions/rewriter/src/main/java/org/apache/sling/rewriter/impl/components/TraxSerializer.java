@@ -26,6 +26,7 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.apache.sling.rewriter.ProcessingComponentConfiguration;
 import org.apache.sling.rewriter.ProcessingContext;
+import org.apache.sling.rewriter.ResettableComponent;
 import org.apache.sling.rewriter.Serializer;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
@@ -36,8 +37,10 @@ import org.xml.sax.ext.LexicalHandler;
 /**
  * The <code>TraxSerializer</code> is a serializer based on
  * the jaxp serializers.
+ * The serializer can be reused if the transformer of the jaxp
+ * implementation supports resetting it.
  */
-public class TraxSerializer implements Serializer, LexicalHandler {
+public class TraxSerializer implements Serializer, LexicalHandler, ResettableComponent {
 
     /** The default encoding. */
     private static final String DEFAULT_ENCODING = "UTF-8";
@@ -50,6 +53,10 @@ public class TraxSerializer implements Serializer, LexicalHandler {
     private final ContentHandler contentHandler;
     private final LexicalHandler lexicalHandler;
 
+    private final String outputFormat;
+    private final String doctypePublic;
+    private final String doctypeSystem;
+
     public TraxSerializer(final TransformerHandler transformerHandler,
                           final ContentHandler handler,
                           final String outputFormat,
@@ -58,9 +65,20 @@ public class TraxSerializer implements Serializer, LexicalHandler {
         this.contentHandler = handler;
         this.lexicalHandler = (LexicalHandler)handler;
         this.transformerHandler = transformerHandler;
-        this.format.put(OutputKeys.METHOD, outputFormat);
-        this.format.put(OutputKeys.DOCTYPE_PUBLIC, doctypePublic);
-        this.format.put(OutputKeys.DOCTYPE_SYSTEM, doctypeSystem);
+        this.outputFormat = outputFormat;
+        this.doctypePublic = doctypePublic;
+        this.doctypeSystem = doctypeSystem;
+        this.initFormat();
+    }
+
+    /**
+     * Set the default output properties.
+     */
+    private void initFormat() {
+        this.format.clear();
+        this.format.put(OutputKeys.METHOD, this.outputFormat);
+        this.format.put(OutputKeys.DOCTYPE_PUBLIC, this.doctypePublic);
+        this.format.put(OutputKeys.DOCTYPE_SYSTEM, this.doctypeSystem);
     }
 
     /**
@@ -143,6 +161,23 @@ public class TraxSerializer implements Serializer, LexicalHandler {
         // nothing to do
     }
 
+    /**
+     * @see org.apache.sling.rewriter.ResettableComponent#reset()
+     */
+    public boolean reset() {
+        if ( this.transformerHandler == null ) {
+            return false;
+        }
+        try {
+            this.transformerHandler.getTransformer().reset();
+        } catch (final UnsupportedOperationException uoe) {
+            // the jaxp implementation does not support reuse
+            return false;
+        }
+        this.initFormat();
+        return true;
+    }
+
     /**
      * @see org.xml.sax.ContentHandler#setDocumentLocator(org.xml.sax.Locator)
      */
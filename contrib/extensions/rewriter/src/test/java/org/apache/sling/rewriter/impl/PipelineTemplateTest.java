@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.rewriter.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.rewriter.Generator;
+import org.apache.sling.rewriter.GeneratorFactory;
+import org.apache.sling.rewriter.PipelineConfiguration;
+import org.apache.sling.rewriter.ProcessingComponentConfiguration;
+import org.apache.sling.rewriter.ResettableComponent;
+import org.apache.sling.rewriter.Serializer;
+import org.apache.sling.rewriter.SerializerFactory;
+import org.apache.sling.rewriter.Transformer;
+import org.apache.sling.rewriter.TransformerFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipelineTemplateTest {
+
+    /** A transformer which can be reused. */
+    private static abstract class ResettableTransformer implements Transformer, ResettableComponent {
+    }
+
+    private FactoryCache factoryCache;
+
+    private PipelineConfiguration config;
+
+    @Before
+    public void setup() {
+        this.factoryCache = mock(FactoryCache.class);
+        when(this.factoryCache.getGeneration()).thenReturn(1);
+
+        final GeneratorFactory generatorFactory = mock(GeneratorFactory.class);
+        when(generatorFactory.createGenerator()).thenReturn(mock(Generator.class), mock(Generator.class));
+        when(this.factoryCache.getGeneratorFactory("generator")).thenReturn(generatorFactory);
+
+        final TransformerFactory transformerFactory = mock(TransformerFactory.class);
+        final ResettableTransformer t1 = mock(ResettableTransformer.class);
+        when(t1.reset()).thenReturn(true);
+        final ResettableTransformer t2 = mock(ResettableTransformer.class);
+        when(t2.reset()).thenReturn(true);
+        when(transformerFactory.createTransformer()).thenReturn(t1, t2);
+        when(this.factoryCache.getTransformerFactory("transformer")).thenReturn(transformerFactory);
+
+        final SerializerFactory serializerFactory = mock(SerializerFactory.class);
+        when(serializerFactory.createSerializer()).thenReturn(mock(Serializer.class));
+        when(this.factoryCache.getSerializerFactory("serializer")).thenReturn(serializerFactory);
+
+        final Map<String, Object> optional = new HashMap<String, Object>();
+        optional.put(ProcessingComponentConfiguration.CONFIGURATION_COMPONENT_OPTIONAL, true);
+        this.config = mock(PipelineConfiguration.class);
+        when(this.config.getGeneratorConfiguration()).thenReturn(new ProcessingComponentConfigurationImpl("generator", null));
+        when(this.config.getTransformerConfigurations()).thenReturn(new ProcessingComponentConfiguration[] {
+                new ProcessingComponentConfigurationImpl("missing", new ValueMapDecorator(optional)),
+                new ProcessingComponentConfigurationImpl("transformer", null)
+        });
+        when(this.config.getSerializerConfiguration()).thenReturn(new ProcessingComponentConfigurationImpl("serializer", null));
+    }
+
+    @Test
+    public void testResolve() throws IOException {
+        final PipelineTemplate template = new PipelineTemplate(this.factoryCache, this.config);
+        assertEquals(1, template.getTransformerCount());
+        assertEquals("transformer", template.getTransformerConfiguration(0).getType());
+        assertTrue(template.isValid(this.factoryCache));
+
+        when(this.factoryCache.getGeneration()).thenReturn(2);
+        assertFalse(template.isValid(this.factoryCache));
+    }
+
+    @Test(expected=IOException.class)
+    public void testMissingRequiredComponent() throws IOException {
+        when(this.config.getTransformerConfigurations()).thenReturn(new ProcessingComponentConfiguration[] {
+                new ProcessingComponentConfigurationImpl("missing", null)
+        });
+        new PipelineTemplate(this.factoryCache, this.config);
+    }
+
+    @Test
+    public void testPooling() throws IOException {
+        final PipelineTemplate template = new PipelineTemplate(this.factoryCache, this.config);
+
+        // resettable components are reused
+        final Transformer transformer = template.getTransformer(0);
+        template.release(0, transformer);
+        assertSame(transformer, template.getTransformer(0));
+        assertNotSame(transformer, template.getTransformer(0));
+
+        // other components are created for each pipeline
+        final Generator generator = template.getGenerator();
+        template.release(generator);
+        assertNotSame(generator, template.getGenerator());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.rewriter.impl.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedList;
+
+import org.ccil.cowan.tagsoup.Parser;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Compares the events of the {@link StreamingHtmlParser} with the events
+ * of TagSoup - the parser used by the html parser service - for malformed
+ * markup.
+ */
+public class StreamingHtmlParserTagSoupTest {
+
+    /**
+     * Content handler recording the element structure and the text.
+     * The html, head and body elements are left out as TagSoup always
+     * adds them while the streaming parser only reports the written ones.
+     * Attributes are left out as TagSoup adds default attributes.
+     */
+    private static final class StructureHandler extends DefaultHandler {
+
+        final StringBuilder events = new StringBuilder();
+
+        final LinkedList<String> openElements = new LinkedList<String>();
+
+        private boolean isWrapper(final String name) {
+            return "html".equals(name) || "head".equals(name) || "body".equals(name);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            openElements.addFirst(localName);
+            if ( !isWrapper(localName) ) {
+                events.append('<').append(localName).append('>');
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            assertEquals("Unbalanced end of " + localName, openElements.removeFirst(), localName);
+            if ( !isWrapper(localName) ) {
+                events.append("</").append(localName).append('>');
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.append(ch, start, length);
+        }
+
+        @Override
+        public void endDocument() {
+            assertTrue("Elements left open: " + openElements, openElements.isEmpty());
+        }
+    }
+
+    private String parseStreaming(final String html) throws IOException, SAXException {
+        final StructureHandler handler = new StructureHandler();
+        final StreamingHtmlParser parser = new StreamingHtmlParser();
+        parser.setContentHandler(handler);
+        parser.write(html);
+        parser.finished();
+        return handler.events.toString();
+    }
+
+    private String parseTagSoup(final String html) throws IOException, SAXException {
+        final StructureHandler handler = new StructureHandler();
+        final Parser parser = new Parser();
+        parser.setContentHandler(handler);
+        parser.parse(new InputSource(new StringReader(html)));
+        return handler.events.toString();
+    }
+
+    private void assertSameStructure(final String html) throws IOException, SAXException {
+        assertEquals(html, parseTagSoup(html), parseStreaming(html));
+    }
+
+    @Test
+    public void testImpliedEndTags() throws Exception {
+        assertSameStructure("<p>one<p>two");
+        assertSameStructure("<ul><li>a<li>b</ul>");
+        assertSameStructure("<dl><dt>term<dd>definition</dl>");
+        assertSameStructure("<p>text<div>block</div>");
+    }
+
+    @Test
+    public void testEmptyElements() throws Exception {
+        assertSameStructure("<div>text<br>more<img src=x.png><hr></div>");
+    }
+
+    @Test
+    public void testMissingEndTags() throws Exception {
+        assertSameStructure("<div><span>open");
+        assertSameStructure("<div><p>a<p>b");
+    }
+
+    @Test
+    public void testUnmatchedEndTags() throws Exception {
+        assertSameStructure("<div>a</span>b</div>");
+    }
+
+    @Test
+    public void testCaseAndEntities() throws Exception {
+        assertSameStructure("<DIV CLASS=a>x &amp; y &lt; z&nbsp;</Div>");
+    }
+
+    /**
+     * TagSoup restructures misnested and misplaced elements, the streaming
+     * parser does not. Both must produce balanced events though.
+     */
+    @Test
+    public void testMisnestedElementsAreBalanced() throws Exception {
+        final String[] inputs = new String[] {
+            "<b><i>x</b>y</i>",
+            "<table><tr><td>a<td>b<tr><td>c</table>",
+            "<a href=x>1<a href=y>2</a>",
+            "<ul><p>text</ul><li>item"
+        };
+        for(final String html : inputs) {
+            // the handler asserts the balancing
+            parseTagSoup(html);
+            parseStreaming(html);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.rewriter.impl.components;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class StreamingHtmlParserTest {
+
+    /**
+     * Content handler recording the events as a simple markup.
+     */
+    private static final class RecordingHandler extends DefaultHandler implements LexicalHandler {
+
+        final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void startDocument() {
+            events.append("[start]");
+        }
+
+        @Override
+        public void endDocument() {
+            events.append("[end]");
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            assertEquals("http://www.w3.org/1999/xhtml", uri);
+            assertEquals(localName, qName);
+            events.append('<').append(localName);
+            for(int i=0; i<atts.getLength(); i++) {
+                events.append(' ').append(atts.getLocalName(i)).append("=\"").append(atts.getValue(i)).append('"');
+            }
+            events.append('>');
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.append("</").append(localName).append('>');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.append(ch, start, length);
+        }
+
+        public void comment(char[] ch, int start, int length) {
+            events.append("<!--").append(ch, start, length).append("-->");
+        }
+
+        public void startDTD(String name, String publicId, String systemId) {
+            events.append("[dtd ").append(name).append(' ').append(publicId).append(' ').append(systemId).append(']');
+        }
+
+        public void endDTD() {
+            // ignore
+        }
+
+        public void startCDATA() {
+            events.append("[cdata]");
+        }
+
+        public void endCDATA() {
+            events.append("[/cdata]");
+        }
+
+        public void startEntity(String name) {
+            // ignore
+        }
+
+        public void endEntity(String name) {
+            // ignore
+        }
+    }
+
+    private String parse(final String html, final int chunkSize) throws IOException, SAXException {
+        final RecordingHandler handler = new RecordingHandler();
+        final StreamingHtmlParser parser = new StreamingHtmlParser();
+        parser.setContentHandler(handler);
+        for(int i=0; i<html.length(); i+=chunkSize) {
+            parser.write(html, i, Math.min(chunkSize, html.length() - i));
+        }
+        parser.finished();
+        return handler.events.toString();
+    }
+
+    /**
+     * Parse the html at once and in single characters, both must result in the same events.
+     */
+    private String parse(final String html) throws IOException, SAXException {
+        final String result = parse(html, html.length() + 1);
+        assertEquals(result, parse(html, 1));
+        return result;
+    }
+
+    @Test
+    public void testElementsAndAttributes() throws Exception {
+        assertEquals("[start]<html><body class=\"a b\" id=\"x\" checked=\"checked\">Text</body></html>[end]",
+                parse("<HTML><body class=\"a b\" ID='x' checked CLASS=\"c\">Text</body></html>"));
+        assertEquals("[start]<a href=\"/a/b.html\">link</a><br></br><x></x>[end]",
+                parse("<a href=/a/b.html>link</a><br><x/>"));
+    }
+
+    @Test
+    public void testEntities() throws Exception {
+        assertEquals("[start]<p title=\"a&b<c\u00a9\">\u00a0<>&\u00e4A&unknown; & x &copy2</p>[end]",
+                parse("<p title=\"a&amp;b&lt;c&#169;\">&nbsp;&lt;&gt;&amp;&auml;&#x41;&unknown; & x &copy2</p>"));
+    }
+
+    @Test
+    public void testBalancing() throws Exception {
+        assertEquals("[start]<ul><li>a</li><li>b<ol><li>c</li></ol></li></ul><p>d</p><div>e</div>[end]",
+                parse("<ul><li>a<li>b<ol><li>c</ol></ul></span><p>d<div>e"));
+        assertEquals("[start]<table><tr><td>1</td><td>2</td></tr><tr><th>3</th></tr></table>[end]",
+                parse("<table><tr><td>1<td>2<tr><th>3</table>"));
+    }
+
+    @Test
+    public void testRawText() throws Exception {
+        assertEquals("[start]<script>if (a<b && c>d) { x = '</scrip' + 't>'; }</script><p>&</p>[end]",
+                parse("<script>if (a<b && c>d) { x = '</scrip' + 't>'; }</SCRIPT ><p>&amp;</p>"));
+        assertEquals("[start]<title><b>&</b></title>[end]",
+                parse("<title><b>&amp;</b></title>"));
+    }
+
+    @Test
+    public void testLexicalEvents() throws Exception {
+        assertEquals("[start][dtd html -//W3C//DTD HTML 4.01//EN http://www.w3.org/TR/html4/strict.dtd]"
+                + "<!-- a <b> -- c --><p>[cdata]x<y[/cdata]</p>[end]",
+                parse("<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01//EN\" \"http://www.w3.org/TR/html4/strict.dtd\">"
+                        + "<!-- a <b> -- c --><p><![CDATA[x<y]]></p>"));
+    }
+
+    @Test
+    public void testIncompleteInput() throws Exception {
+        assertEquals("[start]<p>a < b <c</p>[end]", parse("<p>a < b <c"));
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        final RecordingHandler handler = new RecordingHandler();
+        final StreamingHtmlParser parser = new StreamingHtmlParser();
+        parser.setContentHandler(handler);
+        parser.write("<html><body><p>first</p><p cla");
+        // all complete tokens are processed before the document is finished
+        assertEquals("[start]<html><body><p>first</p>", handler.events.toString());
+        parser.write("ss=\"x\">second");
+        parser.flush();
+        assertEquals("[start]<html><body><p>first</p><p class=\"x\">second", handler.events.toString());
+        parser.finished();
+        assertEquals("[start]<html><body><p>first</p><p class=\"x\">second</p></body></html>[end]", handler.events.toString());
+    }
+}
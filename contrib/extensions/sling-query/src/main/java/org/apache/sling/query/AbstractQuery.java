@@ -72,10 +72,14 @@ public abstract class AbstractQuery<T, Q extends AbstractQuery<T, Q>> implements
 	}
 
 	protected AbstractQuery(AbstractQuery<T, Q> original, SearchStrategy searchStrategy) {
+		this(original, searchStrategy, original.provider);
+	}
+
+	protected AbstractQuery(AbstractQuery<T, Q> original, SearchStrategy searchStrategy, TreeProvider<T> provider) {
 		this.functions.addAll(original.functions);
 		this.initialCollection = new ArrayList<T>(original.initialCollection);
 		this.searchStrategy = searchStrategy;
-		this.provider = original.provider;
+		this.provider = provider;
 	}
 
 	/**
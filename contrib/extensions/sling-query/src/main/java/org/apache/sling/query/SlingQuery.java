@@ -20,6 +20,7 @@
 package org.apache.sling.query;
 
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.sling.api.adapter.Adaptable;
 import org.apache.sling.api.resource.Resource;
@@ -27,6 +28,10 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.query.api.SearchStrategy;
 import org.apache.sling.query.iterator.AdaptToIterator;
 import org.apache.sling.query.resource.ResourceTreeProvider;
+import org.apache.sling.query.resource.jcr.SessionJcrTypeResolver;
+import org.apache.sling.query.resource.jcr.query.JcrQueryBuilder;
+import org.apache.sling.query.selector.parser.SelectorParser;
+import org.apache.sling.query.selector.parser.SelectorSegment;
 
 /**
  * SlingQuery is a Sling resource tree traversal tool inspired by the jQuery.
@@ -35,12 +40,25 @@ import org.apache.sling.query.resource.ResourceTreeProvider;
  */
 public class SlingQuery extends AbstractQuery<Resource, SlingQuery> {
 
+	private final ResourceTreeProvider provider;
+
 	private SlingQuery(AbstractQuery<Resource, SlingQuery> original, SearchStrategy strategy) {
 		super(original, strategy);
+		this.provider = ((SlingQuery) original).provider;
+	}
+
+	private SlingQuery(SlingQuery original, ResourceTreeProvider provider) {
+		super(original, SearchStrategy.PARALLEL, provider);
+		this.provider = provider;
 	}
 
 	private SlingQuery(Resource[] resources, SearchStrategy strategy) {
-		super(new ResourceTreeProvider(resources[0].getResourceResolver()), resources, strategy);
+		this(new ResourceTreeProvider(resources[0].getResourceResolver()), resources, strategy);
+	}
+
+	private SlingQuery(ResourceTreeProvider provider, Resource[] resources, SearchStrategy strategy) {
+		super(provider, resources, strategy);
+		this.provider = provider;
 	}
 
 	public static SlingQuery $(Resource... resources) {
@@ -72,6 +90,40 @@ public class SlingQuery extends AbstractQuery<Resource, SlingQuery> {
 		};
 	}
 
+	/**
+	 * Use the {@link SearchStrategy#PARALLEL} strategy in {@link #find()} and {@link #has(String)} functions,
+	 * traversing the subtrees with at most {@code parallelism} threads of a pool shared by all queries. Each thread
+	 * uses its own clone of the resource resolver.
+	 * 
+	 * @param parallelism Maximum number of threads traversing the tree
+	 * @param ordered If true, the resources are returned in the same order as with the {@link SearchStrategy#DFS}
+	 * strategy, otherwise they are returned as soon as they are found
+	 * @return new SlingQuery object transformed by this operation
+	 */
+	public SlingQuery parallel(int parallelism, boolean ordered) {
+		return new SlingQuery(this, provider.withParallelism(parallelism, ordered));
+	}
+
+	/**
+	 * Describe how the {@link SearchStrategy#QUERY} strategy looks for the resources matching the selector
+	 * below the first resource of the collection: the JCR query, the query limit, the queries joined on the
+	 * ancestor path for the {@code :has()} modifiers and the parts of the selector evaluated in memory.
+	 * 
+	 * @param selector Selector passed to the {@link #find(String)} method
+	 * @return description of the query plan
+	 */
+	public String explain(String selector) {
+		Iterator<Resource> iterator = this.iterator();
+		if (!iterator.hasNext()) {
+			return "";
+		}
+		Resource root = iterator.next();
+		List<SelectorSegment> segments = SelectorParser.getFirstSegmentFromEachSelector(SelectorParser
+				.parse(selector));
+		JcrQueryBuilder builder = new JcrQueryBuilder(new SessionJcrTypeResolver(root.getResourceResolver()));
+		return builder.plan(segments, root.getPath()).explain();
+	}
+
 	@Override
 	protected SlingQuery clone(AbstractQuery<Resource, SlingQuery> original, SearchStrategy strategy) {
 		return new SlingQuery(original, strategy);
@@ -20,5 +20,5 @@
 package org.apache.sling.query.api;
 
 public enum SearchStrategy {
-	BFS, DFS, QUERY;
+	BFS, DFS, QUERY, PARALLEL;
 }
@@ -23,12 +23,14 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.sling.api.resource.Resource;
 import org.apache.sling.query.api.SearchStrategy;
 import org.apache.sling.query.api.TreeProvider;
 import org.apache.sling.query.api.function.ElementToIteratorFunction;
 import org.apache.sling.query.iterator.WarningIterator;
 import org.apache.sling.query.iterator.tree.BfsTreeIterator;
 import org.apache.sling.query.iterator.tree.DfsTreeIterator;
+import org.apache.sling.query.resource.ResourceTreeProvider;
 import org.apache.sling.query.selector.parser.Selector;
 import org.apache.sling.query.selector.parser.SelectorParser;
 import org.apache.sling.query.selector.parser.SelectorSegment;
@@ -65,6 +67,9 @@ public class FindFunction<T> implements ElementToIteratorFunction<T> {
 			case QUERY:
 				iterator = provider.query(preFilteringSelector, input);
 				break;
+			case PARALLEL:
+				iterator = listDescendantsInParallel(input);
+				break;
 			case DFS:
 			default:
 				iterator = new DfsTreeIterator<T>(input, provider);
@@ -72,4 +77,14 @@ public class FindFunction<T> implements ElementToIteratorFunction<T> {
 		}
 		return new WarningIterator<T>(iterator);
 	}
+
+	@SuppressWarnings("unchecked")
+	private Iterator<T> listDescendantsInParallel(T input) {
+		if (provider instanceof ResourceTreeProvider && input instanceof Resource) {
+			return (Iterator<T>) ((ResourceTreeProvider) provider).listDescendantsInParallel((Resource) input);
+		} else {
+			// only the resource tree can be traversed in parallel
+			return new DfsTreeIterator<T>(input, provider);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,447 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.query.resource;
+
+import java.lang.ref.WeakReference;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.query.api.TreeProvider;
+import org.apache.sling.query.iterator.AbstractIterator;
+import org.apache.sling.query.iterator.tree.DfsTreeIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterates over the descendants of the root resource, traversing the subtrees with a thread pool shared by all
+ * queries. Each task traverses a subtree with its own clone of the resource resolver and passes the found paths to
+ * the consumer, which gets the resources with its own resolver. A task forks the traversal of a child resource
+ * when less than {@code parallelism} tasks of the iterator are pending.
+ *
+ * In the ordered mode the resources are returned in the same order as in the DFS strategy, in the unordered mode
+ * they are returned as soon as they are found. Resources without a resolver (eg. in-memory ones) are shared
+ * between threads as they are.
+ *
+ * The output queues are bounded, so the tasks wait for a slow consumer. If the consumer waits for a task which
+ * hasn't been started yet, it traverses the subtree of the task sequentially itself. The traversal stops when it
+ * is cancelled, the consumer thread is interrupted, the resource resolver is closed or the iterator is no longer
+ * referenced.
+ */
+public class ParallelTraversalIterator extends AbstractIterator<Resource> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelTraversalIterator.class);
+
+	private static final Object END = new Object();
+
+	private static final int QUEUE_CAPACITY = 256;
+
+	private static final int OUTPUTS_PER_THREAD = 4;
+
+	private static final long WAIT_MILLIS = 100;
+
+	private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+	private final Traversal traversal;
+
+	private final Deque<Output> outputs = new LinkedList<Output>();
+
+	private boolean started;
+
+	private Iterator<Resource> fallback;
+
+	public ParallelTraversalIterator(Resource root, TreeProvider<Resource> provider, int parallelism,
+			boolean ordered) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism has to be positive: " + parallelism);
+		}
+		this.traversal = new Traversal(this, root, provider, parallelism, ordered);
+	}
+
+	/**
+	 * Stop the traversal. The iterator doesn't return any further resources.
+	 */
+	public void cancel() {
+		started = true;
+		traversal.cancelled = true;
+		outputs.clear();
+		fallback = null;
+	}
+
+	@Override
+	protected Resource getElement() {
+		if (!started) {
+			started = true;
+			outputs.push(traversal.start());
+		}
+		while (true) {
+			if (fallback != null) {
+				if (fallback.hasNext()) {
+					return fallback.next();
+				}
+				fallback = null;
+			}
+			if (outputs.isEmpty()) {
+				return null;
+			}
+
+			Output output = outputs.peek();
+			Object item;
+			try {
+				item = output.queue.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				LOG.warn("Interrupted while waiting for the traversal of " + traversal.root.getPath());
+				Thread.currentThread().interrupt();
+				cancel();
+				return null;
+			}
+
+			if (item == null) {
+				if (!traversal.ordered && traversal.pending.get() == 0 && output.queue.isEmpty()) {
+					outputs.pop();
+				} else {
+					takeOver(output);
+				}
+			} else if (item == END) {
+				outputs.pop();
+				traversal.openOutputs.decrementAndGet();
+			} else if (item instanceof Output) {
+				outputs.push((Output) item);
+			} else if (item instanceof Traversal.Task) {
+				fallback = traversal.sequential((Traversal.Task) item);
+			} else if (item instanceof RuntimeException) {
+				cancel();
+				throw (RuntimeException) item;
+			} else {
+				Resource resource = traversal.getResource(item);
+				if (resource != null) {
+					return resource;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Traverse the subtree of a task sequentially instead of waiting for a thread of the pool.
+	 */
+	private void takeOver(Output output) {
+		Traversal.Task task;
+		if (traversal.ordered) {
+			task = output.producer;
+		} else {
+			task = traversal.unstarted.peek();
+		}
+		if (task != null && task.takeOver()) {
+			LOG.debug("Traversing {} sequentially", task.path);
+			if (traversal.ordered) {
+				outputs.pop();
+				traversal.openOutputs.decrementAndGet();
+			}
+			fallback = traversal.sequential(task);
+		}
+	}
+
+	private static ThreadPoolExecutor createExecutor() {
+		int size = Runtime.getRuntime().availableProcessors();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger threadNumber = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "sling-query-traversal-"
+								+ threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static class Output {
+
+		private final BlockingQueue<Object> queue;
+
+		private final Traversal.Task producer;
+
+		private Output(BlockingQueue<Object> queue, Traversal.Task producer) {
+			this.queue = queue;
+			this.producer = producer;
+		}
+	}
+
+	/**
+	 * State shared by the tasks. It doesn't reference the iterator, so the traversal is cancelled once the
+	 * iterator is garbage collected.
+	 */
+	private static class Traversal {
+
+		private final WeakReference<ParallelTraversalIterator> owner;
+
+		private final Resource root;
+
+		private final ResourceResolver resolver;
+
+		private final TreeProvider<Resource> provider;
+
+		private final int parallelism;
+
+		private final boolean ordered;
+
+		private final AtomicInteger pending = new AtomicInteger();
+
+		private final AtomicInteger openOutputs = new AtomicInteger();
+
+		private final Queue<Task> unstarted = new ConcurrentLinkedQueue<Task>();
+
+		private volatile boolean cancelled;
+
+		private Traversal(ParallelTraversalIterator owner, Resource root, TreeProvider<Resource> provider,
+				int parallelism, boolean ordered) {
+			this.owner = new WeakReference<ParallelTraversalIterator>(owner);
+			this.root = root;
+			this.resolver = root.getResourceResolver();
+			this.provider = provider;
+			this.parallelism = parallelism;
+			this.ordered = ordered;
+		}
+
+		private Output start() {
+			BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>(QUEUE_CAPACITY);
+			Task task = new Task(root, false, queue);
+			openOutputs.incrementAndGet();
+			pending.incrementAndGet();
+			submit(task);
+			return new Output(queue, task);
+		}
+
+		private boolean isCancelled() {
+			return cancelled || owner.get() == null || (resolver != null && !resolver.isLive());
+		}
+
+		private void submit(Task task) {
+			unstarted.add(task);
+			EXECUTOR.execute(task);
+		}
+
+		/**
+		 * Reserve a place for a new task, unless there are enough pending tasks or buffered outputs already.
+		 */
+		private boolean reserveTask() {
+			if (ordered && openOutputs.get() >= parallelism * OUTPUTS_PER_THREAD) {
+				return false;
+			}
+			int current;
+			do {
+				current = pending.get();
+				if (current >= parallelism) {
+					return false;
+				}
+			} while (!pending.compareAndSet(current, current + 1));
+			return true;
+		}
+
+		private Resource getResource(Object item) {
+			if (item instanceof Resource) {
+				return (Resource) item;
+			} else {
+				return resolver.getResource((String) item);
+			}
+		}
+
+		private Iterator<Resource> sequential(Task task) {
+			final Resource subtreeRoot = resolver == null ? task.sharedResource : resolver.getResource(task.path);
+			if (subtreeRoot == null) {
+				return new LinkedList<Resource>().iterator();
+			}
+			final boolean includeRoot = task.includeRoot;
+			final Iterator<Resource> descendants = new DfsTreeIterator<Resource>(subtreeRoot, provider);
+			return new AbstractIterator<Resource>() {
+				private boolean rootReturned = !includeRoot;
+
+				@Override
+				protected Resource getElement() {
+					if (!rootReturned) {
+						rootReturned = true;
+						return subtreeRoot;
+					}
+					return descendants.hasNext() ? descendants.next() : null;
+				}
+			};
+		}
+
+		private class Task implements Runnable {
+
+			private static final int NEW = 0;
+
+			private static final int RUNNING = 1;
+
+			private static final int TAKEN_OVER = 2;
+
+			private final AtomicInteger state = new AtomicInteger(NEW);
+
+			private final String path;
+
+			private final Resource sharedResource;
+
+			private final boolean includeRoot;
+
+			private final BlockingQueue<Object> output;
+
+			private Task(Resource subtreeRoot, boolean includeRoot, BlockingQueue<Object> output) {
+				this.path = subtreeRoot.getPath();
+				this.sharedResource = resolver == null ? subtreeRoot : null;
+				this.includeRoot = includeRoot;
+				this.output = output;
+			}
+
+			/**
+			 * Called by the consumer to traverse the subtree itself.
+			 *
+			 * @return true if the task hasn't been started and won't be run by the pool
+			 */
+			private boolean takeOver() {
+				if (!state.compareAndSet(NEW, TAKEN_OVER)) {
+					return false;
+				}
+				unstarted.remove(this);
+				EXECUTOR.remove(this);
+				pending.decrementAndGet();
+				return true;
+			}
+
+			@Override
+			public void run() {
+				if (!state.compareAndSet(NEW, RUNNING)) {
+					return;
+				}
+				unstarted.remove(this);
+				try {
+					try {
+						if (resolver == null) {
+							traverse(sharedResource);
+						} else {
+							ResourceResolver clone = resolver.clone(null);
+							try {
+								traverse(clone.getResource(path));
+							} finally {
+								clone.close();
+							}
+						}
+					} catch (LoginException e) {
+						LOG.error("Can't clone the resource resolver, traversing " + path + " sequentially", e);
+						put(output, this);
+					} catch (CancellationException e) {
+						throw e;
+					} catch (RuntimeException e) {
+						put(output, e);
+					}
+					if (ordered) {
+						put(output, END);
+					}
+				} catch (CancellationException e) {
+					LOG.debug("Traversal of {} cancelled", path);
+				} finally {
+					if (pending.decrementAndGet() == 0 && !ordered) {
+						// the consumer also stops once there are no pending tasks and the queue is empty
+						output.offer(END);
+					}
+				}
+			}
+
+			private void traverse(Resource subtreeRoot) {
+				if (subtreeRoot == null) {
+					return;
+				}
+				if (includeRoot) {
+					emit(subtreeRoot);
+				}
+				Deque<Iterator<Resource>> stack = new LinkedList<Iterator<Resource>>();
+				stack.add(subtreeRoot.listChildren());
+				while (!stack.isEmpty()) {
+					if (isCancelled()) {
+						throw new CancellationException();
+					}
+					if (!stack.peekLast().hasNext()) {
+						stack.pollLast();
+						continue;
+					}
+					Resource child = stack.peekLast().next();
+					if (!fork(child)) {
+						emit(child);
+						stack.add(child.listChildren());
+					}
+				}
+			}
+
+			private boolean fork(Resource child) {
+				if (!reserveTask()) {
+					return false;
+				}
+				Task task;
+				if (ordered) {
+					BlockingQueue<Object> forkedOutput = new LinkedBlockingQueue<Object>(QUEUE_CAPACITY);
+					task = new Task(child, true, forkedOutput);
+					openOutputs.incrementAndGet();
+					try {
+						put(output, new Output(forkedOutput, task));
+					} catch (CancellationException e) {
+						pending.decrementAndGet();
+						throw e;
+					}
+				} else {
+					task = new Task(child, true, output);
+				}
+				submit(task);
+				return true;
+			}
+
+			private void emit(Resource resource) {
+				put(output, resolver == null ? resource : resource.getPath());
+			}
+
+			private void put(BlockingQueue<Object> queue, Object item) {
+				try {
+					while (!queue.offer(item, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+						if (isCancelled()) {
+							throw new CancellationException();
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CancellationException();
+				}
+			}
+		}
+	}
+}
@@ -36,8 +36,32 @@ public class ResourceTreeProvider implements TreeProvider<Resource> {
 
 	private final JcrTypeResolver typeResolver;
 
+	private final int parallelism;
+
+	private final boolean ordered;
+
 	public ResourceTreeProvider(ResourceResolver resolver) {
-		this.typeResolver = new SessionJcrTypeResolver(resolver);
+		this(new SessionJcrTypeResolver(resolver), Runtime.getRuntime().availableProcessors(), true);
+	}
+
+	private ResourceTreeProvider(JcrTypeResolver typeResolver, int parallelism, boolean ordered) {
+		this.typeResolver = typeResolver;
+		this.parallelism = parallelism;
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Create provider which uses given settings for the parallel traversal.
+	 * 
+	 * @param parallelism Maximum number of threads traversing the tree
+	 * @param ordered If true, the resources are returned in the DFS order
+	 * @return new provider
+	 */
+	public ResourceTreeProvider withParallelism(int parallelism, boolean ordered) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism has to be positive: " + parallelism);
+		}
+		return new ResourceTreeProvider(typeResolver, parallelism, ordered);
 	}
 
 	@Override
@@ -65,6 +89,17 @@ public class ResourceTreeProvider implements TreeProvider<Resource> {
 		return new JcrQueryIterator(segments, resource, typeResolver);
 	}
 
+	/**
+	 * List the descendants of the resource, traversing the tree with the parallelism of this provider. Used by
+	 * the {@link org.apache.sling.query.api.SearchStrategy#PARALLEL} strategy.
+	 * 
+	 * @param resource Root of the traversed tree
+	 * @return iterator over the descendants
+	 */
+	public Iterator<Resource> listDescendantsInParallel(Resource resource) {
+		return new ParallelTraversalIterator(resource, this, parallelism, ordered);
+	}
+
 	@Override
 	public boolean sameElement(Resource o1, Resource o2) {
 		if (o1 == null && o2 == null) {
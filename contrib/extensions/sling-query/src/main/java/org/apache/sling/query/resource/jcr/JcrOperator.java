@@ -25,18 +25,33 @@ public enum JcrOperator {
 		public String getJcrQueryFragment(String key, String value) {
 			return String.format("s.[%s] LIKE '%%%s%%'", key, value);
 		}
+
+		@Override
+		public boolean isExact(String value) {
+			return !containsWildcard(value);
+		}
 	},
 	CONTAINS_WORD("~=") {
 		@Override
 		public String getJcrQueryFragment(String key, String value) {
 			return CONTAINS.getJcrQueryFragment(key, value);
 		}
+
+		@Override
+		public boolean isExact(String value) {
+			return false;
+		}
 	},
 	ENDS_WITH("$=") {
 		@Override
 		public String getJcrQueryFragment(String key, String value) {
 			return String.format("s.[%s] LIKE '%%%s'", key, value);
 		}
+
+		@Override
+		public boolean isExact(String value) {
+			return !containsWildcard(value);
+		}
 	},
 	EQUALS("=") {
 		@Override
@@ -49,12 +64,23 @@ public enum JcrOperator {
 		public String getJcrQueryFragment(String key, String value) {
 			return String.format("s.[%s] != '%s'", key, value);
 		}
+
+		@Override
+		public boolean isExact(String value) {
+			// the negated comparison of multi-valued properties differs from the in-memory check
+			return false;
+		}
 	},
 	STARTS_WITH("^=") {
 		@Override
 		public String getJcrQueryFragment(String key, String value) {
 			return String.format("s.[%s] LIKE '%s%%'", key, value);
 		}
+
+		@Override
+		public boolean isExact(String value) {
+			return !containsWildcard(value);
+		}
 	};
 
 	private final String operator;
@@ -65,6 +91,18 @@ public enum JcrOperator {
 
 	public abstract String getJcrQueryFragment(String key, String value);
 
+	/**
+	 * @return true if the query fragment matches exactly the same values as the in-memory operator, false if
+	 * it matches more of them
+	 */
+	public boolean isExact(String value) {
+		return true;
+	}
+
+	private static boolean containsWildcard(String value) {
+		return value.indexOf('%') >= 0 || value.indexOf('_') >= 0;
+	}
+
 	public static JcrOperator getSelectorOperator(String operator) {
 		for (JcrOperator o : values()) {
 			if (o.operator.equals(operator)) {
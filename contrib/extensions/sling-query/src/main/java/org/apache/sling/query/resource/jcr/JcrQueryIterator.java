@@ -19,37 +19,136 @@
 
 package org.apache.sling.query.resource.jcr;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.query.iterator.AbstractIterator;
 import org.apache.sling.query.resource.jcr.query.JcrQueryBuilder;
+import org.apache.sling.query.resource.jcr.query.JcrQueryPlan;
 import org.apache.sling.query.selector.parser.SelectorSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class JcrQueryIterator extends AbstractIterator<Resource> {
 
+	private static final Logger LOG = LoggerFactory.getLogger(JcrQueryIterator.class);
+
 	private final ResourceResolver resolver;
 
-	private final String query;
+	private final JcrQueryPlan plan;
+
+	private final String rootPath;
 
 	private Iterator<Resource> currentIterator;
 
+	private List<Set<String>> ancestors;
+
+	private int count;
+
 	public JcrQueryIterator(List<SelectorSegment> segments, Resource root, JcrTypeResolver typeResolver) {
-		JcrQueryBuilder builder = new JcrQueryBuilder(typeResolver);
-		query = builder.buildQuery(segments, root.getPath());
-		resolver = root.getResourceResolver();
+		this(new JcrQueryBuilder(typeResolver).plan(segments, root.getPath()), root.getPath(), root
+				.getResourceResolver());
+	}
+
+	private JcrQueryIterator(JcrQueryPlan plan, String rootPath, ResourceResolver resolver) {
+		this.plan = plan;
+		this.rootPath = rootPath;
+		this.resolver = resolver;
 	}
 
 	@Override
 	protected Resource getElement() {
 		if (currentIterator == null) {
-			currentIterator = resolver.findResources(query, "JCR-SQL2");
+			LOG.debug("Executing query plan\n{}", plan);
+			ancestors = new ArrayList<Set<String>>();
+			for (JcrQueryPlan semiJoin : plan.getSemiJoins()) {
+				ancestors.add(findAncestors(semiJoin));
+			}
+			currentIterator = execute();
+		}
+		while (currentIterator.hasNext() && (plan.getLimit() < 0 || count < plan.getLimit())) {
+			Resource resource = currentIterator.next();
+			count++;
+			if (isAncestorOfAll(resource.getPath())) {
+				return resource;
+			}
+		}
+		return null;
+	}
+
+	private boolean isAncestorOfAll(String path) {
+		for (Set<String> paths : ancestors) {
+			if (!paths.contains(path)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Set<String> findAncestors(JcrQueryPlan semiJoin) {
+		Set<String> paths = new HashSet<String>();
+		Iterator<Resource> iterator = new JcrQueryIterator(semiJoin, rootPath, resolver);
+		while (iterator.hasNext()) {
+			String parent = ResourceUtil.getParent(iterator.next().getPath());
+			while (parent != null && !parent.equals(rootPath) && paths.add(parent)) {
+				parent = ResourceUtil.getParent(parent);
+			}
+		}
+		return paths;
+	}
+
+	private Iterator<Resource> execute() {
+		if (plan.getLimit() >= 0) {
+			// JCR-SQL2 doesn't have the LIMIT clause, it's only available through the query API
+			Session session = resolver.adaptTo(Session.class);
+			if (session != null) {
+				try {
+					Query query = session.getWorkspace().getQueryManager()
+							.createQuery(plan.getQuery(), Query.JCR_SQL2);
+					query.setLimit(plan.getLimit());
+					return new NodeResourceIterator(query.execute().getNodes(), resolver);
+				} catch (RepositoryException e) {
+					LOG.error("Can't execute query " + plan.getQuery(), e);
+				}
+			}
+		}
+		return resolver.findResources(plan.getQuery(), "JCR-SQL2");
+	}
+
+	private static class NodeResourceIterator extends AbstractIterator<Resource> {
+
+		private final NodeIterator nodes;
+
+		private final ResourceResolver resolver;
+
+		public NodeResourceIterator(NodeIterator nodes, ResourceResolver resolver) {
+			this.nodes = nodes;
+			this.resolver = resolver;
 		}
-		if (currentIterator.hasNext()) {
-			return currentIterator.next();
-		} else {
+
+		@Override
+		protected Resource getElement() {
+			while (nodes.hasNext()) {
+				try {
+					Resource resource = resolver.getResource(nodes.nextNode().getPath());
+					if (resource != null) {
+						return resource;
+					}
+				} catch (RepositoryException e) {
+					LOG.error("Can't read query result", e);
+				}
+			}
 			return null;
 		}
 	}
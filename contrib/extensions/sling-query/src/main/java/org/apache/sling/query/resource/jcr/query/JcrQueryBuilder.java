@@ -27,8 +27,17 @@ import org.apache.sling.query.resource.jcr.JcrOperator;
 import org.apache.sling.query.resource.jcr.JcrTypeResolver;
 import org.apache.sling.query.resource.jcr.query.Formula.Operator;
 import org.apache.sling.query.selector.parser.Attribute;
+import org.apache.sling.query.selector.parser.Modifier;
+import org.apache.sling.query.selector.parser.Selector;
+import org.apache.sling.query.selector.parser.SelectorParser;
 import org.apache.sling.query.selector.parser.SelectorSegment;
 
+/**
+ * Compiles selector segments into a {@link JcrQueryPlan}. Type, name, attribute conditions and as much of the
+ * modifiers as possible ({@code :not()}, {@code :has()}, {@code :first}, {@code :eq()}, {@code :lt()}) are pushed
+ * down into the query, so the repository index does the filtering. Query results are always checked against the
+ * whole selector in memory, so the query may return more resources than needed, but never less.
+ */
 public class JcrQueryBuilder {
 
 	private final JcrTypeResolver typeResolver;
@@ -38,24 +47,61 @@ public class JcrQueryBuilder {
 	}
 
 	public String buildQuery(List<SelectorSegment> segments, String rootPath) {
+		return plan(segments, rootPath).getQuery();
+	}
+
+	public JcrQueryPlan plan(List<SelectorSegment> segments, String rootPath) {
+		return plan(segments, rootPath, true);
+	}
+
+	private JcrQueryPlan plan(List<SelectorSegment> segments, String rootPath, boolean limitAllowed) {
+		String primaryType = findPrimaryType(segments);
+		boolean single = segments.size() == 1;
+
+		List<Term> alternatives = new ArrayList<Term>();
+		List<String> residual = new ArrayList<String>();
+		List<JcrQueryPlan> semiJoins = new ArrayList<JcrQueryPlan>();
+		boolean exact = true;
+		boolean unconditional = false;
+		int limit = -1;
+		for (SelectorSegment segment : segments) {
+			SegmentPlan segmentPlan = planSegment(segment, primaryType, rootPath, single, single && limitAllowed);
+			exact &= segmentPlan.exact;
+			residual.addAll(segmentPlan.residual);
+			semiJoins.addAll(segmentPlan.semiJoins);
+			limit = segmentPlan.limit;
+			if (segmentPlan.conditions.isEmpty()) {
+				unconditional = true;
+			} else {
+				alternatives.add(new Formula(Operator.AND, segmentPlan.conditions));
+			}
+		}
+
+		Formula formula = null;
+		if (unconditional && !alternatives.isEmpty()) {
+			// one of the alternatives matches every resource of the primary type
+			exact = false;
+		} else if (!alternatives.isEmpty()) {
+			formula = new Formula(Operator.OR, alternatives);
+		}
+
 		StringBuilder query = new StringBuilder();
 		query.append("SELECT * FROM [");
-		query.append(findPrimaryType(segments));
+		query.append(primaryType);
 		query.append("]");
 		query.append(" AS s");
 
-		String conditionString = getConditionString(segments, rootPath);
+		String conditionString = getConditionString(formula, rootPath);
 		if (StringUtils.isNotBlank(conditionString)) {
 			query.append(" WHERE ").append(conditionString);
 		}
-		return query.toString();
+		return new JcrQueryPlan(query.toString(), limit, exact, semiJoins, residual);
 	}
 
-	private String getConditionString(List<SelectorSegment> segments, String rootPath) {
-		Formula formula = prepareAlternativeConditions(segments);
+	private static String getConditionString(Formula formula, String rootPath) {
 		if (StringUtils.isNotBlank(rootPath) && !"/".equals(rootPath)) {
 			List<Term> conditions = new ArrayList<Term>();
-			conditions.add(new Atomic(String.format("ISDESCENDANTNODE(['%s'])", rootPath)));
+			conditions.add(new Atomic(String.format("ISDESCENDANTNODE(['%s'])", escape(rootPath))));
 			if (formula != null) {
 				conditions.add(formula);
 			}
@@ -73,7 +119,8 @@ public class JcrQueryBuilder {
 		for (SelectorSegment s : segments) {
 			String type = s.getType();
 			if (!typeResolver.isJcrType(type)) {
-				continue;
+				// resources of any type may match the segment
+				return "nt:base";
 			}
 			if (result == null) {
 				result = type;
@@ -89,53 +136,217 @@ public class JcrQueryBuilder {
 		return result;
 	}
 
-	private static Formula prepareAlternativeConditions(List<SelectorSegment> segments) {
-		List<Term> list = new ArrayList<Term>();
-		for (SelectorSegment segment : segments) {
-			Formula conditions = prepareSegmentConditions(segment.getType(), segment.getName(),
-					segment.getAttributes());
-			if (conditions != null) {
-				list.add(conditions);
+	/**
+	 * @param primaryType type selected by the query or null if the segment is negated
+	 * @param standalone true if it's the only segment of the query, so its results may be filtered by the
+	 * {@code :has()} modifier
+	 * @param limitAllowed true if the positional modifiers may limit the number of query results
+	 */
+	private SegmentPlan planSegment(SelectorSegment segment, String primaryType, String rootPath,
+			boolean standalone, boolean limitAllowed) {
+		SegmentPlan plan = new SegmentPlan();
+		addTypeCondition(plan, segment.getType(), primaryType);
+		if (StringUtils.isNotBlank(segment.getName())) {
+			plan.conditions.add(new Atomic(String.format("NAME(s) = '%s'", escape(segment.getName()))));
+		}
+		if (segment.getAttributes() != null) {
+			for (Attribute a : segment.getAttributes()) {
+				addAttributeCondition(plan, a);
 			}
 		}
-		if (list.isEmpty()) {
-			return null;
+
+		boolean positional = false;
+		for (Modifier modifier : segment.getModifiers()) {
+			String name = modifier.getName().toLowerCase();
+			if (positional) {
+				// modifiers following a positional one are applied to its result
+				plan.addResidual(describe(modifier));
+			} else if ("not".equals(name)) {
+				addNotCondition(plan, modifier, rootPath);
+			} else if ("has".equals(name) && standalone) {
+				addSemiJoin(plan, modifier, rootPath);
+			} else if ("first".equals(name) || "eq".equals(name) || "lt".equals(name)) {
+				positional = true;
+				addLimit(plan, modifier, limitAllowed);
+			} else {
+				positional = "gt".equals(name) || "last".equals(name) || "odd".equals(name) || "even".equals(name);
+				plan.addResidual(describe(modifier));
+			}
+		}
+		return plan;
+	}
+
+	private void addTypeCondition(SegmentPlan plan, String type, String primaryType) {
+		if (StringUtils.isBlank(type)) {
+			return;
+		}
+		if (!StringUtils.contains(type, ':')) {
+			plan.conditions.add(new Atomic(String.format("s.[sling:resourceType] = '%s'", escape(type))));
+			// resource super types are not checked by the query
+			plan.narrowed = true;
+		} else if (type.equals(primaryType)) {
+			// matched by the FROM clause
+		} else if (primaryType == null && typeResolver.isJcrType(type)) {
+			plan.conditions.add(new Atomic(String.format("s.[jcr:primaryType] = '%s'", escape(type))));
+			// sub types and mixins are not checked by the query
+			plan.narrowed = true;
 		} else {
-			return new Formula(Operator.OR, list);
+			plan.addResidual(type);
 		}
 	}
 
-	private static Formula prepareSegmentConditions(String resourceType, String resourceName,
-			List<Attribute> attributes) {
-		List<Term> conditions = new ArrayList<Term>();
-		if (StringUtils.isNotBlank(resourceType) && !StringUtils.contains(resourceType, ':')) {
-			conditions.add(new Atomic(String.format("s.[sling:resourceType] = '%s'", resourceType)));
+	private static void addAttributeCondition(SegmentPlan plan, Attribute attribute) {
+		String description = describe(attribute);
+		if (attribute.getKey().contains("/")) {
+			plan.addResidual(description);
+			return;
+		}
+
+		String key = escape(attribute.getKey());
+		if (attribute.getValue() == null) {
+			plan.conditions.add(new Atomic(String.format("s.[%s] IS NOT NULL", key)));
+			return;
+		}
+
+		JcrOperator operator = JcrOperator.getSelectorOperator(attribute.getOperator());
+		String value = escape(attribute.getValue());
+		plan.conditions.add(new Atomic(operator.getJcrQueryFragment(key, value)));
+		if (!operator.isExact(attribute.getValue())) {
+			// the query condition matches more values, the actual check is done in memory
+			plan.addResidual(description);
 		}
-		if (StringUtils.isNotBlank(resourceName)) {
-			conditions.add(new Atomic(String.format("NAME(s) = '%s'", resourceName)));
+	}
+
+	/**
+	 * Pushes down {@code :not()} if its selector is a list of single segments without modifiers, which
+	 * conditions can be negated without rejecting any resource matching in memory.
+	 */
+	private void addNotCondition(SegmentPlan plan, Modifier modifier, String rootPath) {
+		List<Term> alternatives = new ArrayList<Term>();
+		boolean narrowed = false;
+		for (Selector selector : SelectorParser.parse(modifier.getArgument())) {
+			if (selector.getSegments().size() != 1) {
+				alternatives = null;
+				break;
+			}
+			SelectorSegment segment = selector.getSegments().get(0);
+			if (!segment.getModifiers().isEmpty()) {
+				alternatives = null;
+				break;
+			}
+			SegmentPlan negated = planSegment(segment, null, rootPath, false, false);
+			if (!negated.exact || negated.conditions.isEmpty()) {
+				alternatives = null;
+				break;
+			}
+			narrowed |= negated.narrowed;
+			alternatives.add(new Formula(Operator.AND, negated.conditions));
 		}
-		if (attributes != null) {
-			for (Attribute a : attributes) {
-				String attributeCondition = getAttributeCondition(a);
-				if (StringUtils.isNotBlank(attributeCondition)) {
-					conditions.add(new Atomic(attributeCondition));
+
+		if (alternatives == null || alternatives.isEmpty()) {
+			plan.addResidual(describe(modifier));
+			return;
+		}
+		String condition = new Formula(Operator.OR, alternatives).buildString();
+		if (!condition.startsWith("(")) {
+			condition = "(" + condition + ")";
+		}
+		plan.conditions.add(new Atomic("NOT " + condition));
+		if (narrowed) {
+			plan.addResidual(describe(modifier));
+		}
+	}
+
+	/**
+	 * Resources matching {@code :has()} are ancestors of the resources matching its selector, so they are
+	 * looked for with a separate query which results are joined on the path.
+	 */
+	private void addSemiJoin(SegmentPlan plan, Modifier modifier, String rootPath) {
+		List<Selector> selectors = SelectorParser.parse(modifier.getArgument());
+		JcrQueryPlan semiJoin = plan(SelectorParser.getFirstSegmentFromEachSelector(selectors), rootPath, false);
+		plan.semiJoins.add(semiJoin);
+		boolean singleSegments = true;
+		for (Selector selector : selectors) {
+			singleSegments &= selector.getSegments().size() == 1;
+		}
+		if (!semiJoin.isExact() || !singleSegments) {
+			plan.addResidual(describe(modifier));
+		}
+	}
+
+	/**
+	 * Limits the number of query results if the positional modifier is applied to the results of the query
+	 * itself.
+	 */
+	private static void addLimit(SegmentPlan plan, Modifier modifier, boolean limitAllowed) {
+		String name = modifier.getName().toLowerCase();
+		int limit = -1;
+		boolean rejects = false;
+		if ("first".equals(name)) {
+			limit = 1;
+		} else {
+			try {
+				int index = Integer.parseInt(StringUtils.trim(modifier.getArgument()));
+				if ("eq".equals(name)) {
+					limit = index + 1;
+					rejects = true;
+				} else {
+					limit = index;
 				}
+			} catch (NumberFormatException e) {
+				limit = -1;
 			}
 		}
-		if (conditions.isEmpty()) {
-			return null;
+
+		if (limit > 0 && limitAllowed && plan.exact && plan.semiJoins.isEmpty()) {
+			plan.limit = limit;
+			if (rejects) {
+				plan.addResidual(describe(modifier));
+			}
 		} else {
-			return new Formula(Operator.AND, conditions);
+			plan.addResidual(describe(modifier));
 		}
 	}
 
-	private static String getAttributeCondition(Attribute attribute) {
-		if (attribute.getKey().contains("/")) {
-			return null;
+	private static String describe(Attribute attribute) {
+		if (attribute.getValue() == null) {
+			return String.format("[%s]", attribute.getKey());
+		} else {
+			return String.format("[%s%s%s]", attribute.getKey(), attribute.getOperator(), attribute.getValue());
 		}
+	}
 
-		JcrOperator operator = JcrOperator.getSelectorOperator(attribute.getOperator());
-		String value = StringUtils.replace(attribute.getValue(), "'", "''");
-		return operator.getJcrQueryFragment(attribute.getKey(), value);
+	private static String describe(Modifier modifier) {
+		if (modifier.getArgument() == null) {
+			return ":" + modifier.getName();
+		} else {
+			return String.format(":%s(%s)", modifier.getName(), modifier.getArgument());
+		}
+	}
+
+	private static String escape(String value) {
+		return StringUtils.replace(value, "'", "''");
+	}
+
+	private static class SegmentPlan {
+
+		private final List<Term> conditions = new ArrayList<Term>();
+
+		private final List<String> residual = new ArrayList<String>();
+
+		private final List<JcrQueryPlan> semiJoins = new ArrayList<JcrQueryPlan>();
+
+		// false if some resources returned by the query don't match the segment
+		private boolean exact = true;
+
+		// true if some conditions don't match all the resources matching the segment
+		private boolean narrowed;
+
+		private int limit = -1;
+
+		private void addResidual(String description) {
+			residual.add(description);
+			exact = false;
+		}
 	}
 }
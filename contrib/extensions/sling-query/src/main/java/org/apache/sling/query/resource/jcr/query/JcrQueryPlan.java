@@ -0,0 +1,120 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.query.resource.jcr.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Result of the compilation of selector segments into a JCR-SQL2 query. Conditions which couldn't be pushed
+ * down into the query are listed as residual and have to be evaluated in memory.
+ */
+public class JcrQueryPlan {
+
+	private final String query;
+
+	private final int limit;
+
+	private final boolean exact;
+
+	private final List<JcrQueryPlan> semiJoins;
+
+	private final List<String> residual;
+
+	JcrQueryPlan(String query, int limit, boolean exact, List<JcrQueryPlan> semiJoins, List<String> residual) {
+		this.query = query;
+		this.limit = limit;
+		this.exact = exact;
+		this.semiJoins = Collections.unmodifiableList(new ArrayList<JcrQueryPlan>(semiJoins));
+		this.residual = Collections.unmodifiableList(new ArrayList<String>(residual));
+	}
+
+	/**
+	 * @return JCR-SQL2 query
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return maximum number of query results needed or -1 if all of them are needed
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return true if every query result matches the selector segments, so the in-memory evaluation won't
+	 * reject any of them
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * @return plans of the {@code :has()} selectors; a query result is kept only if it's an ancestor of a
+	 * result of each of these plans
+	 */
+	public List<JcrQueryPlan> getSemiJoins() {
+		return semiJoins;
+	}
+
+	/**
+	 * @return parts of the selector evaluated in memory
+	 */
+	public List<String> getResidual() {
+		return residual;
+	}
+
+	/**
+	 * @return human readable description of the plan
+	 */
+	public String explain() {
+		StringBuilder builder = new StringBuilder();
+		explain(builder, "");
+		return builder.toString();
+	}
+
+	private void explain(StringBuilder builder, String indent) {
+		builder.append(indent).append("query: ").append(query).append('\n');
+		if (limit >= 0) {
+			builder.append(indent).append("limit: ").append(limit).append('\n');
+		}
+		for (JcrQueryPlan semiJoin : semiJoins) {
+			builder.append(indent).append("ancestors of:\n");
+			semiJoin.explain(builder, indent + "  ");
+		}
+		builder.append(indent).append("in memory: ");
+		if (residual.isEmpty()) {
+			builder.append(exact ? "none" : "selector check");
+		} else {
+			builder.append(StringUtils.join(residual, ", "));
+		}
+		builder.append('\n');
+	}
+
+	@Override
+	public String toString() {
+		return explain();
+	}
+}
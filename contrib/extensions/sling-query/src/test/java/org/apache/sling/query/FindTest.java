@@ -26,6 +26,7 @@ import static org.apache.sling.query.TestUtils.assertResourceSetEquals;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.query.api.SearchStrategy;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class FindTest {
@@ -84,4 +85,35 @@ public class FindTest {
 		assertResourceListEquals(query.iterator(), "jcr:content", "configParsys", "tab", "items",
 				"localizedtext", "lang", "text", "tab_0", "items", "text_0", "text");
 	}
+
+	@Test
+	public void testParallelFind() {
+		SlingQuery query = $(tree.getChild("application/configuration/labels")).parallel(4, true).find("");
+		assertResourceListEquals(query.iterator(), "jcr:content", "configParsys", "tab", "items",
+				"localizedtext", "lang", "text", "tab_0", "items", "text_0", "text");
+	}
+
+	@Test
+	public void testParallelFindWithSingleThread() {
+		SlingQuery query = $(tree.getChild("application/configuration/labels")).parallel(1, true).find("");
+		assertResourceListEquals(query.iterator(), "jcr:content", "configParsys", "tab", "items",
+				"localizedtext", "lang", "text", "tab_0", "items", "text_0", "text");
+	}
+
+	@Test
+	public void testUnorderedParallelFind() {
+		SlingQuery query = $(tree.getChild("application/configuration/labels")).parallel(4, false).find();
+		assertResourceSetEquals(query.iterator(), "jcr:content", "configParsys", "tab", "tab_0", "items",
+				"items", "localizedtext", "text", "text_0", "text", "lang");
+		Assert.assertEquals(11, query.asList().size());
+	}
+
+	@Test
+	public void testParallelFindWithFilter() {
+		SlingQuery query = $(tree).parallel(3, false).find("cq-commons/config/components/text");
+		assertResourceSetEquals(query.iterator(), "text", "text");
+		Assert.assertEquals(
+				$(tree).searchStrategy(SearchStrategy.DFS).find().asList().size(),
+				$(tree).parallel(3, false).find().asList().size());
+	}
 }
@@ -0,0 +1,179 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.query.mock;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * Resource resolver over a tree of mock resources. The resources returned by the resolver can't be used once it
+ * is closed. Clones share the tree and count how many of them have been opened and are still open.
+ */
+public class ResourceResolverMock implements InvocationHandler {
+
+	private final Resource tree;
+
+	private final boolean cloneable;
+
+	private final AtomicInteger clones;
+
+	private final AtomicInteger openClones;
+
+	private final boolean isClone;
+
+	private final ResourceResolver resolver;
+
+	private volatile boolean closed;
+
+	public ResourceResolverMock(Resource tree, boolean cloneable) {
+		this(tree, cloneable, new AtomicInteger(), new AtomicInteger(), false);
+	}
+
+	private ResourceResolverMock(Resource tree, boolean cloneable, AtomicInteger clones, AtomicInteger openClones,
+			boolean isClone) {
+		this.tree = tree;
+		this.cloneable = cloneable;
+		this.clones = clones;
+		this.openClones = openClones;
+		this.isClone = isClone;
+		this.resolver = (ResourceResolver) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ResourceResolver.class }, this);
+	}
+
+	public ResourceResolver getResolver() {
+		return resolver;
+	}
+
+	public int getClones() {
+		return clones.get();
+	}
+
+	public int getOpenClones() {
+		return openClones.get();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		if ("getResource".equals(name) && args.length == 1) {
+			return getResource((String) args[0]);
+		} else if ("clone".equals(name)) {
+			checkLive();
+			if (!cloneable) {
+				throw new LoginException("Can't clone the resolver");
+			}
+			clones.incrementAndGet();
+			openClones.incrementAndGet();
+			return new ResourceResolverMock(tree, cloneable, clones, openClones, true).resolver;
+		} else if ("close".equals(name)) {
+			if (!closed && isClone) {
+				openClones.decrementAndGet();
+			}
+			closed = true;
+			return null;
+		} else if ("isLive".equals(name)) {
+			return !closed;
+		} else if ("adaptTo".equals(name)) {
+			return null;
+		} else if ("equals".equals(name)) {
+			return proxy == args[0];
+		} else if ("hashCode".equals(name)) {
+			return System.identityHashCode(proxy);
+		} else if ("toString".equals(name)) {
+			return String.format("ResourceResolverMock[clone=%s, closed=%s]", isClone, closed);
+		}
+		throw new UnsupportedOperationException(name);
+	}
+
+	private Resource getResource(String path) {
+		checkLive();
+		if (StringUtils.isEmpty(path) || "/".equals(path)) {
+			return wrap(tree);
+		}
+		return wrap(tree.getChild(StringUtils.removeStart(path, "/")));
+	}
+
+	private void checkLive() {
+		if (closed) {
+			throw new IllegalStateException("Resource resolver is already closed");
+		}
+	}
+
+	private Resource wrap(Resource resource) {
+		if (resource == null) {
+			return null;
+		}
+		return (Resource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Resource.class },
+				new ResourceHandler(resource));
+	}
+
+	private class ResourceHandler implements InvocationHandler {
+
+		private final Resource resource;
+
+		private ResourceHandler(Resource resource) {
+			this.resource = resource;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("getResourceResolver".equals(name)) {
+				return resolver;
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("toString".equals(name)) {
+				return resource.toString();
+			}
+
+			checkLive();
+			if ("getParent".equals(name)) {
+				return wrap(resource.getParent());
+			} else if ("getChild".equals(name)) {
+				return wrap(resource.getChild((String) args[0]));
+			} else if ("listChildren".equals(name)) {
+				List<Resource> children = new ArrayList<Resource>();
+				Iterator<Resource> iterator = resource.listChildren();
+				while (iterator.hasNext()) {
+					children.add(wrap(iterator.next()));
+				}
+				return children.iterator();
+			}
+			try {
+				return method.invoke(resource, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
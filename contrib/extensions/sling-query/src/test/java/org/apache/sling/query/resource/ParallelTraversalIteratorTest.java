@@ -0,0 +1,142 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.query.resource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.query.TestUtils;
+import org.apache.sling.query.iterator.tree.DfsTreeIterator;
+import org.apache.sling.query.mock.ResourceMock;
+import org.apache.sling.query.mock.ResourceResolverMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelTraversalIteratorTest {
+
+	private final Resource tree = TestUtils.getTree();
+
+	private final ResourceTreeProvider provider = new ResourceTreeProvider(null);
+
+	@Test
+	public void testOrderedTraversalUsesClones() {
+		ResourceResolverMock mock = new ResourceResolverMock(tree, true);
+		ResourceResolver resolver = mock.getResolver();
+		Resource root = resolver.getResource("/");
+
+		List<String> paths = getPaths(new ParallelTraversalIterator(root, provider, 4, true), resolver);
+		Assert.assertEquals(getPaths(new DfsTreeIterator<Resource>(root, provider), resolver), paths);
+		Assert.assertTrue(mock.getClones() > 0);
+		Assert.assertEquals(0, mock.getOpenClones());
+	}
+
+	@Test
+	public void testUnorderedTraversalUsesClones() {
+		ResourceResolverMock mock = new ResourceResolverMock(tree, true);
+		ResourceResolver resolver = mock.getResolver();
+		Resource root = resolver.getResource("/application");
+
+		List<String> paths = getPaths(new ParallelTraversalIterator(root, provider, 3, false), resolver);
+		List<String> expected = getPaths(new DfsTreeIterator<Resource>(root, provider), resolver);
+		Assert.assertEquals(expected.size(), paths.size());
+		Assert.assertEquals(new HashSet<String>(expected), new HashSet<String>(paths));
+		Assert.assertEquals(0, mock.getOpenClones());
+	}
+
+	@Test
+	public void testFallbackWithoutClone() {
+		ResourceResolverMock mock = new ResourceResolverMock(tree, false);
+		ResourceResolver resolver = mock.getResolver();
+		Resource root = resolver.getResource("/");
+
+		List<String> paths = getPaths(new ParallelTraversalIterator(root, provider, 4, true), resolver);
+		Assert.assertEquals(getPaths(new DfsTreeIterator<Resource>(root, provider), resolver), paths);
+		Assert.assertEquals(0, mock.getClones());
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException {
+		ResourceResolverMock mock = new ResourceResolverMock(tree, true);
+		Resource root = mock.getResolver().getResource("/");
+
+		ParallelTraversalIterator iterator = new ParallelTraversalIterator(root, provider, 4, true);
+		Assert.assertNotNull(iterator.next());
+		iterator.cancel();
+		Assert.assertFalse(iterator.hasNext());
+		awaitClosedClones(mock);
+	}
+
+	@Test
+	public void testClosedResolverStopsTraversal() throws InterruptedException {
+		ResourceResolverMock mock = new ResourceResolverMock(tree, true);
+		Resource root = mock.getResolver().getResource("/");
+
+		ParallelTraversalIterator iterator = new ParallelTraversalIterator(root, provider, 4, false);
+		Assert.assertNotNull(iterator.next());
+		mock.getResolver().close();
+		awaitClosedClones(mock);
+	}
+
+	@Test
+	public void testTakeOverWhenPoolIsBusy() {
+		ResourceMock wideTree = new ResourceMock(null, "");
+		for (int i = 0; i < 1000; i++) {
+			wideTree.addChild(new ResourceMock(wideTree, "child-" + i));
+		}
+
+		// the tasks of the abandoned iterators wait until their full output queues are consumed
+		List<ParallelTraversalIterator> busy = new ArrayList<ParallelTraversalIterator>();
+		for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+			ParallelTraversalIterator iterator = new ParallelTraversalIterator(wideTree, provider, 1, true);
+			Assert.assertNotNull(iterator.next());
+			busy.add(iterator);
+		}
+		try {
+			List<String> paths = getPaths(new ParallelTraversalIterator(wideTree, provider, 4, true), null);
+			Assert.assertEquals(getPaths(new DfsTreeIterator<Resource>(wideTree, provider), null), paths);
+		} finally {
+			for (ParallelTraversalIterator iterator : busy) {
+				iterator.cancel();
+			}
+		}
+	}
+
+	private static List<String> getPaths(Iterator<Resource> iterator, ResourceResolver resolver) {
+		List<String> paths = new ArrayList<String>();
+		while (iterator.hasNext()) {
+			Resource resource = iterator.next();
+			// resources of the closed clones can't be used
+			Assert.assertSame(resolver, resource.getResourceResolver());
+			paths.add(resource.getPath());
+		}
+		return paths;
+	}
+
+	private static void awaitClosedClones(ResourceResolverMock mock) throws InterruptedException {
+		for (int i = 0; i < 50 && mock.getOpenClones() > 0; i++) {
+			Thread.sleep(100);
+		}
+		Assert.assertEquals(0, mock.getOpenClones());
+	}
+}
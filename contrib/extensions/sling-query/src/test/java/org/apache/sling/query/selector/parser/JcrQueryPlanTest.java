@@ -0,0 +1,158 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.query.selector.parser;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.sling.query.mock.MockTypeResolver;
+import org.apache.sling.query.resource.jcr.query.JcrQueryBuilder;
+import org.apache.sling.query.resource.jcr.query.JcrQueryPlan;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JcrQueryPlanTest {
+	@Test
+	public void attributeExists() {
+		JcrQueryPlan plan = plan("[key]", "/");
+		Assert.assertEquals("SELECT * FROM [nt:base] AS s WHERE s.[key] IS NOT NULL", plan.getQuery());
+		Assert.assertTrue(plan.isExact());
+	}
+
+	@Test
+	public void inexactOperatorIsCheckedInMemory() {
+		JcrQueryPlan plan = plan("[key~=value][key2=x_y]", "/");
+		Assert.assertEquals("SELECT * FROM [nt:base] AS s WHERE (s.[key] LIKE '%value%' AND s.[key2] = 'x_y')",
+				plan.getQuery());
+		Assert.assertFalse(plan.isExact());
+		Assert.assertEquals(Arrays.asList("[key~=value]"), plan.getResidual());
+
+		plan = plan("[key^=x_y]", "/");
+		Assert.assertEquals(Arrays.asList("[key^=x_y]"), plan.getResidual());
+	}
+
+	@Test
+	public void notEqualIsCheckedInMemory() {
+		JcrQueryPlan plan = plan("[key!=value]", "/");
+		Assert.assertEquals("SELECT * FROM [nt:base] AS s WHERE s.[key] != 'value'", plan.getQuery());
+		Assert.assertEquals(Arrays.asList("[key!=value]"), plan.getResidual());
+
+		plan = plan("cq:Page:not([key!=value])", "/");
+		Assert.assertEquals("SELECT * FROM [cq:Page] AS s", plan.getQuery());
+		Assert.assertFalse(plan.isExact());
+	}
+
+	@Test
+	public void notIsPushedDown() {
+		JcrQueryPlan plan = plan("cq:Page:not([hidden=true], #secret)", "/content");
+		Assert.assertEquals("SELECT * FROM [cq:Page] AS s WHERE (ISDESCENDANTNODE(['/content']) AND "
+				+ "NOT (s.[hidden] = 'true' OR NAME(s) = 'secret'))", plan.getQuery());
+		Assert.assertTrue(plan.isExact());
+	}
+
+	@Test
+	public void notWithResourceType() {
+		JcrQueryPlan plan = plan("cq:Page:not(my/type)", "/");
+		Assert.assertEquals("SELECT * FROM [cq:Page] AS s WHERE NOT (s.[sling:resourceType] = 'my/type')",
+				plan.getQuery());
+		Assert.assertEquals(Arrays.asList(":not(my/type)"), plan.getResidual());
+	}
+
+	@Test
+	public void notWithHierarchyIsCheckedInMemory() {
+		JcrQueryPlan plan = plan("cq:Page:not(cq:Page > cq:Page)", "/");
+		Assert.assertEquals("SELECT * FROM [cq:Page] AS s", plan.getQuery());
+		Assert.assertEquals(Arrays.asList(":not(cq:Page > cq:Page)"), plan.getResidual());
+
+		plan = plan("cq:Page:not([key~=value])", "/");
+		Assert.assertEquals("SELECT * FROM [cq:Page] AS s", plan.getQuery());
+		Assert.assertFalse(plan.isExact());
+	}
+
+	@Test
+	public void hasIsJoinedOnAncestors() {
+		JcrQueryPlan plan = plan("cq:Page:has(my/type)", "/content");
+		Assert.assertEquals("SELECT * FROM [cq:Page] AS s WHERE ISDESCENDANTNODE(['/content'])", plan.getQuery());
+		Assert.assertEquals(1, plan.getSemiJoins().size());
+		JcrQueryPlan semiJoin = plan.getSemiJoins().get(0);
+		Assert.assertEquals("SELECT * FROM [nt:base] AS s WHERE (ISDESCENDANTNODE(['/content']) AND "
+				+ "s.[sling:resourceType] = 'my/type')", semiJoin.getQuery());
+		Assert.assertTrue(plan.isExact());
+	}
+
+	@Test
+	public void firstIsLimited() {
+		JcrQueryPlan plan = plan("cq:Page[key=value]:first", "/");
+		Assert.assertEquals("SELECT * FROM [cq:Page] AS s WHERE s.[key] = 'value'", plan.getQuery());
+		Assert.assertEquals(1, plan.getLimit());
+		Assert.assertTrue(plan.isExact());
+
+		plan = plan("cq:Page:eq(3)", "/");
+		Assert.assertEquals(4, plan.getLimit());
+		Assert.assertEquals(Arrays.asList(":eq(3)"), plan.getResidual());
+
+		plan = plan("cq:Page:lt(3)", "/");
+		Assert.assertEquals(3, plan.getLimit());
+	}
+
+	@Test
+	public void noLimitAfterInMemoryFilter() {
+		JcrQueryPlan plan = plan("cq:Page:parent:first", "/");
+		Assert.assertEquals(-1, plan.getLimit());
+		Assert.assertEquals(Arrays.asList(":parent", ":first"), plan.getResidual());
+
+		plan = plan("cq:Page:has(my/type):first", "/");
+		Assert.assertEquals(-1, plan.getLimit());
+
+		plan = plan("cq:Page:first, cq:Type", "/");
+		Assert.assertEquals(-1, plan.getLimit());
+	}
+
+	@Test
+	public void modifiersAfterPositionalAreCheckedInMemory() {
+		JcrQueryPlan plan = plan("cq:Page:first:not([key=value])", "/");
+		Assert.assertEquals("SELECT * FROM [cq:Page] AS s", plan.getQuery());
+		Assert.assertEquals(1, plan.getLimit());
+		Assert.assertEquals(Arrays.asList(":not([key=value])"), plan.getResidual());
+	}
+
+	@Test
+	public void alternativeWithoutConditions() {
+		JcrQueryPlan plan = plan("[key=value], cq:Page", "/");
+		Assert.assertEquals("SELECT * FROM [nt:base] AS s", plan.getQuery());
+		Assert.assertFalse(plan.isExact());
+	}
+
+	@Test
+	public void explain() {
+		String explained = plan("cq:Page:has([key]):gt(1)", "/content").explain();
+		Assert.assertEquals("query: SELECT * FROM [cq:Page] AS s WHERE ISDESCENDANTNODE(['/content'])\n"
+				+ "ancestors of:\n"
+				+ "  query: SELECT * FROM [nt:base] AS s WHERE (ISDESCENDANTNODE(['/content']) AND s.[key] IS NOT NULL)\n"
+				+ "  in memory: none\n"
+				+ "in memory: :gt(1)\n", explained);
+	}
+
+	private static JcrQueryPlan plan(String selector, String root) {
+		List<Selector> selectors = SelectorParser.parse(selector);
+		List<SelectorSegment> segments = SelectorParser.getFirstSegmentFromEachSelector(selectors);
+		return new JcrQueryBuilder(new MockTypeResolver()).plan(segments, root);
+	}
+}
@@ -150,4 +150,20 @@ public abstract class InstallTask implements Comparable<InstallTask> {
     public boolean isAsynchronousTask() {
         return false;
     }
+
+    /**
+     * Tasks which can be executed concurrently to other tasks should return
+     * the name of a group. Tasks of the same group which are adjacent in
+     * the sorted list of tasks might be executed concurrently by the
+     * OSGi installer. Therefore the group name should be a prefix of the
+     * sort key.
+     * Asynchronous tasks are never executed concurrently.
+     *
+     * @return The group name or <code>null</code> if this task must not be
+     *         executed concurrently to other tasks (default).
+     * @since 1.4
+     */
+    public String getParallelGroup() {
+        return null;
+    }
 }
\ No newline at end of file
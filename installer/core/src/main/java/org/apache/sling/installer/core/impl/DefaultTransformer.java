@@ -99,6 +99,10 @@ public class DefaultTransformer
                 if ( headers.activationPolicy != null ) {
                     attr.put(Constants.BUNDLE_ACTIVATIONPOLICY, headers.activationPolicy);
                 }
+                // check for fragment
+                if ( headers.fragmentHost != null ) {
+                    attr.put(Constants.FRAGMENT_HOST, headers.fragmentHost);
+                }
 
                 final TransformationResult tr = new TransformationResult();
                 tr.setId(headers.symbolicName);
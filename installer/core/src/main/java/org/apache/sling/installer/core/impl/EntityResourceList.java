@@ -65,6 +65,13 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
     /** The listener. */
     private transient InstallationListener listener;
 
+    /**
+     * Incremented on each change of this group. If a resource is removed,
+     * its modification count is added as well, so the sum returned by
+     * {@link #getModificationCount()} never decreases.
+     */
+    private transient long modificationCount;
+
     public EntityResourceList(final String resourceId, final InstallationListener listener) {
         this.resourceId = resourceId;
         this.listener = listener;
@@ -188,6 +195,23 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
      */
     public void setResourceId(final String id) {
         this.resourceId = id;
+        this.modificationCount++;
+    }
+
+    /**
+     * Return the modification count of this group including all resources.
+     * The count increases whenever the persisted state of the group changes.
+     */
+    public long getModificationCount() {
+        long count = this.modificationCount;
+        for(final RegisteredResourceImpl rr : this.resources) {
+            count += rr.getModificationCount();
+        }
+        return count;
+    }
+
+    private void removed(final RegisteredResourceImpl rr) {
+        this.modificationCount += rr.getModificationCount() + 1;
     }
 
     /**
@@ -288,6 +312,7 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
      */
     public void setFinishState(final ResourceState state, final String alias) {
         this.alias = alias;
+        this.modificationCount++;
         this.setFinishState(state);
     }
 
@@ -329,6 +354,7 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
                         LOGGER.debug("Cleanup obsolete resource: {}", rr);
                         taskIter.remove();
                         this.cleanup(rr);
+                        this.removed((RegisteredResourceImpl)rr);
                     }
                 }
                 break;
@@ -337,6 +363,7 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
         }
         if ( add ) {
             resources.add(r);
+            this.modificationCount++;
         }
     }
 
@@ -355,6 +382,7 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
                     LOGGER.debug("Removing unused: {}", r);
                     i.remove();
                     this.cleanup(r);
+                    this.removed((RegisteredResourceImpl)r);
                 }
             }
             first = false;
@@ -383,7 +411,9 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
             // differently and trip the TreeSet.remove() search.
             final Set<RegisteredResourceImpl> copy = new HashSet<RegisteredResourceImpl>(resources);
             for(final RegisteredResource r : toDelete) {
-                copy.remove(r);
+                if ( copy.remove(r) ) {
+                    this.removed((RegisteredResourceImpl)r);
+                }
                 this.cleanup(r);
                 LOGGER.debug("Removing uninstalled from list: {}", r);
             }
@@ -35,6 +35,16 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.sling.commons.osgi.PropertiesUtil;
@@ -84,6 +94,15 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
      */
     private static final String START_LEVEL_HANDLING = "sling.installer.switchstartlevel";
 
+    /**
+     * The name of the framework property setting the number of threads used to
+     * invoke the transformers and to execute tasks of the same parallel group.
+     */
+    private static final String PARALLELISM = "sling.installer.parallelism";
+
+    /** Maximum number of queued jobs per worker thread. */
+    private static final int MAX_QUEUED_PER_THREAD = 16;
+
     /** The logger */
     private final Logger logger =  LoggerFactory.getLogger(this.getClass());
 
@@ -135,6 +154,9 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
     /** Switch start level on bundle update? */
     private final boolean switchStartLevel;
 
+    /** Executor for parallel transformations and tasks, <code>null</code> if disabled. */
+    private final ExecutorService executor;
+
     /**
      *  Constructor
      *
@@ -148,6 +170,27 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         this.listener = new InstallListener(ctx, logger);
         this.persistentList = new PersistentResourceList(f, listener);
         this.switchStartLevel = PropertiesUtil.toBoolean(ctx.getProperty(START_LEVEL_HANDLING), false);
+        final int parallelism = PropertiesUtil.toInteger(ctx.getProperty(PARALLELISM), 1);
+        if ( parallelism > 1 ) {
+            final AtomicInteger threadCounter = new AtomicInteger();
+            // the queue is bounded, if it is full the installer thread executes the work itself
+            final ThreadPoolExecutor tpe = new ThreadPoolExecutor(parallelism, parallelism,
+                    60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(parallelism * MAX_QUEUED_PER_THREAD),
+                    new ThreadFactory() {
+
+                        public Thread newThread(final Runnable r) {
+                            final Thread t = new Thread(r, "Apache Sling OSGi Installer Worker #" + threadCounter.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            tpe.allowCoreThreadTimeOut(true);
+            this.executor = tpe;
+        } else {
+            this.executor = null;
+        }
     }
 
     /**
@@ -196,6 +239,10 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
             logger.debug("Done waiting for background thread");
         }
 
+        if ( this.executor != null ) {
+            this.executor.shutdown();
+        }
+
         // remove file util
         FileDataStore.SHARED = null;
 
@@ -842,11 +889,11 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
                     t.start();
                     return ACTION.SHUTDOWN;
                 }
-                try {
-                    logger.debug("Executing task: {}", task);
-                    task.execute(ctx);
-                } catch (final Throwable t) {
-                    logger.error("Uncaught exception during task execution!", t);
+                final List<InstallTask> batch = (this.executor != null ? getParallelBatch(task, tasks) : null);
+                if ( batch != null ) {
+                    this.executeParallel(batch, ctx);
+                } else {
+                    this.executeTask(task, ctx);
                 }
             }
             // save new state
@@ -859,6 +906,96 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         return ACTION.SLEEP;
     }
 
+    /**
+     * Execute a single task.
+     */
+    private void executeTask(final InstallTask task, final InstallationContext ctx) {
+        try {
+            logger.debug("Executing task: {}", task);
+            task.execute(ctx);
+        } catch (final Throwable t) {
+            logger.error("Uncaught exception during task execution!", t);
+        }
+    }
+
+    /**
+     * Get the batch of tasks which can be executed concurrently to the given task.
+     * The batch contains the given task and all tasks of the same parallel
+     * group which directly follow in the sorted set. These tasks are removed from the set.
+     * @return The batch or <code>null</code> if the task can't be executed in parallel.
+     */
+    static List<InstallTask> getParallelBatch(final InstallTask task, final SortedSet<InstallTask> tasks) {
+        final String group = (task.isAsynchronousTask() ? null : task.getParallelGroup());
+        if ( group == null ) {
+            return null;
+        }
+        final List<InstallTask> batch = new ArrayList<InstallTask>();
+        batch.add(task);
+        synchronized ( tasks ) {
+            final Iterator<InstallTask> i = tasks.iterator();
+            while ( i.hasNext() ) {
+                final InstallTask next = i.next();
+                if ( next.isAsynchronousTask() || !group.equals(next.getParallelGroup()) ) {
+                    break;
+                }
+                batch.add(next);
+                i.remove();
+            }
+        }
+        if ( batch.size() == 1 ) {
+            return null;
+        }
+        return batch;
+    }
+
+    /**
+     * Execute the tasks concurrently and wait for all of them to finish.
+     */
+    private void executeParallel(final List<InstallTask> batch, final InstallationContext ctx) {
+        logger.debug("Executing {} tasks in parallel: {}", batch.size(), batch);
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        for(final InstallTask task : batch) {
+            try {
+                futures.add(this.executor.submit(new Runnable() {
+
+                    public void run() {
+                        executeTask(task, ctx);
+                    }
+                }));
+            } catch (final RejectedExecutionException ree) {
+                // executor has been shut down
+                this.executeTask(task, ctx);
+            }
+        }
+        for(final Future<?> future : futures) {
+            this.waitFor(future);
+        }
+    }
+
+    /**
+     * Wait for the future, even if the current thread is interrupted.
+     * @return The result or <code>null</code> if the execution failed.
+     */
+    private <T> T waitFor(final Future<T> future) {
+        boolean interrupted = false;
+        try {
+            while ( true ) {
+                try {
+                    return future.get();
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                } catch (final ExecutionException ee) {
+                    logger.error("Uncaught exception during parallel execution!", ee.getCause());
+                    return null;
+                }
+            }
+        } finally {
+            if ( interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Clean up and compact.
      * @return <code>true</code> if another cycle should be started.
@@ -879,42 +1016,46 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         final List<ServiceReference> serviceRefs = this.transformerTracker.getSortedServiceReferences();
 
         if ( serviceRefs.size() > 0 ) {
-            // Walk the list of unknown resources and invoke all transformers
-            int index = 0;
             final List<RegisteredResource> unknownList = this.persistentList.getUntransformedResources();
 
-            while ( index < unknownList.size() ) {
-                final RegisteredResource resource = unknownList.get(index);
-                for(final ServiceReference reference : serviceRefs) {
-                    final Long id = (Long)reference.getProperty(Constants.SERVICE_ID);
-                    // check if this transformer has already been invoked for the resource
-                    final String transformers = (String)((RegisteredResourceImpl)resource).getAttribute(ResourceTransformer.class.getName());
-                    if ( id == null ||
-                            (transformers != null && transformers.contains(":" + id + ':'))) {
-                        continue;
-                    }
-                    final ResourceTransformer transformer = (ResourceTransformer) this.transformerTracker.getService(reference);
-                    if ( transformer != null ) {
-                        try {
-                            final TransformationResult[] result = transformer.transform(resource);
-                            final String newTransformers = (transformers == null ? ":" + id + ':' : transformers + id + ':');
-                            ((RegisteredResourceImpl)resource).setAttribute(ResourceTransformer.class.getName(), newTransformers);
-                            if ( logger.isDebugEnabled() ) {
-                                logger.debug("Invoked transformer {} on {} : {}",
-                                        new Object[] {transformer, resource, Arrays.toString(result)});
-                            }
-                            if ( result != null && result.length > 0 ) {
-                                this.persistentList.transform(resource, result);
-                                changed = true;
-                                index--;
-                                break;
+            // invoke the transformers for all resources in parallel first
+            if ( this.executor != null && unknownList.size() > 1 ) {
+                final List<RegisteredResource> resources = new ArrayList<RegisteredResource>(unknownList);
+                final List<Future<TransformationResult[]>> futures = new ArrayList<Future<TransformationResult[]>>();
+                try {
+                    for(final RegisteredResource resource : resources) {
+                        futures.add(this.executor.submit(new Callable<TransformationResult[]>() {
+
+                            public TransformationResult[] call() {
+                                return transform(resource, serviceRefs);
                             }
-                        } catch (final Throwable t) {
-                            logger.error("Uncaught exception during resource transformation!", t);
-                        }
+                        }));
+                    }
+                } catch (final RejectedExecutionException ree) {
+                    // executor has been shut down, the remaining resources are transformed below
+                }
+                for(int i=0; i < futures.size(); i++) {
+                    final TransformationResult[] result = this.waitFor(futures.get(i));
+                    if ( result != null ) {
+                        this.persistentList.transform(resources.get(i), result);
+                        changed = true;
                     }
                 }
-                index++;
+            }
+
+            // Walk the list of unknown resources and invoke all transformers
+            // this handles resources added by a transformation as well
+            int index = 0;
+            while ( index < unknownList.size() ) {
+                final RegisteredResource resource = unknownList.get(index);
+                final TransformationResult[] result = this.transform(resource, serviceRefs);
+                if ( result != null ) {
+                    // the resource is removed from the list of unknown resources
+                    this.persistentList.transform(resource, result);
+                    changed = true;
+                } else {
+                    index++;
+                }
             }
         }
         if ( changed ) {
@@ -923,6 +1064,42 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         }
     }
 
+    /**
+     * Invoke the transformers on a single resource until one of them
+     * returns a result. Transformers which already have been invoked
+     * for the resource are skipped.
+     * @return The transformation result or <code>null</code>
+     */
+    private TransformationResult[] transform(final RegisteredResource resource, final List<ServiceReference> serviceRefs) {
+        for(final ServiceReference reference : serviceRefs) {
+            final Long id = (Long)reference.getProperty(Constants.SERVICE_ID);
+            // check if this transformer has already been invoked for the resource
+            final String transformers = (String)((RegisteredResourceImpl)resource).getAttribute(ResourceTransformer.class.getName());
+            if ( id == null ||
+                    (transformers != null && transformers.contains(":" + id + ':'))) {
+                continue;
+            }
+            final ResourceTransformer transformer = (ResourceTransformer) this.transformerTracker.getService(reference);
+            if ( transformer != null ) {
+                try {
+                    final TransformationResult[] result = transformer.transform(resource);
+                    final String newTransformers = (transformers == null ? ":" + id + ':' : transformers + id + ':');
+                    ((RegisteredResourceImpl)resource).setAttribute(ResourceTransformer.class.getName(), newTransformers);
+                    if ( logger.isDebugEnabled() ) {
+                        logger.debug("Invoked transformer {} on {} : {}",
+                                new Object[] {transformer, resource, Arrays.toString(result)});
+                    }
+                    if ( result != null && result.length > 0 ) {
+                        return result;
+                    }
+                } catch (final Throwable t) {
+                    logger.error("Uncaught exception during resource transformation!", t);
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * @see org.apache.sling.installer.api.tasks.RetryHandler#scheduleRetry()
      */
@@ -19,20 +19,23 @@
 package org.apache.sling.installer.core.impl;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.sling.installer.api.InstallableResource;
 import org.apache.sling.installer.api.event.InstallationListener;
@@ -47,9 +50,15 @@ import org.slf4j.LoggerFactory;
  */
 public class PersistentResourceList {
 
-    /** Serialization version. */
+    /** Serialization version of the data file used by previous versions. */
     private static final int VERSION = 2;
 
+    /** Journal key for the untransformed resources. */
+    private static final String KEY_UNTRANSFORMED = "untransformed";
+
+    /** Journal key prefix for the resource groups. */
+    private static final String KEY_ENTITY_PREFIX = "entity:";
+
     /** Entity id for restart active bundles. */
     public static final String RESTART_ACTIVE_BUNDLES_TYPE = "org.apache.sling.installer.core.restart.bundles";
     public static final String RESTART_ACTIVE_BUNDLES_ID = "org.apache.sling.installer.core.restart.bundles";
@@ -66,7 +75,7 @@ public class PersistentResourceList {
      */
     private final Map<String, EntityResourceList> data;
 
-    /** The persistence file. */
+    /** The persistence file used by previous versions. */
     private final File dataFile;
 
     /** All untransformed resources. */
@@ -74,14 +83,41 @@ public class PersistentResourceList {
 
     private final InstallationListener listener;
 
+    /** The journal. */
+    private final ResourceListJournal journal;
+
+    /** The records written by the last save. */
+    private final Map<String, PersistedRecord> persisted = new HashMap<String, PersistedRecord>();
+
+    /**
+     * Incremented on each change of the untransformed resources list. If a
+     * resource is removed, its modification count is added as well.
+     */
+    private long untransformedModificationCount;
+
     @SuppressWarnings("unchecked")
     public PersistentResourceList(final File dataFile, final InstallationListener listener) {
         this.dataFile = dataFile;
         this.listener = listener;
+        this.journal = new ResourceListJournal(getJournalFile(dataFile));
 
         Map<String, EntityResourceList> restoredData = null;
         List<RegisteredResource> unknownList = null;
-        if ( dataFile.exists() ) {
+        boolean migrate = false;
+        if ( this.journal.exists() ) {
+            try {
+                final Map<String, ByteBuffer> records = this.journal.read();
+                restoredData = new HashMap<String, EntityResourceList>();
+                unknownList = this.restore(records, restoredData);
+                logger.debug("Restored resource list: {}", restoredData);
+                logger.debug("Restored unknown resource list: {}", unknownList);
+            } catch (final IOException e) {
+                logger.warn("Unable to restore data, starting with empty list (" + e.getMessage() + ")", e);
+                restoredData = null;
+                unknownList = null;
+            }
+        } else if ( dataFile.exists() ) {
+            // migrate from the serialized format used by previous versions
             ObjectInputStream ois = null;
             try {
                 ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(dataFile)));
@@ -91,6 +127,7 @@ public class PersistentResourceList {
                     if ( version == VERSION ) {
                         unknownList = (List<RegisteredResource>)ois.readObject();
                     }
+                    migrate = true;
                 } else {
                     logger.warn("Unknown version for persistent resource list: {}", version);
                 }
@@ -100,6 +137,7 @@ public class PersistentResourceList {
                 logger.warn("Unable to restore data, starting with empty list (" + e.getMessage() + ")", e);
                 restoredData = null;
                 unknownList = null;
+                migrate = false;
             } finally {
                 if (ois != null) {
                     try {
@@ -135,6 +173,54 @@ public class PersistentResourceList {
             result.setResourceType(RESTART_ACTIVE_BUNDLES_TYPE);
             this.transform(rr, new TransformationResult[] {result});
         }
+
+        if ( migrate && this.persist() ) {
+            logger.info("Migrated persistent resource list from {} to journal.", dataFile);
+            if ( !dataFile.delete() ) {
+                logger.warn("Unable to delete migrated persistent resource list {}", dataFile);
+            }
+        }
+    }
+
+    /**
+     * The journal file is stored next to the data file of previous versions.
+     */
+    private static File getJournalFile(final File dataFile) {
+        String name = dataFile.getName();
+        final int pos = name.lastIndexOf('.');
+        if ( pos != -1 ) {
+            name = name.substring(0, pos);
+        }
+        return new File(dataFile.getParentFile(), name + ".journal");
+    }
+
+    /**
+     * Restore the groups and the untransformed resources from the journal records.
+     * Records which can't be read are skipped.
+     * @return The untransformed resources or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    private List<RegisteredResource> restore(final Map<String, ByteBuffer> records,
+            final Map<String, EntityResourceList> restoredData) {
+        List<RegisteredResource> unknownList = null;
+        for(final Map.Entry<String, ByteBuffer> entry : records.entrySet()) {
+            try {
+                final ObjectInputStream ois = new ObjectInputStream(ResourceListJournal.newInputStream(entry.getValue()));
+                try {
+                    if ( KEY_UNTRANSFORMED.equals(entry.getKey()) ) {
+                        unknownList = (List<RegisteredResource>)ois.readObject();
+                    } else if ( entry.getKey().startsWith(KEY_ENTITY_PREFIX) ) {
+                        restoredData.put(entry.getKey().substring(KEY_ENTITY_PREFIX.length()),
+                                (EntityResourceList)ois.readObject());
+                    }
+                } finally {
+                    ois.close();
+                }
+            } catch (final Exception e) {
+                logger.warn("Unable to restore " + entry.getKey() + " from journal (" + e.getMessage() + ")", e);
+            }
+        }
+        return unknownList;
     }
 
     /**
@@ -159,19 +245,78 @@ public class PersistentResourceList {
      * Persist the current state
      */
     public void save() {
+        this.persist();
+    }
+
+    /**
+     * Persist the current state. Each group is serialized on its own and
+     * only if its modification count changed since the last save. Only
+     * changed groups are appended to the journal.
+     * @return {@code true} if the state has been persisted.
+     */
+    private boolean persist() {
         try {
-            final ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile)));
-            try {
-                oos.writeInt(VERSION);
-                oos.writeObject(data);
-                oos.writeObject(untransformedResources);
-                logger.debug("Persisted resource list.");
-            } finally {
-                oos.close();
+            final Map<String, byte[]> records = new LinkedHashMap<String, byte[]>();
+            final Map<String, PersistedRecord> current = new HashMap<String, PersistedRecord>();
+            final Set<String> modified = new HashSet<String>();
+            for(final Map.Entry<String, EntityResourceList> entry : this.data.entrySet()) {
+                this.addRecord(KEY_ENTITY_PREFIX + entry.getKey(), entry.getValue(),
+                        entry.getValue().getModificationCount(), records, current, modified);
             }
+            this.addRecord(KEY_UNTRANSFORMED, this.untransformedResources,
+                    this.getUntransformedModificationCount(), records, current, modified);
+            this.journal.write(records, modified);
+            this.persisted.clear();
+            this.persisted.putAll(current);
+            logger.debug("Persisted resource list, {} records serialized.", modified.size());
+            return true;
         } catch (final Exception e) {
             logger.warn("Unable to save persistent list: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Add the record for an object, the object is only serialized
+     * if it changed since the last save.
+     */
+    private void addRecord(final String key,
+            final Object obj,
+            final long modificationCount,
+            final Map<String, byte[]> records,
+            final Map<String, PersistedRecord> current,
+            final Set<String> modified)
+    throws IOException {
+        PersistedRecord record = this.persisted.get(key);
+        if ( record == null || record.source != obj || record.modificationCount != modificationCount ) {
+            record = new PersistedRecord(obj, modificationCount, serialize(obj));
+            modified.add(key);
+        }
+        records.put(key, record.payload);
+        current.put(key, record);
+    }
+
+    private long getUntransformedModificationCount() {
+        long count = this.untransformedModificationCount;
+        for(final RegisteredResource rr : this.untransformedResources) {
+            count += ((RegisteredResourceImpl)rr).getModificationCount();
         }
+        return count;
+    }
+
+    private void removedUntransformed(final RegisteredResource rr) {
+        this.untransformedModificationCount += ((RegisteredResourceImpl)rr).getModificationCount() + 1;
+    }
+
+    private static byte[] serialize(final Object obj) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        try {
+            oos.writeObject(obj);
+        } finally {
+            oos.close();
+        }
+        return baos.toByteArray();
     }
 
     public Collection<String> getEntityIds() {
@@ -228,10 +373,12 @@ public class PersistentResourceList {
             t.addOrUpdate(input);
         } else {
             // check if there is an old resource and remove it first
-            if ( this.untransformedResources.contains(input) ) {
-                this.untransformedResources.remove(input);
+            final int index = this.untransformedResources.indexOf(input);
+            if ( index != -1 ) {
+                this.removedUntransformed(this.untransformedResources.remove(index));
             }
             this.untransformedResources.add(input);
+            this.untransformedModificationCount++;
         }
     }
 
@@ -261,6 +408,7 @@ public class PersistentResourceList {
             if ( rr.getURL().equals(url) ) {
                 ((RegisteredResourceImpl)rr).cleanup();
                 i.remove();
+                this.removedUntransformed(rr);
                 break;
             }
         }
@@ -306,7 +454,9 @@ public class PersistentResourceList {
     public void transform(final RegisteredResource resource,
                           final TransformationResult[] result) {
         // remove resource from unknown list
-        this.untransformedResources.remove(resource);
+        if ( this.untransformedResources.remove(resource) ) {
+            this.removedUntransformed(resource);
+        }
         try {
             for(int i=0; i<result.length; i++) {
                 // check the result
@@ -334,4 +484,23 @@ public class PersistentResourceList {
     public boolean isSpecialEntityId(final String id) {
         return RESTART_ACTIVE_BUNDLES_ENTITY_ID.equals(id);
     }
+
+    /**
+     * A record written by the last save.
+     */
+    private static final class PersistedRecord {
+
+        /** The persisted object. */
+        public final Object source;
+
+        public final long modificationCount;
+
+        public final byte[] payload;
+
+        public PersistedRecord(final Object source, final long modificationCount, final byte[] payload) {
+            this.source = source;
+            this.modificationCount = modificationCount;
+            this.payload = payload;
+        }
+    }
 }
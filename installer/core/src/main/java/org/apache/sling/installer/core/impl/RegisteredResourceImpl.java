@@ -88,6 +88,9 @@ public class RegisteredResourceImpl
     /** When was the last status change? */
     private long lastChange = -1;
 
+    /** Incremented on each change of the persisted state. */
+    private transient volatile long modificationCount;
+
     /**
      * Serialize the object
      * - write version id
@@ -243,6 +246,7 @@ public class RegisteredResourceImpl
             dataFile.delete();
         }
         this.dataUri = null;
+        this.modificationCount++;
 	}
 
 	/**
@@ -321,9 +325,12 @@ public class RegisteredResourceImpl
      */
     public void setAttribute(final String key, final Object value) {
         if ( value == null ) {
-            this.attributes.remove(key);
+            if ( this.attributes.remove(key) != null ) {
+                this.modificationCount++;
+            }
         } else {
             this.attributes.put(key, value);
+            this.modificationCount++;
         }
     }
 
@@ -354,6 +361,15 @@ public class RegisteredResourceImpl
     public void setState(final ResourceState s) {
         this.lastChange = System.currentTimeMillis();
         this.state = s;
+        this.modificationCount++;
+    }
+
+    /**
+     * Return the modification count. The count is incremented whenever
+     * the persisted state of this resource changes.
+     */
+    public long getModificationCount() {
+        return this.modificationCount;
     }
 
     /**
@@ -542,6 +558,7 @@ public class RegisteredResourceImpl
         if ( tr.getVersion() != null ) {
             this.attributes.put(Constants.BUNDLE_VERSION, tr.getVersion().toString());
         }
+        this.modificationCount++;
     }
 
     /**
@@ -568,6 +585,7 @@ public class RegisteredResourceImpl
                 FileDataStore.SHARED.updateDigestCache(this.url, this.digest);
             }
         }
+        this.modificationCount++;
     }
 
     /**
@@ -614,6 +632,7 @@ public class RegisteredResourceImpl
         this.url = url;
         final int pos = url.indexOf(':');
         this.urlScheme = url.substring(0, pos);
+        this.modificationCount++;
     }
 
     /**
@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append only journal of keyed binary records.
+ *
+ * Each save only appends the records which changed since the last
+ * save, a removed key is recorded with a remove record. When reading
+ * the journal the last record for a key wins. Once the journal is
+ * considerably larger than the live data, it is compacted by writing
+ * a new journal containing only the live records.
+ *
+ * The file starts with a magic number and the format version,
+ * followed by records with this layout:
+ * <pre>
+ * int    length of the record (without this field)
+ * byte   type (put or remove)
+ * int    crc32 of key and payload
+ * UTF    key
+ * byte[] payload (only for put records)
+ * </pre>
+ * A partially written record at the end of the file (e.g. due to a crash)
+ * is ignored and removed by the next compaction.
+ *
+ * Appended records and the compacted journal are forced to disk before
+ * a write returns. A compacted journal replaces the old journal by renaming.
+ * If the platform can't rename onto an existing file, the old journal is
+ * first renamed to a backup file, which is used for reading if the
+ * journal itself is missing.
+ */
+public class ResourceListJournal {
+
+    /** Magic number: "SLIJ" */
+    private static final int MAGIC = 0x534c494a;
+
+    /** Format version. */
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte TYPE_PUT = 1;
+
+    private static final byte TYPE_REMOVE = 2;
+
+    /** Don't compact journals smaller than this. */
+    private static final long MIN_COMPACTION_SIZE = 256 * 1024;
+
+    /** The logger */
+    private final Logger logger =  LoggerFactory.getLogger(this.getClass());
+
+    /** The journal file. */
+    private final File file;
+
+    /** Checksum and size of the last record for each live key. */
+    private final Map<String, RecordInfo> records = new HashMap<String, RecordInfo>();
+
+    /** Size of the journal file. */
+    private long fileSize;
+
+    /** Size of all live records. */
+    private long liveSize;
+
+    /** Force a compaction on the next write. */
+    private boolean compactionRequired = true;
+
+    /** The backup file used while replacing the journal. */
+    private final File backupFile;
+
+    public ResourceListJournal(final File file) {
+        this.file = file;
+        this.backupFile = new File(file.getParentFile(), file.getName() + ".bak");
+    }
+
+    /**
+     * Does the journal file exist?
+     */
+    public boolean exists() {
+        return this.file.exists() || this.backupFile.exists();
+    }
+
+    /**
+     * Read the journal. The file is memory mapped and the returned buffers
+     * are read only views on the latest payload of each live key.
+     * @return A map of all live keys and their payload.
+     * @throws IOException If the file can't be read or has an unknown format.
+     */
+    public synchronized Map<String, ByteBuffer> read() throws IOException {
+        this.records.clear();
+        this.liveSize = 0;
+        this.fileSize = 0;
+        this.compactionRequired = true;
+
+        if ( !this.file.exists() && this.backupFile.exists() ) {
+            // a previous compaction did not finish
+            logger.info("Restoring journal {} from backup {}", this.file, this.backupFile);
+            if ( !this.backupFile.renameTo(this.file) ) {
+                throw new IOException("Unable to restore journal " + this.file + " from " + this.backupFile);
+            }
+        }
+        final Map<String, ByteBuffer> result = new LinkedHashMap<String, ByteBuffer>();
+        final FileInputStream fis = new FileInputStream(this.file);
+        try {
+            final FileChannel channel = fis.getChannel();
+            final long size = channel.size();
+            if ( size > Integer.MAX_VALUE ) {
+                throw new IOException("Journal " + this.file + " is too large: " + size);
+            }
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if ( size < HEADER_SIZE || buffer.getInt() != MAGIC ) {
+                throw new IOException("Journal " + this.file + " has an invalid header.");
+            }
+            final int version = buffer.getInt();
+            if ( version != VERSION ) {
+                throw new IOException("Unknown version for journal " + this.file + " : " + version);
+            }
+            boolean valid = true;
+            while ( valid && buffer.remaining() > 0 ) {
+                valid = this.readRecord(buffer, result);
+            }
+            if ( !valid ) {
+                logger.warn("Ignoring incomplete or corrupt record at the end of journal {}", this.file);
+            }
+            this.fileSize = buffer.position();
+            this.compactionRequired = !valid;
+        } finally {
+            fis.close();
+        }
+        return result;
+    }
+
+    /**
+     * Read a single record
+     * @return {@code false} if the record is incomplete or corrupt.
+     */
+    private boolean readRecord(final ByteBuffer buffer, final Map<String, ByteBuffer> result) {
+        final int start = buffer.position();
+        if ( buffer.remaining() < 4 ) {
+            return false;
+        }
+        final int length = buffer.getInt();
+        if ( length < 7 || length > buffer.remaining() ) {
+            buffer.position(start);
+            return false;
+        }
+        final int end = buffer.position() + length;
+        final byte type = buffer.get();
+        final int crc = buffer.getInt();
+        final int keyLength = buffer.getShort() & 0xFFFF;
+        if ( buffer.position() + keyLength > end ) {
+            buffer.position(start);
+            return false;
+        }
+        final byte[] keyBytes = new byte[keyLength];
+        buffer.get(keyBytes);
+        final ByteBuffer payload = buffer.slice();
+        payload.limit(end - buffer.position());
+
+        final CRC32 checksum = new CRC32();
+        checksum.update(keyBytes);
+        final byte[] payloadBytes = new byte[payload.remaining()];
+        payload.duplicate().get(payloadBytes);
+        checksum.update(payloadBytes);
+        if ( (int)checksum.getValue() != crc ) {
+            buffer.position(start);
+            return false;
+        }
+        buffer.position(end);
+
+        final String key = decodeKey(keyBytes);
+        this.removeRecordInfo(key);
+        if ( type == TYPE_PUT ) {
+            result.put(key, payload.asReadOnlyBuffer());
+            this.putRecordInfo(key, new RecordInfo(crc, payloadBytes.length, 4 + length));
+        } else {
+            result.remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Write the current state. Only changed and removed keys are appended
+     * to the journal. If required the journal is compacted.
+     * @param current The map of all live keys and their payload.
+     * @throws IOException If writing fails.
+     */
+    public synchronized void write(final Map<String, byte[]> current) throws IOException {
+        this.write(current, current.keySet());
+    }
+
+    /**
+     * Write the current state. Only changed and removed keys are appended
+     * to the journal. If required the journal is compacted.
+     * @param current The map of all live keys and their payload.
+     * @param modified The keys whose payload might have changed since the last
+     *                 write, the payload of all other keys of the current map
+     *                 must be unchanged.
+     * @throws IOException If writing fails.
+     */
+    public synchronized void write(final Map<String, byte[]> current, final Set<String> modified) throws IOException {
+        if ( this.compactionRequired || !this.file.exists() ) {
+            this.compact(current);
+            return;
+        }
+        final Map<String, byte[]> changed = new LinkedHashMap<String, byte[]>();
+        for(final Map.Entry<String, byte[]> entry : current.entrySet()) {
+            final RecordInfo info = this.records.get(entry.getKey());
+            if ( info == null
+                 || (modified.contains(entry.getKey())
+                     && (info.size != entry.getValue().length || info.crc != checksum(entry.getKey(), entry.getValue()))) ) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for(final String key : this.records.keySet()) {
+            if ( !current.containsKey(key) ) {
+                changed.put(key, null);
+            }
+        }
+        if ( changed.isEmpty() ) {
+            return;
+        }
+
+        final FileOutputStream fos = new FileOutputStream(this.file, true);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        try {
+            for(final Map.Entry<String, byte[]> entry : changed.entrySet()) {
+                this.fileSize += this.writeRecord(out, entry.getKey(), entry.getValue());
+            }
+            out.flush();
+            fos.getFD().sync();
+        } catch (final IOException ioe) {
+            // the tail might be incomplete, rewrite the journal with the next write
+            this.compactionRequired = true;
+            throw ioe;
+        } finally {
+            out.close();
+        }
+        logger.debug("Appended {} records to journal {}", changed.size(), this.file);
+
+        if ( this.fileSize > MIN_COMPACTION_SIZE && this.fileSize > 2 * this.liveSize ) {
+            this.compact(current);
+        }
+    }
+
+    /**
+     * Write a new journal containing just the current state and
+     * replace the old journal with it.
+     */
+    private void compact(final Map<String, byte[]> current) throws IOException {
+        final File tmpFile = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+        this.records.clear();
+        this.liveSize = 0;
+        this.fileSize = HEADER_SIZE;
+
+        final FileOutputStream fos = new FileOutputStream(tmpFile);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for(final Map.Entry<String, byte[]> entry : current.entrySet()) {
+                this.fileSize += this.writeRecord(out, entry.getKey(), entry.getValue());
+            }
+            out.flush();
+            fos.getFD().sync();
+        } catch (final IOException ioe) {
+            this.compactionRequired = true;
+            throw ioe;
+        } finally {
+            out.close();
+        }
+        if ( !tmpFile.renameTo(this.file) ) {
+            // on some platforms rename does not overwrite existing files,
+            // keep the old journal as a backup until the new one is in place
+            this.backupFile.delete();
+            if ( !this.file.renameTo(this.backupFile) || !tmpFile.renameTo(this.file) ) {
+                this.compactionRequired = true;
+                throw new IOException("Unable to replace journal " + this.file + " with " + tmpFile);
+            }
+        }
+        this.backupFile.delete();
+        this.compactionRequired = false;
+        logger.debug("Compacted journal {} to {} bytes", this.file, this.fileSize);
+    }
+
+    /**
+     * Write a record
+     * @param payload The payload or {@code null} for a remove record.
+     * @return The number of bytes written.
+     */
+    private int writeRecord(final DataOutputStream out, final String key, final byte[] payload)
+    throws IOException {
+        final byte[] keyBytes = key.getBytes("UTF-8");
+        if ( keyBytes.length > 0xFFFF ) {
+            throw new IOException("Key is too long: " + key);
+        }
+        final int payloadLength = (payload == null ? 0 : payload.length);
+        final int length = 1 + 4 + 2 + keyBytes.length + payloadLength;
+        final int crc = checksum(keyBytes, payload);
+
+        out.writeInt(length);
+        out.writeByte(payload == null ? TYPE_REMOVE : TYPE_PUT);
+        out.writeInt(crc);
+        out.writeShort(keyBytes.length);
+        out.write(keyBytes);
+        if ( payload != null ) {
+            out.write(payload);
+        }
+
+        this.removeRecordInfo(key);
+        if ( payload != null ) {
+            this.putRecordInfo(key, new RecordInfo(crc, payloadLength, 4 + length));
+        }
+        return 4 + length;
+    }
+
+    private void putRecordInfo(final String key, final RecordInfo info) {
+        this.records.put(key, info);
+        this.liveSize += info.recordSize;
+    }
+
+    private void removeRecordInfo(final String key) {
+        final RecordInfo old = this.records.remove(key);
+        if ( old != null ) {
+            this.liveSize -= old.recordSize;
+        }
+    }
+
+    private static int checksum(final String key, final byte[] payload) throws IOException {
+        return checksum(key.getBytes("UTF-8"), payload);
+    }
+
+    private static int checksum(final byte[] keyBytes, final byte[] payload) {
+        final CRC32 checksum = new CRC32();
+        checksum.update(keyBytes);
+        if ( payload != null ) {
+            checksum.update(payload);
+        }
+        return (int)checksum.getValue();
+    }
+
+    private static String decodeKey(final byte[] keyBytes) {
+        try {
+            return new String(keyBytes, "UTF-8");
+        } catch (final java.io.UnsupportedEncodingException uee) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    /**
+     * Create an input stream for a buffer returned by {@link #read()}.
+     */
+    public static InputStream newInputStream(final ByteBuffer buffer) {
+        final ByteBuffer b = buffer.duplicate();
+        return new InputStream() {
+
+            @Override
+            public int read() {
+                if ( !b.hasRemaining() ) {
+                    return -1;
+                }
+                return b.get() & 0xFF;
+            }
+
+            @Override
+            public int read(final byte[] bytes, final int off, final int len) {
+                if ( !b.hasRemaining() ) {
+                    return -1;
+                }
+                final int count = Math.min(len, b.remaining());
+                b.get(bytes, off, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return b.remaining();
+            }
+        };
+    }
+
+    /**
+     * Checksum and size of a record.
+     */
+    private static final class RecordInfo {
+
+        public final int crc;
+
+        public final int size;
+
+        public final int recordSize;
+
+        public RecordInfo(final int crc, final int size, final int recordSize) {
+            this.crc = crc;
+            this.size = size;
+            this.recordSize = recordSize;
+        }
+    }
+}
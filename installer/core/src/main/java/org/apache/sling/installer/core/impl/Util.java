@@ -99,6 +99,7 @@ public class Util {
         public String symbolicName;
         public String version;
         public String activationPolicy; // optional
+        public String fragmentHost; // optional
     }
 
     /**
@@ -124,6 +125,12 @@ public class Util {
                             headers.activationPolicy = actPolicy;
                         }
 
+                        // check for fragment
+                        final String host = m.getMainAttributes().getValue(Constants.FRAGMENT_HOST);
+                        if ( host != null ) {
+                            headers.fragmentHost = host;
+                        }
+
                         return headers;
                     }
                 }
@@ -22,6 +22,7 @@ import org.apache.sling.installer.api.tasks.InstallationContext;
 import org.apache.sling.installer.api.tasks.ResourceState;
 import org.apache.sling.installer.api.tasks.TaskResourceGroup;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
 import org.osgi.service.startlevel.StartLevel;
 
 /**
@@ -94,4 +95,18 @@ public class BundleInstallTask extends AbstractBundleTask {
     public String getSortKey() {
         return BUNDLE_INSTALL_ORDER + getSortableStartLevel() + "-" + getResource().getURL();
     }
+
+    /**
+     * Only plain installs are executed concurrently: bundles without a
+     * configured start level which are not fragments. Installing these
+     * neither changes a start level nor triggers a refresh of another bundle.
+     * @see org.apache.sling.installer.api.tasks.InstallTask#getParallelGroup()
+     */
+    @Override
+    public String getParallelGroup() {
+        if ( this.getBundleStartLevel() != 0 || this.getResource().getAttribute(Constants.FRAGMENT_HOST) != null ) {
+            return null;
+        }
+        return BUNDLE_INSTALL_ORDER;
+    }
 }
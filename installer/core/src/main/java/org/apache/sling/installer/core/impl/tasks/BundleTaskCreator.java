@@ -145,6 +145,9 @@ public class BundleTaskCreator
             if ( headers.activationPolicy != null ) {
                 toActivate.setAttribute(Constants.BUNDLE_ACTIVATIONPOLICY, headers.activationPolicy);
             }
+            if ( headers.fragmentHost != null ) {
+                toActivate.setAttribute(Constants.FRAGMENT_HOST, headers.fragmentHost);
+            }
         }
         final String symbolicName = (String)toActivate.getAttribute(Constants.BUNDLE_SYMBOLICNAME);
         final boolean isInstallerCoreBundle = this.bundleContext.getBundle().getSymbolicName().equals(symbolicName);
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.tasks.InstallTask;
+import org.apache.sling.installer.api.tasks.InstallationContext;
+import org.apache.sling.installer.api.tasks.TransformationResult;
+import org.apache.sling.installer.core.impl.tasks.BundleInstallTask;
+import org.apache.sling.installer.core.impl.tasks.BundleUpdateTask;
+import org.apache.sling.installer.core.impl.tasks.MockInstallationListener;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Constants;
+
+/** Test the selection of tasks which are executed concurrently. */
+public class ParallelBatchTest {
+
+    private SortedSet<InstallTask> tasks;
+
+    @Before public void setUp() {
+        tasks = new TreeSet<InstallTask>();
+    }
+
+    private static class SimpleTask extends InstallTask {
+
+        private final String sortKey;
+
+        private final String group;
+
+        private final boolean async;
+
+        public SimpleTask(final String sortKey, final String group, final boolean async) {
+            super(null);
+            this.sortKey = sortKey;
+            this.group = group;
+            this.async = async;
+        }
+
+        public SimpleTask(final String sortKey, final String group) {
+            this(sortKey, group, false);
+        }
+
+        @Override
+        public void execute(final InstallationContext ctx) {
+            // nothing to do
+        }
+
+        @Override
+        public String getSortKey() {
+            return sortKey;
+        }
+
+        @Override
+        public String getParallelGroup() {
+            return group;
+        }
+
+        @Override
+        public boolean isAsynchronousTask() {
+            return async;
+        }
+    }
+
+    private static EntityResourceList getResourceList(final String url,
+            final Dictionary<String, Object> dict,
+            final String fragmentHost) throws IOException {
+        new FileDataStore(new MockBundleContext());
+        final InternalResource internal = InternalResource.create("test",
+                new InstallableResource(url, null, dict, null, null, null));
+        RegisteredResourceImpl rr = RegisteredResourceImpl.create(internal);
+        final TransformationResult result = new TransformationResult();
+        result.setId(url);
+        result.setResourceType(InstallableResource.TYPE_BUNDLE);
+        rr = (RegisteredResourceImpl)rr.clone(result);
+        if ( fragmentHost != null ) {
+            rr.setAttribute(Constants.FRAGMENT_HOST, fragmentHost);
+        }
+
+        final EntityResourceList erl = new EntityResourceList("test", new MockInstallationListener());
+        erl.addOrUpdate(rr);
+        return erl;
+    }
+
+    /** Take the first task from the set, like the installer does */
+    private InstallTask first() {
+        final InstallTask task = tasks.first();
+        tasks.remove(task);
+        return task;
+    }
+
+    @Test public void testAdjacentTasksOfSameGroup() {
+        tasks.add(new SimpleTask("a-1", "a"));
+        tasks.add(new SimpleTask("a-2", "a"));
+        tasks.add(new SimpleTask("a-3", "a"));
+        tasks.add(new SimpleTask("b-1", "b"));
+
+        final List<InstallTask> batch = OsgiInstallerImpl.getParallelBatch(first(), tasks);
+        assertNotNull(batch);
+        assertEquals(3, batch.size());
+        assertEquals("a-1", batch.get(0).getSortKey());
+        assertEquals("a-2", batch.get(1).getSortKey());
+        assertEquals("a-3", batch.get(2).getSortKey());
+
+        // only the task of the other group is left
+        assertEquals(1, tasks.size());
+        assertEquals("b-1", tasks.first().getSortKey());
+    }
+
+    @Test public void testBatchStopsAtOtherTask() {
+        tasks.add(new SimpleTask("a-1", "a"));
+        tasks.add(new SimpleTask("a-2", "a"));
+        tasks.add(new SimpleTask("a-3", null));
+        tasks.add(new SimpleTask("a-4", "a"));
+
+        final List<InstallTask> batch = OsgiInstallerImpl.getParallelBatch(first(), tasks);
+        assertNotNull(batch);
+        assertEquals(2, batch.size());
+        assertEquals(2, tasks.size());
+        assertEquals("a-3", tasks.first().getSortKey());
+    }
+
+    @Test public void testBatchStopsAtAsyncTask() {
+        tasks.add(new SimpleTask("a-1", "a"));
+        tasks.add(new SimpleTask("a-2", "a", true));
+        tasks.add(new SimpleTask("a-3", "a"));
+
+        assertNull(OsgiInstallerImpl.getParallelBatch(first(), tasks));
+        assertEquals(2, tasks.size());
+    }
+
+    @Test public void testAsyncTaskIsNeverBatched() {
+        tasks.add(new SimpleTask("a-1", "a", true));
+        tasks.add(new SimpleTask("a-2", "a"));
+
+        assertNull(OsgiInstallerImpl.getParallelBatch(first(), tasks));
+        assertEquals(1, tasks.size());
+    }
+
+    @Test public void testNoGroup() {
+        tasks.add(new SimpleTask("a-1", null));
+        tasks.add(new SimpleTask("a-2", null));
+
+        assertNull(OsgiInstallerImpl.getParallelBatch(first(), tasks));
+        assertEquals(1, tasks.size());
+    }
+
+    @Test public void testSingleTask() {
+        tasks.add(new SimpleTask("a-1", "a"));
+        tasks.add(new SimpleTask("b-1", "b"));
+
+        assertNull(OsgiInstallerImpl.getParallelBatch(first(), tasks));
+        assertEquals(1, tasks.size());
+    }
+
+    @Test public void testBundleTaskGroups() throws IOException {
+        final Dictionary<String, Object> startLevel = new Hashtable<String, Object>();
+        startLevel.put(InstallableResource.BUNDLE_START_LEVEL, 5);
+
+        final InstallTask plain = new BundleInstallTask(getResourceList("test:plain", new Hashtable<String, Object>(), null), null);
+        final InstallTask withStartLevel = new BundleInstallTask(getResourceList("test:level", startLevel, null), null);
+        final InstallTask fragment = new BundleInstallTask(getResourceList("test:fragment", new Hashtable<String, Object>(), "host"), null);
+        final InstallTask update = new BundleUpdateTask(getResourceList("test:update", new Hashtable<String, Object>(), null), null);
+
+        assertNotNull(plain.getParallelGroup());
+        assertTrue(plain.getSortKey().startsWith(plain.getParallelGroup()));
+        assertNull(withStartLevel.getParallelGroup());
+        assertNull(fragment.getParallelGroup());
+        assertNull(update.getParallelGroup());
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.event.InstallationEvent;
+import org.apache.sling.installer.api.event.InstallationListener;
+import org.apache.sling.installer.api.tasks.RegisteredResource;
+import org.apache.sling.installer.api.tasks.ResourceState;
+import org.apache.sling.installer.api.tasks.TransformationResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the persistent resource list.
+ */
+public class PersistentResourceListTest {
+
+    private static final InstallationListener LISTENER = new InstallationListener() {
+
+        public void onEvent(final InstallationEvent event) {
+            // nothing to do
+        }
+    };
+
+    private File dataFile;
+
+    private File journalFile;
+
+    @Before public void setup() throws IOException {
+        new FileDataStore(new MockBundleContext());
+        this.dataFile = File.createTempFile("RegisteredResourceList", ".ser");
+        this.dataFile.delete();
+        final String name = this.dataFile.getName();
+        this.journalFile = new File(this.dataFile.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".journal");
+    }
+
+    @After public void cleanup() {
+        this.dataFile.delete();
+        this.journalFile.delete();
+    }
+
+    private RegisteredResourceImpl createConfig(final String pid) throws IOException {
+        final Dictionary<String, Object> data = new Hashtable<String, Object>();
+        data.put("foo", pid);
+        final InstallableResource r = new InstallableResource("/" + pid, null, data, null, null, null);
+        final RegisteredResourceImpl rr = RegisteredResourceImpl.create(InternalResource.create("test", r));
+        return (RegisteredResourceImpl)rr.clone(result(pid));
+    }
+
+    @Test public void testMigrationFromSerializedFile() throws Exception {
+        final RegisteredResourceImpl config = this.createConfig("a");
+        config.setState(ResourceState.INSTALLED);
+        final EntityResourceList group = new EntityResourceList(config.getEntityId(), LISTENER);
+        group.addOrUpdate(config);
+        final Map<String, EntityResourceList> data = new HashMap<String, EntityResourceList>();
+        data.put(config.getEntityId(), group);
+        final List<RegisteredResource> untransformed = new ArrayList<RegisteredResource>();
+
+        // write the format used by previous versions
+        final ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(this.dataFile));
+        try {
+            oos.writeInt(2);
+            oos.writeObject(data);
+            oos.writeObject(untransformed);
+        } finally {
+            oos.close();
+        }
+
+        final PersistentResourceList list = new PersistentResourceList(this.dataFile, LISTENER);
+        assertNotNull(list.getEntityResourceList(config.getEntityId()));
+        assertFalse(this.dataFile.exists());
+        assertTrue(this.journalFile.exists());
+
+        // the migrated state is read from the journal
+        final PersistentResourceList restored = new PersistentResourceList(this.dataFile, LISTENER);
+        final EntityResourceList restoredGroup = restored.getEntityResourceList(config.getEntityId());
+        assertNotNull(restoredGroup);
+        assertEquals(ResourceState.INSTALLED, restoredGroup.getFirstResource().getState());
+        assertEquals(config.getURL(), restoredGroup.getFirstResource().getURL());
+    }
+
+    @Test public void testUnknownSerializedVersionIsNotMigrated() throws Exception {
+        final ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(this.dataFile));
+        try {
+            oos.writeInt(42);
+        } finally {
+            oos.close();
+        }
+        new PersistentResourceList(this.dataFile, LISTENER);
+        // the old file is kept
+        assertTrue(this.dataFile.exists());
+    }
+
+    @Test public void testSaveOnlyAppendsChanges() throws Exception {
+        final PersistentResourceList list = new PersistentResourceList(this.dataFile, LISTENER);
+        this.addConfig(list, "a");
+        this.addConfig(list, "b");
+        this.addConfig(list, "c");
+        list.save();
+        final long size = this.journalFile.length();
+
+        // nothing changed
+        list.save();
+        assertEquals(size, this.journalFile.length());
+
+        // change a single group
+        final EntityResourceList group = list.getEntityResourceList(InstallableResource.TYPE_CONFIG + ":a");
+        group.setFinishState(ResourceState.INSTALLED);
+        list.save();
+        final long grown = this.journalFile.length() - size;
+        assertTrue(grown > 0);
+        // only the changed group is appended
+        assertTrue(grown < size / 3);
+
+        final PersistentResourceList restored = new PersistentResourceList(this.dataFile, LISTENER);
+        assertEquals(ResourceState.INSTALLED,
+                restored.getEntityResourceList(InstallableResource.TYPE_CONFIG + ":a").getFirstResource().getState());
+        assertEquals(ResourceState.INSTALL,
+                restored.getEntityResourceList(InstallableResource.TYPE_CONFIG + ":b").getFirstResource().getState());
+    }
+
+    private void addConfig(final PersistentResourceList list, final String pid) throws IOException {
+        final Dictionary<String, Object> data = new Hashtable<String, Object>();
+        data.put("foo", pid);
+        final InstallableResource r = new InstallableResource("/" + pid, null, data, null, null, null);
+        final RegisteredResource rr = list.addOrUpdate(InternalResource.create("test", r));
+        list.transform(rr, new TransformationResult[] {result(pid)});
+    }
+
+    private static TransformationResult result(final String pid) {
+        final TransformationResult result = new TransformationResult();
+        result.setId(pid);
+        result.setResourceType(InstallableResource.TYPE_CONFIG);
+        return result;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the resource list journal.
+ */
+public class ResourceListJournalTest {
+
+    private File file;
+
+    @Before public void createFile() throws IOException {
+        this.file = File.createTempFile("installer", ".journal");
+        this.file.delete();
+    }
+
+    @After public void deleteFile() {
+        this.file.delete();
+    }
+
+    private static String toString(final ByteBuffer buffer) throws IOException {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static Map<String, byte[]> data(final String... keysAndValues) throws IOException {
+        final Map<String, byte[]> result = new LinkedHashMap<String, byte[]>();
+        for(int i=0; i<keysAndValues.length; i+=2) {
+            result.put(keysAndValues[i], keysAndValues[i+1].getBytes("UTF-8"));
+        }
+        return result;
+    }
+
+    private Map<String, ByteBuffer> read() throws IOException {
+        return new ResourceListJournal(this.file).read();
+    }
+
+    @Test public void testRoundtrip() throws IOException {
+        final ResourceListJournal journal = new ResourceListJournal(this.file);
+        assertFalse(journal.exists());
+        journal.write(data("a", "1", "b", "22"));
+        assertTrue(journal.exists());
+
+        final Map<String, ByteBuffer> result = this.read();
+        assertEquals(2, result.size());
+        assertEquals("1", toString(result.get("a")));
+        assertEquals("22", toString(result.get("b")));
+    }
+
+    @Test public void testIncrementalWrite() throws IOException {
+        final ResourceListJournal journal = new ResourceListJournal(this.file);
+        journal.write(data("a", "1", "b", "2"));
+        final long initialLength = this.file.length();
+
+        // unchanged state does not touch the file
+        journal.write(data("a", "1", "b", "2"));
+        assertEquals(initialLength, this.file.length());
+
+        // only the changed record is appended
+        journal.write(data("a", "1", "b", "3"));
+        assertTrue(this.file.length() > initialLength);
+        assertTrue(this.file.length() < 2 * initialLength);
+
+        final Map<String, ByteBuffer> result = this.read();
+        assertEquals("1", toString(result.get("a")));
+        assertEquals("3", toString(result.get("b")));
+    }
+
+    @Test public void testRemove() throws IOException {
+        final ResourceListJournal journal = new ResourceListJournal(this.file);
+        journal.write(data("a", "1", "b", "2"));
+        journal.write(data("b", "2"));
+
+        final Map<String, ByteBuffer> result = this.read();
+        assertEquals(1, result.size());
+        assertEquals("2", toString(result.get("b")));
+    }
+
+    @Test public void testContinueAfterRead() throws IOException {
+        new ResourceListJournal(this.file).write(data("a", "1", "b", "2"));
+        final long initialLength = this.file.length();
+
+        final ResourceListJournal journal = new ResourceListJournal(this.file);
+        journal.read();
+        journal.write(data("a", "1", "b", "2"));
+        assertEquals(initialLength, this.file.length());
+
+        journal.write(data("a", "4", "b", "2"));
+        final Map<String, ByteBuffer> result = this.read();
+        assertEquals("4", toString(result.get("a")));
+        assertEquals("2", toString(result.get("b")));
+    }
+
+    @Test public void testCorruptTail() throws IOException {
+        final ResourceListJournal journal = new ResourceListJournal(this.file);
+        journal.write(data("a", "1"));
+        final long validLength = this.file.length();
+        journal.write(data("a", "2"));
+
+        // cut off the last record
+        final RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+        try {
+            raf.setLength(this.file.length() - 1);
+        } finally {
+            raf.close();
+        }
+
+        final ResourceListJournal reader = new ResourceListJournal(this.file);
+        final Map<String, ByteBuffer> result = reader.read();
+        assertEquals("1", toString(result.get("a")));
+
+        // the next write compacts the journal
+        reader.write(data("a", "1"));
+        assertEquals(validLength, this.file.length());
+        assertEquals("1", toString(this.read().get("a")));
+    }
+
+    @Test public void testCompaction() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for(int i=0; i<1024; i++) {
+            sb.append('x');
+        }
+        final String value = sb.toString();
+        final ResourceListJournal journal = new ResourceListJournal(this.file);
+        for(int i=0; i<1000; i++) {
+            journal.write(data("a", value + i, "b", value));
+        }
+        // without compaction the file would contain 1000 records
+        assertTrue(this.file.length() < 600 * 1024);
+
+        final Map<String, ByteBuffer> result = this.read();
+        assertEquals(2, result.size());
+        assertEquals(value + 999, toString(result.get("a")));
+        assertEquals(value, toString(result.get("b")));
+    }
+
+    @Test public void testUnmodifiedKeysAreNotChecked() throws IOException {
+        final ResourceListJournal journal = new ResourceListJournal(this.file);
+        journal.write(data("a", "1", "b", "2"));
+        final long size = this.file.length();
+
+        // a changed payload for a key which is not marked as modified is ignored
+        journal.write(data("a", "changed", "b", "3"), new HashSet<String>(Arrays.asList("b")));
+        assertTrue(this.file.length() > size);
+
+        final Map<String, ByteBuffer> result = this.read();
+        assertEquals("1", toString(result.get("a")));
+        assertEquals("3", toString(result.get("b")));
+    }
+
+    @Test public void testNewKeyIsWrittenWithoutModifiedMarker() throws IOException {
+        final ResourceListJournal journal = new ResourceListJournal(this.file);
+        journal.write(data("a", "1"));
+        journal.write(data("a", "1", "b", "2"), Collections.<String>emptySet());
+
+        final Map<String, ByteBuffer> result = this.read();
+        assertEquals(2, result.size());
+        assertEquals("2", toString(result.get("b")));
+    }
+
+    @Test public void testRestoreFromBackup() throws IOException {
+        new ResourceListJournal(this.file).write(data("a", "1"));
+
+        // simulate a crash while replacing the journal
+        final File backup = new File(this.file.getParentFile(), this.file.getName() + ".bak");
+        try {
+            assertTrue(this.file.renameTo(backup));
+
+            final ResourceListJournal journal = new ResourceListJournal(this.file);
+            assertTrue(journal.exists());
+            final Map<String, ByteBuffer> result = journal.read();
+            assertEquals("1", toString(result.get("a")));
+            assertTrue(this.file.exists());
+            assertFalse(backup.exists());
+        } finally {
+            backup.delete();
+        }
+    }
+}